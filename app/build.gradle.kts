@@ -33,6 +33,8 @@ android {
 
 dependencies {
 
+    implementation(project(":gesture-core"))
+
     implementation(libs.appcompat)
     implementation(libs.material)
     implementation("androidx.constraintlayout:constraintlayout:2.1.4")
@@ -11,6 +11,7 @@ import android.util.Log;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Set;
 import java.util.UUID;
 
@@ -27,7 +28,10 @@ public class BluetoothHandler {
         void onDeviceConnected(String deviceName);
         void onDeviceDisconnected();
         void onConnectionFailed(String errorMessage);
-        void onDataReceived(String data);
+        /**
+         * Called on the reader thread with raw bytes; the buffer is reused once this returns
+         */
+        void onDataReceived(byte[] data, int length);
     }
 
     private final BluetoothAdapter bluetoothAdapter;
@@ -150,7 +154,29 @@ public class BluetoothHandler {
         }
 
         try {
-            outputStream.write(data.getBytes());
+            outputStream.write(data.getBytes(StandardCharsets.UTF_8));
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Error sending data", e);
+            disconnect();
+            return false;
+        }
+    }
+
+    /**
+     * Send binary data to the connected device
+     * @param data Buffer holding the data
+     * @param offset Start of the data
+     * @param length Number of bytes
+     * @return true if data was sent, false otherwise
+     */
+    public boolean sendData(byte[] data, int offset, int length) {
+        if (!isConnected || outputStream == null) {
+            return false;
+        }
+
+        try {
+            outputStream.write(data, offset, length);
             return true;
         } catch (IOException e) {
             Log.e(TAG, "Error sending data", e);
@@ -191,14 +217,6 @@ public class BluetoothHandler {
         });
     }
 
-    private void notifyDataReceived(final String data) {
-        mainHandler.post(() -> {
-            if (listener != null) {
-                listener.onDataReceived(data);
-            }
-        });
-    }
-
     /**
      * Thread to handle communication with the connected device
      */
@@ -212,9 +230,10 @@ public class BluetoothHandler {
                 try {
                     if (inputStream != null) {
                         int bytesRead = inputStream.read(buffer);
-                        if (bytesRead > 0) {
-                            String data = new String(buffer, 0, bytesRead);
-                            notifyDataReceived(data);
+                        if (bytesRead > 0 && listener != null) {
+                            // Raw bytes: replies may be text lines or binary frames. Handed over
+                            // directly rather than copied and posted to the main thread.
+                            listener.onDataReceived(buffer, bytesRead);
                         }
                     } else {
                         break;
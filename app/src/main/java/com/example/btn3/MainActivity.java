@@ -7,6 +7,10 @@ import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.widget.Button;
@@ -20,15 +24,33 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
+import com.example.btn3.core.DeviceController;
+import com.example.btn3.core.GestureCombo;
+import com.example.btn3.core.GestureDetector;
+import com.example.btn3.core.Scene;
+import com.example.btn3.core.SensitivityProfile;
+import com.example.btn3.core.TemplateGestureRecognizer;
+import com.example.btn3.core.WireCodec;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
 import android.Manifest;
 
 public class MainActivity extends AppCompatActivity implements
-        SensorHandler.GestureListener,
         DeviceController.DeviceControlListener,
         BluetoothHandler.BluetoothListener,
         WiFiHandler.WiFiListener,
         GestureDetector.GestureDetectionListener {
 
+    private static final String TAG = "MainActivity";
+
     // UI Components
     private TextView accelerometerDataTextView;
     private TextView gyroscopeDataTextView;
@@ -52,12 +74,54 @@ public class MainActivity extends AppCompatActivity implements
     private BluetoothHandler bluetoothHandler;
     private WiFiHandler wifiHandler;
 
+    // Scenes offered in the menu, compiled once at startup
+    private List<Scene> scenes;
+
     // Device state variables
     private boolean isLightOn = false;
     private boolean isSpeakerOn = false;
+    private boolean isFanOn = false;
+    private boolean isTvOn = false;
     private int lightBrightness = 50;
     private int speakerVolume = 50;
 
+    // Commands packed at the onset of provisional gestures, per gesture type, with the device state each was
+    // packed from and its onset time; sent as-is on confirmation unless that state has changed (UI thread)
+    private final long[] preparedCommands = new long[GestureDetector.GestureType.values().length];
+    private final boolean[] preparedStates = new boolean[GestureDetector.GestureType.values().length];
+    private final long[] preparedOnsetNs = new long[GestureDetector.GestureType.values().length];
+
+    // Sensor times (elapsed realtime) of the latest onset and detection per gesture type (consumer thread)
+    private final AtomicLongArray onsetTimes = new AtomicLongArray(GestureDetector.GestureType.values().length);
+    private final AtomicLongArray detectionTimes = new AtomicLongArray(GestureDetector.GestureType.values().length);
+
+    // Packed media commands, built once
+    private static final long PREVIOUS_TRACK = DeviceController.packMedia("PREVIOUS");
+    private static final long NEXT_TRACK = DeviceController.packMedia("NEXT");
+
+    // Onset (0 if not prepared) and detection time of the gesture whose command is being sent; 0 outside a gesture
+    private long sendingOnsetNs = 0;
+    private long sendingDetectionNs = 0;
+
+    // Time until a gesture's command is written: from motion onset when it was prepared, from detection for all
+    private long onsetToWriteNs = 0;
+    private long onsetToWriteCount = 0;
+    private long detectionToWriteNs = 0;
+    private long detectionToWriteCount = 0;
+
+    // Runnables per gesture type, so posting a gesture, onset or cancellation to the UI thread does not allocate
+    private final Runnable[] gestureRunnables = new Runnable[GestureDetector.GestureType.values().length];
+    private final Runnable[] prepareRunnables = new Runnable[GestureDetector.GestureType.values().length];
+    private final Runnable[] cancelRunnables = new Runnable[GestureDetector.GestureType.values().length];
+
+    // Sends coalesced SeekBar and tilt values once their interval has passed (UI thread)
+    private final Handler uiHandler = new Handler(Looper.getMainLooper());
+    private final Runnable parameterFlush = this::flushParameters;
+    private boolean parameterFlushScheduled = false;
+
+    // Fails unacknowledged commands while a transport is set, even if no new command is sent (UI thread)
+    private final Runnable timeoutCheck = this::checkTimeouts;
+
     // Request codes
     private static final int PERMISSION_REQUEST_CODE = 100;
     private static final int REQUEST_ENABLE_BT = 101;
@@ -138,14 +202,30 @@ public class MainActivity extends AppCompatActivity implements
     }
 
     private void initializeHandlers() {
+        Arrays.fill(preparedCommands, DeviceController.NO_COMMAND);
+        for (GestureDetector.GestureType gestureType : GestureDetector.GestureType.values()) {
+            gestureRunnables[gestureType.ordinal()] = () -> handleGesture(gestureType, GestureDetector.NO_TEMPLATE);
+            prepareRunnables[gestureType.ordinal()] = () -> prepareGestureCommand(gestureType);
+            cancelRunnables[gestureType.ordinal()] = () -> takePreparedCommand(gestureType);
+        }
+
         // Initialize gesture detector
         gestureDetector = new GestureDetector(this);
-
-        // Initialize sensor handler
-        sensorHandler = new SensorHandler(this, this);
+        // Prepare commands at motion onset instead of after the full threshold
+        gestureDetector.setEarlyTrigger(true, GestureDetector.DEFAULT_ONSET_RATIO);
+        // Combo hold-back stays off: it would delay every gesture that starts a combo
+        // (a plain WAVE) by the combo window, so a combo's gestures also run their own actions
+        gestureDetector.setCombos(loadCombos());
+        loadTemplates();
+
+        // Initialize sensor handler (feeds the gesture detector from its consumer thread)
+        sensorHandler = new SensorHandler(this, gestureDetector);
+        // Idle the sensors while the phone is lying still
+        sensorHandler.setRateGovernorEnabled(true);
 
         // Initialize device controller
         deviceController = new DeviceController(this);
+        scenes = loadScenes();
 
         // Initialize connectivity handlers
         bluetoothHandler = new BluetoothHandler(this, this);
@@ -177,6 +257,8 @@ public class MainActivity extends AppCompatActivity implements
 
             @Override
             public void onStopTrackingTouch(SeekBar seekBar) {
+                // Deliver the final position without waiting for the interval
+                deviceController.flushParameters(true);
             }
         });
 
@@ -195,6 +277,8 @@ public class MainActivity extends AppCompatActivity implements
 
             @Override
             public void onStopTrackingTouch(SeekBar seekBar) {
+                // Deliver the final position without waiting for the interval
+                deviceController.flushParameters(true);
             }
         });
     }
@@ -215,11 +299,28 @@ public class MainActivity extends AppCompatActivity implements
         if (sensorHandler != null) {
             sensorHandler.stopListening();
         }
+        if (gestureDetector != null && gestureDetector.getProvisionalCount() > 0) {
+            Log.i(TAG, String.format("Early trigger: %d provisional, onset %.1f ms before confirmation"
+                            + " on average, %.0f%% cancelled",
+                    gestureDetector.getProvisionalCount(), gestureDetector.getAverageLeadTimeNs() / 1e6,
+                    gestureDetector.getProvisionalCancelRate() * 100));
+        }
+        if (detectionToWriteCount > 0) {
+            Log.i(TAG, String.format("Gesture commands: %.1f ms from detection to write on average, %d of %d"
+                            + " prepared at onset, %.1f ms from onset to write for those",
+                    detectionToWriteNs / 1e6 / detectionToWriteCount, onsetToWriteCount, detectionToWriteCount,
+                    onsetToWriteCount > 0 ? onsetToWriteNs / 1e6 / onsetToWriteCount : 0.0));
+        }
+        if (deviceController != null && deviceController.getSuppressedCount() > 0) {
+            Log.i(TAG, "Coalescing dropped " + deviceController.getSuppressedCount() + " parameter updates");
+        }
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        uiHandler.removeCallbacks(parameterFlush);
+        uiHandler.removeCallbacks(timeoutCheck);
         // Disconnect from devices
         if (bluetoothHandler != null && bluetoothHandler.isConnected()) {
             bluetoothHandler.disconnect();
@@ -241,24 +342,39 @@ public class MainActivity extends AppCompatActivity implements
     }
 
     private void toggleLight() {
+        toggleLight(DeviceController.NO_COMMAND);
+    }
+
+    /**
+     * @param prepared Command packed for this toggle at gesture onset, or NO_COMMAND to pack it now
+     */
+    private void toggleLight(long prepared) {
         isLightOn = !isLightOn;
         lightStatusTextView.setText(isLightOn ? R.string.control_on : R.string.control_off);
 
         // Send command to the connected device
         if (deviceController.isConnected()) {
-            deviceController.toggleDevice(DeviceController.DeviceType.LIGHT, isLightOn);
+            deviceController.sendCommand(prepared != DeviceController.NO_COMMAND
+                    ? prepared : DeviceController.packToggle(DeviceController.DeviceType.LIGHT, isLightOn));
+            recordWriteTime();
         } else {
             showToast(getString(R.string.msg_no_device));
         }
     }
 
     private void toggleSpeaker() {
+        toggleSpeaker(DeviceController.NO_COMMAND);
+    }
+
+    private void toggleSpeaker(long prepared) {
         isSpeakerOn = !isSpeakerOn;
         speakerStatusTextView.setText(isSpeakerOn ? R.string.control_on : R.string.control_off);
 
         // Send command to the connected device
         if (deviceController.isConnected()) {
-            deviceController.toggleDevice(DeviceController.DeviceType.SPEAKER, isSpeakerOn);
+            deviceController.sendCommand(prepared != DeviceController.NO_COMMAND
+                    ? prepared : DeviceController.packToggle(DeviceController.DeviceType.SPEAKER, isSpeakerOn));
+            recordWriteTime();
         } else {
             showToast(getString(R.string.msg_no_device));
         }
@@ -269,7 +385,8 @@ public class MainActivity extends AppCompatActivity implements
 
         // Send command to the connected device
         if (deviceController.isConnected()) {
-            deviceController.adjustParameter(DeviceController.DeviceType.LIGHT, "BRIGHTNESS", brightness);
+            deviceController.updateParameter(DeviceController.DeviceType.LIGHT, "BRIGHTNESS", brightness);
+            scheduleParameterFlush();
         } else {
             showToast(getString(R.string.msg_no_device));
         }
@@ -280,25 +397,79 @@ public class MainActivity extends AppCompatActivity implements
 
         // Send command to the connected device
         if (deviceController.isConnected()) {
-            deviceController.adjustParameter(DeviceController.DeviceType.SPEAKER, "VOLUME", volume);
+            deviceController.updateParameter(DeviceController.DeviceType.SPEAKER, "VOLUME", volume);
+            scheduleParameterFlush();
         } else {
             showToast(getString(R.string.msg_no_device));
         }
     }
 
+    /**
+     * Account the time from the gesture being handled to its command being written (sendCommand writes
+     * at once while the in-flight window has room); commands not sent for a gesture are skipped
+     */
+    private void recordWriteTime() {
+        if (sendingDetectionNs == 0) {
+            return;
+        }
+        long now = SystemClock.elapsedRealtimeNanos();
+        detectionToWriteNs += now - sendingDetectionNs;
+        detectionToWriteCount++;
+        if (sendingOnsetNs != 0) {
+            onsetToWriteNs += now - sendingOnsetNs;
+            onsetToWriteCount++;
+        }
+    }
+
+    /**
+     * Make sure pending parameter values are flushed when they fall due
+     */
+    private void scheduleParameterFlush() {
+        if (!parameterFlushScheduled) {
+            long delayNs = deviceController.flushParameters();
+            if (delayNs >= 0) {
+                parameterFlushScheduled = true;
+                uiHandler.postDelayed(parameterFlush, Math.max(1, delayNs / 1_000_000L));
+            }
+        }
+    }
+
+    private void flushParameters() {
+        parameterFlushScheduled = false;
+        scheduleParameterFlush();
+    }
+
+    /**
+     * Check for overdue acknowledgements at half the ack timeout until the transport is cleared
+     */
+    private void checkTimeouts() {
+        deviceController.checkTimeouts();
+        uiHandler.postDelayed(timeoutCheck, Math.max(1, deviceController.getAckTimeout() / 2_000_000L));
+    }
+
     private void previousTrack() {
+        previousTrack(DeviceController.NO_COMMAND);
+    }
+
+    private void previousTrack(long prepared) {
         // Send command to the connected device
         if (deviceController.isConnected()) {
-            deviceController.controlMedia("PREVIOUS");
+            deviceController.sendCommand(prepared != DeviceController.NO_COMMAND ? prepared : PREVIOUS_TRACK);
+            recordWriteTime();
         } else {
             showToast(getString(R.string.msg_no_device));
         }
     }
 
     private void nextTrack() {
+        nextTrack(DeviceController.NO_COMMAND);
+    }
+
+    private void nextTrack(long prepared) {
         // Send command to the connected device
         if (deviceController.isConnected()) {
-            deviceController.controlMedia("NEXT");
+            deviceController.sendCommand(prepared != DeviceController.NO_COMMAND ? prepared : NEXT_TRACK);
+            recordWriteTime();
         } else {
             showToast(getString(R.string.msg_no_device));
         }
@@ -356,44 +527,16 @@ public class MainActivity extends AppCompatActivity implements
         Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
     }
 
-    // SensorHandler.GestureListener implementation
-    @Override
-    public void onWaveGestureDetected() {
-        gestureDetectedTextView.setText("Gesture: Wave");
-        toggleLight();
-    }
-
+    // DeviceController.DeviceControlListener implementation
+    // (called on the UI thread or, for queued commands, the connection's reader thread)
     @Override
-    public void onTiltGestureDetected(float tiltValue) {
-        gestureDetectedTextView.setText("Gesture: Tilt");
-
-        // Map tilt to volume (tilt forward to decrease, backward to increase)
-        int newVolume = speakerVolume;
-        if (tiltValue > 0) { // Forward tilt
-            newVolume = Math.max(0, speakerVolume - 5);
-        } else { // Backward tilt
-            newVolume = Math.min(100, speakerVolume + 5);
-        }
-
-        speakerVolumeSeekBar.setProgress(newVolume);
-        adjustSpeakerVolume(newVolume);
+    public void onCommandSent(int correlationId, long packed) {
+        runOnUiThread(() -> showToast(getString(R.string.msg_command_sent, WireCodec.toText(packed))));
     }
 
     @Override
-    public void onRotationGestureDetected(boolean isClockwise) {
-        if (isClockwise) {
-            gestureDetectedTextView.setText("Gesture: Rotate Right");
-            nextTrack();
-        } else {
-            gestureDetectedTextView.setText("Gesture: Rotate Left");
-            previousTrack();
-        }
-    }
-
-    // DeviceController.DeviceControlListener implementation
-    @Override
-    public void onCommandSent(String command) {
-        showToast(getString(R.string.msg_command_sent, command));
+    public void onSceneSent(int correlationId, Scene scene) {
+        runOnUiThread(() -> showToast(getString(R.string.msg_command_sent, scene.getName())));
     }
 
     @Override
@@ -403,18 +546,23 @@ public class MainActivity extends AppCompatActivity implements
 
     @Override
     public void onCommandFailure(String error) {
-        showToast("Command failed: " + error);
+        runOnUiThread(() -> showToast("Command failed: " + error));
     }
 
     // BluetoothHandler.BluetoothListener implementation
     @Override
     public void onDeviceConnected(String deviceName) {
+        deviceController.setTransport(frameTransport);
+        uiHandler.removeCallbacks(timeoutCheck);
+        checkTimeouts();
         connectionStatusTextView.setText(R.string.connection_status_connected);
         showToast(getString(R.string.msg_device_connected, deviceName));
     }
 
     @Override
     public void onDeviceDisconnected() {
+        uiHandler.removeCallbacks(timeoutCheck);
+        deviceController.setTransport(null);
         connectionStatusTextView.setText(R.string.connection_status_disconnected);
         showToast(getString(R.string.msg_device_disconnected, deviceController.getDeviceName()));
     }
@@ -426,20 +574,138 @@ public class MainActivity extends AppCompatActivity implements
     }
 
     @Override
-    public void onDataReceived(String data) {
-        // In a real app, this would handle data received from the device
-    }
+    public void onDataReceived(byte[] data, int length) {
+        // Acknowledgements for pipelined commands, as text lines or binary frames
+        // (on the reader thread; the controller is thread-safe and consumes the buffer here)
+        deviceController.onDataReceived(data, 0, length);
+    }
+
+    // Writes framed commands to whichever link is connected, text frames one per line
+    private final DeviceController.Transport frameTransport = new DeviceController.Transport() {
+        @Override
+        public boolean send(String frame) {
+            if (bluetoothHandler.isConnected()) {
+                return bluetoothHandler.sendData(frame + "\n");
+            }
+            return wifiHandler.isConnected() && wifiHandler.sendData(frame);
+        }
+
+        @Override
+        public boolean send(byte[] frame, int offset, int length) {
+            if (bluetoothHandler.isConnected()) {
+                return bluetoothHandler.sendData(frame, offset, length);
+            }
+            return wifiHandler.isConnected() && wifiHandler.sendData(frame, offset, length);
+        }
+
+        @Override
+        public boolean supportsBinary() {
+            return true;
+        }
+    };
 
     // WiFiHandler.WiFiListener implementation (same as Bluetooth for this example)
     // These methods are required by the interface but have the same implementation
 
     // GestureDetector.GestureDetectionListener implementation
+    // (called on the sensor consumer thread, so UI work is posted to the main thread)
     @Override
     public void onGestureDetected(GestureDetector.GestureType gestureType, float intensity) {
+        onGestureDetected(gestureType, intensity, GestureDetector.NO_TEMPLATE);
+    }
+
+    @Override
+    public void onGestureDetected(GestureDetector.GestureType gestureType, float intensity, int templateId) {
+        detectionTimes.set(gestureType.ordinal(), gestureDetector.getLastGestureTimeNs());
+        if (templateId == GestureDetector.NO_TEMPLATE) {
+            runOnUiThread(gestureRunnables[gestureType.ordinal()]);
+        } else {
+            runOnUiThread(() -> handleGesture(gestureType, templateId));
+        }
+    }
+
+    @Override
+    public void onProvisionalGesture(GestureDetector.GestureType gestureType, long timestampNs) {
+        onsetTimes.set(gestureType.ordinal(), timestampNs);
+        runOnUiThread(prepareRunnables[gestureType.ordinal()]);
+    }
+
+    @Override
+    public void onProvisionalGestureCancelled(GestureDetector.GestureType gestureType, long timestampNs) {
+        runOnUiThread(cancelRunnables[gestureType.ordinal()]);
+    }
+
+    /**
+     * Pack the command a gesture will send, from the current device state. Tilts are
+     * not prepared: volume goes through coalescing, which packs the value when it is sent.
+     */
+    private void prepareGestureCommand(GestureDetector.GestureType gestureType) {
+        long command;
+        switch (gestureType) {
+            case WAVE:
+                command = DeviceController.packToggle(DeviceController.DeviceType.LIGHT, !isLightOn);
+                break;
+            case ROTATE_LEFT:
+                command = PREVIOUS_TRACK;
+                break;
+            case ROTATE_RIGHT:
+                command = NEXT_TRACK;
+                break;
+            case SHAKE:
+                command = DeviceController.packToggle(DeviceController.DeviceType.SPEAKER, !isSpeakerOn);
+                break;
+            default:
+                return;
+        }
+        int index = gestureType.ordinal();
+        preparedCommands[index] = command;
+        preparedStates[index] = getDeviceState(gestureType);
+        preparedOnsetNs[index] = onsetTimes.get(index);
+    }
+
+    /**
+     * @return The on/off state a gesture's command is packed from (false for gestures that do not toggle)
+     */
+    private boolean getDeviceState(GestureDetector.GestureType gestureType) {
+        switch (gestureType) {
+            case WAVE:
+                return isLightOn;
+            case SHAKE:
+                return isSpeakerOn;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return The command prepared for this gesture, or NO_COMMAND if there is none or the device state it was
+     * packed from has changed since; either way nothing stays prepared for this gesture
+     */
+    private long takePreparedCommand(GestureDetector.GestureType gestureType) {
+        int index = gestureType.ordinal();
+        long command = preparedCommands[index];
+        preparedCommands[index] = DeviceController.NO_COMMAND;
+        return preparedStates[index] == getDeviceState(gestureType) ? command : DeviceController.NO_COMMAND;
+    }
+
+    private void handleGesture(GestureDetector.GestureType gestureType, int templateId) {
+        long prepared = takePreparedCommand(gestureType);
+        sendingDetectionNs = detectionTimes.get(gestureType.ordinal());
+        sendingOnsetNs = prepared != DeviceController.NO_COMMAND ? preparedOnsetNs[gestureType.ordinal()] : 0;
+        dispatchGesture(gestureType, templateId, prepared);
+        sendingDetectionNs = 0;
+        sendingOnsetNs = 0;
+    }
+
+    /**
+     * Show the gesture and run its action
+     * @param prepared Command packed for it at onset, or NO_COMMAND
+     */
+    private void dispatchGesture(GestureDetector.GestureType gestureType, int templateId, long prepared) {
         switch (gestureType) {
             case WAVE:
                 gestureDetectedTextView.setText("Gesture: Wave");
-                toggleLight();
+                toggleLight(prepared);
                 break;
             case TILT_FORWARD:
                 gestureDetectedTextView.setText("Gesture: Tilt Forward");
@@ -455,20 +721,68 @@ public class MainActivity extends AppCompatActivity implements
                 break;
             case ROTATE_LEFT:
                 gestureDetectedTextView.setText("Gesture: Rotate Left");
-                previousTrack();
+                previousTrack(prepared);
                 break;
             case ROTATE_RIGHT:
                 gestureDetectedTextView.setText("Gesture: Rotate Right");
-                nextTrack();
+                nextTrack(prepared);
                 break;
             case SHAKE:
                 gestureDetectedTextView.setText("Gesture: Shake");
-                toggleSpeaker();
+                toggleSpeaker(prepared);
                 break;
             case DOUBLE_TAP:
                 gestureDetectedTextView.setText("Gesture: Double Tap");
                 // Implement play/pause functionality here
                 break;
+            case CUSTOM:
+                gestureDetectedTextView.setText("Gesture: Custom #" + templateId);
+                break;
+            case COMBO:
+                gestureDetectedTextView.setText("Gesture: Combo #" + templateId);
+                performAction(SettingsActivity.getActionForCombo(sharedPreferences, templateId));
+                break;
+        }
+    }
+
+    /**
+     * Perform an action chosen from R.array.action_options
+     * @param action One of the SettingsActivity.ACTION_ constants
+     */
+    private void performAction(int action) {
+        switch (action) {
+            case SettingsActivity.ACTION_TOGGLE_LIGHT:
+                toggleLight();
+                break;
+            case SettingsActivity.ACTION_ADJUST_VOLUME:
+                int newVolume = Math.min(100, speakerVolume + 5);
+                speakerVolumeSeekBar.setProgress(newVolume);
+                adjustSpeakerVolume(newVolume);
+                break;
+            case SettingsActivity.ACTION_CHANGE_TRACK:
+                nextTrack();
+                break;
+            case SettingsActivity.ACTION_TOGGLE_SPEAKER:
+                toggleSpeaker();
+                break;
+            case SettingsActivity.ACTION_TOGGLE_FAN:
+                isFanOn = !isFanOn;
+                toggleDevice(DeviceController.DeviceType.FAN, isFanOn);
+                break;
+            case SettingsActivity.ACTION_TOGGLE_TV:
+                isTvOn = !isTvOn;
+                toggleDevice(DeviceController.DeviceType.TV, isTvOn);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void toggleDevice(DeviceController.DeviceType deviceType, boolean state) {
+        if (deviceController.isConnected()) {
+            deviceController.sendCommand(DeviceController.packToggle(deviceType, state));
+        } else {
+            showToast(getString(R.string.msg_no_device));
         }
     }
 
@@ -477,20 +791,141 @@ public class MainActivity extends AppCompatActivity implements
      */
     private void applySensitivitySettings() {
         if (gestureDetector != null) {
+            // A tuned profile replaces the defaults; values set on the settings screen still win
+            SensitivityProfile profile = loadSensitivityProfile(this);
             float waveSensitivity = SettingsActivity.progressToSensitivity(
-                    sharedPreferences.getInt("wave_sensitivity", 50));
+                    sharedPreferences.getInt(SensitivityProfile.WAVE_KEY,
+                            SettingsActivity.sensitivityToProgress(profile.getWaveSensitivity())));
             float tiltSensitivity = SettingsActivity.progressToSensitivity(
-                    sharedPreferences.getInt("tilt_sensitivity", 50));
+                    sharedPreferences.getInt(SensitivityProfile.TILT_KEY,
+                            SettingsActivity.sensitivityToProgress(profile.getTiltSensitivity())));
             float rotateSensitivity = SettingsActivity.progressToSensitivity(
-                    sharedPreferences.getInt("rotate_sensitivity", 50));
+                    sharedPreferences.getInt(SensitivityProfile.ROTATION_KEY,
+                            SettingsActivity.sensitivityToProgress(profile.getRotationSensitivity())));
             float shakeSensitivity = SettingsActivity.progressToSensitivity(
-                    sharedPreferences.getInt("shake_sensitivity", 50));
+                    sharedPreferences.getInt(SensitivityProfile.SHAKE_KEY,
+                            SettingsActivity.sensitivityToProgress(profile.getShakeSensitivity())));
 
             gestureDetector.setSensitivity(waveSensitivity, tiltSensitivity,
                     rotateSensitivity, shakeSensitivity);
         }
     }
 
+    /**
+     * Load the profile written by the threshold tuner, if one was installed in the app's files directory
+     * @return The tuned profile, or the neutral profile (all 1.0) if there is none
+     */
+    static SensitivityProfile loadSensitivityProfile(Context context) {
+        File file = new File(context.getFilesDir(), SensitivityProfile.FILE_NAME);
+        if (file.exists()) {
+            try (InputStream in = new FileInputStream(file)) {
+                return SensitivityProfile.load(in);
+            } catch (IOException e) {
+                Log.e(TAG, "Error loading sensitivity profile", e);
+            }
+        }
+        return new SensitivityProfile(1.0f, 1.0f, 1.0f, 1.0f);
+    }
+
+    /**
+     * Load the gesture combos installed in the app's files directory, if any
+     * @return The combos, or the built-in wave then rotate right combo if there is no file
+     */
+    private List<GestureCombo> loadCombos() {
+        File file = new File(getFilesDir(), GestureCombo.FILE_NAME);
+        if (file.exists()) {
+            try (InputStream in = new FileInputStream(file)) {
+                return GestureCombo.load(in);
+            } catch (IOException e) {
+                Log.e(TAG, "Error loading gesture combos", e);
+            }
+        }
+        return List.of(GestureCombo.parse(1, "WAVE,ROTATE_RIGHT;1500"));
+    }
+
+    /**
+     * Load the custom gestures the user recorded earlier, if any
+     */
+    private void loadTemplates() {
+        File file = new File(getFilesDir(), TemplateGestureRecognizer.FILE_NAME);
+        if (file.exists()) {
+            try (InputStream in = new FileInputStream(file)) {
+                gestureDetector.getTemplateRecognizer().loadTemplates(in);
+            } catch (IOException e) {
+                Log.e(TAG, "Error loading custom gestures", e);
+            }
+        }
+    }
+
+    /**
+     * Start recording a custom gesture, or stop and store it under the next free id
+     */
+    private void toggleRecording(MenuItem item) {
+        TemplateGestureRecognizer recognizer = gestureDetector.getTemplateRecognizer();
+        if (!recognizer.isRecording()) {
+            recognizer.startRecording();
+            item.setTitle(R.string.record_stop);
+            showToast(getString(R.string.msg_recording_started));
+            return;
+        }
+        item.setTitle(R.string.record_gesture);
+        int templateId = 1;
+        for (int id : recognizer.getTemplateIds()) {
+            templateId = Math.max(templateId, id + 1);
+        }
+        if (!recognizer.stopRecording(templateId)) {
+            showToast(getString(R.string.msg_recording_too_short));
+            return;
+        }
+        File file = new File(getFilesDir(), TemplateGestureRecognizer.FILE_NAME);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            recognizer.storeTemplates(out, "Custom gestures");
+            showToast(getString(R.string.msg_recording_saved, templateId));
+        } catch (IOException e) {
+            Log.e(TAG, "Error saving custom gestures", e);
+        }
+    }
+
+    /**
+     * Load the scenes installed in the app's files directory, if any
+     * @return The scenes, or the built-in movie scene if there is no file
+     */
+    private List<Scene> loadScenes() {
+        File file = new File(getFilesDir(), Scene.FILE_NAME);
+        if (file.exists()) {
+            try (InputStream in = new FileInputStream(file)) {
+                return Scene.load(in);
+            } catch (IOException e) {
+                Log.e(TAG, "Error loading scenes", e);
+            }
+        }
+        return List.of(Scene.parse("movie", "LIGHT:OFF,FAN:ON,TV:ON,SPEAKER:VOLUME:30"));
+    }
+
+    private void showScenes() {
+        String[] names = new String[scenes.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = scenes.get(i).getName();
+        }
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.scenes_title)
+                .setItems(names, (dialog, which) -> activateScene(scenes.get(which)))
+                .show();
+    }
+
+    /**
+     * Send every command of a scene in one batch; the device applies all of them or none
+     */
+    private void activateScene(Scene scene) {
+        if (!deviceController.isConnected()) {
+            showToast(getString(R.string.msg_no_device));
+            return;
+        }
+        deviceController.activateScene(scene).thenAccept(response -> runOnUiThread(() ->
+                showToast(getString(R.string.msg_scene_activated, scene.getName(),
+                        deviceController.getLastSceneLatencyNs() / 1_000_000L))));
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.main_menu, menu);
@@ -510,6 +945,12 @@ public class MainActivity extends AppCompatActivity implements
             // Launch device scan activity
             connectBluetooth();
             return true;
+        } else if (id == R.id.action_scenes) {
+            showScenes();
+            return true;
+        } else if (id == R.id.action_record) {
+            toggleRecording(item);
+            return true;
         }
 
         return super.onOptionsItemSelected(item);
@@ -3,39 +3,87 @@ package com.example.btn3;
 import android.content.Context;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
+import android.hardware.SensorEventListener2;
 import android.hardware.SensorManager;
+import android.os.SystemClock;
+
+import com.example.btn3.core.GestureDetector;
+import com.example.btn3.core.SensorRateGovernor;
+import com.example.btn3.core.SensorSampleBuffer;
+import com.example.btn3.core.SensorTraceRecorder;
+
+import java.io.File;
+import java.io.IOException;
 
 /**
- * Class to handle sensor data processing and gesture detection
+ * Class to handle sensor data delivery. Samples are handed to a consumer thread
+ * that feeds them to the GestureDetector.
  */
-public class SensorHandler implements SensorEventListener {
+public class SensorHandler implements SensorEventListener2 {
 
-    // Interface for gesture callbacks
-    public interface GestureListener {
-        void onWaveGestureDetected();
-        void onTiltGestureDetected(float tiltValue);
-        void onRotationGestureDetected(boolean isClockwise);
+    // How sensor events are delivered
+    public enum SamplingMode {
+        CONTINUOUS, // one callback per event
+        BATCHED     // events are queued in the hardware FIFO and delivered in bursts
     }
 
     private final SensorManager sensorManager;
     private final Sensor accelerometer;
     private final Sensor gyroscope;
-    private final GestureListener gestureListener;
+    private final GestureDetector gestureDetector;
+
+    // Samples are handed from the sensor thread to the consumer thread through this buffer
+    private final SensorSampleBuffer sampleBuffer = new SensorSampleBuffer(SAMPLE_BUFFER_CAPACITY);
+    private final SensorSampleBuffer.SampleConsumer sampleConsumer = this::processSample;
+    private ConsumerThread consumerThread;
+    private int sensorDelay = SensorManager.SENSOR_DELAY_GAME;
+    private SamplingMode samplingMode = SamplingMode.CONTINUOUS;
+    private int maxReportLatencyUs = DEFAULT_MAX_REPORT_LATENCY_US;
+    private volatile boolean isListening = false;
+
+    // Drops to a slow, accelerometer-only rate while the device is still
+    private final SensorRateGovernor rateGovernor = new SensorRateGovernor(this::onRateChanged);
+    private volatile boolean rateGovernorEnabled = false;
+    // Guards (re)registration, which happens on both the caller and the consumer thread
+    private final Object registrationLock = new Object();
+
+    // Optional raw trace of everything drained (consumer thread), swapped under recordingLock
+    private SensorTraceRecorder recorder;
+    private final Object recordingLock = new Object();
+
+    // Drained samples staged per sensor so they can be fed to the detector as batches
+    private final float[] stagedAccelerometerValues = new float[MAX_SAMPLES_PER_DRAIN * 3];
+    private final long[] stagedAccelerometerTimestamps = new long[MAX_SAMPLES_PER_DRAIN];
+    private int stagedAccelerometerCount = 0;
+    private final float[] stagedGyroscopeValues = new float[MAX_SAMPLES_PER_DRAIN * 3];
+    private final long[] stagedGyroscopeTimestamps = new long[MAX_SAMPLES_PER_DRAIN];
+    private int stagedGyroscopeCount = 0;
+
+    // Observed delivery bursts, tracked per sensor (index 0 accelerometer, 1 gyroscope) on the sensor thread
+    private final long[] lastDeliveryTime = new long[2];
+    private final int[] currentBatchSize = new int[2];
+    private volatile int lastBatchSize = 0;
+    private volatile int maxBatchSize = 0;
+    private volatile long batchCount = 0;
+    private volatile long batchedEventCount = 0;
 
     // Sensor data
     private final float[] accelerometerValues = new float[3];
     private final float[] gyroscopeValues = new float[3];
-    private long lastGestureTime = 0;
 
-    // Gesture detection thresholds
-    private static final float WAVE_THRESHOLD = 12.0f;
-    private static final float TILT_THRESHOLD = 3.0f;
-    private static final float ROTATION_THRESHOLD = 2.5f;
-    private static final long MIN_TIME_BETWEEN_GESTURES = 800; // milliseconds
+    // Sample buffer sizing (about two seconds of both sensors at SENSOR_DELAY_FASTEST)
+    private static final int SAMPLE_BUFFER_CAPACITY = 2048;
+    private static final int MAX_SAMPLES_PER_DRAIN = 256;
+    // Publishing wakes the consumer; the timeout only paces advanceTime while no samples come
+    private static final long CONSUMER_IDLE_TIMEOUT_NS = 100_000_000L; // 100 ms
+
+    // Batching defaults
+    private static final int DEFAULT_MAX_REPORT_LATENCY_US = 200_000; // 200 ms
+    // Events of one sensor delivered closer together than this are counted as one burst
+    private static final long BURST_GAP_NS = 1_000_000L; // 1 ms
 
-    public SensorHandler(Context context, GestureListener listener) {
-        this.gestureListener = listener;
+    public SensorHandler(Context context, GestureDetector gestureDetector) {
+        this.gestureDetector = gestureDetector;
         
         // Initialize sensors
         sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
@@ -43,28 +91,134 @@ public class SensorHandler implements SensorEventListener {
         gyroscope = sensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE);
     }
 
+    /**
+     * Set the sensor delay used on the next call to startListening
+     * @param sensorDelay One of the SensorManager.SENSOR_DELAY_* constants
+     */
+    public void setSensorDelay(int sensorDelay) {
+        this.sensorDelay = sensorDelay;
+    }
+
+    /**
+     * Select continuous or hardware FIFO batched delivery. Takes effect immediately
+     * if the handler is already listening.
+     * @param samplingMode Delivery mode
+     * @param maxReportLatencyUs Maximum time events may wait in the FIFO (BATCHED only)
+     */
+    public void setSamplingMode(SamplingMode samplingMode, int maxReportLatencyUs) {
+        this.samplingMode = samplingMode;
+        this.maxReportLatencyUs = maxReportLatencyUs;
+        reregisterSensors();
+    }
+
+    public SamplingMode getSamplingMode() {
+        return samplingMode;
+    }
+
+    /**
+     * Let the rate governor drop to a slow, accelerometer-only rate while the device
+     * is still. Takes effect immediately if the handler is already listening.
+     * @param enabled true to govern the rate, false to always use the configured delay
+     */
+    public void setRateGovernorEnabled(boolean enabled) {
+        rateGovernorEnabled = enabled;
+        if (!enabled) {
+            rateGovernor.reset();
+        }
+        reregisterSensors();
+    }
+
+    public boolean isRateGovernorEnabled() {
+        return rateGovernorEnabled;
+    }
+
+    /**
+     * Check whether both sensors have a hardware FIFO to batch into
+     * @return true if batching is supported, false otherwise
+     */
+    public boolean isBatchingSupported() {
+        return accelerometer != null && accelerometer.getFifoMaxEventCount() > 0
+                && gyroscope != null && gyroscope.getFifoMaxEventCount() > 0;
+    }
+
+    /**
+     * Ask the sensors to deliver everything queued in their FIFOs now
+     * @return true if the flush was requested, false otherwise
+     */
+    public boolean flush() {
+        return isListening && sensorManager != null && sensorManager.flush(this);
+    }
+
     public void startListening() {
         if (sensorManager != null) {
-            sensorManager.registerListener(this, accelerometer, SensorManager.SENSOR_DELAY_GAME);
-            sensorManager.registerListener(this, gyroscope, SensorManager.SENSOR_DELAY_GAME);
+            if (consumerThread == null) {
+                consumerThread = new ConsumerThread();
+                consumerThread.start();
+            }
+            synchronized (registrationLock) {
+                registerSensors();
+                isListening = true;
+            }
         }
     }
 
     public void stopListening() {
-        if (sensorManager != null) {
-            sensorManager.unregisterListener(this);
+        synchronized (registrationLock) {
+            isListening = false;
+            if (sensorManager != null) {
+                sensorManager.unregisterListener(this);
+            }
+        }
+        if (consumerThread != null) {
+            consumerThread.cancel();
+            try {
+                // Make sure only one consumer ever drains the buffer
+                consumerThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            consumerThread = null;
         }
     }
 
+    private void registerSensors() {
+        if (rateGovernorEnabled && rateGovernor.getRate() == SensorRateGovernor.Rate.IDLE) {
+            // Unbatched so wake-up latency stays bounded by the idle period
+            sensorManager.registerListener(this, accelerometer,
+                    (int) (rateGovernor.getIdlePeriodNs() / 1000L));
+        } else if (samplingMode == SamplingMode.BATCHED) {
+            sensorManager.registerListener(this, accelerometer, sensorDelay, maxReportLatencyUs);
+            sensorManager.registerListener(this, gyroscope, sensorDelay, maxReportLatencyUs);
+        } else {
+            sensorManager.registerListener(this, accelerometer, sensorDelay);
+            sensorManager.registerListener(this, gyroscope, sensorDelay);
+        }
+    }
+
+    private void reregisterSensors() {
+        synchronized (registrationLock) {
+            if (isListening && sensorManager != null) {
+                sensorManager.unregisterListener(this);
+                registerSensors();
+            }
+        }
+    }
+
+    /**
+     * Apply a rate requested by the governor (consumer thread)
+     */
+    private void onRateChanged(SensorRateGovernor.Rate rate) {
+        reregisterSensors();
+    }
+
     @Override
     public void onSensorChanged(SensorEvent event) {
-        if (event.sensor.getType() == Sensor.TYPE_ACCELEROMETER) {
-            System.arraycopy(event.values, 0, accelerometerValues, 0, 3);
-            detectWaveGesture();
-            detectTiltGesture();
-        } else if (event.sensor.getType() == Sensor.TYPE_GYROSCOPE) {
-            System.arraycopy(event.values, 0, gyroscopeValues, 0, 3);
-            detectRotationGesture();
+        // Only publish here; detection runs on the consumer thread
+        int type = event.sensor.getType();
+        if (type == Sensor.TYPE_ACCELEROMETER || type == Sensor.TYPE_GYROSCOPE) {
+            trackDelivery(type == Sensor.TYPE_ACCELEROMETER ? 0 : 1);
+            sampleBuffer.publish(type, event.timestamp,
+                    event.values[0], event.values[1], event.values[2]);
         }
     }
 
@@ -73,54 +227,162 @@ public class SensorHandler implements SensorEventListener {
         // Not used in this implementation
     }
 
-    private void detectWaveGesture() {
-        long currentTime = System.currentTimeMillis();
-        if (currentTime - lastGestureTime > MIN_TIME_BETWEEN_GESTURES) {
-            float x = accelerometerValues[0];
-            float y = accelerometerValues[1];
-            float z = accelerometerValues[2];
-
-            // Calculate total acceleration magnitude
-            float acceleration = (float) Math.sqrt(x * x + y * y + z * z);
-            
-            // Check if acceleration exceeds threshold (wave gesture)
-            if (acceleration > WAVE_THRESHOLD) {
-                lastGestureTime = currentTime;
-                if (gestureListener != null) {
-                    gestureListener.onWaveGestureDetected();
+    @Override
+    public void onFlushCompleted(Sensor sensor) {
+        // Everything of this sensor queued before the flush request has been delivered
+        int type = sensor.getType();
+        if (type == Sensor.TYPE_ACCELEROMETER || type == Sensor.TYPE_GYROSCOPE) {
+            closeBatch(type == Sensor.TYPE_ACCELEROMETER ? 0 : 1);
+        }
+    }
+
+    /**
+     * Group events of one sensor that arrive back to back into bursts (sensor thread).
+     * Each sensor is grouped on its own: unbatched accelerometer and gyroscope events
+     * interleave at less than the burst gap and would otherwise look like one burst.
+     * @param sensorIndex 0 for the accelerometer, 1 for the gyroscope
+     */
+    private void trackDelivery(int sensorIndex) {
+        long now = SystemClock.elapsedRealtimeNanos();
+        if (currentBatchSize[sensorIndex] > 0 && now - lastDeliveryTime[sensorIndex] > BURST_GAP_NS) {
+            closeBatch(sensorIndex);
+        }
+        lastDeliveryTime[sensorIndex] = now;
+        currentBatchSize[sensorIndex]++;
+    }
+
+    private void closeBatch(int sensorIndex) {
+        int size = currentBatchSize[sensorIndex];
+        if (size == 0) {
+            return;
+        }
+        lastBatchSize = size;
+        if (size > maxBatchSize) {
+            maxBatchSize = size;
+        }
+        batchCount++;
+        batchedEventCount += size;
+        currentBatchSize[sensorIndex] = 0;
+    }
+
+    /**
+     * Start writing every raw sample to a binary trace for later replay
+     * @param file Trace file (created or truncated)
+     */
+    public void startRecording(File file) throws IOException {
+        SensorTraceRecorder newRecorder = new SensorTraceRecorder(file.toPath());
+        SensorTraceRecorder previous;
+        synchronized (recordingLock) {
+            previous = recorder;
+            recorder = newRecorder;
+        }
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    /**
+     * Stop recording and close the trace file
+     */
+    public void stopRecording() throws IOException {
+        SensorTraceRecorder previous;
+        synchronized (recordingLock) {
+            previous = recorder;
+            recorder = null;
+        }
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    public boolean isRecording() {
+        synchronized (recordingLock) {
+            return recorder != null;
+        }
+    }
+
+    /**
+     * Stage one sample drained from the buffer (consumer thread, holding recordingLock)
+     */
+    private void processSample(int sensorType, long timestampNs, float x, float y, float z) {
+        if (recorder != null) {
+            recorder.onSample(sensorType, timestampNs, x, y, z);
+        }
+        if (sensorType == Sensor.TYPE_ACCELEROMETER) {
+            int base = stagedAccelerometerCount * 3;
+            stagedAccelerometerValues[base] = x;
+            stagedAccelerometerValues[base + 1] = y;
+            stagedAccelerometerValues[base + 2] = z;
+            stagedAccelerometerTimestamps[stagedAccelerometerCount++] = timestampNs;
+        } else if (sensorType == Sensor.TYPE_GYROSCOPE) {
+            int base = stagedGyroscopeCount * 3;
+            stagedGyroscopeValues[base] = x;
+            stagedGyroscopeValues[base + 1] = y;
+            stagedGyroscopeValues[base + 2] = z;
+            stagedGyroscopeTimestamps[stagedGyroscopeCount++] = timestampNs;
+        }
+    }
+
+    /**
+     * Feed the staged samples to the detectors in timestamp order. A FIFO flush may
+     * deliver all accelerometer events before the gyroscope ones, so the two streams
+     * are merged into runs and each run is handed over as one batch (consumer thread).
+     */
+    private void dispatchStagedSamples() {
+        int accel = 0;
+        int gyro = 0;
+        while (accel < stagedAccelerometerCount || gyro < stagedGyroscopeCount) {
+            if (gyro >= stagedGyroscopeCount || (accel < stagedAccelerometerCount
+                    && stagedAccelerometerTimestamps[accel] <= stagedGyroscopeTimestamps[gyro])) {
+                long limit = gyro < stagedGyroscopeCount ? stagedGyroscopeTimestamps[gyro] : Long.MAX_VALUE;
+                int end = accel + 1;
+                while (end < stagedAccelerometerCount && stagedAccelerometerTimestamps[end] <= limit) {
+                    end++;
+                }
+                dispatchAccelerometerRun(accel, end - accel);
+                accel = end;
+            } else {
+                long limit = accel < stagedAccelerometerCount ? stagedAccelerometerTimestamps[accel] : Long.MAX_VALUE;
+                int end = gyro + 1;
+                while (end < stagedGyroscopeCount && stagedGyroscopeTimestamps[end] < limit) {
+                    end++;
                 }
+                dispatchGyroscopeRun(gyro, end - gyro);
+                gyro = end;
             }
         }
+        stagedAccelerometerCount = 0;
+        stagedGyroscopeCount = 0;
     }
 
-    private void detectTiltGesture() {
-        long currentTime = System.currentTimeMillis();
-        if (currentTime - lastGestureTime > MIN_TIME_BETWEEN_GESTURES) {
-            float y = accelerometerValues[1]; // Y-axis tilt (forward/backward)
-            
-            // Check if tilt exceeds threshold
-            if (Math.abs(y) > TILT_THRESHOLD) {
-                lastGestureTime = currentTime;
-                if (gestureListener != null) {
-                    gestureListener.onTiltGestureDetected(y);
-                }
+    private void dispatchAccelerometerRun(int offset, int count) {
+        System.arraycopy(stagedAccelerometerValues, (offset + count - 1) * 3, accelerometerValues, 0, 3);
+        if (rateGovernorEnabled) {
+            int end = offset + count;
+            for (int i = offset, base = offset * 3; i < end; i++, base += 3) {
+                rateGovernor.processAccelerometer(stagedAccelerometerValues[base], stagedAccelerometerValues[base + 1],
+                        stagedAccelerometerValues[base + 2], stagedAccelerometerTimestamps[i]);
             }
         }
+        gestureDetector.processAccelerometerBatch(stagedAccelerometerValues, stagedAccelerometerTimestamps, offset, count);
+        if (rateGovernorEnabled) {
+            rateGovernor.onGesture(gestureDetector.getLastGestureTimeNs());
+        }
     }
 
-    private void detectRotationGesture() {
-        long currentTime = System.currentTimeMillis();
-        if (currentTime - lastGestureTime > MIN_TIME_BETWEEN_GESTURES) {
-            float z = gyroscopeValues[2]; // Z-axis rotation (clockwise/counterclockwise)
-            
-            // Check if rotation exceeds threshold
-            if (Math.abs(z) > ROTATION_THRESHOLD) {
-                lastGestureTime = currentTime;
-                if (gestureListener != null) {
-                    gestureListener.onRotationGestureDetected(z > 0);
-                }
+    private void dispatchGyroscopeRun(int offset, int count) {
+        System.arraycopy(stagedGyroscopeValues, (offset + count - 1) * 3, gyroscopeValues, 0, 3);
+        if (rateGovernorEnabled) {
+            int end = offset + count;
+            for (int i = offset, base = offset * 3; i < end; i++, base += 3) {
+                rateGovernor.processGyroscope(stagedGyroscopeValues[base], stagedGyroscopeValues[base + 1],
+                        stagedGyroscopeValues[base + 2], stagedGyroscopeTimestamps[i]);
             }
         }
+        gestureDetector.processGyroscopeBatch(stagedGyroscopeValues, stagedGyroscopeTimestamps, offset, count);
+        if (rateGovernorEnabled) {
+            rateGovernor.onGesture(gestureDetector.getLastGestureTimeNs());
+        }
     }
 
     // Getter methods for sensor values
@@ -131,4 +393,118 @@ public class SensorHandler implements SensorEventListener {
     public float[] getGyroscopeValues() {
         return gyroscopeValues;
     }
+
+    // Sample buffer statistics
+    public long getPublishedSampleCount() {
+        return sampleBuffer.getPublishedSampleCount();
+    }
+
+    public long getDroppedSampleCount() {
+        return sampleBuffer.getDroppedSampleCount();
+    }
+
+    public long getOverrunCount() {
+        return sampleBuffer.getOverrunCount();
+    }
+
+    public int getSampleBufferHighWaterMark() {
+        return sampleBuffer.getHighWaterMark();
+    }
+
+    // Observed delivery burst statistics, over both sensors (each burst holds events of one sensor)
+    public int getLastBatchSize() {
+        return lastBatchSize;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public long getBatchCount() {
+        return batchCount;
+    }
+
+    public float getAverageBatchSize() {
+        long batches = batchCount;
+        return batches == 0 ? 0f : (float) batchedEventCount / batches;
+    }
+
+    // Rate governor statistics (updated on the consumer thread)
+    public SensorRateGovernor.Rate getCurrentRate() {
+        return rateGovernor.getRate();
+    }
+
+    public long getActiveRateTimeNs() {
+        return rateGovernor.getActiveTimeNs();
+    }
+
+    public long getIdleRateTimeNs() {
+        return rateGovernor.getIdleTimeNs();
+    }
+
+    public long getWakeCount() {
+        return rateGovernor.getWakeCount();
+    }
+
+    public long getLastRateSwitchLatencyNs() {
+        return rateGovernor.getLastRateSwitchLatencyNs();
+    }
+
+    public long getMaxRateSwitchLatencyNs() {
+        return rateGovernor.getMaxRateSwitchLatencyNs();
+    }
+
+    public long getLastWakeToGestureNs() {
+        return rateGovernor.getLastWakeToGestureNs();
+    }
+
+    public long getMaxWakeToGestureNs() {
+        return rateGovernor.getMaxWakeToGestureNs();
+    }
+
+    /**
+     * @return Latest time every sample up to which has been delivered, on the sensor
+     * timestamp clock (elapsed realtime), allowing for samples still waiting in the FIFO
+     */
+    private long getSampleClockNow() {
+        long now = SystemClock.elapsedRealtimeNanos();
+        return samplingMode == SamplingMode.BATCHED ? now - maxReportLatencyUs * 1000L : now;
+    }
+
+    /**
+     * Thread that drains the sample buffer and runs gesture detection
+     */
+    private class ConsumerThread extends Thread {
+        private volatile boolean running = true;
+
+        ConsumerThread() {
+            super("SensorConsumer");
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                int drained;
+                synchronized (recordingLock) {
+                    // Uncontended except while recording starts or stops
+                    drained = sampleBuffer.drain(sampleConsumer, MAX_SAMPLES_PER_DRAIN);
+                }
+                if (drained == 0) {
+                    sampleBuffer.awaitSamples(CONSUMER_IDLE_TIMEOUT_NS);
+                    if (sampleBuffer.isEmpty()) {
+                        // Keeps held gestures moving while the sensors are slow or stopped
+                        gestureDetector.advanceTime(getSampleClockNow());
+                    }
+                } else {
+                    dispatchStagedSamples();
+                }
+            }
+            gestureDetector.releaseHeldGestures();
+        }
+
+        public void cancel() {
+            running = false;
+            sampleBuffer.wakeConsumer();
+        }
+    }
 }
@@ -11,6 +11,8 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
+import com.example.btn3.core.SensitivityProfile;
+
 public class SettingsActivity extends AppCompatActivity {
 
     // UI Components
@@ -24,23 +26,41 @@ public class SettingsActivity extends AppCompatActivity {
     private Spinner shakeActionSpinner;
     private Button saveSettingsButton;
 
+    // Sensitivity sliders the user has moved; the others keep following the tuned profile
+    private boolean waveSensitivityChanged = false;
+    private boolean tiltSensitivityChanged = false;
+    private boolean rotateSensitivityChanged = false;
+    private boolean shakeSensitivityChanged = false;
+
     // Shared preferences for storing settings
     private SharedPreferences sharedPreferences;
     private static final String PREFS_NAME = "GestureControlPrefs";
     
     // Keys for shared preferences
-    private static final String KEY_WAVE_SENSITIVITY = "wave_sensitivity";
-    private static final String KEY_TILT_SENSITIVITY = "tilt_sensitivity";
-    private static final String KEY_ROTATE_SENSITIVITY = "rotate_sensitivity";
-    private static final String KEY_SHAKE_SENSITIVITY = "shake_sensitivity";
+    private static final String KEY_WAVE_SENSITIVITY = SensitivityProfile.WAVE_KEY;
+    private static final String KEY_TILT_SENSITIVITY = SensitivityProfile.TILT_KEY;
+    private static final String KEY_ROTATE_SENSITIVITY = SensitivityProfile.ROTATION_KEY;
+    private static final String KEY_SHAKE_SENSITIVITY = SensitivityProfile.SHAKE_KEY;
     private static final String KEY_WAVE_ACTION = "wave_action";
     private static final String KEY_TILT_ACTION = "tilt_action";
     private static final String KEY_ROTATE_ACTION = "rotate_action";
     private static final String KEY_SHAKE_ACTION = "shake_action";
     
+    // Prefix of the action key of a combo, followed by its id
+    private static final String KEY_COMBO_ACTION_PREFIX = "combo_action_";
+
+    // Actions, by position in R.array.action_options
+    public static final int ACTION_NONE = 0;
+    public static final int ACTION_TOGGLE_LIGHT = 1;
+    public static final int ACTION_ADJUST_VOLUME = 2;
+    public static final int ACTION_CHANGE_TRACK = 3;
+    public static final int ACTION_TOGGLE_SPEAKER = 4;
+    public static final int ACTION_TOGGLE_FAN = 5;
+    public static final int ACTION_TOGGLE_TV = 6;
+
     // Default values
-    private static final int DEFAULT_SENSITIVITY = 50;
-    private static final int DEFAULT_ACTION = 0;
+    private static final int DEFAULT_ACTION = ACTION_NONE;
+    private static final int DEFAULT_COMBO_ACTION = ACTION_TOGGLE_TV;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -98,18 +118,44 @@ public class SettingsActivity extends AppCompatActivity {
     
     private void setupButtonListeners() {
         saveSettingsButton.setOnClickListener(v -> saveSettings());
+
+        waveSensitivitySeekBar.setOnSeekBarChangeListener(new SensitivityListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                waveSensitivityChanged |= fromUser;
+            }
+        });
+        tiltSensitivitySeekBar.setOnSeekBarChangeListener(new SensitivityListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                tiltSensitivityChanged |= fromUser;
+            }
+        });
+        rotateSensitivitySeekBar.setOnSeekBarChangeListener(new SensitivityListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                rotateSensitivityChanged |= fromUser;
+            }
+        });
+        shakeSensitivitySeekBar.setOnSeekBarChangeListener(new SensitivityListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                shakeSensitivityChanged |= fromUser;
+            }
+        });
     }
     
     private void loadSettings() {
-        // Load sensitivity settings
-        waveSensitivitySeekBar.setProgress(
-                sharedPreferences.getInt(KEY_WAVE_SENSITIVITY, DEFAULT_SENSITIVITY));
-        tiltSensitivitySeekBar.setProgress(
-                sharedPreferences.getInt(KEY_TILT_SENSITIVITY, DEFAULT_SENSITIVITY));
-        rotateSensitivitySeekBar.setProgress(
-                sharedPreferences.getInt(KEY_ROTATE_SENSITIVITY, DEFAULT_SENSITIVITY));
-        shakeSensitivitySeekBar.setProgress(
-                sharedPreferences.getInt(KEY_SHAKE_SENSITIVITY, DEFAULT_SENSITIVITY));
+        // Load sensitivity settings; sliders never saved show the tuned profile
+        SensitivityProfile profile = MainActivity.loadSensitivityProfile(this);
+        waveSensitivitySeekBar.setProgress(sharedPreferences.getInt(KEY_WAVE_SENSITIVITY,
+                sensitivityToProgress(profile.getWaveSensitivity())));
+        tiltSensitivitySeekBar.setProgress(sharedPreferences.getInt(KEY_TILT_SENSITIVITY,
+                sensitivityToProgress(profile.getTiltSensitivity())));
+        rotateSensitivitySeekBar.setProgress(sharedPreferences.getInt(KEY_ROTATE_SENSITIVITY,
+                sensitivityToProgress(profile.getRotationSensitivity())));
+        shakeSensitivitySeekBar.setProgress(sharedPreferences.getInt(KEY_SHAKE_SENSITIVITY,
+                sensitivityToProgress(profile.getShakeSensitivity())));
         
         // Load action settings
         waveActionSpinner.setSelection(
@@ -126,11 +172,19 @@ public class SettingsActivity extends AppCompatActivity {
         // Get the editor for shared preferences
         SharedPreferences.Editor editor = sharedPreferences.edit();
         
-        // Save sensitivity settings
-        editor.putInt(KEY_WAVE_SENSITIVITY, waveSensitivitySeekBar.getProgress());
-        editor.putInt(KEY_TILT_SENSITIVITY, tiltSensitivitySeekBar.getProgress());
-        editor.putInt(KEY_ROTATE_SENSITIVITY, rotateSensitivitySeekBar.getProgress());
-        editor.putInt(KEY_SHAKE_SENSITIVITY, shakeSensitivitySeekBar.getProgress());
+        // Save only the sensitivities the user moved; the others keep following the tuned profile
+        if (waveSensitivityChanged) {
+            editor.putInt(KEY_WAVE_SENSITIVITY, waveSensitivitySeekBar.getProgress());
+        }
+        if (tiltSensitivityChanged) {
+            editor.putInt(KEY_TILT_SENSITIVITY, tiltSensitivitySeekBar.getProgress());
+        }
+        if (rotateSensitivityChanged) {
+            editor.putInt(KEY_ROTATE_SENSITIVITY, rotateSensitivitySeekBar.getProgress());
+        }
+        if (shakeSensitivityChanged) {
+            editor.putInt(KEY_SHAKE_SENSITIVITY, shakeSensitivitySeekBar.getProgress());
+        }
         
         // Save action settings
         editor.putInt(KEY_WAVE_ACTION, waveActionSpinner.getSelectedItemPosition());
@@ -163,11 +217,37 @@ public class SettingsActivity extends AppCompatActivity {
         // Map 0-100 to 0.5-1.5 (inverted, so lower progress = higher sensitivity)
         return 1.5f - (progress / 100.0f);
     }
+
+    /**
+     * Convert a sensitivity value (0.5-1.5) back to seekbar progress (0-100)
+     */
+    public static int sensitivityToProgress(float sensitivity) {
+        int progress = Math.round((1.5f - sensitivity) * 100.0f);
+        return Math.max(0, Math.min(100, progress));
+    }
     
+    // Records that a sensitivity slider was moved by the user
+    private abstract static class SensitivityListener implements SeekBar.OnSeekBarChangeListener {
+        @Override
+        public void onStartTrackingTouch(SeekBar seekBar) {
+        }
+
+        @Override
+        public void onStopTrackingTouch(SeekBar seekBar) {
+        }
+    }
+
     /**
      * Get the action for a gesture from shared preferences
      */
     public static int getActionForGesture(SharedPreferences prefs, String gestureKey) {
         return prefs.getInt(gestureKey, DEFAULT_ACTION);
     }
+
+    /**
+     * Get the action for a gesture combo from shared preferences
+     */
+    public static int getActionForCombo(SharedPreferences prefs, int comboId) {
+        return prefs.getInt(KEY_COMBO_ACTION_PREFIX + comboId, DEFAULT_COMBO_ACTION);
+    }
 }
@@ -10,14 +10,12 @@ import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Class to handle WiFi connectivity for IoT devices
@@ -33,7 +31,10 @@ public class WiFiHandler {
         void onDeviceConnected(String deviceAddress);
         void onDeviceDisconnected();
         void onConnectionFailed(String errorMessage);
-        void onDataReceived(String data);
+        /**
+         * Called on the reader thread with raw bytes; the buffer is reused once this returns
+         */
+        void onDataReceived(byte[] data, int length);
     }
 
     private final Context context;
@@ -43,8 +44,8 @@ public class WiFiHandler {
     private final WifiManager wifiManager;
     
     private Socket socket;
-    private PrintWriter out;
-    private BufferedReader in;
+    private OutputStream out;
+    private InputStream in;
     private boolean isConnected = false;
     private ConnectedThread connectedThread;
 
@@ -102,10 +103,9 @@ public class WiFiHandler {
                 socket.connect(new InetSocketAddress(ipAddress, targetPort), CONNECTION_TIMEOUT);
                 
                 // Get the input and output streams
-                out = new PrintWriter(new BufferedWriter(
-                        new OutputStreamWriter(socket.getOutputStream())), true);
-                in = new BufferedReader(
-                        new InputStreamReader(socket.getInputStream()));
+                // Raw streams: commands may be text lines or binary frames
+                out = socket.getOutputStream();
+                in = socket.getInputStream();
                 
                 // Start the connected thread to handle communication
                 connectedThread = new ConnectedThread();
@@ -151,17 +151,30 @@ public class WiFiHandler {
     }
 
     /**
-     * Send data to the connected device
-     * @param data Data to send
+     * Send a line of text to the connected device
+     * @param data Data to send, without a line terminator
      * @return true if data was sent, false otherwise
      */
     public boolean sendData(String data) {
+        byte[] line = (data + "\n").getBytes(StandardCharsets.UTF_8);
+        return sendData(line, 0, line.length);
+    }
+
+    /**
+     * Send binary data to the connected device
+     * @param data Buffer holding the data
+     * @param offset Start of the data
+     * @param length Number of bytes
+     * @return true if data was sent, false otherwise
+     */
+    public boolean sendData(byte[] data, int offset, int length) {
         if (!isConnected || out == null) {
             return false;
         }
 
         try {
-            out.println(data);
+            out.write(data, offset, length);
+            out.flush();
             return true;
         } catch (Exception e) {
             Log.e(TAG, "Error sending data", e);
@@ -237,28 +250,24 @@ public class WiFiHandler {
         });
     }
 
-    private void notifyDataReceived(final String data) {
-        mainHandler.post(() -> {
-            if (listener != null) {
-                listener.onDataReceived(data);
-            }
-        });
-    }
-
     /**
      * Thread to handle communication with the connected device
      */
     private class ConnectedThread extends Thread {
         private boolean running = true;
+        private final byte[] buffer = new byte[1024];
 
         @Override
         public void run() {
             while (running) {
                 try {
                     if (in != null) {
-                        String data = in.readLine();
-                        if (data != null) {
-                            notifyDataReceived(data);
+                        int bytesRead = in.read(buffer);
+                        if (bytesRead > 0 && listener != null) {
+                            listener.onDataReceived(buffer, bytesRead);
+                        } else if (bytesRead < 0) {
+                            disconnect();
+                            break;
                         }
                     } else {
                         break;
@@ -0,0 +1,25 @@
+// Platform-independent gesture detection and command encoding (plain JVM, no Android APIs)
+plugins {
+    `java-library`
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    testImplementation(libs.junit)
+}
+
+// Run with ./gradlew :gesture-core:jmh
+jmh {
+    jmhVersion = libs.versions.jmh
+    // Allocation profiling: reports gc.alloc.rate.norm (bytes/op) next to each score
+    profilers = listOf("gc")
+    warmupIterations = 3
+    iterations = 5
+    fork = 1
+    includeTests = false
+}
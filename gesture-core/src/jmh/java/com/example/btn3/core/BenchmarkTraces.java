@@ -0,0 +1,57 @@
+package com.example.btn3.core;
+
+import java.util.Random;
+
+/**
+ * Synthetic sensor traces shared by the benchmarks. Mostly a phone held still
+ * (gravity on Z plus noise) with a gesture-sized burst every couple of seconds,
+ * so the detectors spend most of their time on the no-gesture path like in use.
+ */
+final class BenchmarkTraces {
+
+    static final long SAMPLE_PERIOD_NS = 5_000_000L; // 200 Hz, SENSOR_DELAY_GAME-ish
+    static final float GRAVITY = 9.81f;
+
+    private BenchmarkTraces() {
+    }
+
+    /**
+     * @return Packed x, y, z accelerometer samples
+     */
+    static float[] accelerometer(int count, long seed) {
+        Random random = new Random(seed);
+        float[] xyz = new float[count * 3];
+        for (int i = 0; i < count; i++) {
+            boolean burst = (i % 400) < 20;
+            float scale = burst ? 6.0f : 0.15f;
+            xyz[i * 3] = (float) random.nextGaussian() * scale;
+            xyz[i * 3 + 1] = (float) random.nextGaussian() * scale;
+            xyz[i * 3 + 2] = GRAVITY + (float) random.nextGaussian() * scale;
+        }
+        return xyz;
+    }
+
+    /**
+     * @return Packed x, y, z gyroscope samples
+     */
+    static float[] gyroscope(int count, long seed) {
+        Random random = new Random(seed);
+        float[] xyz = new float[count * 3];
+        for (int i = 0; i < count; i++) {
+            boolean burst = (i % 400) >= 200 && (i % 400) < 220;
+            float scale = burst ? 3.0f : 0.05f;
+            xyz[i * 3] = (float) random.nextGaussian() * scale;
+            xyz[i * 3 + 1] = (float) random.nextGaussian() * scale;
+            xyz[i * 3 + 2] = (float) random.nextGaussian() * scale;
+        }
+        return xyz;
+    }
+
+    static long[] timestamps(int count) {
+        long[] timestamps = new long[count];
+        for (int i = 0; i < count; i++) {
+            timestamps[i] = 1_000_000_000L + i * SAMPLE_PERIOD_NS;
+        }
+        return timestamps;
+    }
+}
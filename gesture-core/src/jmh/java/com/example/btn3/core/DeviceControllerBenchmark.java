@@ -0,0 +1,80 @@
+package com.example.btn3.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Command packing, the handle and listener-only send paths (run with -prof gc to
+ * confirm sendCommand does not allocate), and a four-command scene as one batch
+ * against the same commands sent one by one
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DeviceControllerBenchmark {
+
+    private static final String MOVIE = "LIGHT:OFF,FAN:ON,TV:ON,SPEAKER:VOLUME:30";
+
+    private DeviceController controller;
+    private Scene movie;
+    private int value;
+
+    @Setup
+    public void setUp(final Blackhole blackhole) {
+        controller = new DeviceController(new DeviceController.DeviceControlListener() {
+            @Override
+            public void onCommandSent(int correlationId, long packed) {
+                blackhole.consume(packed);
+            }
+
+            @Override
+            public void onCommandSuccess(String response) {
+                blackhole.consume(response);
+            }
+
+            @Override
+            public void onCommandFailure(String error) {
+                blackhole.consume(error);
+            }
+        });
+        controller.connect("bench", DeviceController.ConnectionType.WIFI);
+        movie = Scene.parse("movie", MOVIE);
+    }
+
+    @Benchmark
+    public long packToggleCommand() {
+        return DeviceController.packToggle(DeviceController.DeviceType.LIGHT, true);
+    }
+
+    @Benchmark
+    public void adjustParameter() {
+        value = (value + 1) % 101;
+        controller.adjustParameter(DeviceController.DeviceType.SPEAKER, "VOLUME", value);
+    }
+
+    @Benchmark
+    public int sendPackedCommand() {
+        value = (value + 1) % 101;
+        return controller.sendCommand(DeviceController.packAdjustment(DeviceController.DeviceType.SPEAKER, "VOLUME", value));
+    }
+
+    @Benchmark
+    public DeviceController.CommandHandle activateScene() {
+        return controller.activateScene(movie);
+    }
+
+    @Benchmark
+    public void sendSceneCommandsOneByOne(Blackhole blackhole) {
+        for (int i = 0; i < movie.getCommandCount(); i++) {
+            blackhole.consume(controller.sendCommand(movie.getCommand(i)));
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.btn3.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost per raw accelerometer sample of the double-tap detector, which runs on every
+ * sample ahead of the engine; compare with GestureEngineBenchmark.accelerometer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DoubleTapDetectorBenchmark {
+
+    private static final int SAMPLES = 4096;
+
+    private float[] accelerometer;
+    private long[] timestamps;
+    private DoubleTapDetector detector;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        accelerometer = BenchmarkTraces.accelerometer(SAMPLES, 1);
+        timestamps = BenchmarkTraces.timestamps(SAMPLES);
+        detector = new DoubleTapDetector(blackhole::consume);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public long accelerometer() {
+        for (int i = 0; i < SAMPLES; i++) {
+            detector.processAccelerometer(accelerometer[i * 3], accelerometer[i * 3 + 1],
+                    accelerometer[i * 3 + 2], timestamps[i]);
+        }
+        return detector.getTapCount();
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.btn3.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost per accelerometer sample of the feature engine: high-pass filters, window
+ * updates and one fixed-point classification per sample, plus the tilt rule. The
+ * features benchmark isolates the O(1) window updates; compare either with
+ * GestureEngineBenchmark.accelerometer for the threshold engine.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FeatureGestureEngineBenchmark {
+
+    private static final int SAMPLES = 4096;
+    private static final float SAMPLE_RATE_HZ = 1e9f / BenchmarkTraces.SAMPLE_PERIOD_NS;
+
+    private float[] accelerometer;
+    private long[] timestamps;
+    private FeatureGestureEngine engine;
+    private SlidingWindowFeatures[] windows;
+    private int[] features;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        accelerometer = BenchmarkTraces.accelerometer(SAMPLES, 1);
+        timestamps = BenchmarkTraces.timestamps(SAMPLES);
+        engine = new FeatureGestureEngine((gestureType, intensity, timestampNs) -> blackhole.consume(gestureType),
+                SAMPLE_RATE_HZ, FeatureGestureEngine.defaultClassifier());
+        int windowSize = Math.round(FeatureGestureEngine.DEFAULT_WINDOW_SECONDS * SAMPLE_RATE_HZ);
+        windows = new SlidingWindowFeatures[3];
+        for (int axis = 0; axis < 3; axis++) {
+            windows[axis] = new SlidingWindowFeatures(windowSize, FeatureGestureEngine.CROSSING_DEADBAND,
+                    FeatureGestureEngine.PEAK_THRESHOLD);
+        }
+        features = new int[3 * SlidingWindowFeatures.FEATURE_COUNT];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public long accelerometer() {
+        for (int i = 0; i < SAMPLES; i++) {
+            engine.processAccelerometer(accelerometer[i * 3], accelerometer[i * 3 + 1],
+                    accelerometer[i * 3 + 2], timestamps[i]);
+        }
+        return engine.getClassificationCount();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public int[] features() {
+        for (int i = 0; i < SAMPLES; i++) {
+            for (int axis = 0; axis < 3; axis++) {
+                windows[axis].add(accelerometer[i * 3 + axis]);
+                windows[axis].copyFeatures(features, axis * SlidingWindowFeatures.FEATURE_COUNT);
+            }
+        }
+        return features;
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.btn3.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GestureDetector cost per sample. Scores are per sample: ops/s is samples/sec
+ * in Throughput mode and ns/op is ns/sample in AverageTime mode.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GestureDetectorBenchmark {
+
+    private static final int SAMPLES = 4096;
+
+    private float[] accelerometer;
+    private float[] gyroscope;
+    private long[] timestamps;
+    private GestureDetector detector;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        accelerometer = BenchmarkTraces.accelerometer(SAMPLES, 1);
+        gyroscope = BenchmarkTraces.gyroscope(SAMPLES, 2);
+        timestamps = BenchmarkTraces.timestamps(SAMPLES);
+        detector = new GestureDetector((gestureType, intensity) -> blackhole.consume(gestureType));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public void accelerometerPerSample() {
+        detector.reset();
+        for (int i = 0; i < SAMPLES; i++) {
+            detector.processAccelerometerData(accelerometer[i * 3], accelerometer[i * 3 + 1],
+                    accelerometer[i * 3 + 2], timestamps[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public void accelerometerBatch() {
+        detector.reset();
+        detector.processAccelerometerBatch(accelerometer, timestamps, SAMPLES);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public void gyroscopeBatch() {
+        detector.reset();
+        detector.processGyroscopeBatch(gyroscope, timestamps, SAMPLES);
+    }
+}
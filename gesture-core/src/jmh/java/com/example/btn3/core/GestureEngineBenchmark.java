@@ -0,0 +1,67 @@
+package com.example.btn3.core;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost per sample of the table-driven engine on its own (no refractory periods). The
+ * magnitudesPerSample counter should read at most 1.0.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GestureEngineBenchmark {
+
+    private static final int SAMPLES = 4096;
+
+    private float[] accelerometer;
+    private float[] gyroscope;
+    private long[] timestamps;
+    private ThresholdGestureEngine engine;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public double magnitudesPerSample;
+    }
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        accelerometer = BenchmarkTraces.accelerometer(SAMPLES, 1);
+        gyroscope = BenchmarkTraces.gyroscope(SAMPLES, 2);
+        timestamps = BenchmarkTraces.timestamps(SAMPLES);
+        engine = new ThresholdGestureEngine(
+                (gestureType, intensity, timestampNs) -> blackhole.consume(gestureType));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public void accelerometer(Counters counters) {
+        long before = engine.getMagnitudeComputationCount();
+        for (int i = 0; i < SAMPLES; i++) {
+            engine.processAccelerometer(accelerometer[i * 3], accelerometer[i * 3 + 1],
+                    accelerometer[i * 3 + 2], timestamps[i]);
+        }
+        counters.magnitudesPerSample =
+                (double) (engine.getMagnitudeComputationCount() - before) / SAMPLES;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public void gyroscope() {
+        for (int i = 0; i < SAMPLES; i++) {
+            engine.processGyroscope(gyroscope[i * 3], gyroscope[i * 3 + 1],
+                    gyroscope[i * 3 + 2], timestamps[i]);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.btn3.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fusion cost per accelerometer + gyroscope sample pair, on its own and as part of
+ * the fused engine next to the raw engine it replaces
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OrientationFilterBenchmark {
+
+    private static final int SAMPLES = 4096;
+
+    private float[] accelerometer;
+    private float[] gyroscope;
+    private long[] timestamps;
+    private OrientationFilter filter;
+    private GestureEngine rawEngine;
+    private GestureEngine fusedEngine;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        accelerometer = BenchmarkTraces.accelerometer(SAMPLES, 1);
+        gyroscope = BenchmarkTraces.gyroscope(SAMPLES, 2);
+        timestamps = BenchmarkTraces.timestamps(SAMPLES);
+        filter = new OrientationFilter();
+        GestureEngine.GestureSink sink = (gestureType, intensity, timestampNs) -> blackhole.consume(gestureType);
+        rawEngine = new ThresholdGestureEngine(sink);
+        fusedEngine = ThresholdGestureEngine.fused().create(sink);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public float filterOnly() {
+        for (int i = 0; i < SAMPLES; i++) {
+            filter.updateGyroscope(gyroscope[i * 3], gyroscope[i * 3 + 1], gyroscope[i * 3 + 2], timestamps[i]);
+            filter.updateAccelerometer(accelerometer[i * 3], accelerometer[i * 3 + 1],
+                    accelerometer[i * 3 + 2], timestamps[i]);
+        }
+        return filter.getGravityY();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public void rawEngine() {
+        run(rawEngine);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public void fusedEngine() {
+        run(fusedEngine);
+    }
+
+    private void run(GestureEngine engine) {
+        for (int i = 0; i < SAMPLES; i++) {
+            engine.processGyroscope(gyroscope[i * 3], gyroscope[i * 3 + 1], gyroscope[i * 3 + 2], timestamps[i]);
+            engine.processAccelerometer(accelerometer[i * 3], accelerometer[i * 3 + 1],
+                    accelerometer[i * 3 + 2], timestamps[i]);
+        }
+    }
+}
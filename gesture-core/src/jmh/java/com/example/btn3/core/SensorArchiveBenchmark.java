@@ -0,0 +1,95 @@
+package com.example.btn3.core;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Archive encode and decode throughput per sample, plus the compression ratio
+ * against the raw trace format. Samples are quantized to a 16-bit +-8 g LSB the way
+ * real sensors deliver them; unquantized Gaussian noise would not compress.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SensorArchiveBenchmark {
+
+    private static final int SAMPLES = 16384;
+    private static final float LSB = 16f * BenchmarkTraces.GRAVITY / 65536f;
+
+    private float[] accelerometer;
+    private float[] gyroscope;
+    private long[] timestamps;
+    private Path writeFile;
+    private Path readFile;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public double compressionRatio;
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        accelerometer = quantize(BenchmarkTraces.accelerometer(SAMPLES, 1));
+        gyroscope = quantize(BenchmarkTraces.gyroscope(SAMPLES, 2));
+        timestamps = BenchmarkTraces.timestamps(SAMPLES);
+        writeFile = Files.createTempFile("write", ".archive");
+        readFile = Files.createTempFile("read", ".archive");
+        write(readFile);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(writeFile);
+        Files.deleteIfExists(readFile);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES * 2)
+    public void encode(Counters counters) throws IOException {
+        long bytes = write(writeFile);
+        long rawBytes = SensorTrace.HEADER_SIZE + (long) SAMPLES * 2 * SensorTrace.RECORD_SIZE;
+        counters.compressionRatio = (double) rawBytes / bytes;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES * 2)
+    public void decode(Blackhole blackhole) throws IOException {
+        try (SensorArchiveReader reader = new SensorArchiveReader(readFile)) {
+            reader.readAll((sensorType, timestampNs, x, y, z) -> blackhole.consume(x + y + z));
+        }
+    }
+
+    private long write(Path file) throws IOException {
+        SensorArchiveWriter writer = new SensorArchiveWriter(file);
+        for (int i = 0; i < SAMPLES; i++) {
+            writer.onSample(SensorTrace.ACCELEROMETER, timestamps[i],
+                    accelerometer[i * 3], accelerometer[i * 3 + 1], accelerometer[i * 3 + 2]);
+            writer.onSample(SensorTrace.GYROSCOPE, timestamps[i],
+                    gyroscope[i * 3], gyroscope[i * 3 + 1], gyroscope[i * 3 + 2]);
+        }
+        writer.close();
+        return writer.getBytesWritten();
+    }
+
+    private static float[] quantize(float[] values) {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.round(values[i] / LSB) * LSB;
+        }
+        return values;
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.btn3.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resampling cost per accelerometer + gyroscope sample pair, with jittered,
+ * phase-shifted timestamps resampled onto a grid at the nominal rate
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SensorResamplerBenchmark {
+
+    private static final int SAMPLES = 4096;
+
+    private float[] accelerometer;
+    private float[] gyroscope;
+    private long[] accelerometerTimes;
+    private long[] gyroscopeTimes;
+    private SensorResampler resampler;
+    private long offset;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        accelerometer = BenchmarkTraces.accelerometer(SAMPLES, 1);
+        gyroscope = BenchmarkTraces.gyroscope(SAMPLES, 2);
+        accelerometerTimes = new long[SAMPLES];
+        gyroscopeTimes = new long[SAMPLES];
+        long[] timestamps = BenchmarkTraces.timestamps(SAMPLES);
+        for (int i = 0; i < SAMPLES; i++) {
+            accelerometerTimes[i] = timestamps[i] + (i % 3) * 400_000L;
+            gyroscopeTimes[i] = timestamps[i] + 1_700_000L + (i % 5) * 300_000L;
+        }
+        resampler = new SensorResampler(BenchmarkTraces.SAMPLE_PERIOD_NS, 3 * BenchmarkTraces.SAMPLE_PERIOD_NS,
+                200_000_000L, (timestampNs, ax, ay, az, gx, gy, gz) -> blackhole.consume(ax + gz));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public long resample() {
+        // Keep timestamps increasing across invocations
+        long base = offset;
+        for (int i = 0; i < SAMPLES; i++) {
+            resampler.addAccelerometer(accelerometer[i * 3], accelerometer[i * 3 + 1],
+                    accelerometer[i * 3 + 2], base + accelerometerTimes[i]);
+            resampler.addGyroscope(gyroscope[i * 3], gyroscope[i * 3 + 1], gyroscope[i * 3 + 2],
+                    base + gyroscopeTimes[i]);
+        }
+        offset = base + SAMPLES * BenchmarkTraces.SAMPLE_PERIOD_NS;
+        return resampler.getFrameCount();
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.btn3.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hand-off cost per sample through the sensor ring buffer (publish plus drain)
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SensorSampleBufferBenchmark {
+
+    private static final int BURST = 64;
+
+    private SensorSampleBuffer buffer;
+    private SensorSampleBuffer.SampleConsumer consumer;
+    private long timestamp;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        buffer = new SensorSampleBuffer(1024);
+        consumer = (sensorType, timestampNs, x, y, z) -> blackhole.consume(x + y + z);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public int publishAndDrain() {
+        for (int i = 0; i < BURST; i++) {
+            buffer.publish(1, timestamp++, 0.1f, 0.2f, 9.81f);
+        }
+        return buffer.drain(consumer, BURST);
+    }
+}
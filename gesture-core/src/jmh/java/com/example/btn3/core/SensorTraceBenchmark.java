@@ -0,0 +1,83 @@
+package com.example.btn3.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recording cost per sample (gc.alloc.rate.norm should be ~0) and replay throughput
+ * of a trace driving a GestureDetector as fast as possible
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SensorTraceBenchmark {
+
+    private static final int SAMPLES = 4096;
+
+    private float[] accelerometer;
+    private long[] timestamps;
+    private Path recordFile;
+    private Path replayFile;
+    private SensorTraceRecorder recorder;
+    private GestureDetector detector;
+
+    @Setup
+    public void setUp(Blackhole blackhole) throws IOException {
+        accelerometer = BenchmarkTraces.accelerometer(SAMPLES, 1);
+        float[] gyroscope = BenchmarkTraces.gyroscope(SAMPLES, 2);
+        timestamps = BenchmarkTraces.timestamps(SAMPLES);
+        recordFile = Files.createTempFile("record", ".trace");
+        recorder = new SensorTraceRecorder(recordFile);
+
+        replayFile = Files.createTempFile("replay", ".trace");
+        try (SensorTraceRecorder writer = new SensorTraceRecorder(replayFile)) {
+            for (int i = 0; i < SAMPLES; i++) {
+                writer.onSample(SensorTrace.ACCELEROMETER, timestamps[i],
+                        accelerometer[i * 3], accelerometer[i * 3 + 1], accelerometer[i * 3 + 2]);
+                writer.onSample(SensorTrace.GYROSCOPE, timestamps[i],
+                        gyroscope[i * 3], gyroscope[i * 3 + 1], gyroscope[i * 3 + 2]);
+            }
+        }
+        detector = new GestureDetector((gestureType, intensity) -> blackhole.consume(gestureType));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        recorder.close();
+        Files.deleteIfExists(recordFile);
+        Files.deleteIfExists(replayFile);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public long record() {
+        for (int i = 0; i < SAMPLES; i++) {
+            recorder.onSample(SensorTrace.ACCELEROMETER, timestamps[i],
+                    accelerometer[i * 3], accelerometer[i * 3 + 1], accelerometer[i * 3 + 2]);
+        }
+        return recorder.getRecordCount();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES * 2)
+    public long replay() throws IOException {
+        detector.reset();
+        try (SensorTraceReplayer replayer = new SensorTraceReplayer(replayFile)) {
+            replayer.replay(detector, SensorTraceReplayer.Pace.AS_FAST_AS_POSSIBLE);
+            return replayer.getReplayedRecordCount();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.btn3.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-sample cost of the individual filter stages and of the full filtered engine
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SignalFilterBenchmark {
+
+    private static final int SAMPLES = 4096;
+    private static final float RATE_HZ = 200.0f;
+
+    private float[] accelerometer;
+    private float[] gyroscope;
+    private long[] timestamps;
+    private SignalFilter biquad;
+    private SignalFilter onePole;
+    private SignalFilter movingAverage;
+    private FilteredGestureEngine engine;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        accelerometer = BenchmarkTraces.accelerometer(SAMPLES, 1);
+        gyroscope = BenchmarkTraces.gyroscope(SAMPLES, 2);
+        timestamps = BenchmarkTraces.timestamps(SAMPLES);
+        biquad = BiquadFilter.lowPass(RATE_HZ, 5.0f, BiquadFilter.BUTTERWORTH_Q).create();
+        onePole = OnePoleFilter.lowPass(RATE_HZ, 5.0f).create();
+        movingAverage = MovingAverageFilter.of(8).create();
+        engine = new FilteredGestureEngine((gestureType, intensity, timestampNs) -> blackhole.consume(gestureType),
+                FilteredGestureEngine.defaultConfig(RATE_HZ));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public float biquad() {
+        return run(biquad);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public float onePole() {
+        return run(onePole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public float movingAverage() {
+        return run(movingAverage);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public void filteredEngine() {
+        for (int i = 0; i < SAMPLES; i++) {
+            engine.processGyroscope(gyroscope[i * 3], gyroscope[i * 3 + 1], gyroscope[i * 3 + 2], timestamps[i]);
+            engine.processAccelerometer(accelerometer[i * 3], accelerometer[i * 3 + 1],
+                    accelerometer[i * 3 + 2], timestamps[i]);
+        }
+    }
+
+    private float run(SignalFilter filter) {
+        float sum = 0f;
+        for (int i = 0; i < SAMPLES; i++) {
+            sum += filter.process(accelerometer[i * 3 + 1]);
+        }
+        return sum;
+    }
+}
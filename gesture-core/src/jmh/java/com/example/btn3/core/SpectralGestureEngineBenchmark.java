@@ -0,0 +1,63 @@
+package com.example.btn3.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost per accelerometer sample of the spectral engine. The goertzel benchmark
+ * isolates one axis of the filter bank, whose cost depends on the bin count but not
+ * on the window length; compare with FeatureGestureEngineBenchmark.accelerometer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SpectralGestureEngineBenchmark {
+
+    private static final int SAMPLES = 4096;
+    private static final float SAMPLE_RATE_HZ = 1e9f / BenchmarkTraces.SAMPLE_PERIOD_NS;
+
+    private float[] accelerometer;
+    private long[] timestamps;
+    private SpectralGestureEngine engine;
+    private SlidingGoertzel bank;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        accelerometer = BenchmarkTraces.accelerometer(SAMPLES, 1);
+        timestamps = BenchmarkTraces.timestamps(SAMPLES);
+        engine = new SpectralGestureEngine((gestureType, intensity, timestampNs) -> blackhole.consume(gestureType),
+                SAMPLE_RATE_HZ);
+        bank = new SlidingGoertzel(Math.round(SpectralGestureEngine.WINDOW_SECONDS * SAMPLE_RATE_HZ),
+                SpectralGestureEngine.WAVE_FIRST_BIN, SpectralGestureEngine.SHAKE_LAST_BIN);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public float accelerometer() {
+        for (int i = 0; i < SAMPLES; i++) {
+            engine.processAccelerometer(accelerometer[i * 3], accelerometer[i * 3 + 1],
+                    accelerometer[i * 3 + 2], timestamps[i]);
+        }
+        return engine.getShakeAmplitude();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public float goertzel() {
+        float power = 0f;
+        for (int i = 0; i < SAMPLES; i++) {
+            bank.add(accelerometer[i * 3]);
+            power += bank.getPower(SpectralGestureEngine.SHAKE_FIRST_BIN, SpectralGestureEngine.SHAKE_LAST_BIN);
+        }
+        return power;
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.btn3.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Template matching cost per accelerometer sample against a growing number of
+ * smooth random templates. The shared trace's bursts are what reach the lower
+ * bounds and DTW; still stretches are skipped from the running variance.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TemplateGestureRecognizerBenchmark {
+
+    private static final int SAMPLES = 4096;
+
+    @Param({"1", "16", "48"})
+    public int templates;
+
+    private float[] accelerometer;
+    private long[] timestamps;
+    private TemplateGestureRecognizer recognizer;
+    private long offset;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        accelerometer = BenchmarkTraces.accelerometer(SAMPLES, 1);
+        timestamps = BenchmarkTraces.timestamps(SAMPLES);
+        recognizer = new TemplateGestureRecognizer(
+                (templateId, intensity, timestampNs) -> blackhole.consume(templateId));
+        int length = TemplateGestureRecognizer.DEFAULT_TEMPLATE_LENGTH;
+        Random random = new Random(3);
+        for (int id = 0; id < templates; id++) {
+            float[] points = new float[length * 3];
+            for (int axis = 0; axis < 3; axis++) {
+                double amplitude = 3.0 + random.nextDouble() * 5.0;
+                double cycles = 1.0 + random.nextInt(3);
+                double phase = random.nextDouble() * 2 * Math.PI;
+                for (int i = 0; i < length; i++) {
+                    points[i * 3 + axis] = (float) (amplitude * Math.sin(2 * Math.PI * cycles * i / length + phase));
+                }
+            }
+            recognizer.addTemplate(id, points, length);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public long match() {
+        // Keep timestamps increasing across invocations
+        long base = offset;
+        for (int i = 0; i < SAMPLES; i++) {
+            recognizer.processAccelerometer(accelerometer[i * 3], accelerometer[i * 3 + 1],
+                    accelerometer[i * 3 + 2], base + timestamps[i]);
+        }
+        offset = base + SAMPLES * BenchmarkTraces.SAMPLE_PERIOD_NS;
+        return recognizer.getDtwCount();
+    }
+}
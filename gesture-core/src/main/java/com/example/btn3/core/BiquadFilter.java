@@ -0,0 +1,91 @@
+package com.example.btn3.core;
+
+/**
+ * Second-order IIR section (RBJ audio cookbook coefficients, transposed direct form II)
+ */
+public class BiquadFilter implements SignalFilter {
+
+    public static final float BUTTERWORTH_Q = 0.70710678f;
+
+    // Normalized coefficients (a0 == 1)
+    private final float b0;
+    private final float b1;
+    private final float b2;
+    private final float a1;
+    private final float a2;
+
+    // Filter state
+    private float z1 = 0.0f;
+    private float z2 = 0.0f;
+    private boolean primed = false;
+
+    public BiquadFilter(float b0, float b1, float b2, float a0, float a1, float a2) {
+        this.b0 = b0 / a0;
+        this.b1 = b1 / a0;
+        this.b2 = b2 / a0;
+        this.a1 = a1 / a0;
+        this.a2 = a2 / a0;
+    }
+
+    /**
+     * @param sampleRateHz Input sample rate
+     * @param cutoffHz Corner frequency
+     * @param q Quality factor (BUTTERWORTH_Q for a flat passband)
+     */
+    public static Factory lowPass(float sampleRateHz, float cutoffHz, float q) {
+        return () -> {
+            double w0 = 2.0 * Math.PI * cutoffHz / sampleRateHz;
+            double cos = Math.cos(w0);
+            double alpha = Math.sin(w0) / (2.0 * q);
+            return new BiquadFilter((float) ((1 - cos) / 2), (float) (1 - cos), (float) ((1 - cos) / 2),
+                    (float) (1 + alpha), (float) (-2 * cos), (float) (1 - alpha));
+        };
+    }
+
+    public static Factory highPass(float sampleRateHz, float cutoffHz, float q) {
+        return () -> {
+            double w0 = 2.0 * Math.PI * cutoffHz / sampleRateHz;
+            double cos = Math.cos(w0);
+            double alpha = Math.sin(w0) / (2.0 * q);
+            return new BiquadFilter((float) ((1 + cos) / 2), (float) (-(1 + cos)), (float) ((1 + cos) / 2),
+                    (float) (1 + alpha), (float) (-2 * cos), (float) (1 - alpha));
+        };
+    }
+
+    /**
+     * Band-pass with 0 dB gain at the centre frequency
+     */
+    public static Factory bandPass(float sampleRateHz, float centerHz, float q) {
+        return () -> {
+            double w0 = 2.0 * Math.PI * centerHz / sampleRateHz;
+            double cos = Math.cos(w0);
+            double alpha = Math.sin(w0) / (2.0 * q);
+            return new BiquadFilter((float) alpha, 0.0f, (float) -alpha,
+                    (float) (1 + alpha), (float) (-2 * cos), (float) (1 - alpha));
+        };
+    }
+
+    @Override
+    public float process(float sample) {
+        if (!primed) {
+            // Start from the steady state for a constant input, so gravity on an
+            // axis doesn't produce a step response (or a spike through a high-pass)
+            primed = true;
+            float denominator = 1.0f + a1 + a2;
+            float steady = denominator != 0.0f ? sample * (b0 + b1 + b2) / denominator : 0.0f;
+            z2 = b2 * sample - a2 * steady;
+            z1 = b1 * sample - a1 * steady + z2;
+        }
+        float out = b0 * sample + z1;
+        z1 = b1 * sample - a1 * out + z2;
+        z2 = b2 * sample - a2 * out;
+        return out;
+    }
+
+    @Override
+    public void reset() {
+        primed = false;
+        z1 = 0.0f;
+        z2 = 0.0f;
+    }
+}
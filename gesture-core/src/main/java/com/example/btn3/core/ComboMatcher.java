@@ -0,0 +1,247 @@
+package com.example.btn3.core;
+
+import com.example.btn3.core.GestureDetector.GestureType;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Streaming matcher for gesture combos. The combos are compiled into one automaton
+ * (a trie with Aho-Corasick failure links folded into a full transition table), so
+ * each gesture costs one table lookup plus a check of the combos ending in the new
+ * state, at most one per combo length, however many combos are defined. Windows are
+ * checked against a ring of the last MAX_LENGTH gesture times. When a combo matches,
+ * the longest one that fits its window is reported and the automaton restarts, so a
+ * gesture never counts towards two combos. Memory is the transition table, fixed
+ * when the combos are set.
+ *
+ * getPrefixLength tells how many of the latest gestures may still become part of a
+ * combo, so a caller can hold their actions back until the combo completes or
+ * cannot complete any more.
+ *
+ * Combos are replaced as a whole (setCombos may be called from another thread); the
+ * stream state restarts when a new automaton is picked up.
+ */
+public class ComboMatcher {
+
+    // Receives matched combos
+    public interface ComboListener {
+        void onCombo(int comboId, long timestampNs);
+    }
+
+    private static final int SYMBOLS = GestureType.values().length;
+    private static final int RING = GestureCombo.MAX_LENGTH;
+
+    private final ComboListener listener;
+    private volatile Automaton automaton = Automaton.compile(Collections.emptyList());
+
+    // Stream state, on the thread that reports gestures
+    private Automaton current;
+    private int state = 0;
+    private final long[] times = new long[RING];
+    private int head = 0;
+
+    private long matchCount = 0;
+    private int lastMatchLength = 0;
+
+    public ComboMatcher(ComboListener listener) {
+        this.listener = listener;
+        this.current = automaton;
+    }
+
+    /**
+     * Compile and install a new set of combos
+     * @throws IllegalArgumentException if two combos share an id or a sequence
+     */
+    public void setCombos(List<GestureCombo> combos) {
+        automaton = Automaton.compile(Collections.unmodifiableList(new ArrayList<>(combos)));
+    }
+
+    public List<GestureCombo> getCombos() {
+        return automaton.combos;
+    }
+
+    /**
+     * Advance on one reported gesture
+     */
+    public void onGesture(GestureType gestureType, long timestampNs) {
+        Automaton a = automaton;
+        if (a != current) {
+            current = a;
+            state = 0;
+        }
+        times[head] = timestampNs;
+        head = head + 1 == RING ? 0 : head + 1;
+        state = a.next[state * SYMBOLS + gestureType.ordinal()];
+
+        for (int c : a.output[state]) {
+            int index = head - a.length[c];
+            long start = times[index < 0 ? index + RING : index];
+            if (timestampNs - start <= a.window[c]) {
+                state = 0;
+                matchCount++;
+                lastMatchLength = a.length[c];
+                listener.onCombo(a.id[c], timestampNs);
+                return;
+            }
+        }
+    }
+
+    public void reset() {
+        state = 0;
+    }
+
+    public long getMatchCount() {
+        return matchCount;
+    }
+
+    /**
+     * @return Number of the latest gestures that form the start of a combo, i.e. that a
+     * further gesture could still turn into a match (0 if none)
+     */
+    public int getPrefixLength() {
+        return current == automaton ? current.live[state] : 0;
+    }
+
+    /**
+     * @return Number of gestures in the last matched combo, for the listener of onCombo
+     */
+    public int getLastMatchLength() {
+        return lastMatchLength;
+    }
+
+    /**
+     * @return Longest window of the combos, after which no held gesture can complete one
+     */
+    public long getMaxWindowNs() {
+        return automaton.maxWindowNs;
+    }
+
+    /**
+     * @return Number of automaton states, for sizing checks
+     */
+    public int getStateCount() {
+        return automaton.output.length;
+    }
+
+    /**
+     * Compiled transition table. output[s] lists the combos ending in state s (its own
+     * and those of its suffix states), longest first. live[s] is the depth of the
+     * longest suffix state of s (s itself included) that still has a trie edge, i.e.
+     * the length of the tail of the input that can still grow into a combo.
+     */
+    private static final class Automaton {
+        final List<GestureCombo> combos;
+        final int[] next;
+        final int[][] output;
+        final int[] live;
+        final int[] id;
+        final int[] length;
+        final long[] window;
+        final long maxWindowNs;
+
+        private Automaton(List<GestureCombo> combos, int[] next, int[][] output, int[] live) {
+            this.combos = combos;
+            this.next = next;
+            this.output = output;
+            this.live = live;
+            id = new int[combos.size()];
+            length = new int[combos.size()];
+            window = new long[combos.size()];
+            long longest = 0;
+            for (int c = 0; c < combos.size(); c++) {
+                id[c] = combos.get(c).getId();
+                length[c] = combos.get(c).getLength();
+                window[c] = combos.get(c).getWindowNs();
+                longest = Math.max(longest, window[c]);
+            }
+            maxWindowNs = longest;
+        }
+
+        static Automaton compile(List<GestureCombo> combos) {
+            for (int i = 0; i < combos.size(); i++) {
+                for (int j = 0; j < i; j++) {
+                    if (combos.get(i).getId() == combos.get(j).getId()) {
+                        throw new IllegalArgumentException("Duplicate combo id " + combos.get(i).getId());
+                    }
+                    if (combos.get(i).hasSameSequence(combos.get(j))) {
+                        throw new IllegalArgumentException("Combos " + combos.get(j).getId() + " and "
+                                + combos.get(i).getId() + " have the same sequence");
+                    }
+                }
+            }
+
+            // Trie; -1 marks a missing edge until the failure links fill it in
+            int capacity = 1;
+            for (GestureCombo combo : combos) {
+                capacity += combo.getLength();
+            }
+            int[] next = new int[capacity * SYMBOLS];
+            Arrays.fill(next, -1);
+            int[] terminal = new int[capacity];
+            Arrays.fill(terminal, -1);
+            int[] depth = new int[capacity];
+            boolean[] inner = new boolean[capacity]; // has a trie edge
+            int states = 1;
+            for (int c = 0; c < combos.size(); c++) {
+                GestureCombo combo = combos.get(c);
+                int s = 0;
+                for (int i = 0; i < combo.getLength(); i++) {
+                    int edge = s * SYMBOLS + combo.getGesture(i).ordinal();
+                    if (next[edge] < 0) {
+                        depth[states] = i + 1;
+                        next[edge] = states++;
+                    }
+                    inner[s] = true;
+                    s = next[edge];
+                }
+                terminal[s] = c;
+            }
+
+            // Breadth-first: failure links, completed transitions and output lists
+            int[] fail = new int[states];
+            int[][] output = new int[states][];
+            int[] live = new int[states];
+            output[0] = new int[0];
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            for (int symbol = 0; symbol < SYMBOLS; symbol++) {
+                int child = next[symbol];
+                if (child < 0) {
+                    next[symbol] = 0;
+                } else {
+                    fail[child] = 0;
+                    queue.add(child);
+                }
+            }
+            while (!queue.isEmpty()) {
+                int s = queue.poll();
+                int[] inherited = output[fail[s]];
+                if (terminal[s] >= 0) {
+                    // The state's own combo is longer than any inherited from a suffix
+                    output[s] = new int[inherited.length + 1];
+                    output[s][0] = terminal[s];
+                    System.arraycopy(inherited, 0, output[s], 1, inherited.length);
+                } else {
+                    output[s] = inherited;
+                }
+                // The failure state is shallower, so its value is already final
+                live[s] = inner[s] ? depth[s] : live[fail[s]];
+                for (int symbol = 0; symbol < SYMBOLS; symbol++) {
+                    int edge = s * SYMBOLS + symbol;
+                    int child = next[edge];
+                    int fallback = next[fail[s] * SYMBOLS + symbol];
+                    if (child < 0) {
+                        next[edge] = fallback;
+                    } else {
+                        fail[child] = fallback;
+                        queue.add(child);
+                    }
+                }
+            }
+            return new Automaton(combos, Arrays.copyOf(next, states * SYMBOLS), output, live);
+        }
+    }
+}
@@ -0,0 +1,909 @@
+package com.example.btn3.core;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongSupplier;
+
+/**
+ * Class to handle communication with smart devices. Commands are packed longs
+ * (packToggle, packAdjustment, packMedia), pipelined under correlation ids and
+ * acknowledged by the device.
+ */
+public class DeviceController {
+
+    // Interface for device control callbacks
+    public interface DeviceControlListener {
+        /**
+         * A command was written; its text is not built for this
+         * @see WireCodec#toText(long)
+         */
+        void onCommandSent(int correlationId, long packed);
+        void onCommandSuccess(String response);
+        void onCommandFailure(String error);
+
+        /**
+         * The batch of a scene was written
+         */
+        default void onSceneSent(int correlationId, Scene scene) {
+        }
+    }
+
+    // Carries framed commands to the device
+    public interface Transport {
+        /**
+         * @param frame One framed command, without a line terminator
+         * @return true if the frame was written
+         */
+        boolean send(String frame);
+
+        /**
+         * Write one binary frame; the buffer is reused once this returns
+         * @return true if the frame was written
+         */
+        default boolean send(byte[] frame, int offset, int length) {
+            return false;
+        }
+
+        /**
+         * @return true if the link can carry binary frames, which starts the capability query
+         */
+        default boolean supportsBinary() {
+            return false;
+        }
+    }
+
+    /**
+     * Result of one command: completes with the device's response, or exceptionally
+     * with a CommandException
+     */
+    public static final class CommandHandle extends CompletableFuture<String> {
+        private final int correlationId;
+        private final long command;
+
+        CommandHandle(int correlationId, long command) {
+            this.correlationId = correlationId;
+            this.command = command;
+        }
+
+        public int getCorrelationId() {
+            return correlationId;
+        }
+
+        /**
+         * @return Packed command, or NO_COMMAND for a scene
+         */
+        public long getCommand() {
+            return command;
+        }
+    }
+
+    // Failure reported by the device, the transport or a timeout
+    public static final class CommandException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        public CommandException(String message) {
+            super(message);
+        }
+    }
+
+    // Device types
+    public enum DeviceType {
+        LIGHT,
+        SPEAKER,
+        TV,
+        FAN
+    }
+
+    // Connection types
+    public enum ConnectionType {
+        BLUETOOTH,
+        WIFI
+    }
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+    public static final long DEFAULT_ACK_TIMEOUT_NS = 2_000_000_000L; // 2 s
+    public static final long DEFAULT_COALESCE_INTERVAL_NS = 100_000_000L; // 100 ms
+
+    // Packed command placeholder, e.g. for "nothing prepared" or a parameter without an opcode
+    public static final long NO_COMMAND = WireCodec.NOT_ENCODABLE;
+
+    private static final String NOT_CONNECTED = "Not connected to any device";
+    private static final String OK = "OK";
+
+    private final DeviceControlListener listener;
+    private final LongSupplier clock;
+    private ConnectionType connectionType = ConnectionType.BLUETOOTH;
+    private volatile boolean isConnected = false;
+    private String deviceName = "";
+
+    // Pipeline state, guarded by this
+    private Transport transport;
+    private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+    private long ackTimeoutNs = DEFAULT_ACK_TIMEOUT_NS;
+    private Pending[] inFlight = new Pending[DEFAULT_MAX_IN_FLIGHT];
+    private int inFlightCount = 0;
+    private final ArrayDeque<Pending> queue = new ArrayDeque<>();
+    private final ArrayDeque<Pending> pool = new ArrayDeque<>();
+    private int nextCorrelationId = 1;
+    private boolean binary = false;
+
+    // Held from dequeuing a command until it is written, so frames go out in queue order; taken before this
+    private final Object sendLock = new Object();
+
+    // Frame encoding (guarded by sendLock) and response decoding (guarded by decoder)
+    private final WireCodec encoder = new WireCodec();
+    private final WireCodec decoder = new WireCodec();
+    private final WireCodec.Sink responseSink = new WireCodec.Sink() {
+        @Override
+        public void onTextLine(String line) {
+            onResponse(line);
+        }
+
+        @Override
+        public void onAck(int correlationId) {
+            complete(correlationId, OK, null);
+        }
+
+        @Override
+        public void onNak(int correlationId, int errorCode) {
+            complete(correlationId, null, "Device error " + errorCode);
+        }
+    };
+
+    // Coalescing state per (device, parameter), guarded by this; only a few keys exist
+    private long coalesceIntervalNs = DEFAULT_COALESCE_INTERVAL_NS;
+    private final ArrayList<ParameterSlot> parameterSlots = new ArrayList<>();
+
+    // Statistics, guarded by this
+    private long suppressedCount = 0;
+    private long acknowledgedCount = 0;
+    private long timeoutCount = 0;
+    private long unmatchedResponseCount = 0;
+    private long bytesSent = 0;
+    private long totalRoundTripNs = 0;
+    private long sceneActivationCount = 0;
+    private long sceneFailureCount = 0;
+    private long totalSceneLatencyNs = 0;
+    private long lastSceneLatencyNs = 0;
+
+    public DeviceController(DeviceControlListener listener) {
+        this(listener, System::nanoTime);
+    }
+
+    /**
+     * @param clock Time source for round trips and ack timeouts (nanoseconds)
+     */
+    public DeviceController(DeviceControlListener listener, LongSupplier clock) {
+        this.listener = listener;
+        this.clock = clock;
+    }
+
+    /**
+     * Connect to a device
+     * @param deviceName Name of the device to connect to
+     * @param connectionType Type of connection (Bluetooth or WiFi)
+     * @return true if connection successful, false otherwise
+     */
+    public boolean connect(String deviceName, ConnectionType connectionType) {
+        // In a real implementation, this would establish a connection to the device
+        // For this example, we'll simulate a successful connection
+        this.deviceName = deviceName;
+        this.connectionType = connectionType;
+        this.isConnected = true;
+        return true;
+    }
+
+    /**
+     * Disconnect from the current device; commands still pending fail
+     */
+    public void disconnect() {
+        // In a real implementation, this would close the connection to the device
+        isConnected = false;
+        deviceName = "";
+        synchronized (this) {
+            parameterSlots.clear();
+        }
+        failAll("Disconnected");
+    }
+
+    /**
+     * Check if connected to a device
+     * @return true if connected, false otherwise
+     */
+    public boolean isConnected() {
+        return isConnected;
+    }
+
+    /**
+     * Get the name of the connected device
+     * @return Device name or empty string if not connected
+     */
+    public String getDeviceName() {
+        return deviceName;
+    }
+
+    /**
+     * Route commands over a real link; responses must be passed to onDataReceived.
+     * Commands pending on the previous transport fail. A binary-capable transport
+     * starts the capability query; commands go out as text until it succeeds.
+     * @param transport Transport, or null to acknowledge commands locally
+     */
+    public void setTransport(Transport transport) {
+        failAll("Transport changed");
+        synchronized (decoder) {
+            decoder.resetDecoder();
+        }
+        CommandHandle query = null;
+        synchronized (this) {
+            this.transport = transport;
+            binary = false;
+            if (transport != null && transport.supportsBinary()) {
+                Pending pending = obtain(NO_COMMAND, true);
+                pending.internal = true;
+                query = pending.handle;
+                queue.addFirst(pending);
+            }
+        }
+        if (query != null) {
+            query.thenAccept(response -> {
+                if (response.contains(WireCodec.BINARY_CAPABILITY)) {
+                    synchronized (this) {
+                        binary = this.transport == transport;
+                    }
+                }
+            });
+            pump();
+        }
+    }
+
+    /**
+     * @return true if the device accepted binary frames
+     */
+    public synchronized boolean isBinaryProtocol() {
+        return binary;
+    }
+
+    /**
+     * Set how many commands may await their acknowledgement at once; further commands
+     * queue and go out in order as acknowledgements free the window
+     * @param maxInFlight Window size (at least 1)
+     */
+    public synchronized void setMaxInFlight(int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("In-flight window must be at least 1");
+        }
+        if (maxInFlight > inFlight.length) {
+            Pending[] grown = new Pending[maxInFlight];
+            System.arraycopy(inFlight, 0, grown, 0, inFlightCount);
+            inFlight = grown;
+        }
+        this.maxInFlight = maxInFlight;
+    }
+
+    public synchronized void setAckTimeout(long timeoutNs) {
+        this.ackTimeoutNs = timeoutNs;
+    }
+
+    public synchronized long getAckTimeout() {
+        return ackTimeoutNs;
+    }
+
+    /**
+     * Set the shortest time between two coalesced values of one parameter
+     * @param intervalNs Interval in nanoseconds (0 sends every value)
+     */
+    public synchronized void setCoalesceInterval(long intervalNs) {
+        if (intervalNs < 0) {
+            throw new IllegalArgumentException("Coalesce interval must not be negative");
+        }
+        this.coalesceIntervalNs = intervalNs;
+    }
+
+    /**
+     * Toggle a device on/off
+     * @param deviceType Type of device to toggle
+     * @param state true for on, false for off
+     * @return Handle completing with the device's response
+     */
+    public CommandHandle toggleDevice(DeviceType deviceType, boolean state) {
+        return submit(packToggle(deviceType, state), null);
+    }
+
+    /**
+     * Adjust device parameter (volume, brightness, etc.)
+     * @param deviceType Type of device to adjust
+     * @param parameter Parameter to adjust (VOLUME, BRIGHTNESS, etc.)
+     * @param value Value to set (0-100)
+     * @return Handle completing with the device's response
+     * @throws IllegalArgumentException if the parameter has no opcode
+     */
+    public CommandHandle adjustParameter(DeviceType deviceType, String parameter, int value) {
+        return submit(requireOpcode(packAdjustment(deviceType, parameter, value), parameter), null);
+    }
+
+    /**
+     * Control media playback
+     * @param action Action to perform (PLAY, PAUSE, NEXT, PREVIOUS, STOP)
+     * @return Handle completing with the device's response
+     * @throws IllegalArgumentException if the action has no opcode
+     */
+    public CommandHandle controlMedia(String action) {
+        return submit(requireOpcode(packMedia(action), action), null);
+    }
+
+    /**
+     * Set a continuously changing parameter, dropping intermediate values: within the
+     * coalesce interval after a value is sent, a new value only replaces the pending one
+     * @param deviceType Type of device to adjust
+     * @param parameter Parameter to adjust (VOLUME, BRIGHTNESS, etc.)
+     * @param value Value to set (0-100)
+     * @return true if the value was sent at once, false if it is pending until flushParameters
+     * @throws IllegalArgumentException if the parameter has no opcode
+     */
+    public boolean updateParameter(DeviceType deviceType, String parameter, int value) {
+        ParameterSlot slot;
+        synchronized (this) {
+            slot = slotFor(deviceType, parameter);
+            long now = clock.getAsLong();
+            if (slot.pending) {
+                // The pending value will never be sent
+                suppressedCount++;
+                slot.pending = false;
+            }
+            if (slot.sent && now - slot.lastSentNs < coalesceIntervalNs) {
+                slot.pending = true;
+                slot.pendingValue = value;
+                return false;
+            }
+            slot.sent = true;
+            slot.lastSentNs = now;
+        }
+        sendParameter(slot, value);
+        return true;
+    }
+
+    /**
+     * Send the pending parameter values whose coalesce interval has passed
+     * @return Nanoseconds until the next pending value is due, or -1 if none is pending
+     */
+    public long flushParameters() {
+        return flushParameters(false);
+    }
+
+    /**
+     * @param force Send every pending value now, e.g. when the user lets go of a SeekBar
+     * @see #flushParameters()
+     */
+    public long flushParameters(boolean force) {
+        while (true) {
+            ParameterSlot due = null;
+            int value = 0;
+            long nextDueNs = -1;
+            synchronized (this) {
+                long now = clock.getAsLong();
+                for (int i = 0; i < parameterSlots.size(); i++) {
+                    ParameterSlot slot = parameterSlots.get(i);
+                    if (!slot.pending) {
+                        continue;
+                    }
+                    long waitNs = slot.lastSentNs + coalesceIntervalNs - now;
+                    if (force || waitNs <= 0) {
+                        slot.pending = false;
+                        slot.lastSentNs = now;
+                        due = slot;
+                        value = slot.pendingValue;
+                        break;
+                    }
+                    nextDueNs = nextDueNs < 0 ? waitNs : Math.min(nextDueNs, waitNs);
+                }
+            }
+            if (due == null) {
+                return nextDueNs;
+            }
+            sendParameter(due, value);
+        }
+    }
+
+    /**
+     * @return Packed toggle command for sendCommand
+     */
+    public static long packToggle(DeviceType deviceType, boolean state) {
+        int action = state ? WireCodec.ACTION_ON : WireCodec.ACTION_OFF;
+        return WireCodec.pack(WireCodec.deviceOpcode(deviceType), action, 0);
+    }
+
+    /**
+     * @return Packed parameter command for sendCommand, or NO_COMMAND if the parameter has no opcode
+     */
+    public static long packAdjustment(DeviceType deviceType, String parameter, int value) {
+        int opcode = WireCodec.parameterOpcode(parameter);
+        return opcode < 0 ? NO_COMMAND : WireCodec.pack(WireCodec.deviceOpcode(deviceType), opcode, value);
+    }
+
+    /**
+     * @return Packed media command for sendCommand, or NO_COMMAND if the action has no opcode
+     */
+    public static long packMedia(String action) {
+        int opcode = WireCodec.mediaOpcode(action);
+        return opcode < 0 ? NO_COMMAND : WireCodec.pack(WireCodec.DEVICE_MEDIA, opcode, 0);
+    }
+
+    /**
+     * Send a packed command without allocating; the outcome is reported to the listener
+     * @param packed Command from packToggle, packAdjustment or packMedia
+     * @return Correlation id, or -1 if not connected
+     */
+    public int sendCommand(long packed) {
+        if (packed == NO_COMMAND) {
+            throw new IllegalArgumentException("No command to send");
+        }
+        if (!isConnected) {
+            if (listener != null) {
+                listener.onCommandFailure(NOT_CONNECTED);
+            }
+            return -1;
+        }
+        checkTimeouts();
+        int correlationId;
+        synchronized (this) {
+            Pending pending = obtain(packed, false);
+            correlationId = pending.correlationId;
+            queue.add(pending);
+        }
+        pump();
+        return correlationId;
+    }
+
+    /**
+     * Activate a scene: its commands go out as one batch, acknowledged as a whole
+     * @param scene Scene to apply
+     * @return Handle completing with the device's response to the whole batch
+     */
+    public CommandHandle activateScene(Scene scene) {
+        return submit(NO_COMMAND, scene);
+    }
+
+    /**
+     * Feed text received from the transport
+     * @see #onDataReceived(byte[], int, int)
+     */
+    public void onDataReceived(String data) {
+        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+        onDataReceived(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Feed data received from the transport; may hold partial lines or frames. Each
+     * complete line "#id OK [detail]" or "#id ERR message", or ACK/NAK frame, completes
+     * the command with that id.
+     */
+    public void onDataReceived(byte[] data, int offset, int length) {
+        synchronized (decoder) {
+            decoder.decode(data, offset, length, responseSink);
+        }
+        checkTimeouts();
+        pump();
+    }
+
+    /**
+     * Fail commands whose acknowledgement is overdue, freeing their window slots. With a
+     * transport, call this periodically so a silent device cannot hold the window.
+     */
+    public void checkTimeouts() {
+        long now = clock.getAsLong();
+        while (true) {
+            Pending expired = null;
+            synchronized (this) {
+                for (int i = 0; i < inFlightCount; i++) {
+                    if (now - inFlight[i].sentAtNs > ackTimeoutNs) {
+                        expired = removeInFlight(i);
+                        timeoutCount++;
+                        break;
+                    }
+                }
+            }
+            if (expired == null) {
+                break;
+            }
+            fail(expired, "No acknowledgement for #" + expired.correlationId);
+        }
+        pump();
+    }
+
+    public synchronized int getInFlightCount() {
+        return inFlightCount;
+    }
+
+    public synchronized int getQueuedCount() {
+        return queue.size();
+    }
+
+    /**
+     * @return Parameter values dropped because a newer value replaced them
+     */
+    public synchronized long getSuppressedCount() {
+        return suppressedCount;
+    }
+
+    public synchronized int getPendingParameterCount() {
+        int count = 0;
+        for (int i = 0; i < parameterSlots.size(); i++) {
+            if (parameterSlots.get(i).pending) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public synchronized long getAcknowledgedCount() {
+        return acknowledgedCount;
+    }
+
+    public synchronized long getTimeoutCount() {
+        return timeoutCount;
+    }
+
+    /**
+     * @return Responses whose correlation id matched no pending command (e.g. after a timeout)
+     */
+    public synchronized long getUnmatchedResponseCount() {
+        return unmatchedResponseCount;
+    }
+
+    /**
+     * @return Bytes written to the transport, text frames counted with their line terminator
+     */
+    public synchronized long getBytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     * @return Response frames dropped for a bad CRC or length
+     */
+    public long getCrcErrorCount() {
+        synchronized (decoder) {
+            return decoder.getCrcErrorCount();
+        }
+    }
+
+    /**
+     * @return Average time from sending a command to its acknowledgement (nanoseconds)
+     */
+    public synchronized long getAverageRoundTripNs() {
+        return acknowledgedCount > 0 ? totalRoundTripNs / acknowledgedCount : 0;
+    }
+
+    public synchronized long getSceneActivationCount() {
+        return sceneActivationCount;
+    }
+
+    /**
+     * @return Scenes rejected by the device, timed out or not sent
+     */
+    public synchronized long getSceneFailureCount() {
+        return sceneFailureCount;
+    }
+
+    /**
+     * @return Average time from activateScene to the batch acknowledgement (nanoseconds)
+     */
+    public synchronized long getAverageSceneLatencyNs() {
+        return sceneActivationCount > 0 ? totalSceneLatencyNs / sceneActivationCount : 0;
+    }
+
+    /**
+     * @return Latency of the last acknowledged scene (nanoseconds)
+     */
+    public synchronized long getLastSceneLatencyNs() {
+        return lastSceneLatencyNs;
+    }
+
+    private ParameterSlot slotFor(DeviceType deviceType, String parameter) {
+        for (int i = 0; i < parameterSlots.size(); i++) {
+            ParameterSlot slot = parameterSlots.get(i);
+            if (slot.deviceType == deviceType && slot.parameter.equals(parameter)) {
+                return slot;
+            }
+        }
+        ParameterSlot slot = new ParameterSlot(deviceType, parameter);
+        parameterSlots.add(slot);
+        return slot;
+    }
+
+    private void sendParameter(ParameterSlot slot, int value) {
+        sendCommand(slot.packed | (value & 0xFFFFFFFFL));
+    }
+
+    private static long requireOpcode(long packed, String name) {
+        if (packed == NO_COMMAND) {
+            throw new IllegalArgumentException("No opcode for " + name);
+        }
+        return packed;
+    }
+
+    /**
+     * Queue a packed command or, with packed NO_COMMAND, a scene, completing a handle
+     */
+    private CommandHandle submit(long packed, Scene scene) {
+        Pending pending;
+        synchronized (this) {
+            pending = obtain(packed, true);
+            pending.scene = scene;
+        }
+        CommandHandle handle = pending.handle;
+        if (!isConnected) {
+            fail(pending, NOT_CONNECTED);
+            return handle;
+        }
+        checkTimeouts();
+        synchronized (this) {
+            queue.add(pending);
+        }
+        pump();
+        return handle;
+    }
+
+    /**
+     * Send queued commands while the window has room
+     */
+    private void pump() {
+        while (true) {
+            Pending pending;
+            Transport link;
+            // Once in flight, the entry may be acknowledged and reused by the receiving thread
+            int correlationId;
+            long packed;
+            Scene scene;
+            boolean sent;
+            synchronized (sendLock) {
+                boolean binaryLink;
+                boolean internal;
+                synchronized (this) {
+                    if (queue.isEmpty() || inFlightCount >= maxInFlight) {
+                        return;
+                    }
+                    pending = queue.poll();
+                    link = transport;
+                    binaryLink = binary;
+                    pending.sentAtNs = clock.getAsLong();
+                    correlationId = pending.correlationId;
+                    packed = pending.packed;
+                    scene = pending.scene;
+                    internal = pending.internal;
+                    if (link != null) {
+                        inFlight[inFlightCount++] = pending;
+                    }
+                }
+                sent = link == null || write(link, binaryLink, correlationId, packed, scene);
+                if (sent && listener != null && !internal) {
+                    if (scene != null) {
+                        listener.onSceneSent(correlationId, scene);
+                    } else {
+                        listener.onCommandSent(correlationId, packed);
+                    }
+                }
+            }
+            if (link == null) {
+                // Simulated device: acknowledge at once
+                acknowledge(pending, OK);
+            } else if (!sent) {
+                boolean removed = false;
+                synchronized (this) {
+                    for (int i = 0; i < inFlightCount; i++) {
+                        if (inFlight[i] == pending && pending.correlationId == correlationId) {
+                            removeInFlight(i);
+                            removed = true;
+                            break;
+                        }
+                    }
+                }
+                if (removed) {
+                    fail(pending, "Failed to send " + toText(packed, scene));
+                }
+            }
+        }
+    }
+
+    /**
+     * Write one command as a binary frame if the device accepts them, otherwise as text;
+     * commands and scenes are encoded straight into the buffer when the link carries
+     * bytes (holding sendLock). The capability query always goes out as text.
+     */
+    private boolean write(Transport link, boolean binaryLink, int correlationId, long packed, Scene scene) {
+        boolean sent;
+        int length;
+        if (scene != null && (binaryLink || link.supportsBinary())) {
+            length = binaryLink
+                    ? encoder.encodeBatch(correlationId, scene.getBatch())
+                    : encoder.encodeTextBatch(correlationId, scene.getTextBatch());
+            sent = link.send(encoder.getBuffer(), 0, length);
+        } else if (packed != NO_COMMAND && (binaryLink || link.supportsBinary())) {
+            length = binaryLink
+                    ? encoder.encodeCommand(correlationId, packed)
+                    : encoder.encodeText(correlationId, packed);
+            sent = link.send(encoder.getBuffer(), 0, length);
+        } else {
+            String frame = "#" + correlationId + " " + toText(packed, scene);
+            length = frame.length() + 1;
+            sent = link.send(frame);
+        }
+        if (sent) {
+            synchronized (this) {
+                bytesSent += length;
+            }
+        }
+        return sent;
+    }
+
+    /**
+     * @return Text form of a queue entry: the command, the scene batch or the capability query
+     */
+    private static String toText(long packed, Scene scene) {
+        if (scene != null) {
+            return scene.getBatchCommand();
+        }
+        return packed == NO_COMMAND ? WireCodec.CAPABILITY_QUERY : WireCodec.toText(packed);
+    }
+
+    private void onResponse(String line) {
+        int space = line.indexOf(' ');
+        int id;
+        try {
+            id = line.startsWith("#") && space > 1 ? Integer.parseInt(line.substring(1, space)) : -1;
+        } catch (NumberFormatException e) {
+            id = -1;
+        }
+        String status = space > 0 ? line.substring(space + 1).trim() : "";
+        if (status.startsWith("ERR")) {
+            complete(id, null, status.length() > 3 ? status.substring(3).trim() : "Device error");
+        } else {
+            complete(id, status, null);
+        }
+    }
+
+    /**
+     * Complete the in-flight command with this id with a response or an error
+     */
+    private void complete(int correlationId, String response, String error) {
+        Pending pending = null;
+        synchronized (this) {
+            for (int i = 0; i < inFlightCount; i++) {
+                if (inFlight[i].correlationId == correlationId) {
+                    pending = removeInFlight(i);
+                    break;
+                }
+            }
+            if (pending == null) {
+                unmatchedResponseCount++;
+                return;
+            }
+        }
+        if (error != null) {
+            fail(pending, error);
+        } else {
+            acknowledge(pending, response);
+        }
+    }
+
+    /**
+     * Take a queue entry from the pool (guarded by this)
+     * @param packed Packed command, or NO_COMMAND for a scene or the capability query
+     * @param withHandle true to complete a CommandHandle as well
+     */
+    private Pending obtain(long packed, boolean withHandle) {
+        Pending pending = pool.poll();
+        if (pending == null) {
+            pending = new Pending();
+        }
+        pending.correlationId = nextCorrelationId;
+        nextCorrelationId = nextCorrelationId == Integer.MAX_VALUE ? 1 : nextCorrelationId + 1;
+        pending.packed = packed;
+        pending.scene = null;
+        pending.internal = false;
+        pending.submittedAtNs = clock.getAsLong();
+        pending.handle = withHandle ? new CommandHandle(pending.correlationId, packed) : null;
+        return pending;
+    }
+
+    private void recycle(Pending pending) {
+        pending.scene = null;
+        pending.handle = null;
+        synchronized (this) {
+            pool.push(pending);
+        }
+    }
+
+    private void acknowledge(Pending pending, String response) {
+        synchronized (this) {
+            long now = clock.getAsLong();
+            acknowledgedCount++;
+            totalRoundTripNs += now - pending.sentAtNs;
+            if (pending.scene != null) {
+                sceneActivationCount++;
+                lastSceneLatencyNs = now - pending.submittedAtNs;
+                totalSceneLatencyNs += lastSceneLatencyNs;
+            }
+        }
+        if (pending.handle != null) {
+            pending.handle.complete(response);
+        }
+        if (listener != null && !pending.internal) {
+            listener.onCommandSuccess(response);
+        }
+        recycle(pending);
+    }
+
+    private void fail(Pending pending, String error) {
+        if (pending.scene != null) {
+            synchronized (this) {
+                sceneFailureCount++;
+            }
+        }
+        if (pending.handle != null) {
+            pending.handle.completeExceptionally(new CommandException(error));
+        }
+        if (listener != null && !pending.internal) {
+            listener.onCommandFailure(error);
+        }
+        recycle(pending);
+    }
+
+    private void failAll(String error) {
+        Pending[] pending;
+        synchronized (this) {
+            pending = new Pending[inFlightCount + queue.size()];
+            System.arraycopy(inFlight, 0, pending, 0, inFlightCount);
+            int n = inFlightCount;
+            for (Pending queued : queue) {
+                pending[n++] = queued;
+            }
+            while (inFlightCount > 0) {
+                inFlight[--inFlightCount] = null;
+            }
+            queue.clear();
+        }
+        for (Pending entry : pending) {
+            fail(entry, error);
+        }
+    }
+
+    /**
+     * Remove an in-flight entry, keeping the others in send order
+     */
+    private Pending removeInFlight(int index) {
+        Pending pending = inFlight[index];
+        System.arraycopy(inFlight, index + 1, inFlight, index, inFlightCount - index - 1);
+        inFlight[--inFlightCount] = null;
+        return pending;
+    }
+
+    // Queue and window entry, pooled; handle is null for commands from sendCommand
+    private static final class Pending {
+        int correlationId;
+        long packed;
+        Scene scene;
+        CommandHandle handle;
+        boolean internal;
+        long submittedAtNs;
+        long sentAtNs;
+    }
+
+    // Coalescing state of one (device, parameter) pair
+    private static final class ParameterSlot {
+        final DeviceType deviceType;
+        final String parameter;
+        final long packed; // with value 0
+        boolean sent = false;
+        long lastSentNs;
+        boolean pending = false;
+        int pendingValue;
+
+        ParameterSlot(DeviceType deviceType, String parameter) {
+            this.deviceType = deviceType;
+            this.parameter = parameter;
+            this.packed = requireOpcode(packAdjustment(deviceType, parameter, 0), parameter);
+        }
+    }
+}
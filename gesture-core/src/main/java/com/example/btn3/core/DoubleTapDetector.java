@@ -0,0 +1,255 @@
+package com.example.btn3.core;
+
+/**
+ * Finds double taps in the raw accelerometer stream. Each sample is compared with a
+ * slow baseline (a 50 ms exponential average, so gravity and tilt drop out); a burst
+ * is a run of samples deviating by more than the quiet threshold. A burst counts as a
+ * tap if its peak passes the tap threshold and it ends within the maximum tap
+ * duration. Longer bursts are sustained motion: they are rejected and cancel a pending
+ * first tap. The first tap must also follow a quiet period, so the end of a shake or a
+ * footstep cannot start a pair. Two taps whose peaks lie within the tap interval are
+ * reported once the second burst ends.
+ *
+ * Tap times come from the sensor timestamps, refined between samples by fitting a
+ * parabola through the peak and its two neighbours, so the interval is resolved well
+ * below a millisecond. Per sample the detector costs a few multiply-adds and one
+ * divide, and it allocates nothing; feed it the unresampled stream, ideally at
+ * SENSOR_DELAY_FASTEST, as resampling or slow rates smear the impulses.
+ */
+public class DoubleTapDetector {
+
+    // Receives detected double taps
+    public interface DoubleTapListener {
+        void onDoubleTap(long timestampNs);
+    }
+
+    public static final float DEFAULT_TAP_THRESHOLD = 4.0f; // m/s^2
+    public static final float DEFAULT_QUIET_THRESHOLD = 1.0f; // m/s^2
+    public static final long DEFAULT_MAX_TAP_DURATION_NS = 50_000_000L; // 50 ms
+    public static final long DEFAULT_QUIET_BEFORE_NS = 150_000_000L; // 150 ms
+    public static final long DEFAULT_MIN_INTERVAL_NS = 80_000_000L; // 80 ms
+    public static final long DEFAULT_MAX_INTERVAL_NS = 500_000_000L; // 500 ms
+
+    private static final long BASELINE_TIME_CONSTANT_NS = 50_000_000L; // 50 ms
+    // Gaps longer than this restart the baseline
+    private static final long MAX_GAP_NS = 100_000_000L; // 100 ms
+    private static final long NO_SAMPLE = Long.MIN_VALUE;
+
+    private final DoubleTapListener listener;
+    private volatile float tapThresholdSquared = DEFAULT_TAP_THRESHOLD * DEFAULT_TAP_THRESHOLD;
+    private volatile float quietThresholdSquared = DEFAULT_QUIET_THRESHOLD * DEFAULT_QUIET_THRESHOLD;
+    private volatile long minIntervalNs = DEFAULT_MIN_INTERVAL_NS;
+    private volatile long maxIntervalNs = DEFAULT_MAX_INTERVAL_NS;
+    private final long maxTapDurationNs;
+    private final long quietBeforeNs;
+
+    // Baseline the deviation is measured from; frozen during a burst that may be a tap
+    private float baselineX;
+    private float baselineY;
+    private float baselineZ;
+    private long lastTimestamp = NO_SAMPLE;
+    private float previousEnergy;
+    private long quietSince = NO_SAMPLE;
+
+    // Current burst
+    private boolean inBurst = false;
+    private boolean sustained = false;
+    private long burstStart;
+    private float peakEnergy;
+    private long peakTime;
+    private float peakPrevious;
+    private float peakNext;
+    private long peakInterval;
+
+    private long firstTapTime = NO_SAMPLE;
+
+    // Statistics
+    private long tapCount = 0;
+    private long sustainedCount = 0;
+    private long doubleTapCount = 0;
+    private long lastIntervalNs = 0;
+
+    public DoubleTapDetector(DoubleTapListener listener) {
+        this(DEFAULT_MAX_TAP_DURATION_NS, DEFAULT_QUIET_BEFORE_NS, listener);
+    }
+
+    /**
+     * @param maxTapDurationNs Longest burst still counted as a tap
+     * @param quietBeforeNs Quiet time required before the first tap
+     */
+    public DoubleTapDetector(long maxTapDurationNs, long quietBeforeNs, DoubleTapListener listener) {
+        this.maxTapDurationNs = maxTapDurationNs;
+        this.quietBeforeNs = quietBeforeNs;
+        this.listener = listener;
+    }
+
+    /**
+     * Set the deviation from the baseline a tap must reach and the level below which
+     * the signal counts as quiet
+     * @param tapThreshold Tap peak threshold (m/s^2)
+     * @param quietThreshold Quiet threshold (m/s^2), below the tap threshold
+     */
+    public void setThresholds(float tapThreshold, float quietThreshold) {
+        if (quietThreshold <= 0.0f || quietThreshold >= tapThreshold) {
+            throw new IllegalArgumentException("Quiet threshold must lie between 0 and the tap threshold");
+        }
+        tapThresholdSquared = tapThreshold * tapThreshold;
+        quietThresholdSquared = quietThreshold * quietThreshold;
+    }
+
+    /**
+     * Set the allowed time between the two tap peaks
+     * @param minIntervalNs Shortest interval in nanoseconds
+     * @param maxIntervalNs Longest interval in nanoseconds
+     */
+    public void setTapInterval(long minIntervalNs, long maxIntervalNs) {
+        if (minIntervalNs <= 0 || maxIntervalNs < minIntervalNs) {
+            throw new IllegalArgumentException("Tap interval must satisfy 0 < min <= max");
+        }
+        this.minIntervalNs = minIntervalNs;
+        this.maxIntervalNs = maxIntervalNs;
+    }
+
+    /**
+     * Add one raw accelerometer sample
+     * @param timestampNs Sample time in nanoseconds (e.g. SensorEvent.timestamp)
+     */
+    public void processAccelerometer(float x, float y, float z, long timestampNs) {
+        long dt = timestampNs - lastTimestamp;
+        if (lastTimestamp == NO_SAMPLE || dt <= 0 || dt > MAX_GAP_NS) {
+            restart(x, y, z, timestampNs);
+            return;
+        }
+        lastTimestamp = timestampNs;
+
+        float dx = x - baselineX;
+        float dy = y - baselineY;
+        float dz = z - baselineZ;
+        float energy = dx * dx + dy * dy + dz * dz;
+        boolean active = energy > quietThresholdSquared;
+
+        if (!inBurst && active) {
+            inBurst = true;
+            sustained = false;
+            burstStart = timestampNs;
+            peakEnergy = 0f;
+        }
+        if (inBurst) {
+            if (!active) {
+                if (peakNext < 0f) {
+                    peakNext = energy;
+                }
+                endBurst(timestampNs);
+            } else if (!sustained && timestampNs - burstStart > maxTapDurationNs) {
+                sustained = true;
+                sustainedCount++;
+                firstTapTime = NO_SAMPLE;
+            } else if (!sustained) {
+                if (energy > peakEnergy) {
+                    peakEnergy = energy;
+                    peakTime = timestampNs;
+                    peakPrevious = previousEnergy;
+                    peakNext = -1f;
+                    peakInterval = dt;
+                } else if (peakNext < 0f) {
+                    peakNext = energy;
+                }
+            }
+        }
+        if (!inBurst || sustained) {
+            float alpha = (float) dt / (dt + BASELINE_TIME_CONSTANT_NS);
+            baselineX += alpha * dx;
+            baselineY += alpha * dy;
+            baselineZ += alpha * dz;
+        }
+        previousEnergy = energy;
+    }
+
+    public void reset() {
+        lastTimestamp = NO_SAMPLE;
+        inBurst = false;
+        firstTapTime = NO_SAMPLE;
+    }
+
+    /**
+     * @return Number of bursts accepted as single taps
+     */
+    public long getTapCount() {
+        return tapCount;
+    }
+
+    /**
+     * @return Number of bursts rejected as sustained motion
+     */
+    public long getSustainedCount() {
+        return sustainedCount;
+    }
+
+    public long getDoubleTapCount() {
+        return doubleTapCount;
+    }
+
+    /**
+     * @return Time between the peaks of the last reported double tap (nanoseconds)
+     */
+    public long getLastIntervalNs() {
+        return lastIntervalNs;
+    }
+
+    private void restart(float x, float y, float z, long timestampNs) {
+        baselineX = x;
+        baselineY = y;
+        baselineZ = z;
+        lastTimestamp = timestampNs;
+        previousEnergy = 0f;
+        quietSince = timestampNs;
+        inBurst = false;
+        firstTapTime = NO_SAMPLE;
+    }
+
+    private void endBurst(long timestampNs) {
+        inBurst = false;
+        boolean quietBefore = burstStart - quietSince >= quietBeforeNs;
+        quietSince = timestampNs;
+        if (sustained || peakEnergy < tapThresholdSquared) {
+            return;
+        }
+        tapCount++;
+        long tapTime = peakTime + interpolatePeak();
+
+        if (firstTapTime != NO_SAMPLE) {
+            long interval = tapTime - firstTapTime;
+            if (interval >= minIntervalNs && interval <= maxIntervalNs) {
+                firstTapTime = NO_SAMPLE;
+                lastIntervalNs = interval;
+                doubleTapCount++;
+                listener.onDoubleTap(tapTime);
+                return;
+            }
+            if (interval < minIntervalNs) {
+                // Too fast for a deliberate pair, e.g. the phone rattling
+                firstTapTime = NO_SAMPLE;
+                return;
+            }
+        }
+        firstTapTime = quietBefore ? tapTime : NO_SAMPLE;
+    }
+
+    /**
+     * @return Offset of the parabola through the peak and its neighbours from the peak sample
+     */
+    private long interpolatePeak() {
+        if (peakNext < 0f) {
+            return 0;
+        }
+        float before = (float) Math.sqrt(peakPrevious);
+        float peak = (float) Math.sqrt(peakEnergy);
+        float after = (float) Math.sqrt(peakNext);
+        float curvature = before - 2.0f * peak + after;
+        if (curvature >= 0f) {
+            return 0;
+        }
+        float offset = 0.5f * (before - after) / curvature;
+        return Math.round(offset * peakInterval);
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.btn3.core;
+
+import com.example.btn3.core.GestureDetector.GestureType;
+
+/**
+ * Tells waves from shakes by their shape rather than their peak magnitude. Each
+ * accelerometer axis is high-passed to remove gravity and feeds a
+ * SlidingWindowFeatures window; once the windows are full, every sample classifies
+ * the 15 window features (mean, variance, zero crossings, peaks and energy per axis)
+ * with a fixed-point LinearGestureClassifier. A class has to win for confirmSamples
+ * samples in a row before it is reported, and after a report the engine waits for as
+ * many NONE predictions in a row before it can fire again. Tilt and rotation stay
+ * with the stock threshold rules; without the magnitude rules in front of it to mask
+ * shakes, the tilt rule sees the accelerometer through the same 2 Hz low-pass as
+ * FilteredGestureEngine's tilt branch. All buffers are allocated up front.
+ *
+ * Sensitivity shifts the margin a gesture class needs over NONE: 1.0 is the
+ * classifier's own decision, every 0.1 above it asks for SENSITIVITY_LOGITS / 10
+ * more. Re-arm ratios only apply to the threshold gestures.
+ */
+public class FeatureGestureEngine implements GestureEngine {
+
+    public static final float DEFAULT_WINDOW_SECONDS = 0.64f;
+    public static final float HIGH_PASS_CUTOFF_HZ = 0.5f;
+    public static final float TILT_LOW_PASS_CUTOFF_HZ = 2.0f;
+    public static final float CROSSING_DEADBAND = 0.5f; // m/s^2
+    public static final float PEAK_THRESHOLD = 2.0f; // m/s^2
+    // Logits of margin per unit of sensitivity above or below 1.0
+    public static final float SENSITIVITY_LOGITS = 4.0f;
+
+    private static final int AXES = 3;
+    private static final GestureType[] CLASSES = {GestureType.NONE, GestureType.WAVE, GestureType.SHAKE};
+
+    /**
+     * @return The stock classifier over the 15 features, classes NONE, WAVE and SHAKE.
+     * Fitted offline by multinomial logistic regression on synthetic 200 Hz traces:
+     * 1-2.5 Hz side-to-side waves of 3-9 m/s^2, 4-8 Hz shakes of 10-25 m/s^2 along
+     * random axes, and rest with sensor noise, slow tilts and small movements.
+     */
+    public static LinearGestureClassifier defaultClassifier() {
+        // Per class: mean, variance, crossings, peaks, energy of X, then Y, then Z
+        float[][] weights = {
+                {-0.36065f, -0.056685f, -0.087550f, -0.33178f, -0.058581f,
+                        0.011884f, -0.021753f, -0.088957f, -0.013235f, -0.016365f,
+                        -0.44186f, -0.016258f, 0.067423f, -0.17684f, -0.015999f},
+                {0.14780f, 0.012447f, -0.078236f, 0.32202f, 0.015591f,
+                        0.0040946f, -0.025413f, -0.077941f, -0.0042518f, -0.028418f,
+                        0.29204f, -0.016435f, -0.12466f, -0.20705f, -0.016607f},
+                {0.21285f, 0.044238f, 0.16579f, 0.0097522f, 0.042990f,
+                        -0.015978f, 0.047166f, 0.16690f, 0.017487f, 0.044783f,
+                        0.14983f, 0.032693f, 0.057238f, 0.38389f, 0.032605f},
+        };
+        float[] bias = {3.8754f, 0.023253f, -3.8987f};
+        return new LinearGestureClassifier(CLASSES, weights, bias);
+    }
+
+    /**
+     * @param sampleRateHz Accelerometer rate the window and filters are sized for
+     */
+    public static GestureEngine.Factory factory(float sampleRateHz) {
+        return factory(sampleRateHz, defaultClassifier());
+    }
+
+    public static GestureEngine.Factory factory(float sampleRateHz, LinearGestureClassifier classifier) {
+        return sink -> new FeatureGestureEngine(sink, sampleRateHz, classifier);
+    }
+
+    private final GestureSink sink;
+    private final LinearGestureClassifier classifier;
+    private final ThresholdGestureEngine thresholds;
+    private final SignalFilter[] highPass = new SignalFilter[AXES];
+    private final SignalFilter[] lowPass = new SignalFilter[AXES];
+    private final SlidingWindowFeatures[] windows = new SlidingWindowFeatures[AXES];
+    private final int confirmSamples;
+    private final int noneClass;
+
+    // Preallocated classifier input and output
+    private final int[] features;
+    private final long[] scores;
+    private final long[] margin;
+
+    // Confirmation and re-arm state
+    private int candidate = -1;
+    private int streak = 0;
+    private int noneStreak = 0;
+    private boolean armed = true;
+
+    private long classifications = 0;
+
+    public FeatureGestureEngine(GestureSink sink, float sampleRateHz, LinearGestureClassifier classifier) {
+        if (classifier.getFeatureCount() != AXES * SlidingWindowFeatures.FEATURE_COUNT) {
+            throw new IllegalArgumentException("Classifier must take " + AXES * SlidingWindowFeatures.FEATURE_COUNT
+                    + " features");
+        }
+        this.sink = sink;
+        this.classifier = classifier;
+        int windowSize = Math.max(2, Math.round(DEFAULT_WINDOW_SECONDS * sampleRateHz));
+        this.confirmSamples = Math.max(1, windowSize / 4);
+        SignalFilter.Factory filter = OnePoleFilter.highPass(sampleRateHz, HIGH_PASS_CUTOFF_HZ);
+        SignalFilter.Factory tiltFilter = BiquadFilter.lowPass(sampleRateHz, TILT_LOW_PASS_CUTOFF_HZ,
+                BiquadFilter.BUTTERWORTH_Q);
+        for (int axis = 0; axis < AXES; axis++) {
+            highPass[axis] = filter.create();
+            lowPass[axis] = tiltFilter.create();
+            windows[axis] = new SlidingWindowFeatures(windowSize, CROSSING_DEADBAND, PEAK_THRESHOLD);
+        }
+        this.features = new int[classifier.getFeatureCount()];
+        this.scores = new long[classifier.getClassCount()];
+        this.margin = new long[classifier.getClassCount()];
+        int none = -1;
+        for (int c = 0; c < classifier.getClassCount(); c++) {
+            if (classifier.getGestureType(c) == GestureType.NONE) {
+                none = c;
+            }
+        }
+        if (none < 0) {
+            throw new IllegalArgumentException("Classifier needs a NONE class");
+        }
+        this.noneClass = none;
+
+        this.thresholds = new ThresholdGestureEngine(sink, ThresholdGestureEngine.axisRules());
+    }
+
+    @Override
+    public void processAccelerometer(float x, float y, float z, long timestampNs) {
+        thresholds.processAccelerometer(lowPass[0].process(x), lowPass[1].process(y), lowPass[2].process(z),
+                timestampNs);
+        windows[0].add(highPass[0].process(x));
+        windows[1].add(highPass[1].process(y));
+        windows[2].add(highPass[2].process(z));
+        if (!windows[0].isFull()) {
+            return;
+        }
+
+        for (int axis = 0; axis < AXES; axis++) {
+            windows[axis].copyFeatures(features, axis * SlidingWindowFeatures.FEATURE_COUNT);
+        }
+        classifier.classify(features, scores);
+        classifications++;
+        int predicted = noneClass;
+        long best = scores[noneClass];
+        for (int c = 0; c < scores.length; c++) {
+            if (c != noneClass && scores[c] - margin[c] > best) {
+                best = scores[c] - margin[c];
+                predicted = c;
+            }
+        }
+
+        if (predicted == noneClass) {
+            candidate = -1;
+            streak = 0;
+            if (!armed && ++noneStreak >= confirmSamples) {
+                armed = true;
+            }
+            return;
+        }
+        noneStreak = 0;
+        if (predicted != candidate) {
+            candidate = predicted;
+            streak = 0;
+        }
+        if (armed && ++streak >= confirmSamples) {
+            armed = false;
+            sink.onGesture(classifier.getGestureType(predicted), classifier.probability(scores, predicted),
+                    timestampNs);
+        }
+    }
+
+    @Override
+    public void processGyroscope(float x, float y, float z, long timestampNs) {
+        thresholds.processGyroscope(x, y, z, timestampNs);
+    }
+
+    @Override
+    public void setSensitivity(float waveSensitivity, float tiltSensitivity,
+                               float rotationSensitivity, float shakeSensitivity) {
+        thresholds.setSensitivity(waveSensitivity, tiltSensitivity, rotationSensitivity, shakeSensitivity);
+        for (int c = 0; c < margin.length; c++) {
+            GestureType gestureType = classifier.getGestureType(c);
+            float sensitivity = gestureType == GestureType.WAVE ? waveSensitivity
+                    : gestureType == GestureType.SHAKE ? shakeSensitivity : 1.0f;
+            margin[c] = LinearGestureClassifier.fromLogits((sensitivity - 1.0f) * SENSITIVITY_LOGITS);
+        }
+    }
+
+    @Override
+    public void setRearmRatio(GestureType gestureType, float ratio) {
+        thresholds.setRearmRatio(gestureType, ratio);
+    }
+
+    /**
+     * Onsets come from the tilt and rotation rules only; the classifier has no early decision
+     */
+    @Override
+    public void setOnsetSink(OnsetSink sink, float onsetRatio) {
+        thresholds.setOnsetSink(sink, onsetRatio);
+    }
+
+    @Override
+    public void reset() {
+        thresholds.reset();
+        for (int axis = 0; axis < AXES; axis++) {
+            highPass[axis].reset();
+            lowPass[axis].reset();
+            windows[axis].reset();
+        }
+        candidate = -1;
+        streak = 0;
+        noneStreak = 0;
+        armed = true;
+    }
+
+    /**
+     * @return Number of windows classified since construction
+     */
+    public long getClassificationCount() {
+        return classifications;
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.btn3.core;
+
+import java.util.List;
+
+/**
+ * Ordered filter stages applied to one channel
+ */
+public class FilterChain {
+
+    private final SignalFilter[] stages;
+
+    /**
+     * @param stages Factories for the stages, in processing order (empty = pass-through)
+     */
+    public FilterChain(List<SignalFilter.Factory> stages) {
+        this.stages = new SignalFilter[stages.size()];
+        for (int i = 0; i < this.stages.length; i++) {
+            this.stages[i] = stages.get(i).create();
+        }
+    }
+
+    public float process(float sample) {
+        float value = sample;
+        for (SignalFilter stage : stages) {
+            value = stage.process(value);
+        }
+        return value;
+    }
+
+    public void reset() {
+        for (SignalFilter stage : stages) {
+            stage.reset();
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.btn3.core;
+
+import com.example.btn3.core.GestureDetector.GestureType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Runs the threshold rules behind per-gesture filter chains. Each branch covers a
+ * group of gestures and has its own accelerometer and gyroscope chain (one per
+ * axis) plus a decimation factor. The filters see every sample; only every Nth
+ * filtered sample reaches the branch's rules, so slow gestures such as tilt can be
+ * evaluated at a fraction of the sensor rate.
+ */
+public class FilteredGestureEngine implements GestureEngine {
+
+    /**
+     * Filtering for one group of gestures
+     */
+    public static final class BranchConfig {
+        final Set<GestureType> gestures;
+        final List<SignalFilter.Factory> accelerometerFilters;
+        final List<SignalFilter.Factory> gyroscopeFilters;
+        final int decimation;
+
+        /**
+         * @param gestures Gestures whose rules run in this branch. A rule covers both directions of its
+         *                 axis, so listing either TILT_FORWARD or TILT_BACKWARD brings in both.
+         * @param accelerometerFilters Stages applied to each accelerometer axis
+         * @param gyroscopeFilters Stages applied to each gyroscope axis
+         * @param decimation Forward one filtered sample out of this many (1 = full rate)
+         */
+        public BranchConfig(Set<GestureType> gestures, List<SignalFilter.Factory> accelerometerFilters,
+                            List<SignalFilter.Factory> gyroscopeFilters, int decimation) {
+            if (decimation < 1) {
+                throw new IllegalArgumentException("Decimation must be at least 1");
+            }
+            this.gestures = gestures;
+            this.accelerometerFilters = accelerometerFilters;
+            this.gyroscopeFilters = gyroscopeFilters;
+            this.decimation = decimation;
+        }
+    }
+
+    /**
+     * Stock configuration: light smoothing for wave and shake at full rate, a 2 Hz
+     * low-pass for tilt at a fifth of the rate, and an 8 Hz low-pass for rotation at
+     * half the rate.
+     * @param sampleRateHz Sensor rate the filters are designed for
+     */
+    public static List<BranchConfig> defaultConfig(float sampleRateHz) {
+        List<BranchConfig> config = new ArrayList<>();
+        config.add(new BranchConfig(EnumSet.of(GestureType.SHAKE, GestureType.WAVE),
+                Collections.singletonList(MovingAverageFilter.of(3)),
+                Collections.emptyList(), 1));
+        config.add(new BranchConfig(EnumSet.of(GestureType.TILT_FORWARD, GestureType.TILT_BACKWARD),
+                Collections.singletonList(BiquadFilter.lowPass(sampleRateHz, 2.0f, BiquadFilter.BUTTERWORTH_Q)),
+                Collections.emptyList(), 5));
+        config.add(new BranchConfig(EnumSet.of(GestureType.ROTATE_LEFT, GestureType.ROTATE_RIGHT),
+                Collections.emptyList(),
+                Collections.singletonList(OnePoleFilter.lowPass(sampleRateHz, 8.0f)), 2));
+        return config;
+    }
+
+    public static GestureEngine.Factory factory(List<BranchConfig> config) {
+        return sink -> new FilteredGestureEngine(sink, config);
+    }
+
+    private final Branch[] branches;
+
+    // Samples in versus samples that reached a rule table, for the effective rate
+    private long inputSamples = 0;
+    private long forwardedSamples = 0;
+
+    /**
+     * @throws IllegalArgumentException If two branches claim the same rule, which would report its gestures twice
+     */
+    public FilteredGestureEngine(GestureSink sink, List<BranchConfig> config) {
+        List<ThresholdGestureEngine.Rule> allRules = ThresholdGestureEngine.defaultRules();
+        Set<ThresholdGestureEngine.Rule> claimed = new HashSet<>();
+        branches = new Branch[config.size()];
+        for (int i = 0; i < branches.length; i++) {
+            BranchConfig branchConfig = config.get(i);
+            List<ThresholdGestureEngine.Rule> rules = new ArrayList<>();
+            for (ThresholdGestureEngine.Rule rule : allRules) {
+                if (branchConfig.gestures.contains(rule.positiveType)
+                        || (rule.negativeType != null && branchConfig.gestures.contains(rule.negativeType))) {
+                    if (!claimed.add(rule)) {
+                        throw new IllegalArgumentException("Gesture " + rule.positiveType
+                                + " is listed in more than one branch");
+                    }
+                    rules.add(rule);
+                }
+            }
+            branches[i] = new Branch(branchConfig, new ThresholdGestureEngine(sink, rules), rules);
+        }
+    }
+
+    @Override
+    public void processAccelerometer(float x, float y, float z, long timestampNs) {
+        inputSamples++;
+        for (Branch branch : branches) {
+            if (!branch.usesAccelerometer) {
+                continue;
+            }
+            float fx = branch.accelerometer[0].process(x);
+            float fy = branch.accelerometer[1].process(y);
+            float fz = branch.accelerometer[2].process(z);
+            if (++branch.accelerometerPhase >= branch.decimation) {
+                branch.accelerometerPhase = 0;
+                forwardedSamples++;
+                branch.engine.processAccelerometer(fx, fy, fz, timestampNs);
+            }
+        }
+    }
+
+    @Override
+    public void processGyroscope(float x, float y, float z, long timestampNs) {
+        inputSamples++;
+        for (Branch branch : branches) {
+            if (!branch.usesGyroscope) {
+                continue;
+            }
+            float fx = branch.gyroscope[0].process(x);
+            float fy = branch.gyroscope[1].process(y);
+            float fz = branch.gyroscope[2].process(z);
+            if (++branch.gyroscopePhase >= branch.decimation) {
+                branch.gyroscopePhase = 0;
+                forwardedSamples++;
+                branch.engine.processGyroscope(fx, fy, fz, timestampNs);
+            }
+        }
+    }
+
+    @Override
+    public void setSensitivity(float waveSensitivity, float tiltSensitivity,
+                               float rotationSensitivity, float shakeSensitivity) {
+        for (Branch branch : branches) {
+            branch.engine.setSensitivity(waveSensitivity, tiltSensitivity, rotationSensitivity, shakeSensitivity);
+        }
+    }
+
+    @Override
+    public void setRearmRatio(GestureType gestureType, float ratio) {
+        for (Branch branch : branches) {
+            branch.engine.setRearmRatio(gestureType, ratio);
+        }
+    }
+
+    @Override
+    public void setOnsetSink(OnsetSink sink, float onsetRatio) {
+        for (Branch branch : branches) {
+            branch.engine.setOnsetSink(sink, onsetRatio);
+        }
+    }
+
+    @Override
+    public void reset() {
+        for (Branch branch : branches) {
+            branch.reset();
+        }
+    }
+
+    /**
+     * @return Samples received from the sensors
+     */
+    public long getInputSampleCount() {
+        return inputSamples;
+    }
+
+    /**
+     * @return Filtered samples handed to the rule tables after decimation (summed over branches)
+     */
+    public long getForwardedSampleCount() {
+        return forwardedSamples;
+    }
+
+    /**
+     * Filter and decimation state of one branch
+     */
+    private static final class Branch {
+        final ThresholdGestureEngine engine;
+        final FilterChain[] accelerometer = new FilterChain[3];
+        final FilterChain[] gyroscope = new FilterChain[3];
+        final int decimation;
+        final boolean usesAccelerometer;
+        final boolean usesGyroscope;
+        int accelerometerPhase = 0;
+        int gyroscopePhase = 0;
+
+        Branch(BranchConfig config, ThresholdGestureEngine engine, List<ThresholdGestureEngine.Rule> rules) {
+            this.engine = engine;
+            this.decimation = config.decimation;
+            for (int axis = 0; axis < 3; axis++) {
+                accelerometer[axis] = new FilterChain(config.accelerometerFilters);
+                gyroscope[axis] = new FilterChain(config.gyroscopeFilters);
+            }
+            boolean accelerometerRules = false;
+            boolean gyroscopeRules = false;
+            for (ThresholdGestureEngine.Rule rule : rules) {
+                if (rule.signal.ordinal() >= ThresholdGestureEngine.Signal.GYROSCOPE_X.ordinal()) {
+                    gyroscopeRules = true;
+                } else {
+                    accelerometerRules = true;
+                }
+            }
+            usesAccelerometer = accelerometerRules;
+            usesGyroscope = gyroscopeRules;
+        }
+
+        void reset() {
+            for (FilterChain chain : accelerometer) {
+                chain.reset();
+            }
+            for (FilterChain chain : gyroscope) {
+                chain.reset();
+            }
+            accelerometerPhase = 0;
+            gyroscopePhase = 0;
+            engine.reset();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.btn3.core;
+
+import com.example.btn3.core.GestureDetector.GestureType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * A sequence of gestures that must follow each other directly, first to last within
+ * a time window, e.g. "wave then rotate right within 1.5 s". Combos are plain data:
+ * a properties file maps combo.id to a spec such as WAVE,ROTATE_RIGHT;1500 (gesture
+ * names, then the window in milliseconds).
+ */
+public final class GestureCombo {
+
+    public static final String FILE_NAME = "gesture_combos.properties";
+    public static final String KEY_PREFIX = "combo.";
+    public static final int MAX_LENGTH = 8;
+
+    private final int id;
+    private final GestureType[] sequence;
+    private final long windowNs;
+
+    /**
+     * @param id Id reported with the COMBO gesture
+     * @param sequence Gestures in order (2..MAX_LENGTH, no NONE or COMBO)
+     * @param windowNs Longest time from the first gesture to the last
+     */
+    public GestureCombo(int id, List<GestureType> sequence, long windowNs) {
+        if (sequence.size() < 2 || sequence.size() > MAX_LENGTH) {
+            throw new IllegalArgumentException("A combo needs 2 to " + MAX_LENGTH + " gestures");
+        }
+        for (GestureType gestureType : sequence) {
+            if (gestureType == GestureType.NONE || gestureType == GestureType.COMBO) {
+                throw new IllegalArgumentException("A combo cannot contain " + gestureType);
+            }
+        }
+        if (windowNs <= 0) {
+            throw new IllegalArgumentException("Combo window must be positive");
+        }
+        this.id = id;
+        this.sequence = sequence.toArray(new GestureType[0]);
+        this.windowNs = windowNs;
+    }
+
+    /**
+     * Parse a spec such as WAVE,ROTATE_RIGHT;1500
+     */
+    public static GestureCombo parse(int id, String spec) {
+        int separator = spec.indexOf(';');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Missing window in combo " + id + ": " + spec);
+        }
+        List<GestureType> sequence = new ArrayList<>();
+        for (String name : spec.substring(0, separator).split(",")) {
+            sequence.add(GestureType.valueOf(name.trim()));
+        }
+        long windowMs = Long.parseLong(spec.substring(separator + 1).trim());
+        return new GestureCombo(id, sequence, windowMs * 1_000_000L);
+    }
+
+    /**
+     * Read every combo.id entry of a properties file, in ascending id order
+     */
+    public static List<GestureCombo> load(InputStream in) throws IOException {
+        Properties properties = new Properties();
+        properties.load(in);
+        List<GestureCombo> combos = new ArrayList<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (!key.startsWith(KEY_PREFIX)) {
+                continue;
+            }
+            try {
+                combos.add(parse(Integer.parseInt(key.substring(KEY_PREFIX.length())), properties.getProperty(key)));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid combo " + key + ": " + e.getMessage(), e);
+            }
+        }
+        combos.sort((a, b) -> Integer.compare(a.id, b.id));
+        return combos;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getLength() {
+        return sequence.length;
+    }
+
+    public GestureType getGesture(int index) {
+        return sequence[index];
+    }
+
+    public long getWindowNs() {
+        return windowNs;
+    }
+
+    boolean hasSameSequence(GestureCombo other) {
+        return Arrays.equals(sequence, other.sequence);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (GestureType gestureType : sequence) {
+            if (builder.length() > 0) {
+                builder.append(',');
+            }
+            builder.append(gestureType.name());
+        }
+        return builder.append(';').append(windowNs / 1_000_000L).toString();
+    }
+}
@@ -0,0 +1,700 @@
+package com.example.btn3.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Class to detect and classify gestures based on sensor data. A GestureEngine
+ * classifies the samples; this class applies a refractory window per gesture type,
+ * adds template (CUSTOM) and combo (COMBO) matches and notifies the listener.
+ * Samples must all come from one thread; the setters may be called from any thread
+ * and take effect before its next sample.
+ */
+public class GestureDetector {
+
+    // Gesture types
+    public enum GestureType {
+        WAVE,
+        TILT_FORWARD,
+        TILT_BACKWARD,
+        ROTATE_LEFT,
+        ROTATE_RIGHT,
+        SHAKE,
+        DOUBLE_TAP,
+        CUSTOM,
+        COMBO,
+        NONE
+    }
+
+    // Interface for gesture detection callbacks
+    public interface GestureDetectionListener {
+        void onGestureDetected(GestureType gestureType, float intensity);
+
+        /**
+         * Called for every gesture; by default forwards to onGestureDetected(gestureType, intensity)
+         * @param templateId Id of the matched template for CUSTOM or of the combo for COMBO,
+         *                   NO_TEMPLATE otherwise
+         */
+        default void onGestureDetected(GestureType gestureType, float intensity, int templateId) {
+            onGestureDetected(gestureType, intensity);
+        }
+
+        /**
+         * Called at the onset of a gesture when early triggering is on; onGestureDetected
+         * for the same type or onProvisionalGestureCancelled follows
+         */
+        default void onProvisionalGesture(GestureType gestureType, long timestampNs) {
+        }
+
+        /**
+         * The provisional gesture turned out to be something else; drop anything prepared for it
+         */
+        default void onProvisionalGestureCancelled(GestureType gestureType, long timestampNs) {
+        }
+    }
+
+    // Template id reported with the built-in gestures
+    public static final int NO_TEMPLATE = -1;
+
+    // Default refractory windows (nanoseconds)
+    public static final long DEFAULT_REFRACTORY_PERIOD = 400_000_000L; // 400 ms
+    public static final long DEFAULT_SHAKE_REFRACTORY_PERIOD = 800_000_000L; // 800 ms
+    // Minimum time between any two gestures, e.g. the rotation a shake also produces
+    public static final long DEFAULT_MIN_GESTURE_GAP = 150_000_000L; // 150 ms
+    private static final long NO_GESTURE = Long.MIN_VALUE;
+
+    // Early triggering: onset halfway from the re-arm level to the threshold
+    public static final float DEFAULT_ONSET_RATIO = 0.5f;
+    public static final long DEFAULT_PROVISIONAL_TIMEOUT_NS = 300_000_000L; // 300 ms
+
+    // Resampling: gaps over this many periods count as dropouts, longer ones restart the grid
+    private static final long DROPOUT_PERIODS = 3;
+    private static final long RESYNC_GAP_NS = 200_000_000L; // 200 ms
+
+    private final GestureDetectionListener listener;
+    // Configuration changes waiting for the processing thread
+    private final ConcurrentLinkedQueue<Runnable> pendingChanges = new ConcurrentLinkedQueue<>();
+    private long lastGestureTime = NO_GESTURE; // nanoseconds
+    private GestureType lastGestureType = GestureType.NONE;
+
+    // Per-gesture refractory state, indexed by GestureType ordinal
+    private final long[] refractoryPeriod = new long[GestureType.values().length];
+    private final long[] lastTriggerTime = new long[GestureType.values().length];
+    private final float[] rearmRatio = new float[GestureType.values().length];
+    private long minGestureGap = DEFAULT_MIN_GESTURE_GAP;
+    private volatile GestureEngine engine;
+    private volatile SensorResampler resampler; // null = samples go straight to the engine
+    private final TemplateGestureRecognizer templateRecognizer;
+    private final DoubleTapDetector doubleTapDetector;
+    private final ComboMatcher comboMatcher;
+
+    // Gestures held back while they may still become part of a combo, oldest first
+    private boolean holdComboPrefixes = false;
+    private final GestureType[] heldType = new GestureType[GestureCombo.MAX_LENGTH + 1];
+    private final float[] heldIntensity = new float[GestureCombo.MAX_LENGTH + 1];
+    private final int[] heldTemplateId = new int[GestureCombo.MAX_LENGTH + 1];
+    private final long[] heldTime = new long[GestureCombo.MAX_LENGTH + 1];
+    private int heldCount = 0;
+
+    // Early triggering; provisional gestures are indexed by GestureType ordinal
+    private final GestureEngine.OnsetSink onsetSink = new GestureEngine.OnsetSink() {
+        @Override
+        public void onOnset(GestureType gestureType, long timestampNs) {
+            startProvisional(gestureType, timestampNs);
+        }
+
+        @Override
+        public void onOnsetAbandoned(GestureType gestureType, long timestampNs) {
+            cancelProvisional(gestureType, timestampNs);
+        }
+    };
+    private boolean earlyTrigger = false;
+    private float onsetRatio = DEFAULT_ONSET_RATIO;
+    private long provisionalTimeoutNs = DEFAULT_PROVISIONAL_TIMEOUT_NS;
+    private final long[] provisionalTime = new long[GestureType.values().length];
+    private int pendingProvisionalCount = 0;
+    private long provisionalCount = 0;
+    private long confirmedProvisionalCount = 0;
+    private long cancelledProvisionalCount = 0;
+    private long totalLeadTimeNs = 0;
+
+    // Sensitivity settings (1.0 = normal, lower = more sensitive), re-applied when the engine changes
+    private float waveSensitivity = 1.0f;
+    private float tiltSensitivity = 1.0f;
+    private float rotationSensitivity = 1.0f;
+    private float shakeSensitivity = 1.0f;
+
+    public GestureDetector(GestureDetectionListener listener) {
+        this.listener = listener;
+        for (GestureType gestureType : GestureType.values()) {
+            int index = gestureType.ordinal();
+            refractoryPeriod[index] = gestureType == GestureType.SHAKE
+                    ? DEFAULT_SHAKE_REFRACTORY_PERIOD : DEFAULT_REFRACTORY_PERIOD;
+            lastTriggerTime[index] = NO_GESTURE;
+            rearmRatio[index] = ThresholdGestureEngine.defaultRearmRatio(gestureType);
+            provisionalTime[index] = NO_GESTURE;
+        }
+        this.engine = new ThresholdGestureEngine(this::onEngineGesture);
+        this.templateRecognizer = new TemplateGestureRecognizer(this::onTemplateMatch);
+        this.doubleTapDetector = new DoubleTapDetector(this::onDoubleTap);
+        this.comboMatcher = new ComboMatcher(this::onCombo);
+    }
+
+    /**
+     * Replace the classification engine, e.g. with ThresholdGestureEngine.fused()
+     * @param factory Factory for the new engine
+     */
+    public void setEngine(GestureEngine.Factory factory) {
+        pendingChanges.add(() -> {
+            GestureEngine newEngine = factory.create(this::onEngineGesture);
+            newEngine.setSensitivity(waveSensitivity, tiltSensitivity, rotationSensitivity, shakeSensitivity);
+            for (GestureType gestureType : GestureType.values()) {
+                newEngine.setRearmRatio(gestureType, rearmRatio[gestureType.ordinal()]);
+            }
+            if (earlyTrigger) {
+                newEngine.setOnsetSink(onsetSink, onsetRatio);
+            }
+            engine = newEngine;
+            cancelAllProvisional(NO_GESTURE);
+        });
+    }
+
+    /**
+     * Report provisional gestures at motion onset so a command can be prepared before
+     * the gesture is confirmed
+     * @param enabled true to report onsets
+     * @param onsetRatio How far from the re-arm level to the threshold a signal must get
+     *                   to count as an onset (0..1, see DEFAULT_ONSET_RATIO)
+     */
+    public void setEarlyTrigger(boolean enabled, float onsetRatio) {
+        if (onsetRatio < 0.0f || onsetRatio > 1.0f) {
+            throw new IllegalArgumentException("Onset ratio must be between 0 and 1");
+        }
+        pendingChanges.add(() -> {
+            this.earlyTrigger = enabled;
+            this.onsetRatio = onsetRatio;
+            engine.setOnsetSink(enabled ? onsetSink : null, onsetRatio);
+            if (!enabled) {
+                cancelAllProvisional(NO_GESTURE);
+            }
+        });
+    }
+
+    /**
+     * Set how long a provisional gesture may wait for confirmation before it is cancelled
+     * @param timeoutNs Timeout in nanoseconds
+     */
+    public void setProvisionalTimeout(long timeoutNs) {
+        pendingChanges.add(() -> provisionalTimeoutNs = timeoutNs);
+    }
+
+    /**
+     * Set how long a gesture stays blocked after it fired; other gestures are not affected
+     * @param gestureType Gesture to configure
+     * @param periodNs Refractory window in nanoseconds
+     */
+    public void setRefractoryPeriod(GestureType gestureType, long periodNs) {
+        pendingChanges.add(() -> refractoryPeriod[gestureType.ordinal()] = periodNs);
+    }
+
+    public long getRefractoryPeriod(GestureType gestureType) {
+        return refractoryPeriod[gestureType.ordinal()];
+    }
+
+    /**
+     * Set the re-arm hysteresis: after firing, the gesture's signal must fall below this
+     * fraction of its trigger threshold before it can fire again. The two directions of
+     * an axis (e.g. TILT_FORWARD and TILT_BACKWARD) share one re-arm limit, which uses
+     * the larger of their two ratios.
+     * @param gestureType Gesture to configure
+     * @param ratio Re-arm threshold as a fraction of the trigger threshold (0..1)
+     */
+    public void setRearmRatio(GestureType gestureType, float ratio) {
+        if (ratio < 0.0f || ratio > 1.0f) {
+            throw new IllegalArgumentException("Re-arm ratio must be between 0 and 1");
+        }
+        pendingChanges.add(() -> {
+            rearmRatio[gestureType.ordinal()] = ratio;
+            engine.setRearmRatio(gestureType, ratio);
+        });
+    }
+
+    /**
+     * Set the minimum time between any two gestures
+     * @param gapNs Gap in nanoseconds (0 = gestures of different types never block each other)
+     */
+    public void setMinimumGestureGap(long gapNs) {
+        pendingChanges.add(() -> minGestureGap = gapNs);
+    }
+
+    /**
+     * Resample both sensors onto a fixed-rate grid before they reach the engine, so
+     * rate-dependent stages such as filters see uniform, synchronized frames
+     * @param periodNs Grid period in nanoseconds, or 0 to pass samples through unchanged
+     */
+    public void setResamplingPeriod(long periodNs) {
+        pendingChanges.add(() -> resampler = periodNs > 0
+                ? new SensorResampler(periodNs, periodNs * DROPOUT_PERIODS, RESYNC_GAP_NS, this::onFrame)
+                : null);
+    }
+
+    /**
+     * @return The active resampler (for its dropout statistics), or null if disabled
+     */
+    public SensorResampler getResampler() {
+        return resampler;
+    }
+
+    /**
+     * @return The recognizer for user-recorded gestures, to record and manage templates
+     */
+    public TemplateGestureRecognizer getTemplateRecognizer() {
+        return templateRecognizer;
+    }
+
+    /**
+     * @return The impulse detector behind DOUBLE_TAP, to configure its thresholds and interval
+     */
+    public DoubleTapDetector getDoubleTapDetector() {
+        return doubleTapDetector;
+    }
+
+    /**
+     * Replace the combos reported as COMBO gestures. A combo is reported right after its
+     * last gesture, without a refractory check, since it adds no motion of its own.
+     * @param combos Combos with distinct ids and sequences (empty to report none)
+     */
+    public void setCombos(List<GestureCombo> combos) {
+        List<GestureCombo> copy = new ArrayList<>(combos);
+        pendingChanges.add(() -> comboMatcher.setCombos(copy));
+    }
+
+    public ComboMatcher getComboMatcher() {
+        return comboMatcher;
+    }
+
+    /**
+     * Hold back gestures that may start a combo, so a completed combo is reported only
+     * as COMBO; held gestures are reported late, once no combo can complete. Gestures
+     * that start no combo are reported at once either way. Without samples, held
+     * gestures only move on through advanceTime or releaseHeldGestures.
+     * @param enabled true to hold back combo prefixes, false to report every gesture at once
+     */
+    public void setComboHoldBack(boolean enabled) {
+        pendingChanges.add(() -> {
+            holdComboPrefixes = enabled;
+            if (!enabled) {
+                releaseHeld(heldCount);
+            }
+        });
+    }
+
+    /**
+     * Process one timestamped accelerometer sample
+     * @param x X-axis acceleration
+     * @param y Y-axis acceleration
+     * @param z Z-axis acceleration
+     * @param timestampNs Sample time in nanoseconds (e.g. SensorEvent.timestamp)
+     */
+    public void processAccelerometerData(float x, float y, float z, long timestampNs) {
+        applyPendingChanges();
+        accelerometerSample(x, y, z, timestampNs);
+    }
+
+    private void accelerometerSample(float x, float y, float z, long timestampNs) {
+        if (pendingProvisionalCount > 0) {
+            expireProvisional(timestampNs);
+        }
+        if (heldCount > 0) {
+            expireHeld(timestampNs);
+        }
+        // Taps are found before resampling, which would smear the impulses
+        doubleTapDetector.processAccelerometer(x, y, z, timestampNs);
+        SensorResampler currentResampler = resampler;
+        if (currentResampler != null) {
+            currentResampler.addAccelerometer(x, y, z, timestampNs);
+        } else {
+            engine.processAccelerometer(x, y, z, timestampNs);
+            templateRecognizer.processAccelerometer(x, y, z, timestampNs);
+        }
+    }
+
+    /**
+     * Process one timestamped gyroscope sample
+     * @param x X-axis rotation
+     * @param y Y-axis rotation
+     * @param z Z-axis rotation
+     * @param timestampNs Sample time in nanoseconds (e.g. SensorEvent.timestamp)
+     */
+    public void processGyroscopeData(float x, float y, float z, long timestampNs) {
+        applyPendingChanges();
+        gyroscopeSample(x, y, z, timestampNs);
+    }
+
+    private void gyroscopeSample(float x, float y, float z, long timestampNs) {
+        SensorResampler currentResampler = resampler;
+        if (currentResampler != null) {
+            currentResampler.addGyroscope(x, y, z, timestampNs);
+        } else {
+            engine.processGyroscope(x, y, z, timestampNs);
+        }
+    }
+
+    /**
+     * Process a batch of accelerometer samples, e.g. one hardware FIFO flush.
+     * Equivalent to calling processAccelerometerData for each sample in order.
+     * @param xyz Packed samples (x0, y0, z0, x1, y1, z1, ...)
+     * @param timestampsNs Sample times in nanoseconds
+     * @param count Number of samples to process
+     */
+    public void processAccelerometerBatch(float[] xyz, long[] timestampsNs, int count) {
+        processAccelerometerBatch(xyz, timestampsNs, 0, count);
+    }
+
+    /**
+     * Process a batch of accelerometer samples starting at the given sample index
+     * @param xyz Packed samples (x0, y0, z0, x1, y1, z1, ...)
+     * @param timestampsNs Sample times in nanoseconds
+     * @param offset Index of the first sample to process
+     * @param count Number of samples to process
+     */
+    public void processAccelerometerBatch(float[] xyz, long[] timestampsNs, int offset, int count) {
+        applyPendingChanges();
+        int end = offset + count;
+        for (int i = offset, base = offset * 3; i < end; i++, base += 3) {
+            accelerometerSample(xyz[base], xyz[base + 1], xyz[base + 2], timestampsNs[i]);
+        }
+    }
+
+    /**
+     * Process a batch of gyroscope samples, e.g. one hardware FIFO flush.
+     * Equivalent to calling processGyroscopeData for each sample in order.
+     * @param xyz Packed samples (x0, y0, z0, x1, y1, z1, ...)
+     * @param timestampsNs Sample times in nanoseconds
+     * @param count Number of samples to process
+     */
+    public void processGyroscopeBatch(float[] xyz, long[] timestampsNs, int count) {
+        processGyroscopeBatch(xyz, timestampsNs, 0, count);
+    }
+
+    /**
+     * Process a batch of gyroscope samples starting at the given sample index
+     * @param xyz Packed samples (x0, y0, z0, x1, y1, z1, ...)
+     * @param timestampsNs Sample times in nanoseconds
+     * @param offset Index of the first sample to process
+     * @param count Number of samples to process
+     */
+    public void processGyroscopeBatch(float[] xyz, long[] timestampsNs, int offset, int count) {
+        applyPendingChanges();
+        int end = offset + count;
+        for (int i = offset, base = offset * 3; i < end; i++, base += 3) {
+            gyroscopeSample(xyz[base], xyz[base + 1], xyz[base + 2], timestampsNs[i]);
+        }
+    }
+
+    /**
+     * Let time pass without a sample, e.g. from a timer while the sensors are slow or
+     * stopped: releases held gestures whose combo window has passed and cancels
+     * provisional gestures that timed out
+     * @param timestampNs Current time on the sample clock
+     */
+    public void advanceTime(long timestampNs) {
+        applyPendingChanges();
+        if (pendingProvisionalCount > 0) {
+            expireProvisional(timestampNs);
+        }
+        if (heldCount > 0) {
+            expireHeld(timestampNs);
+        }
+    }
+
+    /**
+     * Report every held gesture now and forget partial combos, e.g. when detection stops
+     */
+    public void releaseHeldGestures() {
+        applyPendingChanges();
+        releaseHeld(heldCount);
+        comboMatcher.reset();
+    }
+
+    /**
+     * Get the last detected gesture type
+     * @return The last detected gesture type
+     */
+    public GestureType getLastGestureType() {
+        return lastGestureType;
+    }
+
+    /**
+     * @return Sensor time of the last gesture found, before any combo hold-back; Long.MIN_VALUE if none
+     */
+    public long getLastGestureTimeNs() {
+        return lastGestureTime;
+    }
+
+    /**
+     * Reset the gesture detector
+     */
+    public void reset() {
+        lastGestureType = GestureType.NONE;
+        lastGestureTime = NO_GESTURE;
+        Arrays.fill(lastTriggerTime, NO_GESTURE);
+        cancelAllProvisional(NO_GESTURE);
+        heldCount = 0;
+        engine.reset();
+        templateRecognizer.reset();
+        doubleTapDetector.reset();
+        comboMatcher.reset();
+        SensorResampler currentResampler = resampler;
+        if (currentResampler != null) {
+            currentResampler.reset();
+        }
+    }
+
+    /**
+     * Process a double tap event at the given time
+     * @param timestampNs Event time in nanoseconds, on the sensor clock (SystemClock.elapsedRealtimeNanos)
+     */
+    public void processDoubleTap(long timestampNs) {
+        applyPendingChanges();
+        onDoubleTap(timestampNs);
+    }
+
+    private void onDoubleTap(long timestampNs) {
+        onEngineGesture(GestureType.DOUBLE_TAP, 1.0f, timestampNs);
+    }
+
+    /**
+     * Apply queued configuration changes (processing thread)
+     */
+    private void applyPendingChanges() {
+        if (pendingChanges.isEmpty()) {
+            return;
+        }
+        Runnable change;
+        while ((change = pendingChanges.poll()) != null) {
+            change.run();
+        }
+    }
+
+    /**
+     * Feed one resampled frame to the engine, gyroscope first so fusion integrates
+     * up to the frame time before the accelerometer correction
+     */
+    private void onFrame(long timestampNs, float ax, float ay, float az, float gx, float gy, float gz) {
+        GestureEngine currentEngine = engine;
+        currentEngine.processGyroscope(gx, gy, gz, timestampNs);
+        currentEngine.processAccelerometer(ax, ay, az, timestampNs);
+        templateRecognizer.processAccelerometer(ax, ay, az, timestampNs);
+    }
+
+    /**
+     * Record a gesture reported by the engine and notify the listener
+     */
+    private void onEngineGesture(GestureType gestureType, float intensity, long timestampNs) {
+        notifyGesture(gestureType, intensity, NO_TEMPLATE, timestampNs);
+    }
+
+    /**
+     * Report a matched template as a CUSTOM gesture
+     */
+    private void onTemplateMatch(int templateId, float intensity, long timestampNs) {
+        notifyGesture(GestureType.CUSTOM, intensity, templateId, timestampNs);
+    }
+
+    private void notifyGesture(GestureType gestureType, float intensity, int templateId, long timestampNs) {
+        // Check if this gesture is still refractory
+        if (isRefractory(gestureType, timestampNs)) {
+            return;
+        }
+
+        lastTriggerTime[gestureType.ordinal()] = timestampNs;
+        lastGestureTime = timestampNs;
+        lastGestureType = gestureType;
+        if (pendingProvisionalCount > 0) {
+            confirmProvisional(gestureType, timestampNs);
+        }
+        if (!holdComboPrefixes) {
+            if (listener != null) {
+                listener.onGestureDetected(gestureType, intensity, templateId);
+            }
+            comboMatcher.onGesture(gestureType, timestampNs);
+            return;
+        }
+
+        heldType[heldCount] = gestureType;
+        heldIntensity[heldCount] = intensity;
+        heldTemplateId[heldCount] = templateId;
+        heldTime[heldCount] = timestampNs;
+        heldCount++;
+        comboMatcher.onGesture(gestureType, timestampNs);
+        // Report what can no longer be part of a combo (nothing is left after a match)
+        releaseHeld(heldCount - comboMatcher.getPrefixLength());
+    }
+
+    /**
+     * Report a matched combo as a COMBO gesture, dropping its held gestures
+     */
+    private void onCombo(int comboId, long timestampNs) {
+        if (heldCount > 0) {
+            releaseHeld(heldCount - comboMatcher.getLastMatchLength());
+            heldCount = 0;
+        }
+        lastGestureType = GestureType.COMBO;
+        lastTriggerTime[GestureType.COMBO.ordinal()] = timestampNs;
+        if (listener != null) {
+            listener.onGestureDetected(GestureType.COMBO, 1.0f, comboId);
+        }
+    }
+
+    /**
+     * Report the oldest held gestures
+     * @param count How many to report (none if not positive)
+     */
+    private void releaseHeld(int count) {
+        if (count <= 0) {
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            if (listener != null) {
+                listener.onGestureDetected(heldType[i], heldIntensity[i], heldTemplateId[i]);
+            }
+        }
+        heldCount -= count;
+        System.arraycopy(heldType, count, heldType, 0, heldCount);
+        System.arraycopy(heldIntensity, count, heldIntensity, 0, heldCount);
+        System.arraycopy(heldTemplateId, count, heldTemplateId, 0, heldCount);
+        System.arraycopy(heldTime, count, heldTime, 0, heldCount);
+    }
+
+    /**
+     * Report held gestures older than the longest combo window; no combo can use them
+     */
+    private void expireHeld(long timestampNs) {
+        long windowNs = comboMatcher.getMaxWindowNs();
+        int expired = 0;
+        while (expired < heldCount && timestampNs - heldTime[expired] > windowNs) {
+            expired++;
+        }
+        releaseHeld(expired);
+    }
+
+    private void startProvisional(GestureType gestureType, long timestampNs) {
+        int index = gestureType.ordinal();
+        if (provisionalTime[index] != NO_GESTURE || isRefractory(gestureType, timestampNs)) {
+            return;
+        }
+        provisionalTime[index] = timestampNs;
+        pendingProvisionalCount++;
+        provisionalCount++;
+        if (listener != null) {
+            listener.onProvisionalGesture(gestureType, timestampNs);
+        }
+    }
+
+    /**
+     * Confirm the provisional gesture of this type, if any, and cancel all others
+     */
+    private void confirmProvisional(GestureType gestureType, long timestampNs) {
+        int index = gestureType.ordinal();
+        if (provisionalTime[index] != NO_GESTURE) {
+            totalLeadTimeNs += timestampNs - provisionalTime[index];
+            confirmedProvisionalCount++;
+            provisionalTime[index] = NO_GESTURE;
+            pendingProvisionalCount--;
+        }
+        cancelAllProvisional(timestampNs);
+    }
+
+    private void cancelProvisional(GestureType gestureType, long timestampNs) {
+        int index = gestureType.ordinal();
+        if (provisionalTime[index] == NO_GESTURE) {
+            return;
+        }
+        provisionalTime[index] = NO_GESTURE;
+        pendingProvisionalCount--;
+        cancelledProvisionalCount++;
+        if (listener != null) {
+            listener.onProvisionalGestureCancelled(gestureType, timestampNs);
+        }
+    }
+
+    private void cancelAllProvisional(long timestampNs) {
+        for (GestureType gestureType : GestureType.values()) {
+            if (pendingProvisionalCount == 0) {
+                return;
+            }
+            cancelProvisional(gestureType, timestampNs);
+        }
+    }
+
+    private void expireProvisional(long timestampNs) {
+        for (GestureType gestureType : GestureType.values()) {
+            long since = provisionalTime[gestureType.ordinal()];
+            if (since != NO_GESTURE && timestampNs - since > provisionalTimeoutNs) {
+                cancelProvisional(gestureType, timestampNs);
+            }
+        }
+    }
+
+    private boolean isRefractory(GestureType gestureType, long currentTime) {
+        if (lastGestureTime != NO_GESTURE && currentTime - lastGestureTime < minGestureGap) {
+            return true;
+        }
+        long lastTrigger = lastTriggerTime[gestureType.ordinal()];
+        return lastTrigger != NO_GESTURE
+                && currentTime - lastTrigger < refractoryPeriod[gestureType.ordinal()];
+    }
+
+    /**
+     * @return Provisional gestures reported since construction
+     */
+    public long getProvisionalCount() {
+        return provisionalCount;
+    }
+
+    public long getConfirmedProvisionalCount() {
+        return confirmedProvisionalCount;
+    }
+
+    public long getCancelledProvisionalCount() {
+        return cancelledProvisionalCount;
+    }
+
+    /**
+     * @return Fraction of resolved provisional gestures that were cancelled (0 if none resolved)
+     */
+    public float getProvisionalCancelRate() {
+        long resolved = confirmedProvisionalCount + cancelledProvisionalCount;
+        return resolved > 0 ? (float) cancelledProvisionalCount / resolved : 0.0f;
+    }
+
+    /**
+     * @return Average time from the onset of a confirmed provisional gesture to its
+     * confirmation (nanoseconds). This is how long the listener has to prepare, not
+     * the latency saved: the command still goes out on confirmation.
+     */
+    public long getAverageLeadTimeNs() {
+        return confirmedProvisionalCount > 0 ? totalLeadTimeNs / confirmedProvisionalCount : 0;
+    }
+
+    /**
+     * Set the sensitivity for gesture detection
+     * @param waveSensitivity Sensitivity for wave detection (lower value = more sensitive)
+     * @param tiltSensitivity Sensitivity for tilt detection (lower value = more sensitive)
+     * @param rotationSensitivity Sensitivity for rotation detection (lower value = more sensitive)
+     * @param shakeSensitivity Sensitivity for shake detection (lower value = more sensitive)
+     */
+    public void setSensitivity(float waveSensitivity, float tiltSensitivity,
+                              float rotationSensitivity, float shakeSensitivity) {
+        pendingChanges.add(() -> {
+            this.waveSensitivity = waveSensitivity;
+            this.tiltSensitivity = tiltSensitivity;
+            this.rotationSensitivity = rotationSensitivity;
+            this.shakeSensitivity = shakeSensitivity;
+            engine.setSensitivity(waveSensitivity, tiltSensitivity, rotationSensitivity, shakeSensitivity);
+        });
+    }
+}
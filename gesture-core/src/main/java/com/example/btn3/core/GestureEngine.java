@@ -0,0 +1,63 @@
+package com.example.btn3.core;
+
+/**
+ * Classifies timestamped sensor samples into gestures. GestureDetector owns the
+ * refractory periods and listener dispatch; an engine only decides which gesture a
+ * sample is.
+ */
+public interface GestureEngine {
+
+    // Receives the gestures an engine recognises
+    interface GestureSink {
+        void onGesture(GestureDetector.GestureType gestureType, float intensity, long timestampNs);
+    }
+
+    // Creates an engine bound to the detector's sink
+    interface Factory {
+        GestureEngine create(GestureSink sink);
+    }
+
+    // Receives provisional gestures from engines that can trigger early
+    interface OnsetSink {
+        /**
+         * The signal of a gesture is heading for its threshold
+         */
+        void onOnset(GestureDetector.GestureType gestureType, long timestampNs);
+
+        /**
+         * The signal fell back without reaching the threshold
+         */
+        void onOnsetAbandoned(GestureDetector.GestureType gestureType, long timestampNs);
+    }
+
+    void processAccelerometer(float x, float y, float z, long timestampNs);
+
+    void processGyroscope(float x, float y, float z, long timestampNs);
+
+    /**
+     * Set the threshold multipliers (1.0 = normal, lower = more sensitive)
+     */
+    void setSensitivity(float waveSensitivity, float tiltSensitivity,
+                        float rotationSensitivity, float shakeSensitivity);
+
+    /**
+     * Set the re-arm hysteresis for a gesture: once it fires, its signal has to fall
+     * below this fraction of the trigger threshold before it can fire again
+     * @param ratio Re-arm threshold as a fraction of the trigger threshold (0..1)
+     */
+    void setRearmRatio(GestureDetector.GestureType gestureType, float ratio);
+
+    /**
+     * Report onsets: a signal that passes onsetRatio of the way from its re-arm level
+     * to its threshold. Engines that cannot tell an onset early ignore this.
+     * @param sink Receiver of onsets, or null to stop reporting them
+     * @param onsetRatio Fraction of the way from re-arm level to threshold (0..1)
+     */
+    default void setOnsetSink(OnsetSink sink, float onsetRatio) {
+    }
+
+    /**
+     * Clear any state accumulated from previous samples
+     */
+    void reset();
+}
@@ -0,0 +1,108 @@
+package com.example.btn3.core;
+
+import com.example.btn3.core.GestureDetector.GestureType;
+
+/**
+ * Multinomial logistic regression in fixed point. Weights are quantized once to
+ * WEIGHT_FRACTION_BITS and features arrive with FEATURE_FRACTION_BITS (see
+ * SlidingWindowFeatures), so a class score is an integer dot product carrying the
+ * fraction bits of both. Weights get the finer format because features such as
+ * variance span a much larger range than the weights applied to them. The
+ * predicted class is the highest score; probabilities are only computed, in floating
+ * point, for a prediction that is actually reported.
+ */
+public final class LinearGestureClassifier {
+
+    public static final int WEIGHT_FRACTION_BITS = 16;
+    public static final int FEATURE_FRACTION_BITS = SlidingWindowFeatures.FRACTION_BITS;
+    private static final float WEIGHT_SCALE = 1 << WEIGHT_FRACTION_BITS;
+    // Scores carry the fraction bits of both weights and features
+    private static final double SCORE_SCALE = (double) (1L << (WEIGHT_FRACTION_BITS + FEATURE_FRACTION_BITS));
+
+    private final GestureType[] classes;
+    private final int featureCount;
+    private final int[] weights; // class-major
+    private final long[] bias;
+
+    /**
+     * @param classes Gesture each class predicts (NONE for no gesture)
+     * @param weights Per-class weights, on features in their natural units
+     * @param bias Per-class bias
+     */
+    public LinearGestureClassifier(GestureType[] classes, float[][] weights, float[] bias) {
+        if (weights.length != classes.length || bias.length != classes.length) {
+            throw new IllegalArgumentException("Need one weight row and bias per class");
+        }
+        this.classes = classes.clone();
+        this.featureCount = weights[0].length;
+        this.weights = new int[classes.length * featureCount];
+        this.bias = new long[classes.length];
+        for (int c = 0; c < classes.length; c++) {
+            if (weights[c].length != featureCount) {
+                throw new IllegalArgumentException("Weight rows differ in length");
+            }
+            for (int f = 0; f < featureCount; f++) {
+                this.weights[c * featureCount + f] = Math.round(weights[c][f] * WEIGHT_SCALE);
+            }
+            this.bias[c] = Math.round(bias[c] * SCORE_SCALE);
+        }
+    }
+
+    /**
+     * Score every class
+     * @param features Fixed-point features (FEATURE_FRACTION_BITS)
+     * @param scores Receives one fixed-point score per class
+     * @return Index of the highest-scoring class
+     */
+    public int classify(int[] features, long[] scores) {
+        int best = 0;
+        for (int c = 0, base = 0; c < classes.length; c++, base += featureCount) {
+            long score = bias[c];
+            for (int f = 0; f < featureCount; f++) {
+                score += (long) weights[base + f] * features[f];
+            }
+            scores[c] = score;
+            if (score > scores[best]) {
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return Softmax probability of one class given the scores from classify
+     */
+    public float probability(long[] scores, int index) {
+        double sum = 0.0;
+        for (int c = 0; c < classes.length; c++) {
+            sum += Math.exp((scores[c] - scores[index]) / SCORE_SCALE);
+        }
+        return (float) (1.0 / sum);
+    }
+
+    /**
+     * @return Score difference in logits for a fixed-point score difference
+     */
+    public static double toLogits(long scoreDifference) {
+        return scoreDifference / SCORE_SCALE;
+    }
+
+    /**
+     * @return Fixed-point score difference for a difference in logits
+     */
+    public static long fromLogits(double logits) {
+        return Math.round(logits * SCORE_SCALE);
+    }
+
+    public GestureType getGestureType(int index) {
+        return classes[index];
+    }
+
+    public int getClassCount() {
+        return classes.length;
+    }
+
+    public int getFeatureCount() {
+        return featureCount;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.btn3.core;
+
+/**
+ * Boxcar moving average over the last N samples, O(1) per sample
+ */
+public class MovingAverageFilter implements SignalFilter {
+
+    private final float[] window;
+    private int index = 0;
+    private int filled = 0;
+    private double sum = 0.0;
+
+    public MovingAverageFilter(int length) {
+        if (length < 1) {
+            throw new IllegalArgumentException("Window length must be at least 1");
+        }
+        this.window = new float[length];
+    }
+
+    public static Factory of(int length) {
+        return () -> new MovingAverageFilter(length);
+    }
+
+    @Override
+    public float process(float sample) {
+        if (filled == window.length) {
+            sum -= window[index];
+        } else {
+            filled++;
+        }
+        window[index] = sample;
+        sum += sample;
+        if (++index == window.length) {
+            index = 0;
+        }
+        return (float) (sum / filled);
+    }
+
+    @Override
+    public void reset() {
+        index = 0;
+        filled = 0;
+        sum = 0.0;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.btn3.core;
+
+/**
+ * First-order (RC) low-pass or high-pass filter
+ */
+public class OnePoleFilter implements SignalFilter {
+
+    private final boolean highPass;
+    private final float alpha;
+
+    // Filter state
+    private float previousInput = 0.0f;
+    private float previousOutput = 0.0f;
+    private boolean primed = false;
+
+    private OnePoleFilter(boolean highPass, float alpha) {
+        this.highPass = highPass;
+        this.alpha = alpha;
+    }
+
+    public static Factory lowPass(float sampleRateHz, float cutoffHz) {
+        float dt = 1.0f / sampleRateHz;
+        float rc = (float) (1.0 / (2.0 * Math.PI * cutoffHz));
+        float alpha = dt / (rc + dt);
+        return () -> new OnePoleFilter(false, alpha);
+    }
+
+    public static Factory highPass(float sampleRateHz, float cutoffHz) {
+        float dt = 1.0f / sampleRateHz;
+        float rc = (float) (1.0 / (2.0 * Math.PI * cutoffHz));
+        float alpha = rc / (rc + dt);
+        return () -> new OnePoleFilter(true, alpha);
+    }
+
+    @Override
+    public float process(float sample) {
+        if (!primed) {
+            // Start from steady state so the first samples don't produce a step response
+            primed = true;
+            previousInput = sample;
+            previousOutput = highPass ? 0.0f : sample;
+            return previousOutput;
+        }
+        float out;
+        if (highPass) {
+            out = alpha * (previousOutput + sample - previousInput);
+        } else {
+            out = previousOutput + alpha * (sample - previousOutput);
+        }
+        previousInput = sample;
+        previousOutput = out;
+        return out;
+    }
+
+    @Override
+    public void reset() {
+        primed = false;
+        previousInput = 0.0f;
+        previousOutput = 0.0f;
+    }
+}
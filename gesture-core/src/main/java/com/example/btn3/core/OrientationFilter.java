@@ -0,0 +1,232 @@
+package com.example.btn3.core;
+
+/**
+ * Allocation-free IMU fusion (Madgwick gradient-descent filter). Gyroscope samples
+ * integrate the orientation quaternion and the latest accelerometer sample pulls it
+ * back towards gravity. From the quaternion it derives the gravity vector in the
+ * sensor frame and the gravity-free linear acceleration.
+ */
+public class OrientationFilter {
+
+    public static final float GRAVITY = 9.80665f; // m/s^2
+    public static final float DEFAULT_BETA = 0.1f;
+
+    // Gaps longer than this are not integrated (sensor paused, app in background, ...)
+    private static final float MAX_GYRO_DT = 0.1f; // seconds
+    private static final long NO_SAMPLE = Long.MIN_VALUE;
+
+    private final float beta;
+
+    // Orientation quaternion (w, x, y, z)
+    private float q0 = 1.0f;
+    private float q1 = 0.0f;
+    private float q2 = 0.0f;
+    private float q3 = 0.0f;
+
+    // Latest accelerometer sample (m/s^2)
+    private float ax;
+    private float ay;
+    private float az;
+    private boolean hasAccelerometer = false;
+    private long lastGyroscopeTime = NO_SAMPLE;
+
+    // Derived outputs, refreshed on every sample
+    private float gravityX = 0.0f;
+    private float gravityY = 0.0f;
+    private float gravityZ = GRAVITY;
+    private float linearX;
+    private float linearY;
+    private float linearZ;
+
+    public OrientationFilter() {
+        this(DEFAULT_BETA);
+    }
+
+    /**
+     * @param beta Accelerometer correction gain (higher = trusts the accelerometer more)
+     */
+    public OrientationFilter(float beta) {
+        this.beta = beta;
+    }
+
+    /**
+     * Feed one accelerometer sample
+     * @param x X-axis acceleration (m/s^2)
+     * @param y Y-axis acceleration (m/s^2)
+     * @param z Z-axis acceleration (m/s^2)
+     * @param timestampNs Sample time in nanoseconds
+     */
+    public void updateAccelerometer(float x, float y, float z, long timestampNs) {
+        ax = x;
+        ay = y;
+        az = z;
+        if (!hasAccelerometer) {
+            hasAccelerometer = true;
+            alignToGravity(x, y, z);
+        }
+        updateOutputs();
+    }
+
+    /**
+     * Feed one gyroscope sample and integrate the orientation
+     * @param x X-axis rotation rate (rad/s)
+     * @param y Y-axis rotation rate (rad/s)
+     * @param z Z-axis rotation rate (rad/s)
+     * @param timestampNs Sample time in nanoseconds
+     */
+    public void updateGyroscope(float x, float y, float z, long timestampNs) {
+        long previous = lastGyroscopeTime;
+        lastGyroscopeTime = timestampNs;
+        if (previous == NO_SAMPLE) {
+            return;
+        }
+        float dt = (timestampNs - previous) * 1e-9f;
+        if (dt <= 0.0f || dt > MAX_GYRO_DT) {
+            return;
+        }
+
+        // Rate of change of the quaternion from the gyroscope
+        float qDot0 = 0.5f * (-q1 * x - q2 * y - q3 * z);
+        float qDot1 = 0.5f * (q0 * x + q2 * z - q3 * y);
+        float qDot2 = 0.5f * (q0 * y - q1 * z + q3 * x);
+        float qDot3 = 0.5f * (q0 * z + q1 * y - q2 * x);
+
+        float normSquared = ax * ax + ay * ay + az * az;
+        if (hasAccelerometer && normSquared > 0.0f) {
+            float recipNorm = invSqrt(normSquared);
+            float nx = ax * recipNorm;
+            float ny = ay * recipNorm;
+            float nz = az * recipNorm;
+
+            // Gradient descent step towards the measured gravity direction
+            float _2q0 = 2.0f * q0;
+            float _2q1 = 2.0f * q1;
+            float _2q2 = 2.0f * q2;
+            float _2q3 = 2.0f * q3;
+            float _4q0 = 4.0f * q0;
+            float _4q1 = 4.0f * q1;
+            float _4q2 = 4.0f * q2;
+            float _8q1 = 8.0f * q1;
+            float _8q2 = 8.0f * q2;
+            float q0q0 = q0 * q0;
+            float q1q1 = q1 * q1;
+            float q2q2 = q2 * q2;
+            float q3q3 = q3 * q3;
+
+            float s0 = _4q0 * q2q2 + _2q2 * nx + _4q0 * q1q1 - _2q1 * ny;
+            float s1 = _4q1 * q3q3 - _2q3 * nx + 4.0f * q0q0 * q1 - _2q0 * ny - _4q1
+                    + _8q1 * q1q1 + _8q1 * q2q2 + _4q1 * nz;
+            float s2 = 4.0f * q0q0 * q2 + _2q0 * nx + _4q2 * q3q3 - _2q3 * ny - _4q2
+                    + _8q2 * q1q1 + _8q2 * q2q2 + _4q2 * nz;
+            float s3 = 4.0f * q1q1 * q3 - _2q1 * nx + 4.0f * q2q2 * q3 - _2q2 * ny;
+            float stepNormSquared = s0 * s0 + s1 * s1 + s2 * s2 + s3 * s3;
+            if (stepNormSquared > 0.0f) {
+                float recipStep = invSqrt(stepNormSquared);
+                qDot0 -= beta * s0 * recipStep;
+                qDot1 -= beta * s1 * recipStep;
+                qDot2 -= beta * s2 * recipStep;
+                qDot3 -= beta * s3 * recipStep;
+            }
+        }
+
+        q0 += qDot0 * dt;
+        q1 += qDot1 * dt;
+        q2 += qDot2 * dt;
+        q3 += qDot3 * dt;
+        normalizeQuaternion();
+        updateOutputs();
+    }
+
+    /**
+     * Forget the current orientation; the next accelerometer sample re-aligns it
+     */
+    public void reset() {
+        q0 = 1.0f;
+        q1 = 0.0f;
+        q2 = 0.0f;
+        q3 = 0.0f;
+        hasAccelerometer = false;
+        lastGyroscopeTime = NO_SAMPLE;
+        gravityX = 0.0f;
+        gravityY = 0.0f;
+        gravityZ = GRAVITY;
+        linearX = 0.0f;
+        linearY = 0.0f;
+        linearZ = 0.0f;
+    }
+
+    /**
+     * Copy the orientation quaternion (w, x, y, z) into out
+     */
+    public void getQuaternion(float[] out) {
+        out[0] = q0;
+        out[1] = q1;
+        out[2] = q2;
+        out[3] = q3;
+    }
+
+    // Gravity in the sensor frame (m/s^2)
+    public float getGravityX() {
+        return gravityX;
+    }
+
+    public float getGravityY() {
+        return gravityY;
+    }
+
+    public float getGravityZ() {
+        return gravityZ;
+    }
+
+    // Linear acceleration with gravity removed (m/s^2)
+    public float getLinearAccelerationX() {
+        return linearX;
+    }
+
+    public float getLinearAccelerationY() {
+        return linearY;
+    }
+
+    public float getLinearAccelerationZ() {
+        return linearZ;
+    }
+
+    private void updateOutputs() {
+        // Gravity direction is the earth Z axis expressed in the sensor frame
+        gravityX = GRAVITY * 2.0f * (q1 * q3 - q0 * q2);
+        gravityY = GRAVITY * 2.0f * (q0 * q1 + q2 * q3);
+        gravityZ = GRAVITY * (q0 * q0 - q1 * q1 - q2 * q2 + q3 * q3);
+        linearX = ax - gravityX;
+        linearY = ay - gravityY;
+        linearZ = az - gravityZ;
+    }
+
+    /**
+     * Start from the attitude the first accelerometer sample implies (zero yaw)
+     */
+    private void alignToGravity(float x, float y, float z) {
+        double roll = Math.atan2(y, z);
+        double pitch = Math.atan2(-x, Math.sqrt(y * y + z * z));
+        double cr = Math.cos(roll * 0.5);
+        double sr = Math.sin(roll * 0.5);
+        double cp = Math.cos(pitch * 0.5);
+        double sp = Math.sin(pitch * 0.5);
+        q0 = (float) (cr * cp);
+        q1 = (float) (sr * cp);
+        q2 = (float) (cr * sp);
+        q3 = (float) (-sr * sp);
+        normalizeQuaternion();
+    }
+
+    private void normalizeQuaternion() {
+        float recipNorm = invSqrt(q0 * q0 + q1 * q1 + q2 * q2 + q3 * q3);
+        q0 *= recipNorm;
+        q1 *= recipNorm;
+        q2 *= recipNorm;
+        q3 *= recipNorm;
+    }
+
+    private static float invSqrt(float value) {
+        return (float) (1.0 / Math.sqrt(value));
+    }
+}
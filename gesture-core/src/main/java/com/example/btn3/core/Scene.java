@@ -0,0 +1,134 @@
+package com.example.btn3.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * A named set of device commands applied together, e.g. "movie": lights off, fan on,
+ * TV on, volume 30. Scenes are plain data: a properties file maps scene.name to a
+ * spec such as LIGHT:OFF,FAN:ON,TV:ON,SPEAKER:VOLUME:30 (device commands as sent
+ * by DeviceController). A scene is compiled once, when it is created, into the body
+ * of a binary batch frame and of a text batch line, so activating it only adds the
+ * correlation id before a single write.
+ */
+public final class Scene {
+
+    public static final String FILE_NAME = "scenes.properties";
+    public static final String KEY_PREFIX = "scene.";
+    public static final int MAX_COMMANDS = 16;
+
+    private final String name;
+    private final long[] commands;
+    private final byte[] batch;
+    private final byte[] textBatch;
+    private final String batchCommand;
+
+    /**
+     * @param name Name shown to the user
+     * @param commands Packed commands in order (1..MAX_COMMANDS, see WireCodec.pack)
+     */
+    public Scene(String name, long[] commands) {
+        if (commands.length < 1 || commands.length > MAX_COMMANDS) {
+            throw new IllegalArgumentException("A scene needs 1 to " + MAX_COMMANDS + " commands");
+        }
+        for (long packed : commands) {
+            if (packed == WireCodec.NOT_ENCODABLE) {
+                throw new IllegalArgumentException("A scene cannot contain a command without an opcode");
+            }
+        }
+        this.name = name;
+        this.commands = commands.clone();
+        this.batch = WireCodec.compileBatch(this.commands);
+        this.textBatch = WireCodec.compileTextBatch(this.commands);
+        this.batchCommand = new String(textBatch, 0, textBatch.length - 1, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Parse a spec such as LIGHT:OFF,FAN:ON,TV:ON,SPEAKER:VOLUME:30
+     */
+    public static Scene parse(String name, String spec) {
+        String[] parts = spec.split(",");
+        long[] commands = new long[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            commands[i] = WireCodec.parse(parts[i].trim());
+            if (commands[i] == WireCodec.NOT_ENCODABLE) {
+                throw new IllegalArgumentException("Unknown command in scene " + name + ": " + parts[i].trim());
+            }
+        }
+        return new Scene(name, commands);
+    }
+
+    /**
+     * Read every scene.name entry of a properties file, in name order
+     */
+    public static List<Scene> load(InputStream in) throws IOException {
+        Properties properties = new Properties();
+        properties.load(in);
+        List<Scene> scenes = new ArrayList<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (!key.startsWith(KEY_PREFIX)) {
+                continue;
+            }
+            String name = key.substring(KEY_PREFIX.length());
+            try {
+                scenes.add(parse(name, properties.getProperty(key)));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid scene " + key + ": " + e.getMessage(), e);
+            }
+        }
+        scenes.sort((a, b) -> a.name.compareTo(b.name));
+        return scenes;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getCommandCount() {
+        return commands.length;
+    }
+
+    /**
+     * @return Packed command (see WireCodec.pack)
+     */
+    public long getCommand(int index) {
+        return commands[index];
+    }
+
+    /**
+     * @return Body of the binary batch frame, for WireCodec.encodeBatch
+     */
+    byte[] getBatch() {
+        return batch;
+    }
+
+    /**
+     * @return Body of the text batch line, for WireCodec.encodeTextBatch
+     */
+    byte[] getTextBatch() {
+        return textBatch;
+    }
+
+    /**
+     * @return Text batch without its line terminator, e.g. BATCH LIGHT:OFF;FAN:ON
+     */
+    String getBatchCommand() {
+        return batchCommand;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (long packed : commands) {
+            if (builder.length() > 0) {
+                builder.append(',');
+            }
+            builder.append(WireCodec.toText(packed));
+        }
+        return builder.toString();
+    }
+}
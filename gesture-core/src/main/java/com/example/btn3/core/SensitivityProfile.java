@@ -0,0 +1,99 @@
+package com.example.btn3.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/**
+ * The four threshold multipliers passed to GestureDetector.setSensitivity, stored as
+ * a properties file so a profile tuned offline can be loaded by the app. Keys match
+ * the SharedPreferences keys of the settings screen.
+ */
+public final class SensitivityProfile {
+
+    public static final String FILE_NAME = "sensitivity_profile.properties";
+
+    public static final String WAVE_KEY = "wave_sensitivity";
+    public static final String TILT_KEY = "tilt_sensitivity";
+    public static final String ROTATION_KEY = "rotate_sensitivity";
+    public static final String SHAKE_KEY = "shake_sensitivity";
+
+    // Range the settings screen can express
+    public static final float MIN_SENSITIVITY = 0.5f;
+    public static final float MAX_SENSITIVITY = 1.5f;
+
+    private final float waveSensitivity;
+    private final float tiltSensitivity;
+    private final float rotationSensitivity;
+    private final float shakeSensitivity;
+
+    public SensitivityProfile(float waveSensitivity, float tiltSensitivity,
+                              float rotationSensitivity, float shakeSensitivity) {
+        this.waveSensitivity = waveSensitivity;
+        this.tiltSensitivity = tiltSensitivity;
+        this.rotationSensitivity = rotationSensitivity;
+        this.shakeSensitivity = shakeSensitivity;
+    }
+
+    /**
+     * Read a profile; missing keys default to 1.0
+     */
+    public static SensitivityProfile load(InputStream in) throws IOException {
+        Properties properties = new Properties();
+        properties.load(in);
+        return new SensitivityProfile(read(properties, WAVE_KEY), read(properties, TILT_KEY),
+                read(properties, ROTATION_KEY), read(properties, SHAKE_KEY));
+    }
+
+    /**
+     * Write the profile
+     * @param comment Header comment, e.g. how the profile was tuned (may be null)
+     */
+    public void store(OutputStream out, String comment) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(WAVE_KEY, Float.toString(waveSensitivity));
+        properties.setProperty(TILT_KEY, Float.toString(tiltSensitivity));
+        properties.setProperty(ROTATION_KEY, Float.toString(rotationSensitivity));
+        properties.setProperty(SHAKE_KEY, Float.toString(shakeSensitivity));
+        properties.store(out, comment);
+    }
+
+    public void applyTo(GestureDetector detector) {
+        detector.setSensitivity(waveSensitivity, tiltSensitivity, rotationSensitivity, shakeSensitivity);
+    }
+
+    public float getWaveSensitivity() {
+        return waveSensitivity;
+    }
+
+    public float getTiltSensitivity() {
+        return tiltSensitivity;
+    }
+
+    public float getRotationSensitivity() {
+        return rotationSensitivity;
+    }
+
+    public float getShakeSensitivity() {
+        return shakeSensitivity;
+    }
+
+    @Override
+    public String toString() {
+        return "wave=" + waveSensitivity + " tilt=" + tiltSensitivity
+                + " rotation=" + rotationSensitivity + " shake=" + shakeSensitivity;
+    }
+
+    private static float read(Properties properties, String key) throws IOException {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return 1.0f;
+        }
+        try {
+            return Float.parseFloat(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid value for " + key + ": " + value, e);
+        }
+    }
+}
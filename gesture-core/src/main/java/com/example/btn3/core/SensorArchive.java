@@ -0,0 +1,215 @@
+package com.example.btn3.core;
+
+/**
+ * Compressed columnar archive format for long sensor traces, shared by
+ * SensorArchiveWriter and SensorArchiveReader.
+ *
+ * Each sensor stream is cut into blocks of up to BLOCK_SIZE samples. A block stores
+ * its timestamps as delta-of-delta zigzag varints (steady sampling encodes to one
+ * byte per sample) followed by one column per axis, compressed losslessly with
+ * Gorilla-style XOR coding of the float bits. Blocks are followed by an index of
+ * (type, count, min/max timestamp, offset, length) so a reader can decode only the
+ * blocks overlapping a time range. Layout:
+ *
+ *   header:  magic (4), version (2), reserved (2)
+ *   blocks:  type (1), count (varint), first timestamp (8), timestamps, x, y, z columns
+ *   index:   block count (4), entries of INDEX_ENTRY_SIZE bytes
+ *   footer:  index offset (8), magic (4)
+ *
+ * All fixed-width values are little-endian.
+ */
+public final class SensorArchive {
+
+    public static final int BLOCK_SIZE = 1024;
+
+    static final int MAGIC = 0x41335442; // "BT3A"
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int FOOTER_SIZE = 12;
+    static final int INDEX_ENTRY_SIZE = 4 + 4 + 8 + 8 + 8 + 4;
+    // Worst case per sample: 10-byte varint plus three 44-bit XOR codes
+    static final int MAX_BLOCK_BYTES = 1 + 5 + 8 + BLOCK_SIZE * (10 + 17) + 3 * 5;
+
+    private SensorArchive() {
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Encodes one block into a caller-owned byte array
+     */
+    static final class Encoder {
+        final byte[] bytes = new byte[MAX_BLOCK_BYTES];
+        int position;
+        private long bitBuffer;
+        private int bitCount;
+
+        int encode(int type, long[] timestamps, float[] xyz, int count) {
+            position = 0;
+            bytes[position++] = (byte) type;
+            writeVarint(count);
+            writeLong(timestamps[0]);
+            long previousDelta = 0;
+            for (int i = 1; i < count; i++) {
+                long delta = timestamps[i] - timestamps[i - 1];
+                writeVarint(zigzag(delta - previousDelta));
+                previousDelta = delta;
+            }
+            for (int axis = 0; axis < 3; axis++) {
+                encodeColumn(xyz, axis, count);
+            }
+            return position;
+        }
+
+        private void encodeColumn(float[] xyz, int axis, int count) {
+            int previous = Float.floatToRawIntBits(xyz[axis]);
+            writeBits(previous, 32);
+            int windowLeading = -1;
+            int windowTrailing = 0;
+            for (int i = 1, index = 3 + axis; i < count; i++, index += 3) {
+                int bits = Float.floatToRawIntBits(xyz[index]);
+                int xor = bits ^ previous;
+                previous = bits;
+                if (xor == 0) {
+                    writeBits(0, 1);
+                    continue;
+                }
+                int leading = Integer.numberOfLeadingZeros(xor);
+                int trailing = Integer.numberOfTrailingZeros(xor);
+                if (windowLeading >= 0 && leading >= windowLeading && trailing >= windowTrailing) {
+                    // Fits the previous window: '10' + the window bits
+                    writeBits(2, 2);
+                    writeBits(xor >>> windowTrailing, 32 - windowLeading - windowTrailing);
+                } else {
+                    // New window: '11' + leading zeros (5) + length - 1 (5) + significant bits
+                    int significant = 32 - leading - trailing;
+                    writeBits(3, 2);
+                    writeBits(leading, 5);
+                    writeBits(significant - 1, 5);
+                    writeBits(xor >>> trailing, significant);
+                    windowLeading = leading;
+                    windowTrailing = trailing;
+                }
+            }
+            flushBits();
+        }
+
+        private void writeBits(int value, int count) {
+            long masked = count == 32 ? value & 0xFFFFFFFFL : value & ((1L << count) - 1);
+            bitBuffer = (bitBuffer << count) | masked;
+            bitCount += count;
+            while (bitCount >= 8) {
+                bitCount -= 8;
+                bytes[position++] = (byte) (bitBuffer >>> bitCount);
+            }
+        }
+
+        private void flushBits() {
+            if (bitCount > 0) {
+                bytes[position++] = (byte) (bitBuffer << (8 - bitCount));
+            }
+            bitBuffer = 0;
+            bitCount = 0;
+        }
+
+        private void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[position++] = (byte) value;
+        }
+
+        private void writeLong(long value) {
+            for (int i = 0; i < 8; i++) {
+                bytes[position++] = (byte) (value >>> (8 * i));
+            }
+        }
+    }
+
+    /**
+     * Decodes blocks written by Encoder into caller-owned arrays
+     */
+    static final class Decoder {
+        private byte[] bytes;
+        private int position;
+        private long bitBuffer;
+        private int bitCount;
+
+        /**
+         * @return Number of samples decoded
+         */
+        int decode(byte[] block, long[] timestamps, float[] xyz) {
+            bytes = block;
+            position = 1; // type is in the index
+            int count = (int) readVarint();
+            long timestamp = readLong();
+            timestamps[0] = timestamp;
+            long delta = 0;
+            for (int i = 1; i < count; i++) {
+                delta += unzigzag(readVarint());
+                timestamp += delta;
+                timestamps[i] = timestamp;
+            }
+            for (int axis = 0; axis < 3; axis++) {
+                decodeColumn(xyz, axis, count);
+            }
+            return count;
+        }
+
+        private void decodeColumn(float[] xyz, int axis, int count) {
+            bitBuffer = 0;
+            bitCount = 0;
+            int value = readBits(32);
+            xyz[axis] = Float.intBitsToFloat(value);
+            int windowLeading = 0;
+            int windowTrailing = 0;
+            for (int i = 1, index = 3 + axis; i < count; i++, index += 3) {
+                if (readBits(1) != 0) {
+                    if (readBits(1) != 0) {
+                        windowLeading = readBits(5);
+                        windowTrailing = 32 - windowLeading - (readBits(5) + 1);
+                    }
+                    value ^= readBits(32 - windowLeading - windowTrailing) << windowTrailing;
+                }
+                xyz[index] = Float.intBitsToFloat(value);
+            }
+        }
+
+        private int readBits(int count) {
+            while (bitCount < count) {
+                bitBuffer = (bitBuffer << 8) | (bytes[position++] & 0xFF);
+                bitCount += 8;
+            }
+            bitCount -= count;
+            long mask = count == 32 ? 0xFFFFFFFFL : (1L << count) - 1;
+            return (int) ((bitBuffer >>> bitCount) & mask);
+        }
+
+        private long readVarint() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        private long readLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value |= (long) (bytes[position++] & 0xFF) << (8 * i);
+            }
+            return value;
+        }
+    }
+}
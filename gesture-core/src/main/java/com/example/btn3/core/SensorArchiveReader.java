@@ -0,0 +1,219 @@
+package com.example.btn3.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a compressed archive (see SensorArchive). Only the block index is loaded up
+ * front; a time-range read decodes just the blocks whose timestamps overlap the range
+ * and merges the sensor streams back into timestamp order.
+ */
+public class SensorArchiveReader implements Closeable {
+
+    private final FileChannel channel;
+
+    // Block index as parallel arrays
+    private final int blockCount;
+    private final int[] blockType;
+    private final int[] blockSamples;
+    private final long[] blockMinTime;
+    private final long[] blockMaxTime;
+    private final long[] blockOffset;
+    private final int[] blockLength;
+
+    private final SensorArchive.Decoder decoder = new SensorArchive.Decoder();
+    private long decodedBlocks = 0;
+
+    public SensorArchiveReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            ByteBuffer header = readFully(0, SensorArchive.HEADER_SIZE);
+            ByteBuffer footer = readFully(size - SensorArchive.FOOTER_SIZE, SensorArchive.FOOTER_SIZE);
+            if (header.getInt() != SensorArchive.MAGIC || header.getShort() != SensorArchive.VERSION) {
+                throw new IOException("Not a sensor archive");
+            }
+            long indexOffset = footer.getLong();
+            if (footer.getInt() != SensorArchive.MAGIC) {
+                throw new IOException("Sensor archive is truncated");
+            }
+            blockCount = readFully(indexOffset, 4).getInt();
+            ByteBuffer index = readFully(indexOffset + 4, blockCount * SensorArchive.INDEX_ENTRY_SIZE);
+            blockType = new int[blockCount];
+            blockSamples = new int[blockCount];
+            blockMinTime = new long[blockCount];
+            blockMaxTime = new long[blockCount];
+            blockOffset = new long[blockCount];
+            blockLength = new int[blockCount];
+            for (int i = 0; i < blockCount; i++) {
+                blockType[i] = index.getInt();
+                blockSamples[i] = index.getInt();
+                blockMinTime[i] = index.getLong();
+                blockMaxTime[i] = index.getLong();
+                blockOffset[i] = index.getLong();
+                blockLength[i] = index.getInt();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Feed every sample to the consumer in timestamp order
+     */
+    public void readAll(SensorSampleBuffer.SampleConsumer consumer) throws IOException {
+        read(Long.MIN_VALUE, Long.MAX_VALUE, consumer);
+    }
+
+    /**
+     * Feed the samples with fromNs <= timestamp <= toNs to the consumer in timestamp order
+     */
+    public void read(long fromNs, long toNs, SensorSampleBuffer.SampleConsumer consumer) throws IOException {
+        // One cursor per sensor type over its overlapping blocks
+        List<Cursor> cursors = new ArrayList<>();
+        for (int i = 0; i < blockCount; i++) {
+            if (blockMaxTime[i] < fromNs || blockMinTime[i] > toNs) {
+                continue;
+            }
+            Cursor cursor = null;
+            for (Cursor candidate : cursors) {
+                if (candidate.type == blockType[i]) {
+                    cursor = candidate;
+                }
+            }
+            if (cursor == null) {
+                cursor = new Cursor(blockType[i]);
+                cursors.add(cursor);
+            }
+            cursor.addBlock(i);
+        }
+        for (Cursor cursor : cursors) {
+            cursor.advance(fromNs);
+        }
+
+        while (true) {
+            Cursor next = null;
+            for (Cursor cursor : cursors) {
+                if (cursor.hasSample() && (next == null || cursor.timestamp() < next.timestamp())) {
+                    next = cursor;
+                }
+            }
+            if (next == null || next.timestamp() > toNs) {
+                return;
+            }
+            int base = next.sample * 3;
+            consumer.onSample(next.type, next.timestamp(), next.xyz[base], next.xyz[base + 1], next.xyz[base + 2]);
+            next.sample++;
+            next.advance(fromNs);
+        }
+    }
+
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    /**
+     * @return Total samples in the archive, from the index
+     */
+    public long getSampleCount() {
+        long total = 0;
+        for (int i = 0; i < blockCount; i++) {
+            total += blockSamples[i];
+        }
+        return total;
+    }
+
+    /**
+     * @return Blocks decompressed so far (time-range reads should touch only a few)
+     */
+    public long getDecodedBlockCount() {
+        return decodedBlocks;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private ByteBuffer readFully(long offset, int length) throws IOException {
+        if (offset < 0 || length < 0) {
+            throw new IOException("Corrupt sensor archive");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(SensorTrace.BYTE_ORDER);
+        readFully(offset, buffer);
+        buffer.flip();
+        return buffer;
+    }
+
+    private void readFully(long offset, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset + buffer.position());
+            if (read < 0) {
+                throw new IOException("Sensor archive is truncated");
+            }
+        }
+    }
+
+    /**
+     * Walks the overlapping blocks of one sensor type, one decoded block at a time
+     */
+    private final class Cursor {
+        final int type;
+        final long[] timestamps = new long[SensorArchive.BLOCK_SIZE];
+        final float[] xyz = new float[SensorArchive.BLOCK_SIZE * 3];
+        final byte[] bytes = new byte[SensorArchive.MAX_BLOCK_BYTES];
+        int[] blocks = new int[4];
+        int blockCount = 0;
+        int nextBlock = 0;
+        int count = 0;
+        int sample = 0;
+
+        Cursor(int type) {
+            this.type = type;
+        }
+
+        void addBlock(int block) {
+            if (blockCount == blocks.length) {
+                int[] larger = new int[blocks.length * 2];
+                System.arraycopy(blocks, 0, larger, 0, blockCount);
+                blocks = larger;
+            }
+            blocks[blockCount++] = block;
+        }
+
+        boolean hasSample() {
+            return sample < count;
+        }
+
+        long timestamp() {
+            return timestamps[sample];
+        }
+
+        /**
+         * Skip samples before fromNs, decoding the next block when this one runs out
+         */
+        void advance(long fromNs) throws IOException {
+            while (true) {
+                while (sample < count && timestamps[sample] < fromNs) {
+                    sample++;
+                }
+                if (sample < count || nextBlock == blockCount) {
+                    return;
+                }
+                int block = blocks[nextBlock++];
+                ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, blockLength[block]);
+                readFully(blockOffset[block], buffer);
+                count = decoder.decode(bytes, timestamps, xyz);
+                sample = 0;
+                decodedBlocks++;
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.btn3.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes samples into a compressed archive (see SensorArchive). Samples are buffered
+ * per sensor type and written as one block whenever a stream has BLOCK_SIZE samples;
+ * close() writes the partial blocks and the block index. Takes the same samples as
+ * the SensorSampleBuffer and the trace files, so a trace can be archived by replaying
+ * it into a writer. Not thread-safe.
+ */
+public class SensorArchiveWriter implements SensorSampleBuffer.SampleConsumer, Closeable {
+
+    private final FileChannel channel;
+    private final SensorArchive.Encoder encoder = new SensorArchive.Encoder();
+    private final List<Stream> streams = new ArrayList<>();
+    private ByteBuffer index;
+    private long position;
+    private int blockCount = 0;
+    private long sampleCount = 0;
+    private IOException failure;
+    private boolean closed = false;
+
+    public SensorArchiveWriter(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        index = ByteBuffer.allocate(64 * SensorArchive.INDEX_ENTRY_SIZE).order(SensorTrace.BYTE_ORDER);
+        ByteBuffer header = ByteBuffer.allocate(SensorArchive.HEADER_SIZE).order(SensorTrace.BYTE_ORDER);
+        header.putInt(SensorArchive.MAGIC);
+        header.putShort(SensorArchive.VERSION);
+        header.putShort((short) 0);
+        header.flip();
+        write(header);
+    }
+
+    /**
+     * Append one sample. A write error stops archiving; it is rethrown by close.
+     */
+    @Override
+    public void onSample(int sensorType, long timestampNs, float x, float y, float z) {
+        if (failure != null || closed) {
+            return;
+        }
+        Stream stream = streamFor(sensorType);
+        int base = stream.count * 3;
+        stream.timestamps[stream.count] = timestampNs;
+        stream.xyz[base] = x;
+        stream.xyz[base + 1] = y;
+        stream.xyz[base + 2] = z;
+        sampleCount++;
+        if (++stream.count == SensorArchive.BLOCK_SIZE) {
+            try {
+                writeBlock(stream);
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+    }
+
+    /**
+     * @return Samples accepted so far
+     */
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * @return Bytes written so far (the whole file once closed)
+     */
+    public long getBytesWritten() {
+        return position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (failure != null) {
+                throw failure;
+            }
+            for (Stream stream : streams) {
+                if (stream.count > 0) {
+                    writeBlock(stream);
+                }
+            }
+            long indexOffset = position;
+            ByteBuffer count = ByteBuffer.allocate(4).order(SensorTrace.BYTE_ORDER).putInt(blockCount);
+            count.flip();
+            write(count);
+            index.flip();
+            write(index);
+            ByteBuffer footer = ByteBuffer.allocate(SensorArchive.FOOTER_SIZE).order(SensorTrace.BYTE_ORDER);
+            footer.putLong(indexOffset);
+            footer.putInt(SensorArchive.MAGIC);
+            footer.flip();
+            write(footer);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private Stream streamFor(int sensorType) {
+        for (int i = 0; i < streams.size(); i++) {
+            Stream stream = streams.get(i);
+            if (stream.type == sensorType) {
+                return stream;
+            }
+        }
+        Stream stream = new Stream(sensorType);
+        streams.add(stream);
+        return stream;
+    }
+
+    private void writeBlock(Stream stream) throws IOException {
+        int length = encoder.encode(stream.type, stream.timestamps, stream.xyz, stream.count);
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < stream.count; i++) {
+            min = Math.min(min, stream.timestamps[i]);
+            max = Math.max(max, stream.timestamps[i]);
+        }
+        long offset = position;
+        write(ByteBuffer.wrap(encoder.bytes, 0, length));
+
+        if (index.remaining() < SensorArchive.INDEX_ENTRY_SIZE) {
+            growIndex();
+        }
+        index.putInt(stream.type);
+        index.putInt(stream.count);
+        index.putLong(min);
+        index.putLong(max);
+        index.putLong(offset);
+        index.putInt(length);
+        blockCount++;
+        stream.count = 0;
+    }
+
+    private void growIndex() {
+        ByteBuffer larger = ByteBuffer.allocate(index.capacity() * 2).order(SensorTrace.BYTE_ORDER);
+        index.flip();
+        larger.put(index);
+        index = larger;
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer);
+        }
+    }
+
+    /**
+     * Samples of one sensor type waiting to fill a block
+     */
+    private static final class Stream {
+        final int type;
+        final long[] timestamps = new long[SensorArchive.BLOCK_SIZE];
+        final float[] xyz = new float[SensorArchive.BLOCK_SIZE * 3];
+        int count = 0;
+
+        Stream(int type) {
+            this.type = type;
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package com.example.btn3.core;
+
+/**
+ * Decides when the sensors can run slowly. The device is considered still once every
+ * accelerometer sample has stayed within the still threshold of a reference vector
+ * for the dwell time (and the gyroscope has stayed quiet); the governor then asks for
+ * the idle rate. While idle, one sample further than the wake threshold from the
+ * reference switches back to the active rate. The wake threshold sits above the still
+ * threshold so noise near either edge cannot make the rate flap, and wake-up is
+ * bounded by one idle sample period plus the time the platform needs to apply the
+ * new rate. Two latencies are kept per wake: the rate switch (wake sample to the
+ * first sample at the active rate) and wake to gesture (wake sample to the first
+ * gesture the detector reports, fed in through onGesture), which is what the user
+ * notices.
+ */
+public class SensorRateGovernor {
+
+    // Requested sensor configuration
+    public enum Rate {
+        ACTIVE, // both sensors at the gesture rate
+        IDLE    // accelerometer only, at a low rate
+    }
+
+    // Interface for rate change callbacks
+    public interface RateChangeListener {
+        void onRateChanged(Rate rate);
+    }
+
+    // Defaults tuned for a phone lying on a table (sensor noise is ~0.05 m/s^2)
+    public static final float DEFAULT_STILL_THRESHOLD = 0.3f; // m/s^2
+    public static final float DEFAULT_WAKE_THRESHOLD = 0.6f; // m/s^2
+    public static final float DEFAULT_GYROSCOPE_STILL_THRESHOLD = 0.15f; // rad/s
+    public static final long DEFAULT_STILL_TIME_NS = 2_000_000_000L; // 2 s
+    public static final long DEFAULT_IDLE_PERIOD_NS = 66_000_000L; // ~15 Hz
+
+    private static final long NO_SAMPLE = Long.MIN_VALUE;
+
+    private final RateChangeListener listener;
+    private final float stillThresholdSquared;
+    private final float wakeThresholdSquared;
+    private final float gyroscopeStillThresholdSquared;
+    private final long stillTimeNs;
+    private final long idlePeriodNs;
+
+    private Rate rate = Rate.ACTIVE;
+
+    // Reference vector the device has stayed close to since stillSince
+    private float referenceX;
+    private float referenceY;
+    private float referenceZ;
+    private long stillSince = NO_SAMPLE;
+
+    // Time accounting, driven by sample timestamps
+    private long lastSampleTime = NO_SAMPLE;
+    private long lastAccelerometerTime = NO_SAMPLE;
+    private long activeTimeNs = 0;
+    private long idleTimeNs = 0;
+
+    // Latest wake sample and which of its latencies are still to be measured
+    private long wakeTime = NO_SAMPLE;
+    private boolean rateSwitchPending = false;
+    private boolean gesturePending = false;
+    private long wakeCount = 0;
+    private long idleCount = 0;
+
+    // Rate switch latency: wake sample until the first sample at the active rate
+    private long rateSwitchCount = 0;
+    private long lastRateSwitchLatencyNs = 0;
+    private long maxRateSwitchLatencyNs = 0;
+    private long totalRateSwitchLatencyNs = 0;
+
+    // Wake-to-gesture latency: wake sample until the first gesture after it
+    private long wakeGestureCount = 0;
+    private long lastWakeToGestureNs = 0;
+    private long maxWakeToGestureNs = 0;
+    private long totalWakeToGestureNs = 0;
+
+    public SensorRateGovernor(RateChangeListener listener) {
+        this(DEFAULT_STILL_THRESHOLD, DEFAULT_WAKE_THRESHOLD, DEFAULT_GYROSCOPE_STILL_THRESHOLD,
+                DEFAULT_STILL_TIME_NS, DEFAULT_IDLE_PERIOD_NS, listener);
+    }
+
+    /**
+     * @param stillThreshold Accelerometer deviation still counted as stationary (m/s^2)
+     * @param wakeThreshold Accelerometer deviation that wakes the sensors (m/s^2)
+     * @param gyroscopeStillThreshold Rotation rate still counted as stationary (rad/s)
+     * @param stillTimeNs How long the device must stay still before going idle
+     * @param idlePeriodNs Accelerometer sampling period while idle
+     */
+    public SensorRateGovernor(float stillThreshold, float wakeThreshold, float gyroscopeStillThreshold,
+                              long stillTimeNs, long idlePeriodNs, RateChangeListener listener) {
+        if (wakeThreshold < stillThreshold) {
+            throw new IllegalArgumentException("Wake threshold must not be below the still threshold");
+        }
+        this.stillThresholdSquared = stillThreshold * stillThreshold;
+        this.wakeThresholdSquared = wakeThreshold * wakeThreshold;
+        this.gyroscopeStillThresholdSquared = gyroscopeStillThreshold * gyroscopeStillThreshold;
+        this.stillTimeNs = stillTimeNs;
+        this.idlePeriodNs = idlePeriodNs;
+        this.listener = listener;
+    }
+
+    /**
+     * Feed one accelerometer sample
+     * @param timestampNs Sample time in nanoseconds
+     */
+    public void processAccelerometer(float x, float y, float z, long timestampNs) {
+        long previousAccelerometerTime = lastAccelerometerTime;
+        lastAccelerometerTime = timestampNs;
+        account(timestampNs);
+
+        float dx = x - referenceX;
+        float dy = y - referenceY;
+        float dz = z - referenceZ;
+        float deviationSquared = dx * dx + dy * dy + dz * dz;
+
+        if (rate == Rate.IDLE) {
+            if (stillSince == NO_SAMPLE || deviationSquared > wakeThresholdSquared) {
+                wake(timestampNs, x, y, z);
+            }
+            return;
+        }
+
+        // Active: a sample much closer than the idle period means the fast rate is in effect
+        if (rateSwitchPending && previousAccelerometerTime != NO_SAMPLE
+                && timestampNs - previousAccelerometerTime < idlePeriodNs / 2) {
+            recordRateSwitch(timestampNs);
+        }
+        if (stillSince == NO_SAMPLE || deviationSquared > stillThresholdSquared) {
+            restartStill(timestampNs, x, y, z);
+        } else if (timestampNs - stillSince >= stillTimeNs) {
+            goIdle();
+        }
+    }
+
+    /**
+     * Feed one gyroscope sample; rotation keeps the sensors active
+     * @param timestampNs Sample time in nanoseconds
+     */
+    public void processGyroscope(float x, float y, float z, long timestampNs) {
+        account(timestampNs);
+        if (rate == Rate.IDLE) {
+            return;
+        }
+        if (rateSwitchPending) {
+            // The gyroscope is off while idle, so its first sample marks the active rate
+            recordRateSwitch(timestampNs);
+        }
+        if (x * x + y * y + z * z > gyroscopeStillThresholdSquared) {
+            stillSince = NO_SAMPLE;
+        }
+    }
+
+    /**
+     * Tell the governor the detector reported a gesture; the first one after a wake ends
+     * the wake-to-gesture measurement. Earlier timestamps are ignored, so the time of
+     * the latest gesture can be passed after every batch.
+     * @param timestampNs Sensor time of the gesture
+     */
+    public void onGesture(long timestampNs) {
+        if (!gesturePending || timestampNs < wakeTime) {
+            return;
+        }
+        gesturePending = false;
+        long latency = timestampNs - wakeTime;
+        wakeGestureCount++;
+        lastWakeToGestureNs = latency;
+        totalWakeToGestureNs += latency;
+        if (latency > maxWakeToGestureNs) {
+            maxWakeToGestureNs = latency;
+        }
+    }
+
+    public Rate getRate() {
+        return rate;
+    }
+
+    /**
+     * @return Accelerometer sampling period to request while idle
+     */
+    public long getIdlePeriodNs() {
+        return idlePeriodNs;
+    }
+
+    /**
+     * Return to the active rate and clear the statistics
+     */
+    public void reset() {
+        rate = Rate.ACTIVE;
+        stillSince = NO_SAMPLE;
+        lastSampleTime = NO_SAMPLE;
+        lastAccelerometerTime = NO_SAMPLE;
+        wakeTime = NO_SAMPLE;
+        rateSwitchPending = false;
+        gesturePending = false;
+        activeTimeNs = 0;
+        idleTimeNs = 0;
+        wakeCount = 0;
+        idleCount = 0;
+        rateSwitchCount = 0;
+        lastRateSwitchLatencyNs = 0;
+        maxRateSwitchLatencyNs = 0;
+        totalRateSwitchLatencyNs = 0;
+        wakeGestureCount = 0;
+        lastWakeToGestureNs = 0;
+        maxWakeToGestureNs = 0;
+        totalWakeToGestureNs = 0;
+    }
+
+    // Time spent in each rate, in sensor time
+    public long getActiveTimeNs() {
+        return activeTimeNs;
+    }
+
+    public long getIdleTimeNs() {
+        return idleTimeNs;
+    }
+
+    /**
+     * @return Transitions from active to idle
+     */
+    public long getIdleCount() {
+        return idleCount;
+    }
+
+    /**
+     * @return Transitions from idle to active
+     */
+    public long getWakeCount() {
+        return wakeCount;
+    }
+
+    // Time from the wake sample to the first sample at the active rate
+    public long getLastRateSwitchLatencyNs() {
+        return lastRateSwitchLatencyNs;
+    }
+
+    public long getMaxRateSwitchLatencyNs() {
+        return maxRateSwitchLatencyNs;
+    }
+
+    public long getAverageRateSwitchLatencyNs() {
+        return rateSwitchCount == 0 ? 0 : totalRateSwitchLatencyNs / rateSwitchCount;
+    }
+
+    // Time from the wake sample to the first gesture after it (wakes that go idle again without one are skipped)
+    public long getLastWakeToGestureNs() {
+        return lastWakeToGestureNs;
+    }
+
+    public long getMaxWakeToGestureNs() {
+        return maxWakeToGestureNs;
+    }
+
+    public long getAverageWakeToGestureNs() {
+        return wakeGestureCount == 0 ? 0 : totalWakeToGestureNs / wakeGestureCount;
+    }
+
+    private void account(long timestampNs) {
+        long previous = lastSampleTime;
+        if (previous != NO_SAMPLE && timestampNs > previous) {
+            if (rate == Rate.IDLE) {
+                idleTimeNs += timestampNs - previous;
+            } else {
+                activeTimeNs += timestampNs - previous;
+            }
+        }
+        if (previous == NO_SAMPLE || timestampNs > previous) {
+            lastSampleTime = timestampNs;
+        }
+    }
+
+    private void restartStill(long timestampNs, float x, float y, float z) {
+        referenceX = x;
+        referenceY = y;
+        referenceZ = z;
+        stillSince = timestampNs;
+    }
+
+    private void goIdle() {
+        rate = Rate.IDLE;
+        idleCount++;
+        rateSwitchPending = false;
+        gesturePending = false;
+        if (listener != null) {
+            listener.onRateChanged(Rate.IDLE);
+        }
+    }
+
+    private void wake(long timestampNs, float x, float y, float z) {
+        rate = Rate.ACTIVE;
+        wakeCount++;
+        wakeTime = timestampNs;
+        rateSwitchPending = true;
+        gesturePending = true;
+        restartStill(timestampNs, x, y, z);
+        if (listener != null) {
+            listener.onRateChanged(Rate.ACTIVE);
+        }
+    }
+
+    private void recordRateSwitch(long timestampNs) {
+        long latency = timestampNs - wakeTime;
+        rateSwitchPending = false;
+        rateSwitchCount++;
+        lastRateSwitchLatencyNs = latency;
+        totalRateSwitchLatencyNs += latency;
+        if (latency > maxRateSwitchLatencyNs) {
+            maxRateSwitchLatencyNs = latency;
+        }
+    }
+}
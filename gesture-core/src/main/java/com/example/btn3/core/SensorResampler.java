@@ -0,0 +1,259 @@
+package com.example.btn3.core;
+
+/**
+ * Aligns the accelerometer and gyroscope streams onto one fixed-rate grid using the
+ * sensor timestamps. Each grid point is emitted once both streams have a sample at
+ * or after it, with both values linearly interpolated, so downstream windows see
+ * uniform, synchronized frames. Gaps longer than the dropout threshold are still
+ * interpolated but counted; gaps longer than the resync threshold (sensors paused)
+ * restart the grid after the gap instead of inventing data. All state is
+ * preallocated.
+ */
+public class SensorResampler {
+
+    // Receives one synchronized frame per grid point
+    public interface FrameListener {
+        void onFrame(long timestampNs, float ax, float ay, float az, float gx, float gy, float gz);
+    }
+
+    private static final int HISTORY = 64; // samples kept per stream (power of two)
+    private static final long NO_FRAME = Long.MIN_VALUE;
+
+    private final long periodNs;
+    private final long dropoutGapNs;
+    private final long resyncGapNs;
+    private final FrameListener listener;
+    private final Stream accelerometer = new Stream();
+    private final Stream gyroscope = new Stream();
+    private long nextFrameTime = NO_FRAME;
+
+    // Statistics
+    private long frames = 0;
+    private long gapFrames = 0;
+    private long dropouts = 0;
+    private long resyncs = 0;
+    private long rejectedSamples = 0;
+
+    /**
+     * @param periodNs Grid period in nanoseconds
+     * @param dropoutGapNs Gaps between samples longer than this are reported as dropouts
+     * @param resyncGapNs Gaps longer than this are skipped instead of interpolated
+     */
+    public SensorResampler(long periodNs, long dropoutGapNs, long resyncGapNs, FrameListener listener) {
+        if (periodNs <= 0) {
+            throw new IllegalArgumentException("Period must be positive");
+        }
+        this.periodNs = periodNs;
+        this.dropoutGapNs = dropoutGapNs;
+        this.resyncGapNs = resyncGapNs;
+        this.listener = listener;
+    }
+
+    public void addAccelerometer(float x, float y, float z, long timestampNs) {
+        if (accelerometer.add(x, y, z, timestampNs)) {
+            emitFrames();
+        } else {
+            rejectedSamples++;
+        }
+    }
+
+    public void addGyroscope(float x, float y, float z, long timestampNs) {
+        if (gyroscope.add(x, y, z, timestampNs)) {
+            emitFrames();
+        } else {
+            rejectedSamples++;
+        }
+    }
+
+    public void reset() {
+        accelerometer.clear();
+        gyroscope.clear();
+        nextFrameTime = NO_FRAME;
+    }
+
+    private void emitFrames() {
+        if (accelerometer.count == 0 || gyroscope.count == 0) {
+            return;
+        }
+        if (nextFrameTime == NO_FRAME) {
+            nextFrameTime = Math.max(accelerometer.oldestTime(), gyroscope.oldestTime());
+        }
+        long horizon = Math.min(accelerometer.newestTime(), gyroscope.newestTime());
+        while (nextFrameTime <= horizon) {
+            long t = nextFrameTime;
+            long accelerometerGap = accelerometer.seek(t);
+            long gyroscopeGap = gyroscope.seek(t);
+            long gap = Math.max(accelerometerGap, gyroscopeGap);
+            if (gap > resyncGapNs) {
+                // Sensors were paused: continue the grid from the end of the gap
+                resyncs++;
+                long resumeAt = Math.max(accelerometer.segmentEndTime(), gyroscope.segmentEndTime());
+                long skipped = (resumeAt - t + periodNs - 1) / periodNs;
+                nextFrameTime = t + Math.max(1, skipped) * periodNs;
+                continue;
+            }
+            if (gap > dropoutGapNs) {
+                gapFrames++;
+                if (accelerometer.markDropout(dropoutGapNs) | gyroscope.markDropout(dropoutGapNs)) {
+                    dropouts++;
+                }
+            }
+            float w = accelerometer.weight(t);
+            float v = gyroscope.weight(t);
+            listener.onFrame(t,
+                    accelerometer.interpolate(0, w), accelerometer.interpolate(1, w), accelerometer.interpolate(2, w),
+                    gyroscope.interpolate(0, v), gyroscope.interpolate(1, v), gyroscope.interpolate(2, v));
+            frames++;
+            nextFrameTime = t + periodNs;
+        }
+    }
+
+    /**
+     * @return Frames emitted so far
+     */
+    public long getFrameCount() {
+        return frames;
+    }
+
+    /**
+     * @return Frames interpolated across a dropout
+     */
+    public long getGapFrameCount() {
+        return gapFrames;
+    }
+
+    /**
+     * @return Distinct gaps longer than the dropout threshold
+     */
+    public long getDropoutCount() {
+        return dropouts;
+    }
+
+    /**
+     * @return Gaps long enough that the grid was restarted after them
+     */
+    public long getResyncCount() {
+        return resyncs;
+    }
+
+    /**
+     * @return Samples ignored because their timestamp did not advance
+     */
+    public long getRejectedSampleCount() {
+        return rejectedSamples;
+    }
+
+    /**
+     * Recent samples of one sensor, with a cursor on the segment [cursor, cursor + 1]
+     * that brackets the current grid time
+     */
+    private static final class Stream {
+        private static final int MASK = HISTORY - 1;
+
+        final long[] times = new long[HISTORY];
+        final float[] values = new float[HISTORY * 3];
+        long first = 0;  // sequence number of the oldest stored sample
+        int count = 0;
+        long cursor = 0; // sequence number of the segment start
+        long dropoutSegment = -1;
+
+        boolean add(float x, float y, float z, long timestampNs) {
+            if (count > 0 && timestampNs <= newestTime()) {
+                return false;
+            }
+            if (count == HISTORY) {
+                // Other stream stalled; drop the oldest sample
+                first++;
+                count--;
+                if (cursor < first) {
+                    cursor = first;
+                }
+            }
+            long sequence = first + count;
+            int slot = (int) sequence & MASK;
+            times[slot] = timestampNs;
+            values[slot * 3] = x;
+            values[slot * 3 + 1] = y;
+            values[slot * 3 + 2] = z;
+            count++;
+            return true;
+        }
+
+        long oldestTime() {
+            return times[(int) first & MASK];
+        }
+
+        long newestTime() {
+            return times[(int) (first + count - 1) & MASK];
+        }
+
+        /**
+         * Move the cursor to the segment containing t and release older samples
+         * @return Length of that segment in nanoseconds (0 if t is exactly on a sample)
+         */
+        long seek(long t) {
+            long last = first + count - 1;
+            while (cursor < last && times[(int) (cursor + 1) & MASK] <= t) {
+                cursor++;
+            }
+            // Everything before the segment start is no longer needed
+            count -= (int) (cursor - first);
+            first = cursor;
+            if (cursor == last) {
+                return 0;
+            }
+            return times[(int) (cursor + 1) & MASK] - times[(int) cursor & MASK];
+        }
+
+        long segmentEndTime() {
+            long last = first + count - 1;
+            return times[(int) Math.min(cursor + 1, last) & MASK];
+        }
+
+        /**
+         * @return true the first time the current segment is reported as longer than threshold
+         */
+        boolean markDropout(long thresholdNs) {
+            long last = first + count - 1;
+            if (cursor == last || dropoutSegment == cursor) {
+                return false;
+            }
+            long gap = times[(int) (cursor + 1) & MASK] - times[(int) cursor & MASK];
+            if (gap <= thresholdNs) {
+                return false;
+            }
+            dropoutSegment = cursor;
+            return true;
+        }
+
+        float weight(long t) {
+            long last = first + count - 1;
+            if (cursor == last) {
+                return 0.0f;
+            }
+            long start = times[(int) cursor & MASK];
+            if (t <= start) {
+                // Bracketing sample was dropped on overflow; hold instead of extrapolating
+                return 0.0f;
+            }
+            long end = times[(int) (cursor + 1) & MASK];
+            return (float) (t - start) / (float) (end - start);
+        }
+
+        float interpolate(int axis, float weight) {
+            int a = ((int) cursor & MASK) * 3 + axis;
+            if (weight == 0.0f) {
+                return values[a];
+            }
+            int b = ((int) (cursor + 1) & MASK) * 3 + axis;
+            return values[a] + (values[b] - values[a]) * weight;
+        }
+
+        void clear() {
+            first = 0;
+            count = 0;
+            cursor = 0;
+            dropoutSegment = -1;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.btn3.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free single-producer/single-consumer ring buffer for raw sensor samples.
+ * The sensor thread publishes, one consumer thread drains. Samples are stored in
+ * preallocated primitive arrays so neither side allocates.
+ */
+public class SensorSampleBuffer {
+
+    // Interface for draining samples without copying them out
+    public interface SampleConsumer {
+        void onSample(int sensorType, long timestampNs, float x, float y, float z);
+    }
+
+    private final int capacity;
+    private final int mask;
+    private final int[] sensorTypes;
+    private final long[] timestamps;
+    private final float[] values; // packed x, y, z per slot
+
+    // Next slot to write (owned by producer) and next slot to read (owned by consumer)
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    // Thread parked in awaitSamples, if any
+    private volatile Thread waiter;
+
+    // Counters, each written only by the producer
+    private volatile long publishedSamples = 0;
+    private volatile long droppedSamples = 0;
+    private volatile long overruns = 0;
+    private volatile int highWaterMark = 0;
+    private boolean overrunInProgress = false;
+
+    /**
+     * @param capacity Number of samples the buffer can hold (rounded up to a power of two)
+     */
+    public SensorSampleBuffer(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Capacity must be at least 2");
+        }
+        this.capacity = Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.sensorTypes = new int[this.capacity];
+        this.timestamps = new long[this.capacity];
+        this.values = new float[this.capacity * 3];
+    }
+
+    /**
+     * Publish a sample. Must only be called from the producer thread.
+     * @return true if stored, false if the buffer was full and the sample was dropped
+     */
+    public boolean publish(int sensorType, long timestampNs, float x, float y, float z) {
+        long currentHead = head.get();
+        int used = (int) (currentHead - tail.get());
+        if (used >= capacity) {
+            droppedSamples++;
+            if (!overrunInProgress) {
+                overrunInProgress = true;
+                overruns++;
+            }
+            return false;
+        }
+        overrunInProgress = false;
+
+        int slot = (int) currentHead & mask;
+        sensorTypes[slot] = sensorType;
+        timestamps[slot] = timestampNs;
+        int base = slot * 3;
+        values[base] = x;
+        values[base + 1] = y;
+        values[base + 2] = z;
+
+        // Volatile store: makes the slot contents visible before the new head and, unlike
+        // an ordered store, cannot pass the read of waiter below (see awaitSamples)
+        head.set(currentHead + 1);
+        publishedSamples++;
+        if (used + 1 > highWaterMark) {
+            highWaterMark = used + 1;
+        }
+
+        Thread parked = waiter;
+        if (parked != null) {
+            LockSupport.unpark(parked);
+        }
+        return true;
+    }
+
+    /**
+     * Drain up to maxSamples samples into the consumer. Must only be called from the consumer thread.
+     * @return Number of samples drained
+     */
+    public int drain(SampleConsumer consumer, int maxSamples) {
+        long currentTail = tail.get();
+        int available = (int) (head.get() - currentTail);
+        int count = Math.min(available, maxSamples);
+        for (int i = 0; i < count; i++) {
+            int slot = (int) (currentTail + i) & mask;
+            int base = slot * 3;
+            consumer.onSample(sensorTypes[slot], timestamps[slot],
+                    values[base], values[base + 1], values[base + 2]);
+        }
+        if (count > 0) {
+            // Release the slots back to the producer
+            tail.lazySet(currentTail + count);
+        }
+        return count;
+    }
+
+    /**
+     * Park the calling consumer thread until a sample is published or the timeout expires
+     * @param timeoutNs Maximum time to wait in nanoseconds
+     */
+    public void awaitSamples(long timeoutNs) {
+        waiter = Thread.currentThread();
+        // Re-check after announcing ourselves. publish stores head before it reads waiter,
+        // both volatile, so either it sees us and unparks or we see its sample here.
+        if (isEmpty()) {
+            LockSupport.parkNanos(this, timeoutNs);
+        }
+        waiter = null;
+    }
+
+    /**
+     * Wake a consumer parked in awaitSamples (used when shutting down)
+     */
+    public void wakeConsumer() {
+        Thread parked = waiter;
+        if (parked != null) {
+            LockSupport.unpark(parked);
+        }
+    }
+
+    public boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+
+    public int size() {
+        return (int) (head.get() - tail.get());
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return Total number of samples accepted into the buffer
+     */
+    public long getPublishedSampleCount() {
+        return publishedSamples;
+    }
+
+    /**
+     * @return Total number of samples dropped because the buffer was full
+     */
+    public long getDroppedSampleCount() {
+        return droppedSamples;
+    }
+
+    /**
+     * @return Number of distinct episodes in which the buffer ran full
+     */
+    public long getOverrunCount() {
+        return overruns;
+    }
+
+    /**
+     * @return Highest number of samples waiting in the buffer at once
+     */
+    public int getHighWaterMark() {
+        return highWaterMark;
+    }
+}
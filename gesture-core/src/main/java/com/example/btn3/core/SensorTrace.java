@@ -0,0 +1,49 @@
+package com.example.btn3.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Binary sensor trace format shared by SensorTraceRecorder and SensorTraceReplayer.
+ * A 16-byte header is followed by fixed-size little-endian records:
+ * type (1 byte), timestamp in nanoseconds (8 bytes), x, y, z (3 floats).
+ * Sample types use the android.hardware.Sensor constants so samples from the
+ * SensorSampleBuffer can be written as they are.
+ */
+public final class SensorTrace {
+
+    // Record types
+    public static final int ACCELEROMETER = 1; // Sensor.TYPE_ACCELEROMETER
+    public static final int GYROSCOPE = 4;     // Sensor.TYPE_GYROSCOPE
+    // Ground-truth annotation: x holds the GestureType ordinal of a gesture performed at this time
+    public static final int LABEL = 127;
+
+    static final int MAGIC = 0x54335442; // "BT3T"
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 21;
+    static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    private SensorTrace() {
+    }
+
+    static void writeHeader(ByteBuffer buffer) {
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putShort((short) RECORD_SIZE);
+        buffer.putLong(0L); // reserved
+    }
+
+    static void readHeader(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a sensor trace");
+        }
+        short version = buffer.getShort();
+        short recordSize = buffer.getShort();
+        if (version != VERSION || recordSize != RECORD_SIZE) {
+            throw new IOException("Unsupported trace version " + version);
+        }
+        buffer.getLong();
+    }
+}
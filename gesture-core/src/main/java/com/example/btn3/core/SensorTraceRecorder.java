@@ -0,0 +1,113 @@
+package com.example.btn3.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends timestamped samples to a binary trace file (see SensorTrace). Records are
+ * encoded into one preallocated direct buffer that is written to the file channel
+ * whenever it fills up, so recording does not allocate. Not thread-safe; feed it
+ * from a single thread, e.g. the sensor consumer thread.
+ */
+public class SensorTraceRecorder implements SensorSampleBuffer.SampleConsumer, Closeable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private IOException failure;
+    private long recordCount = 0;
+    private boolean closed = false;
+
+    public SensorTraceRecorder(Path file) throws IOException {
+        this(file, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Create or truncate the trace file
+     * @param file Trace file
+     * @param bufferSize Bytes buffered between writes
+     */
+    public SensorTraceRecorder(Path file, int bufferSize) throws IOException {
+        if (bufferSize < SensorTrace.HEADER_SIZE + SensorTrace.RECORD_SIZE) {
+            throw new IllegalArgumentException("Buffer too small");
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        buffer = ByteBuffer.allocateDirect(bufferSize).order(SensorTrace.BYTE_ORDER);
+        SensorTrace.writeHeader(buffer);
+    }
+
+    /**
+     * Append one sample. A write error stops recording; it is rethrown by flush or close.
+     */
+    @Override
+    public void onSample(int sensorType, long timestampNs, float x, float y, float z) {
+        if (failure != null || closed) {
+            return;
+        }
+        if (buffer.remaining() < SensorTrace.RECORD_SIZE) {
+            try {
+                writeBuffer();
+            } catch (IOException e) {
+                failure = e;
+                return;
+            }
+        }
+        buffer.put((byte) sensorType);
+        buffer.putLong(timestampNs);
+        buffer.putFloat(x);
+        buffer.putFloat(y);
+        buffer.putFloat(z);
+        recordCount++;
+    }
+
+    /**
+     * Record that a gesture was performed at the given time (ground truth for evaluation)
+     */
+    public void label(GestureDetector.GestureType gestureType, long timestampNs) {
+        onSample(SensorTrace.LABEL, timestampNs, gestureType.ordinal(), 0f, 0f);
+    }
+
+    /**
+     * Write everything buffered so far to the file
+     */
+    public void flush() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        writeBuffer();
+    }
+
+    /**
+     * @return Records appended so far
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            closed = true;
+            channel.close();
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.btn3.core;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a binary trace (see SensorTrace) into a consumer or a GestureDetector.
+ * Detection time always comes from the trace timestamps, so a replay produces the
+ * same gestures every time; the wall clock is only used to pace REALTIME replays.
+ */
+public class SensorTraceReplayer implements Closeable {
+
+    // How fast samples are delivered
+    public enum Pace {
+        REALTIME,          // sleep so samples arrive with their recorded spacing
+        AS_FAST_AS_POSSIBLE
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private long replayedRecords = 0;
+    private long firstTimestamp = Long.MIN_VALUE;
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    public SensorTraceReplayer(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(SensorTrace.BYTE_ORDER);
+        buffer.limit(0);
+        try {
+            fill();
+            SensorTrace.readHeader(buffer);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Feed the remaining records to a detector: sensor samples go to the timestamped
+     * process methods, labels are skipped
+     */
+    public void replay(GestureDetector detector, Pace pace) throws IOException {
+        replay((sensorType, timestampNs, x, y, z) -> {
+            if (sensorType == SensorTrace.ACCELEROMETER) {
+                detector.processAccelerometerData(x, y, z, timestampNs);
+            } else if (sensorType == SensorTrace.GYROSCOPE) {
+                detector.processGyroscopeData(x, y, z, timestampNs);
+            }
+        }, pace);
+    }
+
+    /**
+     * Feed the remaining records, labels included, to a consumer
+     */
+    public void replay(SensorSampleBuffer.SampleConsumer consumer, Pace pace) throws IOException {
+        long wallStart = System.nanoTime();
+        long traceStart = Long.MIN_VALUE;
+        while (true) {
+            if (buffer.remaining() < SensorTrace.RECORD_SIZE && !fill()) {
+                if (buffer.hasRemaining()) {
+                    throw new EOFException("Truncated trace record");
+                }
+                return;
+            }
+            int sensorType = buffer.get();
+            long timestampNs = buffer.getLong();
+            float x = buffer.getFloat();
+            float y = buffer.getFloat();
+            float z = buffer.getFloat();
+
+            if (traceStart == Long.MIN_VALUE) {
+                traceStart = timestampNs;
+            }
+            if (pace == Pace.REALTIME) {
+                long delay = (timestampNs - traceStart) - (System.nanoTime() - wallStart);
+                if (delay > 0) {
+                    LockSupport.parkNanos(delay);
+                }
+            }
+            if (firstTimestamp == Long.MIN_VALUE) {
+                firstTimestamp = timestampNs;
+            }
+            lastTimestamp = timestampNs;
+            replayedRecords++;
+            consumer.onSample(sensorType, timestampNs, x, y, z);
+        }
+    }
+
+    /**
+     * @return Records delivered so far
+     */
+    public long getReplayedRecordCount() {
+        return replayedRecords;
+    }
+
+    /**
+     * @return Time span covered by the records delivered so far (trace time)
+     */
+    public long getReplayedDurationNs() {
+        return replayedRecords == 0 ? 0 : lastTimestamp - firstTimestamp;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Move unread bytes to the front and read more
+     * @return true if at least one full record is available
+     */
+    private boolean fill() throws IOException {
+        buffer.compact();
+        while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+            // keep reading until the buffer is full or the file ends
+        }
+        buffer.flip();
+        return buffer.remaining() >= SensorTrace.RECORD_SIZE;
+    }
+}
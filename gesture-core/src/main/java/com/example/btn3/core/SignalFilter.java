@@ -0,0 +1,25 @@
+package com.example.btn3.core;
+
+/**
+ * One streaming filter stage on a single channel. Implementations keep their state
+ * in preallocated primitive fields and never allocate per sample.
+ */
+public interface SignalFilter {
+
+    // Creates a fresh filter with its own state (one per axis)
+    interface Factory {
+        SignalFilter create();
+    }
+
+    /**
+     * Filter one sample
+     * @param sample Input value
+     * @return Filtered value
+     */
+    float process(float sample);
+
+    /**
+     * Clear the filter state
+     */
+    void reset();
+}
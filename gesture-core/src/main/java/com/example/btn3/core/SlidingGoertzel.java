@@ -0,0 +1,119 @@
+package com.example.btn3.core;
+
+import java.util.Arrays;
+
+/**
+ * Sliding Goertzel filter bank: the power of DFT bins firstBin..lastBin of the last
+ * windowSize samples of one signal, updated per sample. A comb (x[n] - x[n-N])
+ * feeds one second-order resonator per bin, so each sample costs one ring write and
+ * two multiply-adds per bin, independent of the window length; reading a bin's
+ * power costs three multiplies. The resonators are damped slightly (DAMPING per
+ * sample, applied as DAMPING^N to the sample leaving the comb) so float rounding
+ * cannot accumulate on the unit circle.
+ *
+ * The ring starts filled with the first sample, so a constant offset such as
+ * gravity never reaches the bins.
+ */
+public class SlidingGoertzel {
+
+    public static final float DAMPING = 0.9999f;
+
+    private final int windowSize;
+    private final int firstBin;
+    private final int binCount;
+
+    // Per-bin resonator coefficients and state
+    private final float[] coefficient; // 2 r cos(w)
+    private final float[] cosine; // r cos(w), for the power
+    private final float[] previous;
+    private final float[] beforePrevious;
+    private final float dampingSquared;
+    private final float combDamping; // DAMPING^N
+
+    private final float[] ring;
+    private int head = 0;
+    private boolean primed = false;
+
+    /**
+     * @param windowSize Window length N in samples; bin k is at k / N of the sample rate
+     * @param firstBin Lowest bin (at least 1)
+     * @param lastBin Highest bin (below N / 2)
+     */
+    public SlidingGoertzel(int windowSize, int firstBin, int lastBin) {
+        if (firstBin < 1 || lastBin < firstBin || lastBin >= windowSize / 2) {
+            throw new IllegalArgumentException("Bins must lie in 1..N/2-1");
+        }
+        this.windowSize = windowSize;
+        this.firstBin = firstBin;
+        this.binCount = lastBin - firstBin + 1;
+        this.coefficient = new float[binCount];
+        this.cosine = new float[binCount];
+        this.previous = new float[binCount];
+        this.beforePrevious = new float[binCount];
+        this.dampingSquared = DAMPING * DAMPING;
+        this.combDamping = (float) Math.pow(DAMPING, windowSize);
+        for (int b = 0; b < binCount; b++) {
+            double omega = 2.0 * Math.PI * (firstBin + b) / windowSize;
+            coefficient[b] = (float) (2.0 * DAMPING * Math.cos(omega));
+            cosine[b] = (float) (DAMPING * Math.cos(omega));
+        }
+        this.ring = new float[windowSize];
+    }
+
+    /**
+     * Add one sample and advance every bin
+     */
+    public void add(float value) {
+        if (!primed) {
+            primed = true;
+            Arrays.fill(ring, value);
+        }
+        float comb = value - combDamping * ring[head];
+        ring[head] = value;
+        head = head + 1 == windowSize ? 0 : head + 1;
+        for (int b = 0; b < binCount; b++) {
+            float next = comb + coefficient[b] * previous[b] - dampingSquared * beforePrevious[b];
+            beforePrevious[b] = previous[b];
+            previous[b] = next;
+        }
+    }
+
+    /**
+     * @return |X[k]|^2 of one bin
+     */
+    public float getPower(int bin) {
+        int b = bin - firstBin;
+        float y1 = previous[b];
+        float y2 = beforePrevious[b];
+        return y1 * y1 + dampingSquared * y2 * y2 - 2.0f * cosine[b] * y1 * y2;
+    }
+
+    /**
+     * @return Sum of |X[k]|^2 over bins from..to
+     */
+    public float getPower(int fromBin, int toBin) {
+        float sum = 0f;
+        for (int bin = fromBin; bin <= toBin; bin++) {
+            sum += getPower(bin);
+        }
+        return sum;
+    }
+
+    /**
+     * @return Amplitude of a sinusoid on a bin that produces this power: 2 sqrt(power) / N
+     */
+    public float toAmplitude(float power) {
+        return 2.0f * (float) Math.sqrt(power) / windowSize;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public void reset() {
+        Arrays.fill(previous, 0f);
+        Arrays.fill(beforePrevious, 0f);
+        head = 0;
+        primed = false;
+    }
+}
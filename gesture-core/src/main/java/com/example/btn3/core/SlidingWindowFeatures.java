@@ -0,0 +1,179 @@
+package com.example.btn3.core;
+
+import java.util.Arrays;
+
+/**
+ * Streaming features of one signal over a sliding window of samples: mean,
+ * variance, zero crossings, peak count and energy. Samples are quantized to fixed
+ * point (FRACTION_BITS) on entry, so the running sums are exact integers: adding a
+ * sample and dropping the oldest one is O(1) and never drifts. Per-sample events
+ * (a crossing, a peak) are kept in a ring alongside the values and subtracted
+ * again when their sample leaves the window.
+ *
+ * Zero crossings use a deadband, so noise around zero is not counted; a peak is a
+ * local maximum of |value| above the peak threshold, attributed to the sample
+ * after it.
+ */
+public class SlidingWindowFeatures {
+
+    // Layout of copyFeatures
+    public static final int MEAN = 0;
+    public static final int VARIANCE = 1;
+    public static final int ZERO_CROSSINGS = 2;
+    public static final int PEAKS = 3;
+    public static final int ENERGY = 4;
+    public static final int FEATURE_COUNT = 5;
+
+    // Fixed-point fraction bits of samples and features
+    public static final int FRACTION_BITS = 8;
+    private static final float SCALE = 1 << FRACTION_BITS;
+    // Samples are clamped to +-256 m/s^2 (beyond any phone accelerometer) so the sums cannot overflow
+    private static final int LIMIT = 1 << 16;
+
+    private static final byte CROSSING = 1;
+    private static final byte PEAK = 2;
+
+    private final int windowSize;
+    private final int deadband;
+    private final int peakThreshold;
+
+    // Window ring: quantized values and their events
+    private final int[] values;
+    private final byte[] events;
+    private int head = 0;
+    private int count = 0;
+
+    // Running sums over the window
+    private long sum = 0;
+    private long sumSquares = 0;
+    private int crossings = 0;
+    private int peaks = 0;
+
+    // Crossing and peak detection state
+    private int lastSign = 0;
+    private int previousMagnitude = 0;
+    private int beforePreviousMagnitude = 0;
+
+    /**
+     * @param windowSize Number of samples in the window
+     * @param deadband Distance from zero a sample must reach to count for a crossing
+     * @param peakThreshold Minimum |value| of a peak
+     */
+    public SlidingWindowFeatures(int windowSize, float deadband, float peakThreshold) {
+        if (windowSize < 2) {
+            throw new IllegalArgumentException("Window must hold at least 2 samples");
+        }
+        this.windowSize = windowSize;
+        this.deadband = quantize(deadband);
+        this.peakThreshold = quantize(peakThreshold);
+        this.values = new int[windowSize];
+        this.events = new byte[windowSize];
+    }
+
+    /**
+     * Add one sample, dropping the oldest once the window is full
+     */
+    public void add(float value) {
+        int quantized = quantize(value);
+        if (count == windowSize) {
+            int old = values[head];
+            sum -= old;
+            sumSquares -= (long) old * old;
+            byte oldEvents = events[head];
+            crossings -= oldEvents & CROSSING;
+            peaks -= (oldEvents & PEAK) >> 1;
+        } else {
+            count++;
+        }
+
+        byte event = 0;
+        int magnitude = Math.abs(quantized);
+        if (magnitude > deadband) {
+            int sign = quantized > 0 ? 1 : -1;
+            if (lastSign != 0 && sign != lastSign) {
+                event |= CROSSING;
+                crossings++;
+            }
+            lastSign = sign;
+        }
+        if (previousMagnitude > peakThreshold && previousMagnitude > beforePreviousMagnitude
+                && previousMagnitude >= magnitude) {
+            event |= PEAK;
+            peaks++;
+        }
+        beforePreviousMagnitude = previousMagnitude;
+        previousMagnitude = magnitude;
+
+        values[head] = quantized;
+        events[head] = event;
+        sum += quantized;
+        sumSquares += (long) quantized * quantized;
+        head = head + 1 == windowSize ? 0 : head + 1;
+    }
+
+    /**
+     * @return True once the window holds windowSize samples
+     */
+    public boolean isFull() {
+        return count == windowSize;
+    }
+
+    /**
+     * Write the features in fixed point (FRACTION_BITS), in the MEAN..ENERGY layout
+     */
+    public void copyFeatures(int[] out, int offset) {
+        int n = Math.max(count, 1);
+        long mean = sum / n;
+        long energy = sumSquares / n; // twice the fraction bits
+        out[offset + MEAN] = (int) mean;
+        out[offset + VARIANCE] = (int) ((energy - mean * mean) >> FRACTION_BITS);
+        out[offset + ZERO_CROSSINGS] = crossings << FRACTION_BITS;
+        out[offset + PEAKS] = peaks << FRACTION_BITS;
+        out[offset + ENERGY] = (int) (energy >> FRACTION_BITS);
+    }
+
+    public float getMean() {
+        return count == 0 ? 0f : sum / SCALE / count;
+    }
+
+    public float getVariance() {
+        if (count == 0) {
+            return 0f;
+        }
+        double mean = (double) sum / count;
+        return (float) (((double) sumSquares / count - mean * mean) / (SCALE * SCALE));
+    }
+
+    public float getEnergy() {
+        return count == 0 ? 0f : (float) ((double) sumSquares / count / (SCALE * SCALE));
+    }
+
+    public int getZeroCrossings() {
+        return crossings;
+    }
+
+    public int getPeakCount() {
+        return peaks;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public void reset() {
+        head = 0;
+        count = 0;
+        sum = 0;
+        sumSquares = 0;
+        crossings = 0;
+        peaks = 0;
+        lastSign = 0;
+        previousMagnitude = 0;
+        beforePreviousMagnitude = 0;
+        Arrays.fill(events, (byte) 0);
+    }
+
+    private static int quantize(float value) {
+        return Math.max(-LIMIT, Math.min(LIMIT, Math.round(value * SCALE)));
+    }
+}
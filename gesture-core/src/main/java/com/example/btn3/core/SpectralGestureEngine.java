@@ -0,0 +1,190 @@
+package com.example.btn3.core;
+
+import com.example.btn3.core.GestureDetector.GestureType;
+
+/**
+ * Tells shakes from waves by frequency rather than peak amplitude. Each
+ * accelerometer axis is high-passed at 0.7 Hz, which turns a held tilt into a short
+ * decay instead of a step that would leak into the low bins, and feeds a
+ * SlidingGoertzel bank over a one-second window, so bin k sits at k Hz whatever the
+ * sample rate; the wave band covers 1-2 Hz and the shake band 3-10 Hz. The band
+ * power summed over the axes is compared with the squared amplitude thresholds, so
+ * no square root is taken unless a gesture fires: the band with more power wins if
+ * it is above its threshold. Once a gesture fires both bands must fall below the
+ * re-arm ratio of their thresholds before the next.
+ *
+ * Fixed cost per accelerometer sample: 3 one-pole filters, 3 ring writes and 2
+ * multiply-adds for each of the 3 x 10 bins to advance the resonators, then 3
+ * multiplies per bin to read the band powers; nothing is allocated. Tilt and
+ * rotation stay with the stock threshold rules, the tilt rule behind a 2 Hz low-pass
+ * as in FeatureGestureEngine.
+ */
+public class SpectralGestureEngine implements GestureEngine {
+
+    public static final float WINDOW_SECONDS = 1.0f;
+    // Bands in bins of the one-second window, i.e. in Hz
+    public static final int WAVE_FIRST_BIN = 1;
+    public static final int WAVE_LAST_BIN = 2;
+    public static final int SHAKE_FIRST_BIN = 3;
+    public static final int SHAKE_LAST_BIN = 10;
+    // Default band amplitude thresholds (m/s^2, of a sinusoid filling the window)
+    public static final float WAVE_AMPLITUDE = 3.0f;
+    public static final float SHAKE_AMPLITUDE = 6.0f;
+    public static final float HIGH_PASS_CUTOFF_HZ = 0.7f;
+    public static final float TILT_LOW_PASS_CUTOFF_HZ = 2.0f;
+
+    private static final int AXES = 3;
+
+    /**
+     * @param sampleRateHz Accelerometer rate; the window holds one second of samples
+     */
+    public static GestureEngine.Factory factory(float sampleRateHz) {
+        return sink -> new SpectralGestureEngine(sink, sampleRateHz);
+    }
+
+    private final GestureSink sink;
+    private final ThresholdGestureEngine thresholds;
+    private final SlidingGoertzel[] banks = new SlidingGoertzel[AXES];
+    private final SignalFilter[] highPass = new SignalFilter[AXES];
+    private final SignalFilter[] lowPass = new SignalFilter[AXES];
+    // Power of a sinusoid with unit amplitude on one bin: (N / 2)^2
+    private final float unitPower;
+
+    private float waveSensitivity = 1.0f;
+    private float shakeSensitivity = 1.0f;
+    private float waveRearmRatio = ThresholdGestureEngine.defaultRearmRatio(GestureType.WAVE);
+    private float shakeRearmRatio = ThresholdGestureEngine.defaultRearmRatio(GestureType.SHAKE);
+
+    // Squared-amplitude limits as band powers
+    private float waveLimit;
+    private float shakeLimit;
+    private float waveRearmLimit;
+    private float shakeRearmLimit;
+    private boolean armed = true;
+
+    private float lastWavePower;
+    private float lastShakePower;
+
+    public SpectralGestureEngine(GestureSink sink, float sampleRateHz) {
+        this.sink = sink;
+        int windowSize = Math.round(WINDOW_SECONDS * sampleRateHz);
+        if (SHAKE_LAST_BIN >= windowSize / 2) {
+            throw new IllegalArgumentException("Sample rate too low for the shake band: " + sampleRateHz + " Hz");
+        }
+        float halfWindow = windowSize / 2.0f;
+        this.unitPower = halfWindow * halfWindow;
+        SignalFilter.Factory bandFilter = OnePoleFilter.highPass(sampleRateHz, HIGH_PASS_CUTOFF_HZ);
+        SignalFilter.Factory tiltFilter = BiquadFilter.lowPass(sampleRateHz, TILT_LOW_PASS_CUTOFF_HZ,
+                BiquadFilter.BUTTERWORTH_Q);
+        for (int axis = 0; axis < AXES; axis++) {
+            banks[axis] = new SlidingGoertzel(windowSize, WAVE_FIRST_BIN, SHAKE_LAST_BIN);
+            highPass[axis] = bandFilter.create();
+            lowPass[axis] = tiltFilter.create();
+        }
+        this.thresholds = new ThresholdGestureEngine(sink, ThresholdGestureEngine.axisRules());
+        updateLimits();
+    }
+
+    @Override
+    public void processAccelerometer(float x, float y, float z, long timestampNs) {
+        thresholds.processAccelerometer(lowPass[0].process(x), lowPass[1].process(y), lowPass[2].process(z),
+                timestampNs);
+        banks[0].add(highPass[0].process(x));
+        banks[1].add(highPass[1].process(y));
+        banks[2].add(highPass[2].process(z));
+
+        float wavePower = 0f;
+        float shakePower = 0f;
+        for (int axis = 0; axis < AXES; axis++) {
+            wavePower += banks[axis].getPower(WAVE_FIRST_BIN, WAVE_LAST_BIN);
+            shakePower += banks[axis].getPower(SHAKE_FIRST_BIN, SHAKE_LAST_BIN);
+        }
+        lastWavePower = wavePower;
+        lastShakePower = shakePower;
+
+        if (!armed) {
+            if (wavePower < waveRearmLimit && shakePower < shakeRearmLimit) {
+                armed = true;
+            }
+            return;
+        }
+        if (shakePower > shakeLimit && shakePower > wavePower) {
+            armed = false;
+            sink.onGesture(GestureType.SHAKE, toAmplitude(shakePower), timestampNs);
+        } else if (wavePower > waveLimit && wavePower >= shakePower) {
+            armed = false;
+            sink.onGesture(GestureType.WAVE, toAmplitude(wavePower), timestampNs);
+        }
+    }
+
+    @Override
+    public void processGyroscope(float x, float y, float z, long timestampNs) {
+        thresholds.processGyroscope(x, y, z, timestampNs);
+    }
+
+    @Override
+    public void setSensitivity(float waveSensitivity, float tiltSensitivity,
+                               float rotationSensitivity, float shakeSensitivity) {
+        thresholds.setSensitivity(waveSensitivity, tiltSensitivity, rotationSensitivity, shakeSensitivity);
+        this.waveSensitivity = waveSensitivity;
+        this.shakeSensitivity = shakeSensitivity;
+        updateLimits();
+    }
+
+    @Override
+    public void setRearmRatio(GestureType gestureType, float ratio) {
+        thresholds.setRearmRatio(gestureType, ratio);
+        if (gestureType == GestureType.WAVE) {
+            waveRearmRatio = ratio;
+        } else if (gestureType == GestureType.SHAKE) {
+            shakeRearmRatio = ratio;
+        }
+        updateLimits();
+    }
+
+    /**
+     * Onsets come from the tilt and rotation rules only
+     */
+    @Override
+    public void setOnsetSink(OnsetSink sink, float onsetRatio) {
+        thresholds.setOnsetSink(sink, onsetRatio);
+    }
+
+    @Override
+    public void reset() {
+        thresholds.reset();
+        for (int axis = 0; axis < AXES; axis++) {
+            banks[axis].reset();
+            highPass[axis].reset();
+            lowPass[axis].reset();
+        }
+        armed = true;
+    }
+
+    /**
+     * @return Wave band amplitude after the last accelerometer sample (m/s^2)
+     */
+    public float getWaveAmplitude() {
+        return toAmplitude(lastWavePower);
+    }
+
+    /**
+     * @return Shake band amplitude after the last accelerometer sample (m/s^2)
+     */
+    public float getShakeAmplitude() {
+        return toAmplitude(lastShakePower);
+    }
+
+    private float toAmplitude(float power) {
+        return (float) Math.sqrt(power / unitPower);
+    }
+
+    private void updateLimits() {
+        float wave = WAVE_AMPLITUDE * waveSensitivity;
+        float shake = SHAKE_AMPLITUDE * shakeSensitivity;
+        waveLimit = wave * wave * unitPower;
+        shakeLimit = shake * shake * unitPower;
+        waveRearmLimit = waveLimit * waveRearmRatio * waveRearmRatio;
+        shakeRearmLimit = shakeLimit * shakeRearmRatio * shakeRearmRatio;
+    }
+}
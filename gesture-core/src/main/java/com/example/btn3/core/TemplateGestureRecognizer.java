@@ -0,0 +1,596 @@
+package com.example.btn3.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ * Recognises user-recorded gestures by dynamic time warping. Accelerometer samples
+ * are averaged into points of a fixed period; once a full window of points is
+ * available, each new point compares the window (mean removed per axis, so gravity
+ * drops out) against every template within a Sakoe-Chiba band.
+ *
+ * Matching stays cheap with many templates: a still window is skipped from running
+ * sums alone, LB_Keogh lower bounds against precomputed template envelopes are
+ * computed first (abandoned once they exceed the match limit), templates are then
+ * tried in ascending bound order so the best distance so far tightens quickly, and
+ * DTW itself is abandoned as soon as a whole row exceeds that distance. Matching
+ * allocates nothing; templates are swapped copy-on-write so they can be added from
+ * another thread.
+ *
+ * Templates are stored as a properties file mapping template.id to the template's
+ * normalized points (x0,y0,z0,x1,...), so gestures recorded by the user survive a
+ * restart.
+ */
+public class TemplateGestureRecognizer {
+
+    // Receives matched templates
+    public interface MatchListener {
+        void onMatch(int templateId, float intensity, long timestampNs);
+    }
+
+    public static final String FILE_NAME = "gesture_templates.properties";
+    public static final String KEY_PREFIX = "template.";
+
+    public static final long DEFAULT_POINT_PERIOD_NS = 20_000_000L; // 50 Hz
+    public static final int DEFAULT_TEMPLATE_LENGTH = 40; // 0.8 s at 50 Hz
+    // Mean squared distance per point at which a window still matches ((m/s^2)^2)
+    public static final float DEFAULT_MATCH_THRESHOLD = 4.0f;
+    // Windows with less total variance than this are not compared ((m/s^2)^2)
+    public static final float DEFAULT_MIN_VARIANCE = 1.0f;
+
+    private static final int AXES = 3;
+    // Gaps longer than this many points restart the window
+    private static final int MAX_GAP_POINTS = 5;
+    private static final float INFINITY = Float.POSITIVE_INFINITY;
+    private static final long NO_SAMPLE = Long.MIN_VALUE;
+
+    private final MatchListener listener;
+    private final long pointPeriodNs;
+    private final int length;
+    private final int band;
+    private volatile float matchThreshold = DEFAULT_MATCH_THRESHOLD;
+    private volatile float minVariance = DEFAULT_MIN_VARIANCE;
+
+    // Templates, replaced as a whole when one is added or removed
+    private volatile Template[] templates = new Template[0];
+
+    // Point being accumulated
+    private long bucketEnd = NO_SAMPLE;
+    private float bucketX;
+    private float bucketY;
+    private float bucketZ;
+    private int bucketCount = 0;
+
+    // Window of the last length points, with running sums for the mean and variance
+    private final float[] window;
+    private int windowHead = 0;
+    private int windowCount = 0;
+    private double sumX;
+    private double sumY;
+    private double sumZ;
+    private double sumSquares;
+
+    // Scratch buffers for matching
+    private final float[] query;
+    private final float[] previousRow;
+    private final float[] currentRow;
+    private float[] lowerBounds = new float[0];
+    private int[] order = new int[0];
+
+    // Recording, guarded by this
+    private volatile boolean recording = false;
+    private float[] recorded = new float[DEFAULT_TEMPLATE_LENGTH * AXES * 2];
+    private int recordedCount = 0;
+
+    // Statistics
+    private long comparedWindowCount = 0;
+    private long lowerBoundPruneCount = 0;
+    private long abandonCount = 0;
+    private long dtwCount = 0;
+    private long matchCount = 0;
+
+    public TemplateGestureRecognizer(MatchListener listener) {
+        this(DEFAULT_POINT_PERIOD_NS, DEFAULT_TEMPLATE_LENGTH, listener);
+    }
+
+    /**
+     * @param pointPeriodNs Period of the points samples are averaged into
+     * @param length Number of points in a window and in every template
+     */
+    public TemplateGestureRecognizer(long pointPeriodNs, int length, MatchListener listener) {
+        if (length < 4) {
+            throw new IllegalArgumentException("Template length must be at least 4 points");
+        }
+        this.listener = listener;
+        this.pointPeriodNs = pointPeriodNs;
+        this.length = length;
+        this.band = Math.max(1, length / 10);
+        this.window = new float[length * AXES];
+        this.query = new float[length * AXES];
+        this.previousRow = new float[length + 1];
+        this.currentRow = new float[length + 1];
+    }
+
+    /**
+     * Set how close a window has to be to a template to match
+     * @param threshold Mean squared distance per point ((m/s^2)^2)
+     */
+    public void setMatchThreshold(float threshold) {
+        matchThreshold = threshold;
+    }
+
+    /**
+     * Set the total variance below which a window is considered still and skipped
+     */
+    public void setMinimumVariance(float variance) {
+        minVariance = variance;
+    }
+
+    /**
+     * Start collecting a template from the incoming samples; matching pauses meanwhile
+     */
+    public synchronized void startRecording() {
+        recordedCount = 0;
+        recording = true;
+    }
+
+    /**
+     * Stop recording and store the gesture as a template
+     * @param templateId Id reported when the template matches (replaces an existing one)
+     * @return False if the recording was shorter than a quarter of the template length
+     */
+    public synchronized boolean stopRecording(int templateId) {
+        recording = false;
+        if (recordedCount < length / 4) {
+            return false;
+        }
+        addTemplate(templateId, recorded, recordedCount);
+        return true;
+    }
+
+    public boolean isRecording() {
+        return recording;
+    }
+
+    /**
+     * Add a template from points at the point period, e.g. one stored earlier
+     * @param templateId Id reported when the template matches (replaces an existing one)
+     * @param xyz Packed accelerometer points (x0, y0, z0, x1, ...)
+     * @param pointCount Number of points, resampled to the template length
+     */
+    public synchronized void addTemplate(int templateId, float[] xyz, int pointCount) {
+        if (pointCount < 2) {
+            throw new IllegalArgumentException("A template needs at least 2 points");
+        }
+        Template template = new Template(templateId, resample(xyz, pointCount), length, band);
+        Template[] current = templates;
+        Template[] updated = new Template[current.length + 1];
+        int count = 0;
+        for (Template existing : current) {
+            if (existing.id != templateId) {
+                updated[count++] = existing;
+            }
+        }
+        updated[count++] = template;
+        templates = Arrays.copyOf(updated, count);
+    }
+
+    /**
+     * @return True if a template with this id was removed
+     */
+    public synchronized boolean removeTemplate(int templateId) {
+        Template[] current = templates;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i].id == templateId) {
+                Template[] updated = new Template[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                templates = updated;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getTemplateCount() {
+        return templates.length;
+    }
+
+    /**
+     * @return Ids of the templates, in the order they were added
+     */
+    public int[] getTemplateIds() {
+        Template[] current = templates;
+        int[] ids = new int[current.length];
+        for (int i = 0; i < current.length; i++) {
+            ids[i] = current[i].id;
+        }
+        return ids;
+    }
+
+    /**
+     * Write every template as template.id=x0,y0,z0,x1,...
+     * @param comment Header comment (may be null)
+     */
+    public void storeTemplates(OutputStream out, String comment) throws IOException {
+        Properties properties = new Properties();
+        for (Template template : templates) {
+            StringBuilder builder = new StringBuilder();
+            for (float value : template.points) {
+                if (builder.length() > 0) {
+                    builder.append(',');
+                }
+                builder.append(value);
+            }
+            properties.setProperty(KEY_PREFIX + template.id, builder.toString());
+        }
+        properties.store(out, comment);
+    }
+
+    /**
+     * Add every template.id entry of a properties file written by storeTemplates
+     * @return Number of templates added
+     */
+    public int loadTemplates(InputStream in) throws IOException {
+        Properties properties = new Properties();
+        properties.load(in);
+        int count = 0;
+        for (String key : properties.stringPropertyNames()) {
+            if (!key.startsWith(KEY_PREFIX)) {
+                continue;
+            }
+            try {
+                String[] values = properties.getProperty(key).split(",");
+                if (values.length % AXES != 0) {
+                    throw new IllegalArgumentException(values.length + " values are not whole points");
+                }
+                float[] xyz = new float[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    xyz[i] = Float.parseFloat(values[i].trim());
+                }
+                addTemplate(Integer.parseInt(key.substring(KEY_PREFIX.length())), xyz, values.length / AXES);
+                count++;
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid template " + key + ": " + e.getMessage(), e);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return The normalized points of a template (mean removed, resampled to the template length), or null
+     */
+    public float[] getTemplatePoints(int templateId) {
+        for (Template template : templates) {
+            if (template.id == templateId) {
+                return template.points.clone();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Process one accelerometer sample
+     */
+    public void processAccelerometer(float x, float y, float z, long timestampNs) {
+        if (!recording && templates.length == 0) {
+            return;
+        }
+        if (bucketEnd == NO_SAMPLE) {
+            bucketEnd = timestampNs + pointPeriodNs;
+        } else if (timestampNs >= bucketEnd) {
+            long periods = (timestampNs - bucketEnd) / pointPeriodNs;
+            if (bucketCount > 0) {
+                onPoint(bucketX / bucketCount, bucketY / bucketCount, bucketZ / bucketCount, bucketEnd);
+            }
+            if (periods > MAX_GAP_POINTS) {
+                clearWindow();
+            }
+            bucketEnd += (periods + 1) * pointPeriodNs;
+            bucketX = 0f;
+            bucketY = 0f;
+            bucketZ = 0f;
+            bucketCount = 0;
+        }
+        bucketX += x;
+        bucketY += y;
+        bucketZ += z;
+        bucketCount++;
+    }
+
+    /**
+     * Drop the partial point and the window
+     */
+    public void reset() {
+        bucketEnd = NO_SAMPLE;
+        bucketX = 0f;
+        bucketY = 0f;
+        bucketZ = 0f;
+        bucketCount = 0;
+        clearWindow();
+    }
+
+    // Windows compared against the templates (not skipped as still)
+    public long getComparedWindowCount() {
+        return comparedWindowCount;
+    }
+
+    // Template comparisons ruled out by the lower bound alone
+    public long getLowerBoundPruneCount() {
+        return lowerBoundPruneCount;
+    }
+
+    // DTW computations abandoned before the last row
+    public long getAbandonCount() {
+        return abandonCount;
+    }
+
+    public long getDtwCount() {
+        return dtwCount;
+    }
+
+    public long getMatchCount() {
+        return matchCount;
+    }
+
+    private void onPoint(float x, float y, float z, long timestampNs) {
+        if (recording) {
+            synchronized (this) {
+                if (recording) {
+                    appendRecorded(x, y, z);
+                }
+            }
+            clearWindow();
+            return;
+        }
+
+        int base = windowHead * AXES;
+        if (windowCount == length) {
+            float oldX = window[base];
+            float oldY = window[base + 1];
+            float oldZ = window[base + 2];
+            sumX -= oldX;
+            sumY -= oldY;
+            sumZ -= oldZ;
+            sumSquares -= oldX * oldX + oldY * oldY + oldZ * oldZ;
+        } else {
+            windowCount++;
+        }
+        window[base] = x;
+        window[base + 1] = y;
+        window[base + 2] = z;
+        sumX += x;
+        sumY += y;
+        sumZ += z;
+        sumSquares += x * x + y * y + z * z;
+        windowHead = windowHead + 1 == length ? 0 : windowHead + 1;
+
+        if (windowCount == length) {
+            match(timestampNs);
+        }
+    }
+
+    private void match(long timestampNs) {
+        Template[] current = templates;
+        if (current.length == 0) {
+            return;
+        }
+        double meanX = sumX / length;
+        double meanY = sumY / length;
+        double meanZ = sumZ / length;
+        double variance = sumSquares / length - (meanX * meanX + meanY * meanY + meanZ * meanZ);
+        if (variance < minVariance) {
+            return;
+        }
+        comparedWindowCount++;
+
+        // Unroll the window oldest first, mean removed
+        for (int i = 0, source = windowHead * AXES; i < query.length; i += AXES) {
+            query[i] = (float) (window[source] - meanX);
+            query[i + 1] = (float) (window[source + 1] - meanY);
+            query[i + 2] = (float) (window[source + 2] - meanZ);
+            source += AXES;
+            if (source == window.length) {
+                source = 0;
+            }
+        }
+
+        // Lower bounds first, then templates in ascending bound order
+        float limit = matchThreshold * length;
+        if (lowerBounds.length < current.length) {
+            lowerBounds = new float[current.length];
+            order = new int[current.length];
+        }
+        int candidates = 0;
+        for (int t = 0; t < current.length; t++) {
+            float bound = lowerBound(current[t], limit);
+            if (bound >= limit) {
+                lowerBoundPruneCount++;
+                continue;
+            }
+            int position = candidates++;
+            while (position > 0 && lowerBounds[position - 1] > bound) {
+                lowerBounds[position] = lowerBounds[position - 1];
+                order[position] = order[position - 1];
+                position--;
+            }
+            lowerBounds[position] = bound;
+            order[position] = t;
+        }
+
+        float best = limit;
+        Template bestTemplate = null;
+        for (int c = 0; c < candidates; c++) {
+            if (lowerBounds[c] >= best) {
+                lowerBoundPruneCount += candidates - c;
+                break;
+            }
+            Template template = current[order[c]];
+            float distance = distance(template, best);
+            if (distance < best) {
+                best = distance;
+                bestTemplate = template;
+            }
+        }
+
+        if (bestTemplate != null) {
+            matchCount++;
+            // A fresh window is needed before the next match
+            clearWindow();
+            listener.onMatch(bestTemplate.id, 1.0f - best / limit, timestampNs);
+        }
+    }
+
+    /**
+     * LB_Keogh: distance from the query to the template's band envelope, abandoned at the limit
+     */
+    private float lowerBound(Template template, float limit) {
+        float[] upper = template.upper;
+        float[] lower = template.lower;
+        float sum = 0f;
+        for (int i = 0; i < query.length; i++) {
+            float value = query[i];
+            if (value > upper[i]) {
+                float d = value - upper[i];
+                sum += d * d;
+            } else if (value < lower[i]) {
+                float d = lower[i] - value;
+                sum += d * d;
+            }
+            if (sum >= limit) {
+                return sum;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Banded DTW with squared Euclidean point distances, abandoned once a row exceeds the limit
+     */
+    private float distance(Template template, float limit) {
+        dtwCount++;
+        float[] points = template.points;
+        float[] previous = previousRow;
+        float[] current = currentRow;
+        Arrays.fill(previous, INFINITY);
+        Arrays.fill(current, INFINITY);
+        previous[0] = 0f;
+        for (int i = 0; i < length; i++) {
+            int from = Math.max(0, i - band);
+            int to = Math.min(length - 1, i + band);
+            // Cells the previous use of this row left behind that this row's neighbours read
+            current[from] = INFINITY;
+            if (to + 2 <= length) {
+                current[to + 2] = INFINITY;
+            }
+            int q = i * AXES;
+            float qx = query[q];
+            float qy = query[q + 1];
+            float qz = query[q + 2];
+            float rowMin = INFINITY;
+            for (int j = from, p = from * AXES; j <= to; j++, p += AXES) {
+                float dx = qx - points[p];
+                float dy = qy - points[p + 1];
+                float dz = qz - points[p + 2];
+                float cost = dx * dx + dy * dy + dz * dz
+                        + Math.min(previous[j + 1], Math.min(current[j], previous[j]));
+                current[j + 1] = cost;
+                if (cost < rowMin) {
+                    rowMin = cost;
+                }
+            }
+            if (rowMin >= limit) {
+                abandonCount++;
+                return INFINITY;
+            }
+            float[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[length];
+    }
+
+    private void clearWindow() {
+        windowHead = 0;
+        windowCount = 0;
+        sumX = 0;
+        sumY = 0;
+        sumZ = 0;
+        sumSquares = 0;
+    }
+
+    private void appendRecorded(float x, float y, float z) {
+        if ((recordedCount + 1) * AXES > recorded.length) {
+            recorded = Arrays.copyOf(recorded, recorded.length * 2);
+        }
+        int base = recordedCount * AXES;
+        recorded[base] = x;
+        recorded[base + 1] = y;
+        recorded[base + 2] = z;
+        recordedCount++;
+    }
+
+    /**
+     * Linearly resample points to the template length and remove the mean per axis
+     */
+    private float[] resample(float[] xyz, int pointCount) {
+        float[] points = new float[length * AXES];
+        float scale = (pointCount - 1) / (float) (length - 1);
+        for (int i = 0; i < length; i++) {
+            float position = i * scale;
+            int index = Math.min((int) position, pointCount - 2);
+            float fraction = position - index;
+            for (int axis = 0; axis < AXES; axis++) {
+                float a = xyz[index * AXES + axis];
+                float b = xyz[(index + 1) * AXES + axis];
+                points[i * AXES + axis] = a + (b - a) * fraction;
+            }
+        }
+        for (int axis = 0; axis < AXES; axis++) {
+            float mean = 0f;
+            for (int i = 0; i < length; i++) {
+                mean += points[i * AXES + axis];
+            }
+            mean /= length;
+            for (int i = 0; i < length; i++) {
+                points[i * AXES + axis] -= mean;
+            }
+        }
+        return points;
+    }
+
+    /**
+     * A normalized template and its LB_Keogh envelope
+     */
+    private static final class Template {
+        final int id;
+        final float[] points;
+        final float[] upper;
+        final float[] lower;
+
+        Template(int id, float[] points, int length, int band) {
+            this.id = id;
+            this.points = points;
+            this.upper = new float[points.length];
+            this.lower = new float[points.length];
+            for (int i = 0; i < length; i++) {
+                int from = Math.max(0, i - band);
+                int to = Math.min(length - 1, i + band);
+                for (int axis = 0; axis < AXES; axis++) {
+                    float max = -INFINITY;
+                    float min = INFINITY;
+                    for (int j = from; j <= to; j++) {
+                        float value = points[j * AXES + axis];
+                        max = Math.max(max, value);
+                        min = Math.min(min, value);
+                    }
+                    upper[i * AXES + axis] = max;
+                    lower[i * AXES + axis] = min;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,492 @@
+package com.example.btn3.core;
+
+import com.example.btn3.core.GestureDetector.GestureType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Table-driven threshold engine. Every rule for a sensor is evaluated in one pass
+ * per sample, in table order, and the first rule that fires wins. The acceleration
+ * magnitude is computed at most once per sample and compared squared, so the hot
+ * path has no sqrt; the square root is only taken for the intensity of a gesture
+ * that actually fires.
+ *
+ * Rules on the same signal share an arm state. When one fires the signal is
+ * disarmed: it keeps masking the rules below it but reports nothing until it falls
+ * back below the re-arm threshold, so a held tilt or one long shake fires once.
+ *
+ * With an OrientationFilter the engine can also evaluate fused signals: gravity in
+ * the sensor frame (tilt without linear motion mixed in) and the gravity-free
+ * linear acceleration. See fusedRules().
+ *
+ * With an onset sink, an armed signal that passes part of the way from its re-arm
+ * level to a rule's threshold reports that rule's gesture as an onset; an earlier
+ * rule in the table takes the onset over from a later one. The onset is abandoned
+ * if the signal falls back below the re-arm level without firing.
+ */
+public class ThresholdGestureEngine implements GestureEngine {
+
+    // Value a rule compares against its threshold
+    public enum Signal {
+        ACCELERATION_MAGNITUDE,
+        ACCELEROMETER_X,
+        ACCELEROMETER_Y,
+        ACCELEROMETER_Z,
+        // Fused signals (need an OrientationFilter), updated on accelerometer samples
+        LINEAR_ACCELERATION_MAGNITUDE,
+        GRAVITY_X,
+        GRAVITY_Y,
+        GRAVITY_Z,
+        GYROSCOPE_X,
+        GYROSCOPE_Y,
+        GYROSCOPE_Z
+    }
+
+    // Which setSensitivity multiplier scales a rule's threshold
+    public enum SensitivityGroup {
+        WAVE,
+        TILT,
+        ROTATION,
+        SHAKE
+    }
+
+    /**
+     * One row of the rule table. Axis rules fire on |value| > threshold and report
+     * positiveType or negativeType by sign; magnitude rules always report positiveType.
+     */
+    public static final class Rule {
+        final Signal signal;
+        final float threshold;
+        final SensitivityGroup sensitivityGroup;
+        final GestureType positiveType;
+        final GestureType negativeType;
+
+        public Rule(Signal signal, float threshold, SensitivityGroup sensitivityGroup,
+                    GestureType positiveType, GestureType negativeType) {
+            this.signal = signal;
+            this.threshold = threshold;
+            this.sensitivityGroup = sensitivityGroup;
+            this.positiveType = positiveType;
+            this.negativeType = negativeType;
+        }
+    }
+
+    // Default thresholds
+    public static final float WAVE_THRESHOLD = 12.0f;
+    public static final float TILT_THRESHOLD = 3.0f;
+    public static final float ROTATION_THRESHOLD = 2.5f;
+    public static final float SHAKE_THRESHOLD = 18.0f;
+
+    // Default thresholds on linear acceleration. The raw magnitude thresholds above
+    // include gravity, so the same gesture needs a smaller value once it is removed.
+    public static final float FUSED_WAVE_THRESHOLD = 2.5f;
+    public static final float FUSED_SHAKE_THRESHOLD = 8.0f;
+
+    /**
+     * @return Stock re-arm ratio. The raw magnitude includes gravity, so wave and
+     * shake must re-arm above 1 g; axis gestures re-arm at half their threshold.
+     */
+    public static float defaultRearmRatio(GestureType gestureType) {
+        switch (gestureType) {
+            case WAVE:
+            case SHAKE:
+                return 0.9f;
+            default:
+                return 0.5f;
+        }
+    }
+
+    /**
+     * @return The stock rule table (shake before wave so the stronger gesture wins)
+     */
+    public static List<Rule> defaultRules() {
+        List<Rule> rules = new ArrayList<>();
+        rules.add(new Rule(Signal.ACCELERATION_MAGNITUDE, SHAKE_THRESHOLD, SensitivityGroup.SHAKE,
+                GestureType.SHAKE, GestureType.SHAKE));
+        rules.add(new Rule(Signal.ACCELERATION_MAGNITUDE, WAVE_THRESHOLD, SensitivityGroup.WAVE,
+                GestureType.WAVE, GestureType.WAVE));
+        rules.add(new Rule(Signal.ACCELEROMETER_Y, TILT_THRESHOLD, SensitivityGroup.TILT,
+                GestureType.TILT_FORWARD, GestureType.TILT_BACKWARD));
+        rules.add(new Rule(Signal.GYROSCOPE_Z, ROTATION_THRESHOLD, SensitivityGroup.ROTATION,
+                GestureType.ROTATE_RIGHT, GestureType.ROTATE_LEFT));
+        return rules;
+    }
+
+    /**
+     * @return The stock rules for tilt and rotation only, for engines that decide wave
+     * and shake themselves
+     */
+    public static List<Rule> axisRules() {
+        List<Rule> rules = new ArrayList<>();
+        for (Rule rule : defaultRules()) {
+            if (rule.signal != Signal.ACCELERATION_MAGNITUDE) {
+                rules.add(rule);
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * @return The stock rule table on fused signals: wave and shake on linear
+     * acceleration, tilt on the gravity vector, rotation on the raw gyroscope
+     */
+    public static List<Rule> fusedRules() {
+        List<Rule> rules = new ArrayList<>();
+        rules.add(new Rule(Signal.LINEAR_ACCELERATION_MAGNITUDE, FUSED_SHAKE_THRESHOLD, SensitivityGroup.SHAKE,
+                GestureType.SHAKE, GestureType.SHAKE));
+        rules.add(new Rule(Signal.LINEAR_ACCELERATION_MAGNITUDE, FUSED_WAVE_THRESHOLD, SensitivityGroup.WAVE,
+                GestureType.WAVE, GestureType.WAVE));
+        rules.add(new Rule(Signal.GRAVITY_Y, TILT_THRESHOLD, SensitivityGroup.TILT,
+                GestureType.TILT_FORWARD, GestureType.TILT_BACKWARD));
+        rules.add(new Rule(Signal.GYROSCOPE_Z, ROTATION_THRESHOLD, SensitivityGroup.ROTATION,
+                GestureType.ROTATE_RIGHT, GestureType.ROTATE_LEFT));
+        return rules;
+    }
+
+    /**
+     * @return Factory for an engine running fusedRules() behind its own OrientationFilter
+     */
+    public static GestureEngine.Factory fused() {
+        return sink -> new ThresholdGestureEngine(sink, fusedRules(), new OrientationFilter());
+    }
+
+    private final GestureSink sink;
+    private final OrientationFilter fusion;
+
+    // Rule tables split per sensor, as parallel arrays for the hot path
+    private final RuleTable accelerometerRules;
+    private final RuleTable gyroscopeRules;
+    private final float[] sensitivity = {1.0f, 1.0f, 1.0f, 1.0f};
+    private final float[] rearmRatio = new float[GestureType.values().length];
+    private OnsetSink onsetSink;
+    private float onsetRatio = 1.0f;
+
+    // Number of magnitude computations so far (benchmarks check this is <= samples)
+    private long magnitudeComputations = 0;
+
+    public ThresholdGestureEngine(GestureSink sink) {
+        this(sink, defaultRules());
+    }
+
+    public ThresholdGestureEngine(GestureSink sink, List<Rule> rules) {
+        this(sink, rules, null);
+    }
+
+    /**
+     * @param fusion Fusion stage for the fused signals, or null if the rules only use raw signals
+     */
+    public ThresholdGestureEngine(GestureSink sink, List<Rule> rules, OrientationFilter fusion) {
+        this.sink = sink;
+        this.fusion = fusion;
+        for (GestureType gestureType : GestureType.values()) {
+            rearmRatio[gestureType.ordinal()] = defaultRearmRatio(gestureType);
+        }
+        List<Rule> accelerometer = new ArrayList<>();
+        List<Rule> gyroscope = new ArrayList<>();
+        for (Rule rule : rules) {
+            if (fusion == null && rule.signal.ordinal() >= Signal.LINEAR_ACCELERATION_MAGNITUDE.ordinal()
+                    && rule.signal.ordinal() <= Signal.GRAVITY_Z.ordinal()) {
+                throw new IllegalArgumentException("Rule on " + rule.signal + " needs an OrientationFilter");
+            }
+            if (rule.signal.ordinal() >= Signal.GYROSCOPE_X.ordinal()) {
+                gyroscope.add(rule);
+            } else {
+                accelerometer.add(rule);
+            }
+        }
+        accelerometerRules = new RuleTable(accelerometer);
+        gyroscopeRules = new RuleTable(gyroscope);
+        updateLimits();
+    }
+
+    @Override
+    public void processAccelerometer(float x, float y, float z, long timestampNs) {
+        RuleTable table = accelerometerRules;
+        float magnitudeSquared = 0f;
+        float linearMagnitudeSquared = 0f;
+        if (fusion != null) {
+            fusion.updateAccelerometer(x, y, z, timestampNs);
+        }
+        if (table.usesMagnitude) {
+            magnitudeSquared = x * x + y * y + z * z;
+            magnitudeComputations++;
+        }
+        if (table.usesLinearMagnitude) {
+            float lx = fusion.getLinearAccelerationX();
+            float ly = fusion.getLinearAccelerationY();
+            float lz = fusion.getLinearAccelerationZ();
+            linearMagnitudeSquared = lx * lx + ly * ly + lz * lz;
+            magnitudeComputations++;
+        }
+        evaluate(table, x, y, z, magnitudeSquared, linearMagnitudeSquared, timestampNs);
+    }
+
+    @Override
+    public void processGyroscope(float x, float y, float z, long timestampNs) {
+        if (fusion != null) {
+            fusion.updateGyroscope(x, y, z, timestampNs);
+        }
+        evaluate(gyroscopeRules, x, y, z, 0f, 0f, timestampNs);
+    }
+
+    private void evaluate(RuleTable table, float x, float y, float z, float magnitudeSquared,
+                          float linearMagnitudeSquared, long timestampNs) {
+        for (int i = 0; i < table.count; i++) {
+            int axis = table.axis[i];
+            int group = table.group[i];
+            if (axis < 0) {
+                float squared = axis == RuleTable.MAGNITUDE ? magnitudeSquared : linearMagnitudeSquared;
+                if (squared > table.limit[i]) {
+                    if (table.armed[group]) {
+                        table.armed[group] = false;
+                        table.onsetRule[group] = RuleTable.NO_ONSET;
+                        sink.onGesture(table.positiveType[i], (float) Math.sqrt(squared), timestampNs);
+                    }
+                    return;
+                }
+                if (onsetSink != null && table.armed[group] && squared > table.onsetLimit[i]) {
+                    startOnset(table, i, table.positiveType[i], timestampNs);
+                }
+                if (squared < table.rearmLimit[group]) {
+                    table.armed[group] = true;
+                    abandonOnset(table, group, timestampNs);
+                }
+            } else {
+                float value;
+                switch (axis) {
+                    case 0:
+                        value = x;
+                        break;
+                    case 1:
+                        value = y;
+                        break;
+                    case 2:
+                        value = z;
+                        break;
+                    case 3:
+                        value = fusion.getGravityX();
+                        break;
+                    case 4:
+                        value = fusion.getGravityY();
+                        break;
+                    default:
+                        value = fusion.getGravityZ();
+                        break;
+                }
+                float absolute = Math.abs(value);
+                if (absolute > table.limit[i]) {
+                    if (table.armed[group]) {
+                        table.armed[group] = false;
+                        table.onsetRule[group] = RuleTable.NO_ONSET;
+                        if (value > 0) {
+                            sink.onGesture(table.positiveType[i], value, timestampNs);
+                        } else {
+                            sink.onGesture(table.negativeType[i], -value, timestampNs);
+                        }
+                    }
+                    return;
+                }
+                if (onsetSink != null && table.armed[group] && absolute > table.onsetLimit[i]) {
+                    startOnset(table, i, value > 0 ? table.positiveType[i] : table.negativeType[i], timestampNs);
+                }
+                if (absolute < table.rearmLimit[group]) {
+                    table.armed[group] = true;
+                    abandonOnset(table, group, timestampNs);
+                }
+            }
+        }
+    }
+
+    /**
+     * Report an onset unless the group already has one from an earlier rule
+     */
+    private void startOnset(RuleTable table, int rule, GestureType gestureType, long timestampNs) {
+        int group = table.group[rule];
+        int pending = table.onsetRule[group];
+        if (pending != RuleTable.NO_ONSET && (pending < rule || table.onsetType[group] == gestureType)) {
+            return;
+        }
+        if (pending != RuleTable.NO_ONSET) {
+            onsetSink.onOnsetAbandoned(table.onsetType[group], timestampNs);
+        }
+        table.onsetRule[group] = rule;
+        table.onsetType[group] = gestureType;
+        onsetSink.onOnset(gestureType, timestampNs);
+    }
+
+    private void abandonOnset(RuleTable table, int group, long timestampNs) {
+        if (table.onsetRule[group] != RuleTable.NO_ONSET) {
+            table.onsetRule[group] = RuleTable.NO_ONSET;
+            if (onsetSink != null) {
+                onsetSink.onOnsetAbandoned(table.onsetType[group], timestampNs);
+            }
+        }
+    }
+
+    @Override
+    public void setSensitivity(float waveSensitivity, float tiltSensitivity,
+                               float rotationSensitivity, float shakeSensitivity) {
+        sensitivity[SensitivityGroup.WAVE.ordinal()] = waveSensitivity;
+        sensitivity[SensitivityGroup.TILT.ordinal()] = tiltSensitivity;
+        sensitivity[SensitivityGroup.ROTATION.ordinal()] = rotationSensitivity;
+        sensitivity[SensitivityGroup.SHAKE.ordinal()] = shakeSensitivity;
+        updateLimits();
+    }
+
+    @Override
+    public void setRearmRatio(GestureType gestureType, float ratio) {
+        rearmRatio[gestureType.ordinal()] = ratio;
+        updateLimits();
+    }
+
+    @Override
+    public void setOnsetSink(OnsetSink sink, float onsetRatio) {
+        if (onsetRatio < 0.0f || onsetRatio > 1.0f) {
+            throw new IllegalArgumentException("Onset ratio must be between 0 and 1");
+        }
+        this.onsetSink = sink;
+        this.onsetRatio = onsetRatio;
+        accelerometerRules.rearm();
+        gyroscopeRules.rearm();
+        updateLimits();
+    }
+
+    @Override
+    public void reset() {
+        if (fusion != null) {
+            fusion.reset();
+        }
+        accelerometerRules.rearm();
+        gyroscopeRules.rearm();
+    }
+
+    /**
+     * @return Number of acceleration magnitudes computed since construction
+     */
+    public long getMagnitudeComputationCount() {
+        return magnitudeComputations;
+    }
+
+    private void updateLimits() {
+        accelerometerRules.updateLimits(sensitivity, rearmRatio, onsetRatio);
+        gyroscopeRules.updateLimits(sensitivity, rearmRatio, onsetRatio);
+    }
+
+    /**
+     * Rules of one sensor flattened into arrays. axis is MAGNITUDE or
+     * LINEAR_MAGNITUDE for magnitudes, 0..2 for raw x..z and 3..5 for gravity x..z;
+     * limit holds the scaled threshold (squared for magnitudes) and onsetLimit the
+     * onset level. Rules on the same axis share a group whose re-arm limit is the
+     * lowest of its rules' and which holds at most one pending onset.
+     */
+    private static final class RuleTable {
+        static final int MAGNITUDE = -1;
+        static final int LINEAR_MAGNITUDE = -2;
+        static final int NO_ONSET = -1;
+
+        final int count;
+        final int[] axis;
+        final float[] threshold;
+        final int[] sensitivityIndex;
+        final float[] limit;
+        final float[] onsetLimit;
+        final GestureType[] positiveType;
+        final GestureType[] negativeType;
+        final int[] group;
+        final float[] rearmLimit;
+        final boolean[] armed;
+        final int[] onsetRule;
+        final GestureType[] onsetType;
+        final boolean usesMagnitude;
+        final boolean usesLinearMagnitude;
+
+        RuleTable(List<Rule> rules) {
+            count = rules.size();
+            axis = new int[count];
+            threshold = new float[count];
+            sensitivityIndex = new int[count];
+            limit = new float[count];
+            onsetLimit = new float[count];
+            positiveType = new GestureType[count];
+            negativeType = new GestureType[count];
+            group = new int[count];
+            int[] groupAxis = new int[count];
+            int groups = 0;
+            boolean magnitude = false;
+            boolean linearMagnitude = false;
+            for (int i = 0; i < count; i++) {
+                Rule rule = rules.get(i);
+                axis[i] = axisOf(rule.signal);
+                threshold[i] = rule.threshold;
+                sensitivityIndex[i] = rule.sensitivityGroup.ordinal();
+                positiveType[i] = rule.positiveType;
+                negativeType[i] = rule.negativeType;
+                int g = 0;
+                while (g < groups && groupAxis[g] != axis[i]) {
+                    g++;
+                }
+                if (g == groups) {
+                    groupAxis[groups++] = axis[i];
+                }
+                group[i] = g;
+                magnitude |= axis[i] == MAGNITUDE;
+                linearMagnitude |= axis[i] == LINEAR_MAGNITUDE;
+            }
+            usesMagnitude = magnitude;
+            usesLinearMagnitude = linearMagnitude;
+            rearmLimit = new float[groups];
+            armed = new boolean[groups];
+            onsetRule = new int[groups];
+            onsetType = new GestureType[groups];
+            rearm();
+        }
+
+        void updateLimits(float[] sensitivity, float[] rearmRatio, float onsetRatio) {
+            Arrays.fill(rearmLimit, Float.MAX_VALUE);
+            for (int i = 0; i < count; i++) {
+                float scaled = threshold[i] * sensitivity[sensitivityIndex[i]];
+                // Both directions of an axis share the group's re-arm limit: the larger ratio wins
+                float ratio = rearmRatio[positiveType[i].ordinal()];
+                if (negativeType[i] != null) {
+                    ratio = Math.max(ratio, rearmRatio[negativeType[i].ordinal()]);
+                }
+                float rearmed = scaled * ratio;
+                float onset = rearmed + onsetRatio * (scaled - rearmed);
+                limit[i] = axis[i] < 0 ? scaled * scaled : scaled;
+                onsetLimit[i] = axis[i] < 0 ? onset * onset : onset;
+                rearmLimit[group[i]] = Math.min(rearmLimit[group[i]], axis[i] < 0 ? rearmed * rearmed : rearmed);
+            }
+        }
+
+        void rearm() {
+            Arrays.fill(armed, true);
+            Arrays.fill(onsetRule, NO_ONSET);
+        }
+
+        private static int axisOf(Signal signal) {
+            switch (signal) {
+                case ACCELEROMETER_X:
+                case GYROSCOPE_X:
+                    return 0;
+                case ACCELEROMETER_Y:
+                case GYROSCOPE_Y:
+                    return 1;
+                case ACCELEROMETER_Z:
+                case GYROSCOPE_Z:
+                    return 2;
+                case GRAVITY_X:
+                    return 3;
+                case GRAVITY_Y:
+                    return 4;
+                case GRAVITY_Z:
+                    return 5;
+                case LINEAR_ACCELERATION_MAGNITUDE:
+                    return LINEAR_MAGNITUDE;
+                default:
+                    return MAGNITUDE;
+            }
+        }
+    }
+}
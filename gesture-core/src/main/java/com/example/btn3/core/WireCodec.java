@@ -0,0 +1,534 @@
+package com.example.btn3.core;
+
+import com.example.btn3.core.DeviceController.DeviceType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Compact binary framing for device commands, used instead of the text commands once
+ * the device has advertised BINARY_CAPABILITY in reply to CAPABILITY_QUERY.
+ *
+ * A frame is SYNC, the payload length (one byte), the payload and a CRC-16/CCITT
+ * (big-endian) over length and payload. Payloads start with a frame type:
+ * COMMAND carries the correlation id, a device opcode, an action opcode and a value;
+ * ACK carries the correlation id; NAK the correlation id and an error code. Ids and
+ * values are varints (values zigzag-encoded). "#12 SPEAKER:VOLUME:42" plus newline
+ * is 22 bytes as text and 9 bytes as a frame. BATCH carries the correlation id, a
+ * count and that many device/action/value triples; the device applies all of them
+ * or none and answers with one ACK or NAK. As text a batch is "#id BATCH c1;c2;...".
+ *
+ * Commands are packed into a long (see pack) so they can be queued and encoded
+ * without allocating, as frames or as text lines (encodeText). The encoder writes
+ * into one reusable buffer and the decoder reads into another; neither is
+ * thread-safe.
+ *
+ * The decoder also accepts text replies on the same stream: a SYNC byte at the
+ * start of a line opens a frame, anything else is collected up to a newline.
+ */
+public final class WireCodec {
+
+    // Receives decoded frames and text lines
+    public interface Sink {
+        void onTextLine(String line);
+
+        default void onCommand(int correlationId, long packed) {
+        }
+
+        default void onAck(int correlationId) {
+        }
+
+        default void onNak(int correlationId, int errorCode) {
+        }
+
+        default void onBatch(int correlationId, long[] commands) {
+        }
+    }
+
+    public static final int SYNC = 0xA5;
+    public static final int MAX_PAYLOAD = 128;
+    public static final int MAX_FRAME = MAX_PAYLOAD + 4;
+    public static final int MAX_TEXT_FRAME = 512;
+    public static final int MAX_LINE = MAX_TEXT_FRAME;
+
+    // Handshake, sent as a text command; a device replying "OK BIN1" accepts frames
+    public static final String CAPABILITY_QUERY = "CAPS";
+    public static final String BINARY_CAPABILITY = "BIN1";
+
+    // Frame types
+    public static final int TYPE_COMMAND = 0x01;
+    public static final int TYPE_BATCH = 0x02;
+    public static final int TYPE_ACK = 0x81;
+    public static final int TYPE_NAK = 0x82;
+
+    // Device opcodes; MEDIA addresses whatever is playing
+    public static final int DEVICE_MEDIA = 0x0F;
+    private static final int[] DEVICE_OPCODES = {0x01, 0x02, 0x03, 0x04}; // by DeviceType ordinal
+
+    // Action opcodes
+    public static final int ACTION_OFF = 0x00;
+    public static final int ACTION_ON = 0x01;
+    public static final int ACTION_BRIGHTNESS = 0x10;
+    public static final int ACTION_VOLUME = 0x11;
+    public static final int ACTION_SPEED = 0x12;
+    public static final int ACTION_CHANNEL = 0x13;
+    public static final int ACTION_PLAY = 0x20;
+    public static final int ACTION_PAUSE = 0x21;
+    public static final int ACTION_NEXT = 0x22;
+    public static final int ACTION_PREVIOUS = 0x23;
+    public static final int ACTION_STOP = 0x24;
+
+    // Text names of the parameter and media actions, in opcode order
+    private static final String[] PARAMETERS = {"BRIGHTNESS", "VOLUME", "SPEED", "CHANNEL"};
+    private static final String[] MEDIA_ACTIONS = {"PLAY", "PAUSE", "NEXT", "PREVIOUS", "STOP"};
+    private static final String[] DEVICE_NAMES = {"LIGHT", "SPEAKER", "TV", "FAN"}; // by opcode - 1
+    private static final String MEDIA = "MEDIA";
+
+    // Text verb of a batch
+    public static final String BATCH = "BATCH";
+    // Longest correlation id prefix of a text frame: '#', ten digits, ' '
+    private static final int MAX_TEXT_PREFIX = 12;
+
+    // A command without a binary form (e.g. an unknown parameter); it is sent as text
+    public static final long NOT_ENCODABLE = -1L;
+
+    private static final short[] CRC_TABLE = new short[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i << 8;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+            }
+            CRC_TABLE[i] = (short) crc;
+        }
+    }
+
+    private final byte[] txBuffer = new byte[MAX_TEXT_FRAME];
+
+    // Decoder state
+    private final byte[] rxBuffer = new byte[MAX_FRAME];
+    private final byte[] lineBuffer = new byte[MAX_LINE];
+    private int lineLength = 0;
+    private boolean lineOverflow = false;
+    private int frameLength = -1; // -1: outside a frame, 0: expecting the length byte
+    private int framePosition = 0;
+    private int readPosition;
+    private long crcErrorCount = 0;
+
+    /**
+     * Pack a command for encoding
+     * @param deviceOpcode Device opcode (see deviceOpcode, DEVICE_MEDIA)
+     * @param actionOpcode Action opcode
+     * @param value Parameter value, 0 for actions without one
+     * @return Packed command
+     */
+    public static long pack(int deviceOpcode, int actionOpcode, int value) {
+        return ((long) deviceOpcode << 40) | ((long) actionOpcode << 32) | (value & 0xFFFFFFFFL);
+    }
+
+    public static int deviceOpcode(DeviceType deviceType) {
+        return DEVICE_OPCODES[deviceType.ordinal()];
+    }
+
+    /**
+     * @return Action opcode of a parameter name, or -1 if it has none
+     */
+    public static int parameterOpcode(String parameter) {
+        for (int i = 0; i < PARAMETERS.length; i++) {
+            if (PARAMETERS[i].equals(parameter)) {
+                return ACTION_BRIGHTNESS + i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return Action opcode of a media action, or -1 if it has none
+     */
+    public static int mediaOpcode(String action) {
+        for (int i = 0; i < MEDIA_ACTIONS.length; i++) {
+            if (MEDIA_ACTIONS[i].equals(action)) {
+                return ACTION_PLAY + i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Pack a text command such as "SPEAKER:VOLUME:42", "LIGHT:ON" or "MEDIA:NEXT"
+     * @return Packed command, or NOT_ENCODABLE
+     */
+    public static long parse(String command) {
+        int colon = command.indexOf(':');
+        if (colon < 0) {
+            return NOT_ENCODABLE;
+        }
+        String device = command.substring(0, colon);
+        String action = command.substring(colon + 1);
+        if (device.equals(MEDIA)) {
+            int opcode = mediaOpcode(action);
+            return opcode < 0 ? NOT_ENCODABLE : pack(DEVICE_MEDIA, opcode, 0);
+        }
+        int deviceOpcode = -1;
+        for (DeviceType deviceType : DeviceType.values()) {
+            if (deviceType.name().equals(device)) {
+                deviceOpcode = deviceOpcode(deviceType);
+            }
+        }
+        if (deviceOpcode < 0) {
+            return NOT_ENCODABLE;
+        }
+        if (action.equals("ON") || action.equals("OFF")) {
+            return pack(deviceOpcode, action.equals("ON") ? ACTION_ON : ACTION_OFF, 0);
+        }
+        int separator = action.indexOf(':');
+        int opcode = separator < 0 ? -1 : parameterOpcode(action.substring(0, separator));
+        if (opcode < 0) {
+            return NOT_ENCODABLE;
+        }
+        try {
+            return pack(deviceOpcode, opcode, Integer.parseInt(action.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            return NOT_ENCODABLE;
+        }
+    }
+
+    /**
+     * @return Text form of a packed command, e.g. "SPEAKER:VOLUME:42"
+     */
+    public static String toText(long packed) {
+        int action = packedAction(packed);
+        String text = deviceName(packedDevice(packed)) + ":" + actionName(action);
+        return hasValue(action) ? text + ":" + packedValue(packed) : text;
+    }
+
+    public static int packedDevice(long packed) {
+        return (int) (packed >>> 40) & 0xFF;
+    }
+
+    public static int packedAction(long packed) {
+        return (int) (packed >>> 32) & 0xFF;
+    }
+
+    public static int packedValue(long packed) {
+        return (int) packed;
+    }
+
+    /**
+     * @return Buffer the encode methods write to; valid until the next encode
+     */
+    public byte[] getBuffer() {
+        return txBuffer;
+    }
+
+    /**
+     * Encode a command frame into the buffer
+     * @return Frame length
+     */
+    public int encodeCommand(int correlationId, long packed) {
+        int p = 2;
+        txBuffer[p++] = (byte) TYPE_COMMAND;
+        p = writeVarint(txBuffer, p, correlationId);
+        txBuffer[p++] = (byte) packedDevice(packed);
+        txBuffer[p++] = (byte) packedAction(packed);
+        int value = packedValue(packed);
+        p = writeVarint(txBuffer, p, (value << 1) ^ (value >> 31));
+        return finish(p);
+    }
+
+    /**
+     * Encode a packed command as a text line ("#id SPEAKER:VOLUME:42" and a newline)
+     * into the buffer, for devices without binary support
+     * @return Line length
+     */
+    public int encodeText(int correlationId, long packed) {
+        int p = 0;
+        txBuffer[p++] = '#';
+        p = writeDecimal(txBuffer, p, correlationId);
+        txBuffer[p++] = ' ';
+        p = writeAscii(txBuffer, p, deviceName(packedDevice(packed)));
+        txBuffer[p++] = ':';
+        int action = packedAction(packed);
+        p = writeAscii(txBuffer, p, actionName(action));
+        if (hasValue(action)) {
+            txBuffer[p++] = ':';
+            p = writeDecimal(txBuffer, p, packedValue(packed));
+        }
+        txBuffer[p++] = '\n';
+        return p;
+    }
+
+    /**
+     * Compile packed commands into the body of a batch frame (count, then a
+     * device/action/value triple per command), to be encoded with encodeBatch
+     * @throws IllegalArgumentException if the batch does not fit in one frame
+     */
+    public static byte[] compileBatch(long[] commands) {
+        byte[] body = new byte[MAX_PAYLOAD];
+        int p = 0;
+        body[p++] = (byte) commands.length;
+        for (long packed : commands) {
+            if (p + 7 > MAX_PAYLOAD - 6) {
+                throw new IllegalArgumentException("Batch of " + commands.length + " commands does not fit in a frame");
+            }
+            body[p++] = (byte) packedDevice(packed);
+            body[p++] = (byte) packedAction(packed);
+            int value = packedValue(packed);
+            p = writeVarint(body, p, (value << 1) ^ (value >> 31));
+        }
+        return Arrays.copyOf(body, p);
+    }
+
+    /**
+     * Compile packed commands into the text of a batch ("BATCH c1;c2;..." and a
+     * newline), to be encoded with encodeTextBatch
+     * @throws IllegalArgumentException if the batch does not fit in one line
+     */
+    public static byte[] compileTextBatch(long[] commands) {
+        StringBuilder builder = new StringBuilder(BATCH);
+        for (int i = 0; i < commands.length; i++) {
+            builder.append(i == 0 ? ' ' : ';').append(toText(commands[i]));
+        }
+        byte[] body = builder.append('\n').toString().getBytes(StandardCharsets.US_ASCII);
+        if (body.length > MAX_TEXT_FRAME - MAX_TEXT_PREFIX) {
+            throw new IllegalArgumentException("Batch of " + commands.length + " commands does not fit in a line");
+        }
+        return body;
+    }
+
+    /**
+     * Encode a batch frame around a body from compileBatch into the buffer
+     * @return Frame length
+     */
+    public int encodeBatch(int correlationId, byte[] body) {
+        int p = 2;
+        txBuffer[p++] = (byte) TYPE_BATCH;
+        p = writeVarint(txBuffer, p, correlationId);
+        System.arraycopy(body, 0, txBuffer, p, body.length);
+        return finish(p + body.length);
+    }
+
+    /**
+     * Encode a text batch ("#id " and a body from compileTextBatch) into the buffer
+     * @return Line length
+     */
+    public int encodeTextBatch(int correlationId, byte[] body) {
+        int p = 0;
+        txBuffer[p++] = '#';
+        p = writeDecimal(txBuffer, p, correlationId);
+        txBuffer[p++] = ' ';
+        System.arraycopy(body, 0, txBuffer, p, body.length);
+        return p + body.length;
+    }
+
+    /**
+     * Encode an acknowledgement into the buffer (the device side, also used by tests)
+     * @return Frame length
+     */
+    public int encodeAck(int correlationId) {
+        int p = 2;
+        txBuffer[p++] = (byte) TYPE_ACK;
+        p = writeVarint(txBuffer, p, correlationId);
+        return finish(p);
+    }
+
+    /**
+     * @return Frame length
+     * @see #encodeAck(int)
+     */
+    public int encodeNak(int correlationId, int errorCode) {
+        int p = 2;
+        txBuffer[p++] = (byte) TYPE_NAK;
+        p = writeVarint(txBuffer, p, correlationId);
+        txBuffer[p++] = (byte) errorCode;
+        return finish(p);
+    }
+
+    /**
+     * Feed received bytes; complete lines and frames go to the sink
+     */
+    public void decode(byte[] data, int offset, int length, Sink sink) {
+        for (int i = offset; i < offset + length; i++) {
+            int b = data[i] & 0xFF;
+            if (frameLength < 0) {
+                if (b == SYNC && lineLength == 0) {
+                    frameLength = 0;
+                } else if (b == '\n') {
+                    if (lineLength > 0 && !lineOverflow) {
+                        sink.onTextLine(new String(lineBuffer, 0, lineLength, StandardCharsets.UTF_8).trim());
+                    }
+                    lineLength = 0;
+                    lineOverflow = false;
+                } else if (lineLength < MAX_LINE) {
+                    lineBuffer[lineLength++] = (byte) b;
+                } else {
+                    lineOverflow = true;
+                }
+            } else if (frameLength == 0) {
+                if (b == 0 || b > MAX_PAYLOAD) {
+                    crcErrorCount++;
+                    frameLength = -1;
+                } else {
+                    frameLength = b;
+                    rxBuffer[0] = (byte) b;
+                    framePosition = 1;
+                }
+            } else {
+                rxBuffer[framePosition++] = (byte) b;
+                if (framePosition == frameLength + 3) {
+                    frameLength = -1;
+                    dispatch(sink);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drop a partial line or frame, e.g. after reconnecting
+     */
+    public void resetDecoder() {
+        lineLength = 0;
+        lineOverflow = false;
+        frameLength = -1;
+    }
+
+    /**
+     * @return Frames dropped for a bad CRC or length
+     */
+    public long getCrcErrorCount() {
+        return crcErrorCount;
+    }
+
+    private void dispatch(Sink sink) {
+        int length = rxBuffer[0] & 0xFF;
+        int expected = ((rxBuffer[length + 1] & 0xFF) << 8) | (rxBuffer[length + 2] & 0xFF);
+        if (crc16(rxBuffer, 0, length + 1) != expected) {
+            crcErrorCount++;
+            return;
+        }
+        int end = length + 1;
+        int type = rxBuffer[1] & 0xFF;
+        readPosition = 2;
+        int correlationId = readVarint(end);
+        int p = readPosition;
+        if (type == TYPE_ACK) {
+            sink.onAck(correlationId);
+        } else if (type == TYPE_NAK && p < end) {
+            sink.onNak(correlationId, rxBuffer[p] & 0xFF);
+        } else if (type == TYPE_COMMAND && p + 2 < end) {
+            sink.onCommand(correlationId, readCommand(end));
+        } else if (type == TYPE_BATCH && p < end) {
+            // Device side only, so the command array is allocated per batch
+            long[] commands = new long[rxBuffer[readPosition++] & 0xFF];
+            for (int i = 0; i < commands.length && readPosition + 2 < end; i++) {
+                commands[i] = readCommand(end);
+            }
+            sink.onBatch(correlationId, commands);
+        }
+    }
+
+    /**
+     * Read a device/action/value triple from rxBuffer at readPosition, advancing it
+     */
+    private long readCommand(int end) {
+        int device = rxBuffer[readPosition++] & 0xFF;
+        int action = rxBuffer[readPosition++] & 0xFF;
+        int zigzag = readVarint(end);
+        return pack(device, action, (zigzag >>> 1) ^ -(zigzag & 1));
+    }
+
+    /**
+     * Read a varint from rxBuffer at readPosition, advancing it
+     */
+    private int readVarint(int end) {
+        int value = 0;
+        for (int shift = 0; readPosition < end && shift < 35; shift += 7) {
+            int b = rxBuffer[readPosition++];
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Fill in sync, length and CRC around a payload written from offset 2
+     */
+    private int finish(int end) {
+        txBuffer[0] = (byte) SYNC;
+        txBuffer[1] = (byte) (end - 2);
+        int crc = crc16(txBuffer, 1, end - 1);
+        txBuffer[end++] = (byte) (crc >>> 8);
+        txBuffer[end++] = (byte) crc;
+        return end;
+    }
+
+    private static String deviceName(int opcode) {
+        if (opcode == DEVICE_MEDIA) {
+            return MEDIA;
+        }
+        return opcode >= 1 && opcode <= DEVICE_NAMES.length ? DEVICE_NAMES[opcode - 1] : "DEVICE";
+    }
+
+    private static String actionName(int opcode) {
+        if (opcode == ACTION_ON || opcode == ACTION_OFF) {
+            return opcode == ACTION_ON ? "ON" : "OFF";
+        }
+        int index = opcode - ACTION_BRIGHTNESS;
+        if (index >= 0 && index < PARAMETERS.length) {
+            return PARAMETERS[index];
+        }
+        index = opcode - ACTION_PLAY;
+        return index >= 0 && index < MEDIA_ACTIONS.length ? MEDIA_ACTIONS[index] : "UNKNOWN";
+    }
+
+    private static boolean hasValue(int actionOpcode) {
+        return actionOpcode >= ACTION_BRIGHTNESS && actionOpcode < ACTION_PLAY;
+    }
+
+    private static int writeAscii(byte[] buffer, int position, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            buffer[position++] = (byte) text.charAt(i);
+        }
+        return position;
+    }
+
+    private static int writeDecimal(byte[] buffer, int position, int value) {
+        long v = value;
+        if (v < 0) {
+            buffer[position++] = '-';
+            v = -v;
+        }
+        int start = position;
+        do {
+            buffer[position++] = (byte) ('0' + v % 10);
+            v /= 10;
+        } while (v > 0);
+        // Digits were written least significant first
+        for (int i = start, j = position - 1; i < j; i++, j--) {
+            byte digit = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = digit;
+        }
+        return position;
+    }
+
+    private static int writeVarint(byte[] buffer, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    static int crc16(byte[] data, int offset, int length) {
+        int crc = 0xFFFF;
+        for (int i = offset; i < offset + length; i++) {
+            crc = ((crc << 8) ^ CRC_TABLE[((crc >>> 8) ^ data[i]) & 0xFF]) & 0xFFFF;
+        }
+        return crc;
+    }
+}
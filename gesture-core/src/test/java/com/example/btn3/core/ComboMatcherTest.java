@@ -0,0 +1,261 @@
+package com.example.btn3.core;
+
+import com.example.btn3.core.GestureDetector.GestureType;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ComboMatcherTest {
+
+    private static final long MS = 1_000_000L;
+
+    private final List<Integer> matches = new ArrayList<>();
+    private final ComboMatcher matcher = new ComboMatcher((comboId, timestampNs) -> matches.add(comboId));
+
+    @Test
+    public void sequenceWithinWindow_matches() {
+        matcher.setCombos(List.of(GestureCombo.parse(1, "WAVE,ROTATE_RIGHT;1500")));
+        matcher.onGesture(GestureType.WAVE, 0L);
+        matcher.onGesture(GestureType.ROTATE_RIGHT, 1200 * MS);
+
+        assertEquals(List.of(1), matches);
+    }
+
+    @Test
+    public void sequenceOutsideWindow_doesNotMatch() {
+        matcher.setCombos(List.of(GestureCombo.parse(1, "WAVE,ROTATE_RIGHT;1500")));
+        matcher.onGesture(GestureType.WAVE, 0L);
+        matcher.onGesture(GestureType.ROTATE_RIGHT, 1600 * MS);
+        // An interrupted sequence does not match either
+        matcher.onGesture(GestureType.WAVE, 2000 * MS);
+        matcher.onGesture(GestureType.SHAKE, 2100 * MS);
+        matcher.onGesture(GestureType.ROTATE_RIGHT, 2200 * MS);
+
+        assertTrue(matches.isEmpty());
+    }
+
+    @Test
+    public void longestCombo_winsAndRestarts() {
+        matcher.setCombos(List.of(
+                GestureCombo.parse(1, "WAVE,ROTATE_RIGHT;1500"),
+                GestureCombo.parse(2, "SHAKE,WAVE,ROTATE_RIGHT;2000"),
+                GestureCombo.parse(3, "ROTATE_RIGHT,WAVE;1000")));
+        matcher.onGesture(GestureType.SHAKE, 0L);
+        matcher.onGesture(GestureType.WAVE, 500 * MS);
+        matcher.onGesture(GestureType.ROTATE_RIGHT, 1000 * MS);
+        // ROTATE_RIGHT was used by combo 2, so this wave alone does not complete combo 3
+        matcher.onGesture(GestureType.WAVE, 1200 * MS);
+
+        assertEquals(List.of(2), matches);
+    }
+
+    @Test
+    public void longComboOutsideWindow_fallsBackToSuffix() {
+        matcher.setCombos(List.of(
+                GestureCombo.parse(1, "WAVE,ROTATE_RIGHT;1500"),
+                GestureCombo.parse(2, "SHAKE,WAVE,ROTATE_RIGHT;1000")));
+        matcher.onGesture(GestureType.SHAKE, 0L);
+        matcher.onGesture(GestureType.WAVE, 800 * MS);
+        matcher.onGesture(GestureType.ROTATE_RIGHT, 1200 * MS);
+
+        assertEquals(List.of(1), matches);
+    }
+
+    @Test
+    public void manyCombos_matchLikeBruteForce() {
+        Random random = new Random(3);
+        GestureType[] alphabet = {GestureType.WAVE, GestureType.TILT_FORWARD, GestureType.TILT_BACKWARD,
+                GestureType.ROTATE_LEFT, GestureType.ROTATE_RIGHT, GestureType.SHAKE};
+        List<GestureCombo> combos = new ArrayList<>();
+        Set<List<GestureType>> seen = new HashSet<>();
+        while (combos.size() < 500) {
+            List<GestureType> sequence = new ArrayList<>();
+            int length = 2 + random.nextInt(4);
+            for (int i = 0; i < length; i++) {
+                sequence.add(alphabet[random.nextInt(alphabet.length)]);
+            }
+            if (seen.add(sequence)) {
+                combos.add(new GestureCombo(combos.size(), sequence, (300 + random.nextInt(3000)) * MS));
+            }
+        }
+        matcher.setCombos(combos);
+
+        List<Integer> expected = new ArrayList<>();
+        List<GestureType> events = new ArrayList<>();
+        List<Long> times = new ArrayList<>();
+        long t = 0;
+        for (int n = 0; n < 5000; n++) {
+            t += (50 + random.nextInt(600)) * MS;
+            GestureType gestureType = alphabet[random.nextInt(alphabet.length)];
+            matcher.onGesture(gestureType, t);
+            events.add(gestureType);
+            times.add(t);
+            GestureCombo best = bruteForce(combos, events, times);
+            if (best != null) {
+                expected.add(best.getId());
+                events.clear();
+                times.clear();
+            }
+        }
+
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, matches);
+        assertTrue(matcher.getStateCount() <= 1 + 500 * GestureCombo.MAX_LENGTH);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicateSequence_isRejected() {
+        matcher.setCombos(List.of(GestureCombo.parse(1, "WAVE,SHAKE;1000"), GestureCombo.parse(2, "WAVE,SHAKE;500")));
+    }
+
+    @Test
+    public void combos_loadFromProperties() throws IOException {
+        String file = "combo.2=SHAKE, WAVE, SHAKE; 2000\ncombo.1=WAVE,ROTATE_RIGHT;1500\nother=ignored\n";
+        List<GestureCombo> combos = GestureCombo.load(new ByteArrayInputStream(file.getBytes(StandardCharsets.ISO_8859_1)));
+
+        assertEquals(2, combos.size());
+        assertEquals("WAVE,ROTATE_RIGHT;1500", combos.get(0).toString());
+        assertEquals("SHAKE,WAVE,SHAKE;2000", combos.get(1).toString());
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidCombo_failsToLoad() throws IOException {
+        GestureCombo.load(new ByteArrayInputStream("combo.1=WAVE,JUMP;1000".getBytes(StandardCharsets.ISO_8859_1)));
+    }
+
+    @Test
+    public void detector_reportsComboAfterItsGestures() {
+        List<String> events = new ArrayList<>();
+        GestureDetector detector = recordingDetector(events);
+        detector.setCombos(List.of(GestureCombo.parse(7, "TILT_FORWARD,ROTATE_RIGHT;1500")));
+        detector.processAccelerometerData(0f, 4f, 9f, 0L);
+        detector.processAccelerometerData(0f, 0f, 9.8f, 50 * MS);
+        detector.processGyroscopeData(0f, 0f, 3f, 600 * MS);
+
+        // Without hold-back each gesture of the combo is reported on its own as well
+        assertEquals(List.of("TILT_FORWARD", "ROTATE_RIGHT", "COMBO:7"), events);
+        assertEquals(GestureType.COMBO, detector.getLastGestureType());
+    }
+
+    @Test
+    public void holdBack_reportsOnlyTheCombo() {
+        List<String> events = new ArrayList<>();
+        GestureDetector detector = recordingDetector(events);
+        detector.setCombos(List.of(GestureCombo.parse(7, "TILT_FORWARD,ROTATE_RIGHT;1500")));
+        detector.setComboHoldBack(true);
+        detector.processAccelerometerData(0f, 4f, 9f, 0L);
+        detector.processAccelerometerData(0f, 0f, 9.8f, 50 * MS);
+        assertTrue(events.isEmpty());
+
+        detector.processGyroscopeData(0f, 0f, 3f, 600 * MS);
+        assertEquals(List.of("COMBO:7"), events);
+    }
+
+    @Test
+    public void holdBack_releasesGesturesThatStartNoCombo() {
+        List<String> events = new ArrayList<>();
+        GestureDetector detector = recordingDetector(events);
+        detector.setCombos(List.of(GestureCombo.parse(7, "TILT_FORWARD,ROTATE_RIGHT;1500")));
+        detector.setComboHoldBack(true);
+
+        // A different gesture follows: both are reported, in order
+        detector.processAccelerometerData(0f, 4f, 9f, 0L);
+        detector.processAccelerometerData(0f, 0f, 9.8f, 50 * MS);
+        detector.processGyroscopeData(0f, 0f, -3f, 600 * MS);
+        assertEquals(List.of("TILT_FORWARD", "ROTATE_LEFT"), events);
+
+        // Nothing follows: the tilt is reported once the combo window has passed
+        detector.processAccelerometerData(0f, 4f, 9f, 2000 * MS);
+        detector.processAccelerometerData(0f, 0f, 9.8f, 3000 * MS);
+        assertEquals(List.of("TILT_FORWARD", "ROTATE_LEFT"), events);
+        detector.processAccelerometerData(0f, 0f, 9.8f, 3600 * MS);
+        assertEquals(List.of("TILT_FORWARD", "ROTATE_LEFT", "TILT_FORWARD"), events);
+    }
+
+    @Test
+    public void holdBack_releasesWithoutFurtherSamples() {
+        List<String> events = new ArrayList<>();
+        GestureDetector detector = recordingDetector(events);
+        detector.setCombos(List.of(GestureCombo.parse(7, "TILT_FORWARD,ROTATE_RIGHT;1500")));
+        detector.setComboHoldBack(true);
+        detector.processAccelerometerData(0f, 4f, 9f, 0L);
+        detector.processAccelerometerData(0f, 0f, 9.8f, 50 * MS);
+
+        // A timer tick releases the tilt once the window has passed
+        detector.advanceTime(1000 * MS);
+        assertTrue(events.isEmpty());
+        detector.advanceTime(1600 * MS);
+        assertEquals(List.of("TILT_FORWARD"), events);
+
+        // Stopping releases a held gesture at once and drops the partial combo
+        detector.processAccelerometerData(0f, 4f, 9f, 2000 * MS);
+        detector.processAccelerometerData(0f, 0f, 9.8f, 2050 * MS);
+        detector.releaseHeldGestures();
+        assertEquals(List.of("TILT_FORWARD", "TILT_FORWARD"), events);
+        detector.processGyroscopeData(0f, 0f, 3f, 2600 * MS);
+        assertEquals(List.of("TILT_FORWARD", "TILT_FORWARD", "ROTATE_RIGHT"), events);
+    }
+
+    @Test
+    public void prefixLength_coversOnlyGesturesThatCanStillMatch() {
+        matcher.setCombos(List.of(
+                GestureCombo.parse(1, "SHAKE,WAVE,ROTATE_RIGHT,TILT_FORWARD;5000"),
+                GestureCombo.parse(2, "WAVE,ROTATE_RIGHT;5000")));
+        matcher.onGesture(GestureType.TILT_BACKWARD, 0L);
+        assertEquals(0, matcher.getPrefixLength());
+        matcher.onGesture(GestureType.SHAKE, 100 * MS);
+        matcher.onGesture(GestureType.WAVE, 200 * MS);
+        assertEquals(2, matcher.getPrefixLength());
+
+        // The shorter combo ends inside the longer one and uses only its own gestures
+        matcher.onGesture(GestureType.ROTATE_RIGHT, 300 * MS);
+        assertEquals(List.of(2), matches);
+        assertEquals(2, matcher.getLastMatchLength());
+        assertEquals(0, matcher.getPrefixLength());
+    }
+
+    private static GestureDetector recordingDetector(List<String> events) {
+        return new GestureDetector(new GestureDetector.GestureDetectionListener() {
+            @Override
+            public void onGestureDetected(GestureType gestureType, float intensity) {
+            }
+
+            @Override
+            public void onGestureDetected(GestureType gestureType, float intensity, int templateId) {
+                events.add(gestureType + (gestureType == GestureType.COMBO ? ":" + templateId : ""));
+            }
+        });
+    }
+
+    /**
+     * Longest combo equal to the newest events (since the last match) that fits its window
+     */
+    private static GestureCombo bruteForce(List<GestureCombo> combos, List<GestureType> events, List<Long> times) {
+        GestureCombo best = null;
+        int last = events.size() - 1;
+        for (GestureCombo combo : combos) {
+            int length = combo.getLength();
+            if (length > events.size() || (best != null && length <= best.getLength())) {
+                continue;
+            }
+            boolean equal = true;
+            for (int i = 0; i < length && equal; i++) {
+                equal = events.get(last - length + 1 + i) == combo.getGesture(i);
+            }
+            if (equal && times.get(last) - times.get(last - length + 1) <= combo.getWindowNs()) {
+                best = combo;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,432 @@
+package com.example.btn3.core;
+
+import com.example.btn3.core.DeviceController.CommandHandle;
+import com.example.btn3.core.DeviceController.DeviceType;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class DeviceControllerTest {
+
+    private final List<String> frames = new ArrayList<>();
+    private int sentCount = 0;
+    private final List<String> failures = new ArrayList<>();
+    private long now = 0;
+    private DeviceController controller;
+
+    @Before
+    public void setUp() {
+        controller = new DeviceController(new DeviceController.DeviceControlListener() {
+            @Override
+            public void onCommandSent(int correlationId, long packed) {
+                sentCount++;
+            }
+
+            @Override
+            public void onCommandSuccess(String response) {
+            }
+
+            @Override
+            public void onCommandFailure(String error) {
+                failures.add(error);
+            }
+        }, () -> now);
+        controller.connect("Test", DeviceController.ConnectionType.BLUETOOTH);
+    }
+
+    @Test
+    public void withoutTransport_commandsCompleteAtOnce() throws Exception {
+        CommandHandle handle = controller.toggleDevice(DeviceType.LIGHT, true);
+
+        assertTrue(handle.isDone());
+        assertEquals("OK", handle.get());
+        assertEquals(DeviceController.packToggle(DeviceType.LIGHT, true), handle.getCommand());
+        assertEquals(1, sentCount);
+    }
+
+    @Test
+    public void acks_completeMatchingCommandsOutOfOrder() throws Exception {
+        controller.setTransport(frames::add);
+        CommandHandle first = controller.toggleDevice(DeviceType.LIGHT, true);
+        CommandHandle second = controller.adjustParameter(DeviceType.SPEAKER, "VOLUME", 40);
+
+        assertEquals(List.of("#" + first.getCorrelationId() + " LIGHT:ON",
+                "#" + second.getCorrelationId() + " SPEAKER:VOLUME:40"), frames);
+        assertEquals(2, controller.getInFlightCount());
+
+        // Second ack first, split across reads
+        controller.onDataReceived("#" + second.getCorrelationId() + " O");
+        assertFalse(second.isDone());
+        controller.onDataReceived("K\n#" + first.getCorrelationId() + " ERR busy\n");
+
+        assertEquals("OK", second.get());
+        try {
+            first.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof DeviceController.CommandException);
+            assertEquals("busy", e.getCause().getMessage());
+        }
+        assertEquals(0, controller.getInFlightCount());
+    }
+
+    @Test
+    public void window_queuesCommandsUntilAcked() {
+        controller.setTransport(frames::add);
+        controller.setMaxInFlight(2);
+        List<CommandHandle> handles = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            handles.add(controller.adjustParameter(DeviceType.LIGHT, "BRIGHTNESS", i));
+        }
+
+        assertEquals(2, frames.size());
+        assertEquals(2, controller.getInFlightCount());
+        assertEquals(3, controller.getQueuedCount());
+
+        controller.onDataReceived("#" + handles.get(1).getCorrelationId() + " OK\n");
+        assertEquals(3, frames.size());
+        assertTrue(frames.get(2).endsWith("BRIGHTNESS:2"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parameterWithoutOpcode_isRejected() {
+        controller.updateParameter(DeviceType.LIGHT, "HUE", 10);
+    }
+
+    @Test
+    public void failedWrite_isNotReportedAsSent() {
+        controller.setTransport(frame -> false);
+        CommandHandle handle = controller.toggleDevice(DeviceType.LIGHT, true);
+
+        assertTrue(handle.isCompletedExceptionally());
+        assertEquals(0, sentCount);
+        assertEquals(List.of("Failed to send LIGHT:ON"), failures);
+    }
+
+    @Test
+    public void concurrentPumps_writeFramesInQueueOrder() throws Exception {
+        int count = 2_000;
+        List<Integer> wire = Collections.synchronizedList(new ArrayList<>());
+        controller.setMaxInFlight(4);
+        controller.setTransport(frame -> {
+            int id = Integer.parseInt(frame.substring(1, frame.indexOf(' ')));
+            if (id % 2 == 1) {
+                // A slow write leaves a gap a second pump could slip a later frame into
+                LockSupport.parkNanos(100_000L);
+            }
+            return wire.add(id);
+        });
+        // Acks free the window on this thread, which then sends the queued commands itself
+        Thread reader = new Thread(() -> {
+            StringBuilder acks = new StringBuilder();
+            for (int acked = 0; acked < count; ) {
+                // Ack everything written so far at once, freeing several slots
+                acks.setLength(0);
+                for (int written = wire.size(); acked < written; acked++) {
+                    acks.append('#').append(wire.get(acked)).append(" OK\n");
+                }
+                if (acks.length() > 0) {
+                    controller.onDataReceived(acks.toString());
+                } else {
+                    Thread.onSpinWait();
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < count; i++) {
+            controller.toggleDevice(DeviceType.LIGHT, i % 2 == 0);
+        }
+        reader.join(30_000);
+
+        assertEquals(count, wire.size());
+        for (int i = 1; i < count; i++) {
+            assertTrue("frame " + i + " out of order", wire.get(i) > wire.get(i - 1));
+        }
+    }
+
+    @Test
+    public void missingAck_timesOutAndLateAckIsUnmatched() {
+        controller.setTransport(frames::add);
+        controller.setAckTimeout(100);
+        CommandHandle handle = controller.controlMedia("NEXT");
+
+        now = 50;
+        controller.checkTimeouts();
+        assertFalse(handle.isDone());
+
+        now = 150;
+        controller.checkTimeouts();
+        assertTrue(handle.isCompletedExceptionally());
+        assertEquals(1, controller.getTimeoutCount());
+
+        controller.onDataReceived("#" + handle.getCorrelationId() + " OK\n");
+        assertEquals(1, controller.getUnmatchedResponseCount());
+    }
+
+    @Test
+    public void disconnect_failsPendingCommands() {
+        controller.setTransport(frames::add);
+        controller.setMaxInFlight(1);
+        CommandHandle sent = controller.controlMedia("PLAY");
+        CommandHandle queued = controller.controlMedia("NEXT");
+
+        controller.disconnect();
+
+        assertTrue(sent.isCompletedExceptionally());
+        assertTrue(queued.isCompletedExceptionally());
+        assertTrue(controller.controlMedia("PAUSE").isCompletedExceptionally());
+        assertEquals(3, failures.size());
+    }
+
+    @Test
+    public void parameterUpdates_coalesceToLatestValue() {
+        controller.setTransport(frames::add);
+        controller.setMaxInFlight(16);
+        controller.setCoalesceInterval(100);
+
+        // A drag from 0 to 9 within one interval: the first value and the last go out
+        for (int value = 0; value < 10; value++) {
+            now = value * 5;
+            controller.updateParameter(DeviceType.LIGHT, "BRIGHTNESS", value);
+        }
+        controller.updateParameter(DeviceType.SPEAKER, "VOLUME", 30);
+        assertEquals(2, frames.size());
+        assertEquals(55, controller.flushParameters());
+
+        now = 100;
+        assertEquals(-1, controller.flushParameters());
+        assertEquals(3, frames.size());
+        assertTrue(frames.get(2).endsWith("LIGHT:BRIGHTNESS:9"));
+        assertEquals(8, controller.getSuppressedCount());
+        assertEquals(0, controller.getPendingParameterCount());
+    }
+
+    @Test
+    public void forcedFlush_deliversFinalValueAtOnce() {
+        controller.setTransport(frames::add);
+        controller.updateParameter(DeviceType.SPEAKER, "VOLUME", 10);
+        assertFalse(controller.updateParameter(DeviceType.SPEAKER, "VOLUME", 20));
+
+        controller.flushParameters(true);
+
+        assertEquals(2, frames.size());
+        assertTrue(frames.get(1).endsWith("SPEAKER:VOLUME:20"));
+        assertEquals(0, controller.getSuppressedCount());
+    }
+
+    @Test
+    public void capableDevice_switchesToBinaryFrames() {
+        BinaryTransport link = new BinaryTransport();
+        controller.setTransport(link);
+        assertEquals(List.of("#1 CAPS"), frames);
+
+        controller.onDataReceived("#1 OK BIN1\n");
+        assertTrue(controller.isBinaryProtocol());
+
+        CommandHandle handle = controller.adjustParameter(DeviceType.SPEAKER, "VOLUME", 42);
+        assertEquals(1, link.binaryFrames.size());
+        assertEquals(9, link.binaryFrames.get(0).length);
+
+        WireCodec device = new WireCodec();
+        int length = device.encodeAck(handle.getCorrelationId());
+        controller.onDataReceived(device.getBuffer(), 0, length);
+        assertEquals("OK", handle.getNow(null));
+        assertTrue(failures.isEmpty());
+    }
+
+    @Test
+    public void legacyDevice_staysOnText() {
+        BinaryTransport link = new BinaryTransport();
+        controller.setTransport(link);
+        controller.onDataReceived("#1 ERR unknown command\n");
+        assertFalse(controller.isBinaryProtocol());
+
+        controller.toggleDevice(DeviceType.LIGHT, false);
+        assertEquals("#2 LIGHT:OFF\n", new String(link.binaryFrames.get(0), StandardCharsets.US_ASCII));
+        // The handshake is not reported as a failed command
+        assertTrue(failures.isEmpty());
+    }
+
+    @Test
+    public void packedCommands_sendAsTextWhenBinaryIsNotNegotiated() {
+        BinaryTransport link = new BinaryTransport();
+        controller.setTransport(link);
+        controller.onDataReceived("#1 ERR unknown command\n");
+
+        controller.sendCommand(DeviceController.packAdjustment(DeviceType.SPEAKER, "VOLUME", 42));
+        controller.sendCommand(DeviceController.packMedia("NEXT"));
+
+        assertEquals("#2 SPEAKER:VOLUME:42\n", new String(link.binaryFrames.get(0), StandardCharsets.US_ASCII));
+        assertEquals("#3 MEDIA:NEXT\n", new String(link.binaryFrames.get(1), StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void scene_goesOutAsOneBatchFrame() throws Exception {
+        BinaryTransport link = new BinaryTransport();
+        controller.setTransport(link);
+        controller.onDataReceived("#1 OK BIN1\n");
+        Scene movie = Scene.parse("movie", "LIGHT:OFF,FAN:ON,TV:ON,SPEAKER:VOLUME:30");
+
+        now = 1_000;
+        CommandHandle handle = controller.activateScene(movie);
+        assertEquals(1, link.binaryFrames.size());
+
+        List<String> batches = new ArrayList<>();
+        byte[] frame = link.binaryFrames.get(0);
+        new WireCodec().decode(frame, 0, frame.length, new WireCodec.Sink() {
+            @Override
+            public void onTextLine(String line) {
+            }
+
+            @Override
+            public void onBatch(int correlationId, long[] commands) {
+                batches.add(correlationId + " " + commands.length);
+            }
+        });
+        assertEquals(List.of(handle.getCorrelationId() + " 4"), batches);
+
+        now = 26_000;
+        WireCodec device = new WireCodec();
+        controller.onDataReceived(device.getBuffer(), 0, device.encodeAck(handle.getCorrelationId()));
+        assertEquals("OK", handle.get());
+        assertEquals(1, controller.getSceneActivationCount());
+        assertEquals(25_000, controller.getLastSceneLatencyNs());
+    }
+
+    @Test
+    public void rejectedScene_failsAsAWhole() {
+        controller.setTransport(frames::add);
+        CommandHandle handle = controller.activateScene(Scene.parse("movie", "LIGHT:OFF,TV:ON"));
+        assertEquals(List.of("#" + handle.getCorrelationId() + " BATCH LIGHT:OFF;TV:ON"), frames);
+
+        controller.onDataReceived("#" + handle.getCorrelationId() + " ERR TV unreachable\n");
+
+        assertTrue(handle.isCompletedExceptionally());
+        assertEquals(List.of("TV unreachable"), failures);
+        assertEquals(0, controller.getSceneActivationCount());
+        assertEquals(1, controller.getSceneFailureCount());
+    }
+
+    @Test
+    public void sceneSpecs_loadInNameOrder() throws Exception {
+        String file = "scene.movie=LIGHT:OFF,FAN:ON,TV:ON,SPEAKER:VOLUME:30\nscene.away=LIGHT:OFF,FAN:OFF\n";
+        List<Scene> scenes = Scene.load(new ByteArrayInputStream(file.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(2, scenes.size());
+        assertEquals("away", scenes.get(0).getName());
+        assertEquals("LIGHT:OFF,FAN:ON,TV:ON,SPEAKER:VOLUME:30", scenes.get(1).toString());
+        try {
+            Scene.parse("party", "LIGHT:ON,FAN:OSCILLATE:1");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("FAN:OSCILLATE:1"));
+        }
+    }
+
+    @Test
+    public void packedCommands_allocateNothingInSteadyState() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled());
+
+        AckingDevice device = new AckingDevice();
+        controller.setTransport(device);
+        controller.onDataReceived("#1 OK BIN1\n");
+        assertTrue(controller.isBinaryProtocol());
+        controller.setCoalesceInterval(0);
+
+        runCommands(device, 50_000); // grow the pool and queue, let the JIT settle
+        long threadId = Thread.currentThread().getId();
+        long before = allocations.getThreadAllocatedBytes(threadId);
+        runCommands(device, 10_000);
+        long allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals("bytes allocated by 20000 commands", 0, allocated);
+        assertEquals(1 + (50_000 + 10_000) * 2, controller.getAcknowledgedCount()); // with the handshake
+        assertTrue(failures.isEmpty());
+    }
+
+    /**
+     * Per iteration a toggle and a coalesced parameter, each acknowledged by a binary frame
+     */
+    private void runCommands(AckingDevice device, int count) {
+        long toggle = DeviceController.packToggle(DeviceType.LIGHT, true);
+        for (int i = 0; i < count; i++) {
+            controller.sendCommand(toggle);
+            device.acknowledge(controller);
+            controller.updateParameter(DeviceType.SPEAKER, "VOLUME", i % 101);
+            device.acknowledge(controller);
+        }
+    }
+
+    // Device end of a binary link: decodes each command frame and acknowledges it on request
+    private static class AckingDevice implements DeviceController.Transport, WireCodec.Sink {
+        private final WireCodec codec = new WireCodec();
+        private int lastCorrelationId;
+
+        @Override
+        public boolean send(String frame) {
+            return true;
+        }
+
+        @Override
+        public boolean send(byte[] frame, int offset, int length) {
+            codec.decode(frame, offset, length, this);
+            return true;
+        }
+
+        @Override
+        public boolean supportsBinary() {
+            return true;
+        }
+
+        @Override
+        public void onTextLine(String line) {
+        }
+
+        @Override
+        public void onCommand(int correlationId, long packed) {
+            lastCorrelationId = correlationId;
+        }
+
+        void acknowledge(DeviceController controller) {
+            int length = codec.encodeAck(lastCorrelationId);
+            controller.onDataReceived(codec.getBuffer(), 0, length);
+        }
+    }
+
+    // Link that accepts binary frames; text frames go to the shared list
+    private class BinaryTransport implements DeviceController.Transport {
+        final List<byte[]> binaryFrames = new ArrayList<>();
+
+        @Override
+        public boolean send(String frame) {
+            return frames.add(frame);
+        }
+
+        @Override
+        public boolean send(byte[] frame, int offset, int length) {
+            return binaryFrames.add(Arrays.copyOfRange(frame, offset, offset + length));
+        }
+
+        @Override
+        public boolean supportsBinary() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.btn3.core;
+
+import com.example.btn3.core.GestureDetector.GestureType;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DoubleTapDetectorTest {
+
+    private static final long SAMPLE_PERIOD_NS = 2_500_000L; // 400 Hz
+    private static final float GRAVITY = 9.81f;
+    private static final long TAP_WIDTH_NS = 10_000_000L; // 10 ms
+
+    private final List<Long> doubleTaps = new ArrayList<>();
+    private final DoubleTapDetector detector = new DoubleTapDetector(doubleTaps::add);
+
+    @Test
+    public void twoTaps_areReportedOnce() {
+        feed(detector, 1_000_000_000L, 1_300_000_000L);
+
+        assertEquals(1, doubleTaps.size());
+        assertEquals(2, detector.getTapCount());
+    }
+
+    @Test
+    public void interval_isResolvedBetweenSamples() {
+        // Peaks fall between samples; the interval is 213.4 ms
+        long first = 1_000_000_000L + 1_100_000L;
+        long second = first + 213_400_000L;
+        feed(detector, first, second);
+
+        assertEquals(1, doubleTaps.size());
+        assertEquals(213_400_000L, detector.getLastIntervalNs(), 500_000L);
+        assertEquals(second, doubleTaps.get(0), 500_000L);
+    }
+
+    @Test
+    public void singleTap_isNotReported() {
+        feed(detector, 1_000_000_000L);
+
+        assertTrue(doubleTaps.isEmpty());
+        assertEquals(1, detector.getTapCount());
+    }
+
+    @Test
+    public void tapsOutsideInterval_areNotReported() {
+        feed(detector, 1_000_000_000L, 1_700_000_000L);
+        assertTrue(doubleTaps.isEmpty());
+
+        detector.reset();
+        detector.setTapInterval(100_000_000L, 800_000_000L);
+        feed(detector, 1_000_000_000L, 1_700_000_000L);
+        assertEquals(1, doubleTaps.size());
+    }
+
+    @Test
+    public void shake_isRejectedAsSustainedMotion() {
+        for (long t = 0; t < 3_000_000_000L; t += SAMPLE_PERIOD_NS) {
+            float value = t > 1_000_000_000L && t < 2_000_000_000L
+                    ? 12f * (float) Math.sin(2 * Math.PI * 6 * t / 1e9) : 0f;
+            detector.processAccelerometer(value, 0f, GRAVITY, t);
+        }
+
+        assertTrue(doubleTaps.isEmpty());
+        assertTrue(detector.getSustainedCount() > 0);
+    }
+
+    @Test
+    public void tiltStep_isNotATap() {
+        for (long t = 0; t < 2_000_000_000L; t += SAMPLE_PERIOD_NS) {
+            boolean tilted = t > 1_000_000_000L;
+            detector.processAccelerometer(0f, tilted ? 6.9f : 0f, tilted ? 6.9f : GRAVITY, t);
+        }
+
+        assertEquals(0, detector.getTapCount());
+    }
+
+    @Test
+    public void detector_reportsDoubleTapFromAccelerometer() {
+        List<GestureType> detected = new ArrayList<>();
+        GestureDetector gestureDetector = new GestureDetector((gestureType, intensity) -> detected.add(gestureType));
+        for (long t = 0; t < 2_000_000_000L; t += SAMPLE_PERIOD_NS) {
+            // A tap on the screen pushes the phone into the table, against gravity
+            float tap = tap(t, 1_000_000_000L) + tap(t, 1_250_000_000L);
+            gestureDetector.processAccelerometerData(0f, 0f, GRAVITY - tap, t);
+        }
+
+        assertEquals(List.of(GestureType.DOUBLE_TAP), detected);
+    }
+
+    /**
+     * Two seconds of rest with short half-sine impulses on Z peaking at the given times
+     */
+    private static void feed(DoubleTapDetector detector, long... peaks) {
+        for (long t = 0; t < 2_000_000_000L; t += SAMPLE_PERIOD_NS) {
+            float z = GRAVITY + 0.03f * (t / SAMPLE_PERIOD_NS % 3 - 1);
+            for (long peak : peaks) {
+                z += tap(t, peak);
+            }
+            detector.processAccelerometer(0.02f, 0f, z, t);
+        }
+    }
+
+    private static float tap(long t, long peak) {
+        long offset = t - peak;
+        if (Math.abs(offset) >= TAP_WIDTH_NS / 2) {
+            return 0f;
+        }
+        return 8f * (float) Math.cos(Math.PI * offset / TAP_WIDTH_NS);
+    }
+}
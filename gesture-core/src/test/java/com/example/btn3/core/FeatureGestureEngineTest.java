@@ -0,0 +1,129 @@
+package com.example.btn3.core;
+
+import com.example.btn3.core.GestureDetector.GestureType;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FeatureGestureEngineTest {
+
+    private static final float SAMPLE_RATE_HZ = 200f;
+    private static final long SAMPLE_PERIOD_NS = 5_000_000L;
+    private static final float GRAVITY = 9.81f;
+
+    private final List<GestureType> gestures = new ArrayList<>();
+    private long time = 0;
+
+    @Test
+    public void strongWave_isNotMistakenForShake() {
+        // 1.5 Hz at 12 m/s^2: the magnitude passes the shake threshold, the shape is a wave
+        FeatureGestureEngine engine = newEngine();
+        rest(engine, 1.0f);
+        oscillate(engine, 1.5f, 12f, 1.5f, 1f, 0f, 0f);
+        rest(engine, 1.0f);
+
+        assertEquals(List.of(GestureType.WAVE), gestures);
+    }
+
+    @Test
+    public void shake_isDetectedOnce() {
+        FeatureGestureEngine engine = newEngine();
+        rest(engine, 1.0f);
+        oscillate(engine, 6f, 15f, 1.0f, 0.6f, 0.3f, 0.74f);
+        rest(engine, 1.0f);
+
+        assertEquals(List.of(GestureType.SHAKE), gestures);
+    }
+
+    @Test
+    public void rest_reportsNothing() {
+        FeatureGestureEngine engine = newEngine();
+        rest(engine, 5.0f);
+
+        assertTrue(gestures.isEmpty());
+        assertTrue(engine.getClassificationCount() > 0);
+    }
+
+    @Test
+    public void tilt_stillUsesThresholdRule() {
+        FeatureGestureEngine engine = newEngine();
+        rest(engine, 1.0f);
+        for (int i = 0; i < 100; i++) {
+            engine.processAccelerometer(0f, 6.9f, 6.9f, time);
+            time += SAMPLE_PERIOD_NS;
+        }
+
+        assertEquals(List.of(GestureType.TILT_FORWARD), gestures);
+    }
+
+    @Test
+    public void lowSensitivity_suppressesWeakWave() {
+        FeatureGestureEngine engine = newEngine();
+        engine.setSensitivity(1.5f, 1.0f, 1.0f, 1.0f);
+        rest(engine, 1.0f);
+        oscillate(engine, 1.5f, 3f, 1.5f, 1f, 0f, 0f);
+        rest(engine, 1.0f);
+        assertTrue(gestures.isEmpty());
+
+        engine.setSensitivity(0.5f, 1.0f, 1.0f, 1.0f);
+        oscillate(engine, 1.5f, 3f, 1.5f, 1f, 0f, 0f);
+        rest(engine, 1.0f);
+        assertEquals(List.of(GestureType.WAVE), gestures);
+    }
+
+    @Test
+    public void detector_canSelectFeatureEngine() {
+        List<GestureType> detected = new ArrayList<>();
+        GestureDetector detector = new GestureDetector((gestureType, intensity) -> detected.add(gestureType));
+        detector.setEngine(FeatureGestureEngine.factory(SAMPLE_RATE_HZ));
+        for (int i = 0; i < 400; i++) {
+            float t = i / SAMPLE_RATE_HZ;
+            float x = i >= 200 ? 12f * (float) Math.sin(2 * Math.PI * 1.5 * t) : 0f;
+            detector.processAccelerometerData(x, 0f, GRAVITY, time);
+            time += SAMPLE_PERIOD_NS;
+        }
+
+        assertEquals(List.of(GestureType.WAVE), detected);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void classifierWithoutNoneClass_isRejected() {
+        float[][] weights = new float[2][15];
+        new FeatureGestureEngine((gestureType, intensity, timestampNs) -> { }, SAMPLE_RATE_HZ,
+                new LinearGestureClassifier(new GestureType[]{GestureType.WAVE, GestureType.SHAKE},
+                        weights, new float[2]));
+    }
+
+    private FeatureGestureEngine newEngine() {
+        return new FeatureGestureEngine((gestureType, intensity, timestampNs) -> {
+            if (gestureType == GestureType.WAVE || gestureType == GestureType.SHAKE) {
+                // Classifier probability
+                assertTrue(intensity > 0.0f && intensity <= 1.0f);
+            }
+            gestures.add(gestureType);
+        }, SAMPLE_RATE_HZ, FeatureGestureEngine.defaultClassifier());
+    }
+
+    private void rest(FeatureGestureEngine engine, float seconds) {
+        for (int i = 0; i < seconds * SAMPLE_RATE_HZ; i++) {
+            engine.processAccelerometer(0.02f * (i % 3 - 1), 0f, GRAVITY, time);
+            time += SAMPLE_PERIOD_NS;
+        }
+    }
+
+    /**
+     * Sinusoidal motion along a unit direction, on top of gravity
+     */
+    private void oscillate(FeatureGestureEngine engine, float frequencyHz, float amplitude, float seconds,
+                           float dx, float dy, float dz) {
+        for (int i = 0; i < seconds * SAMPLE_RATE_HZ; i++) {
+            float value = amplitude * (float) Math.sin(2 * Math.PI * frequencyHz * i / SAMPLE_RATE_HZ);
+            engine.processAccelerometer(value * dx, value * dy, GRAVITY + value * dz, time);
+            time += SAMPLE_PERIOD_NS;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.btn3.core;
+
+import com.example.btn3.core.GestureDetector.GestureType;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FilteredGestureEngineTest {
+
+    private static final float RATE_HZ = 50.0f;
+
+    @Test
+    public void lowPassSettlesToDcAndRejectsNyquist() {
+        SignalFilter filter = BiquadFilter.lowPass(RATE_HZ, 2.0f, BiquadFilter.BUTTERWORTH_Q).create();
+        float out = 0f;
+        for (int i = 0; i < 200; i++) {
+            out = filter.process((i % 2 == 0 ? 1f : -1f) + 5f);
+        }
+        assertEquals(5f, out, 0.05f);
+    }
+
+    @Test
+    public void highPassRemovesGravityWithoutStartupSpike() {
+        SignalFilter filter = BiquadFilter.highPass(RATE_HZ, 0.5f, BiquadFilter.BUTTERWORTH_Q).create();
+        for (int i = 0; i < 50; i++) {
+            assertEquals(0f, filter.process(9.81f), 1e-3f);
+        }
+    }
+
+    @Test
+    public void movingAverageAveragesLastN() {
+        SignalFilter filter = MovingAverageFilter.of(3).create();
+        filter.process(3f);
+        filter.process(6f);
+        assertEquals(4.5f, filter.process(4.5f), 1e-6f);
+        assertEquals(6f, filter.process(7.5f), 1e-6f);
+    }
+
+    @Test
+    public void singleSampleSpikeDoesNotTriggerFilteredTilt() {
+        List<GestureType> gestures = new ArrayList<>();
+        FilteredGestureEngine engine = new FilteredGestureEngine(
+                (gestureType, intensity, timestampNs) -> gestures.add(gestureType),
+                FilteredGestureEngine.defaultConfig(RATE_HZ));
+
+        for (int i = 0; i < 100; i++) {
+            float y = i == 50 ? 5f : 0f;
+            engine.processAccelerometer(0f, y, 9.81f, i * 20_000_000L);
+        }
+        assertTrue(gestures.isEmpty());
+
+        // A sustained tilt still gets through
+        for (int i = 100; i < 200; i++) {
+            engine.processAccelerometer(0f, 5f, 8.4f, i * 20_000_000L);
+        }
+        assertTrue(gestures.contains(GestureType.TILT_FORWARD));
+    }
+
+    @Test
+    public void decimationReducesForwardedSamples() {
+        FilteredGestureEngine engine = new FilteredGestureEngine(
+                (gestureType, intensity, timestampNs) -> { },
+                FilteredGestureEngine.defaultConfig(RATE_HZ));
+        for (int i = 0; i < 100; i++) {
+            engine.processAccelerometer(0f, 0f, 9.81f, i);
+        }
+        // Wave/shake branch at full rate plus the tilt branch at 1/5
+        assertEquals(100, engine.getInputSampleCount());
+        assertEquals(120, engine.getForwardedSampleCount());
+    }
+
+    @Test
+    public void branchListingOnlyNegativeDirectionGetsTheRule() {
+        List<GestureType> gestures = new ArrayList<>();
+        FilteredGestureEngine engine = new FilteredGestureEngine(
+                (gestureType, intensity, timestampNs) -> gestures.add(gestureType),
+                Collections.singletonList(new FilteredGestureEngine.BranchConfig(
+                        EnumSet.of(GestureType.TILT_BACKWARD), Collections.emptyList(), Collections.emptyList(), 1)));
+
+        for (int i = 0; i < 50; i++) {
+            engine.processAccelerometer(0f, -5f, 8.4f, i * 20_000_000L);
+        }
+        assertTrue(gestures.contains(GestureType.TILT_BACKWARD));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ruleClaimedByTwoBranchesIsRejected() {
+        new FilteredGestureEngine((gestureType, intensity, timestampNs) -> { }, Arrays.asList(
+                new FilteredGestureEngine.BranchConfig(EnumSet.of(GestureType.ROTATE_LEFT),
+                        Collections.emptyList(), Collections.emptyList(), 1),
+                new FilteredGestureEngine.BranchConfig(EnumSet.of(GestureType.ROTATE_RIGHT),
+                        Collections.emptyList(), Collections.emptyList(), 2)));
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.btn3.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class GestureDetectorTest {
+
+    private static final long SAMPLE_PERIOD_NS = 5_000_000L; // 200 Hz
+
+    private static class RecordingListener implements GestureDetector.GestureDetectionListener {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onGestureDetected(GestureDetector.GestureType gestureType, float intensity) {
+            events.add(gestureType + ":" + intensity);
+        }
+
+        @Override
+        public void onProvisionalGesture(GestureDetector.GestureType gestureType, long timestampNs) {
+            events.add("provisional:" + gestureType);
+        }
+
+        @Override
+        public void onProvisionalGestureCancelled(GestureDetector.GestureType gestureType, long timestampNs) {
+            events.add("cancelled:" + gestureType);
+        }
+    }
+
+    @Test
+    public void batch_matchesPerSampleProcessing() {
+        int count = 4000;
+        float[] accel = new float[count * 3];
+        float[] gyro = new float[count * 3];
+        long[] timestamps = new long[count];
+        Random random = new Random(42);
+        for (int i = 0; i < count; i++) {
+            timestamps[i] = 1_000_000_000L + i * SAMPLE_PERIOD_NS;
+            for (int axis = 0; axis < 3; axis++) {
+                accel[i * 3 + axis] = (float) (random.nextGaussian() * 8.0);
+                gyro[i * 3 + axis] = (float) (random.nextGaussian() * 2.0);
+            }
+        }
+
+        assertSameEvents(accel, timestamps, count, true);
+        assertSameEvents(gyro, timestamps, count, false);
+    }
+
+    private static void assertSameEvents(float[] xyz, long[] timestamps, int count, boolean accelerometer) {
+        RecordingListener single = new RecordingListener();
+        GestureDetector singleDetector = new GestureDetector(single);
+        for (int i = 0; i < count; i++) {
+            if (accelerometer) {
+                singleDetector.processAccelerometerData(xyz[i * 3], xyz[i * 3 + 1], xyz[i * 3 + 2], timestamps[i]);
+            } else {
+                singleDetector.processGyroscopeData(xyz[i * 3], xyz[i * 3 + 1], xyz[i * 3 + 2], timestamps[i]);
+            }
+        }
+
+        RecordingListener batched = new RecordingListener();
+        GestureDetector batchDetector = new GestureDetector(batched);
+        if (accelerometer) {
+            batchDetector.processAccelerometerBatch(xyz, timestamps, count);
+        } else {
+            batchDetector.processGyroscopeBatch(xyz, timestamps, count);
+        }
+
+        assertFalse(single.events.isEmpty());
+        assertEquals(single.events, batched.events);
+    }
+
+    @Test
+    public void batch_respectsRefractoryAcrossSamples() {
+        RecordingListener listener = new RecordingListener();
+        GestureDetector detector = new GestureDetector(listener);
+        // Tilts separated by rest samples, the second one inside the 400 ms window
+        float[] xyz = {0f, 4f, 9f, 0f, 0f, 9.8f, 0f, 4f, 9f, 0f, 0f, 9.8f, 0f, 4f, 9f};
+        long[] timestamps = {0L, 100_000_000L, 300_000_000L, 400_000_000L, 500_000_000L};
+
+        detector.processAccelerometerBatch(xyz, timestamps, 5);
+
+        assertEquals(2, listener.events.size());
+    }
+
+    @Test
+    public void differentGestures_doNotBlockEachOther() {
+        RecordingListener listener = new RecordingListener();
+        GestureDetector detector = new GestureDetector(listener);
+        // Replayed sequence: tilt, rotation 200 ms later, tilt back 200 ms after that
+        long t = 0L;
+        for (int i = 0; i < 6; i++, t += 200_000_000L) {
+            if (i % 2 == 0) {
+                float y = i % 4 == 0 ? 4f : -4f;
+                detector.processAccelerometerData(0f, y, 9f, t);
+                detector.processAccelerometerData(0f, 0f, 9.8f, t + SAMPLE_PERIOD_NS * 10);
+            } else {
+                detector.processGyroscopeData(0f, 0f, 3f, t);
+                detector.processGyroscopeData(0f, 0f, 0f, t + SAMPLE_PERIOD_NS * 10);
+            }
+        }
+
+        assertEquals(6, listener.events.size());
+    }
+
+    @Test
+    public void shortGap_absorbsCrossSensorDuplicate() {
+        RecordingListener listener = new RecordingListener();
+        GestureDetector detector = new GestureDetector(listener);
+        // A shake also swings the gyroscope 50 ms later
+        detector.processAccelerometerData(0f, 0f, 20f, 0L);
+        detector.processGyroscopeData(0f, 0f, 3f, 50_000_000L);
+
+        assertEquals(1, listener.events.size());
+    }
+
+    @Test
+    public void refractoryPeriodIsPerGesture() {
+        RecordingListener listener = new RecordingListener();
+        GestureDetector detector = new GestureDetector(listener);
+        detector.setRefractoryPeriod(GestureDetector.GestureType.ROTATE_RIGHT, 1_000_000_000L);
+        for (long t = 0L; t < 1_000_000_000L; t += 250_000_000L) {
+            detector.processGyroscopeData(0f, 0f, 3f, t);
+            detector.processGyroscopeData(0f, 0f, 0f, t + SAMPLE_PERIOD_NS);
+        }
+
+        assertEquals(1, listener.events.size());
+    }
+
+    @Test
+    public void configChanges_applyBeforeTheNextSample() throws Exception {
+        GestureDetector detector = new GestureDetector(new RecordingListener());
+        Thread ui = new Thread(() -> detector.setRefractoryPeriod(GestureDetector.GestureType.WAVE, 1_000_000_000L));
+        ui.start();
+        ui.join();
+
+        // Queued until the processing thread feeds its next sample
+        assertEquals(GestureDetector.DEFAULT_REFRACTORY_PERIOD,
+                detector.getRefractoryPeriod(GestureDetector.GestureType.WAVE));
+        detector.processAccelerometerData(0f, 0f, 9.81f, 0L);
+        assertEquals(1_000_000_000L, detector.getRefractoryPeriod(GestureDetector.GestureType.WAVE));
+    }
+
+    @Test
+    public void earlyTrigger_confirmsProvisionalGesture() {
+        RecordingListener listener = new RecordingListener();
+        GestureDetector detector = new GestureDetector(listener);
+        detector.setEarlyTrigger(true, GestureDetector.DEFAULT_ONSET_RATIO);
+        // Tilt ramping to 4 m/s^2: onset at 2.25, confirmed at 3
+        long t = rampY(detector, 0L, 0f, 4f, 40);
+
+        assertEquals(2, listener.events.size());
+        assertEquals("provisional:TILT_FORWARD", listener.events.get(0));
+        assertTrue(listener.events.get(1).startsWith("TILT_FORWARD:"));
+        assertEquals(1, detector.getConfirmedProvisionalCount());
+        assertEquals(0f, detector.getProvisionalCancelRate(), 0f);
+        // 0.75 m/s^2 of the ramp, at 0.1 m/s^2 per sample
+        assertEquals(8 * SAMPLE_PERIOD_NS, detector.getAverageLeadTimeNs(), SAMPLE_PERIOD_NS);
+    }
+
+    @Test
+    public void earlyTrigger_cancelsWhenMotionFallsBack() {
+        RecordingListener listener = new RecordingListener();
+        GestureDetector detector = new GestureDetector(listener);
+        detector.setEarlyTrigger(true, GestureDetector.DEFAULT_ONSET_RATIO);
+        long t = rampY(detector, 0L, 0f, 2.6f, 26);
+        rampY(detector, t, 2.6f, 0f, 26);
+
+        assertEquals(List.of("provisional:TILT_FORWARD", "cancelled:TILT_FORWARD"), listener.events);
+        assertEquals(1f, detector.getProvisionalCancelRate(), 0f);
+    }
+
+    @Test
+    public void earlyTrigger_cancelsOnOtherGestureOrTimeout() {
+        RecordingListener listener = new RecordingListener();
+        GestureDetector detector = new GestureDetector(listener);
+        detector.setEarlyTrigger(true, GestureDetector.DEFAULT_ONSET_RATIO);
+        long t = rampY(detector, 0L, 0f, 2.6f, 26);
+        detector.processGyroscopeData(0f, 0f, 3f, t);
+        assertEquals("cancelled:TILT_FORWARD", listener.events.get(1));
+        assertTrue(listener.events.get(2).startsWith("ROTATE_RIGHT:"));
+
+        // A signal held short of the threshold expires
+        listener.events.clear();
+        detector.reset();
+        t = rampY(detector, t + 1_000_000_000L, 0f, 2.6f, 26);
+        rampY(detector, t, 2.6f, 2.6f, 80);
+        assertEquals(List.of("provisional:TILT_FORWARD", "cancelled:TILT_FORWARD"), listener.events);
+    }
+
+    @Test
+    public void earlyTriggerOff_reportsNoProvisionalGestures() {
+        RecordingListener listener = new RecordingListener();
+        GestureDetector detector = new GestureDetector(listener);
+        rampY(detector, 0L, 0f, 4f, 40);
+
+        assertEquals(1, listener.events.size());
+        assertEquals(0, detector.getProvisionalCount());
+    }
+
+    /**
+     * Ramp accelerometer Y over count samples, Z holding gravity
+     * @return Timestamp after the last sample
+     */
+    private static long rampY(GestureDetector detector, long start, float from, float to, int count) {
+        long t = start;
+        for (int i = 1; i <= count; i++, t += SAMPLE_PERIOD_NS) {
+            detector.processAccelerometerData(0f, from + (to - from) * i / count, 9.8f, t);
+        }
+        return t;
+    }
+}
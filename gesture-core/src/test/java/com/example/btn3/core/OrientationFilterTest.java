@@ -0,0 +1,70 @@
+package com.example.btn3.core;
+
+import com.example.btn3.core.GestureDetector.GestureType;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class OrientationFilterTest {
+
+    private static final long PERIOD_NS = 5_000_000L; // 200 Hz
+
+    @Test
+    public void firstSampleAlignsGravity() {
+        OrientationFilter filter = new OrientationFilter();
+        filter.updateAccelerometer(2.0f, -5.0f, 8.0f, 0L);
+
+        float norm = (float) Math.sqrt(4 + 25 + 64);
+        float scale = OrientationFilter.GRAVITY / norm;
+        assertEquals(2.0f * scale, filter.getGravityX(), 1e-3f);
+        assertEquals(-5.0f * scale, filter.getGravityY(), 1e-3f);
+        assertEquals(8.0f * scale, filter.getGravityZ(), 1e-3f);
+    }
+
+    @Test
+    public void gyroscopeTracksRotation() {
+        OrientationFilter filter = new OrientationFilter(0.0f);
+        filter.updateAccelerometer(0f, 0f, OrientationFilter.GRAVITY, 0L);
+
+        // Roll 90 degrees about X over one second
+        float rate = (float) (Math.PI / 2);
+        for (int i = 0; i <= 200; i++) {
+            filter.updateGyroscope(rate, 0f, 0f, i * PERIOD_NS);
+        }
+
+        assertEquals(OrientationFilter.GRAVITY, Math.abs(filter.getGravityY()), 0.05f);
+        assertEquals(0f, filter.getGravityZ(), 0.05f);
+    }
+
+    @Test
+    public void linearPushDoesNotTriggerFusedTilt() {
+        List<GestureType> raw = run(null);
+        List<GestureType> fused = run(ThresholdGestureEngine.fused());
+
+        assertTrue(raw.contains(GestureType.TILT_FORWARD));
+        assertFalse(fused.contains(GestureType.TILT_FORWARD));
+        assertFalse(fused.contains(GestureType.TILT_BACKWARD));
+    }
+
+    /**
+     * Phone flat on the table, pushed along +Y at 4 m/s^2 for 150 ms without tilting
+     */
+    private static List<GestureType> run(GestureEngine.Factory factory) {
+        List<GestureType> gestures = new ArrayList<>();
+        GestureDetector detector = new GestureDetector((gestureType, intensity) -> gestures.add(gestureType));
+        if (factory != null) {
+            detector.setEngine(factory);
+        }
+        for (int i = 0; i < 400; i++) {
+            long t = i * PERIOD_NS;
+            boolean push = i >= 200 && i < 230;
+            detector.processGyroscopeData(0f, 0f, 0f, t);
+            detector.processAccelerometerData(0f, push ? 4.0f : 0f, OrientationFilter.GRAVITY, t);
+        }
+        return gestures;
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.btn3.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SensorArchiveTest {
+
+    private static final long SAMPLE_PERIOD_NS = 5_000_000L; // 200 Hz
+    // Accelerometer resolution of a 16-bit +-8 g sensor
+    private static final float LSB = 16f * OrientationFilter.GRAVITY / 65536f;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void roundTrip_isLossless() throws IOException {
+        Path file = folder.newFile("archive.bin").toPath();
+        List<String> written = new ArrayList<>();
+        Random random = new Random(3);
+        float[] specials = {Float.NaN, -0.0f, Float.MIN_VALUE, Float.MAX_VALUE, Float.NEGATIVE_INFINITY};
+        try (SensorArchiveWriter writer = new SensorArchiveWriter(file)) {
+            long t = 1_000_000_000L;
+            for (int i = 0; i < 5000; i++) {
+                t += SAMPLE_PERIOD_NS + random.nextInt(400_000) - 200_000;
+                int type = i % 3 == 0 ? SensorTrace.GYROSCOPE : SensorTrace.ACCELEROMETER;
+                float x = i % 997 == 0 ? specials[(i / 997) % specials.length] : (float) random.nextGaussian();
+                float y = (float) random.nextGaussian() * 100f;
+                float z = 9.8f;
+                writer.onSample(type, t, x, y, z);
+                written.add(record(type, t, x, y, z));
+            }
+        }
+
+        List<String> read = new ArrayList<>();
+        try (SensorArchiveReader reader = new SensorArchiveReader(file)) {
+            assertEquals(5000, reader.getSampleCount());
+            reader.readAll((sensorType, timestampNs, x, y, z) -> read.add(record(sensorType, timestampNs, x, y, z)));
+        }
+        assertEquals(written, read);
+    }
+
+    @Test
+    public void steadyQuantizedStream_compressesWell() throws IOException {
+        Path file = folder.newFile("steady.bin").toPath();
+        long samples = writeSteady(file, 20_000);
+
+        long rawBytes = SensorTrace.HEADER_SIZE + samples * SensorTrace.RECORD_SIZE;
+        assertTrue("archive is " + Files.size(file) + " of " + rawBytes + " bytes",
+                Files.size(file) * 2 < rawBytes);
+    }
+
+    @Test
+    public void timeRange_decodesOnlyOverlappingBlocks() throws IOException {
+        Path file = folder.newFile("range.bin").toPath();
+        writeSteady(file, 20_000);
+
+        long from = 50 * 1_000_000_000L;
+        long to = from + 2_000_000_000L;
+        List<Long> times = new ArrayList<>();
+        try (SensorArchiveReader reader = new SensorArchiveReader(file)) {
+            reader.read(from, to, (sensorType, timestampNs, x, y, z) -> times.add(timestampNs));
+            assertTrue(reader.getBlockCount() > 30);
+            assertTrue(reader.getDecodedBlockCount() <= 4);
+        }
+
+        // Both sensors every 5 ms over the 2 s range, inclusive, in timestamp order
+        assertEquals(2 * 401, times.size());
+        assertEquals(from, (long) times.get(0));
+        assertEquals(to, (long) times.get(times.size() - 1));
+        for (int i = 1; i < times.size(); i++) {
+            assertTrue(times.get(i) >= times.get(i - 1));
+        }
+    }
+
+    @Test
+    public void trace_canBeArchivedByReplay() throws IOException {
+        Path trace = folder.newFile("trace.bin").toPath();
+        Path archive = folder.newFile("trace-archive.bin").toPath();
+        List<String> recorded = new ArrayList<>();
+        try (SensorTraceRecorder recorder = new SensorTraceRecorder(trace)) {
+            for (int i = 0; i < 3000; i++) {
+                recorder.onSample(SensorTrace.ACCELEROMETER, i * SAMPLE_PERIOD_NS, i * LSB, 0f, 9.8f);
+                recorded.add(record(SensorTrace.ACCELEROMETER, i * SAMPLE_PERIOD_NS, i * LSB, 0f, 9.8f));
+            }
+        }
+        try (SensorTraceReplayer replayer = new SensorTraceReplayer(trace);
+             SensorArchiveWriter writer = new SensorArchiveWriter(archive)) {
+            replayer.replay(writer, SensorTraceReplayer.Pace.AS_FAST_AS_POSSIBLE);
+        }
+
+        List<String> read = new ArrayList<>();
+        try (SensorArchiveReader reader = new SensorArchiveReader(archive)) {
+            reader.readAll((sensorType, timestampNs, x, y, z) -> read.add(record(sensorType, timestampNs, x, y, z)));
+        }
+        assertEquals(recorded, read);
+    }
+
+    /**
+     * Phone at rest: quantized noise around gravity, both sensors every 5 ms
+     * @return Samples written
+     */
+    private static long writeSteady(Path file, int steps) throws IOException {
+        Random random = new Random(11);
+        try (SensorArchiveWriter writer = new SensorArchiveWriter(file)) {
+            for (int i = 0; i < steps; i++) {
+                long t = i * SAMPLE_PERIOD_NS;
+                writer.onSample(SensorTrace.ACCELEROMETER, t, quantize(random.nextGaussian() * 0.02),
+                        quantize(random.nextGaussian() * 0.02), quantize(9.81 + random.nextGaussian() * 0.02));
+                writer.onSample(SensorTrace.GYROSCOPE, t, 0f, quantize(random.nextGaussian() * 0.01), 0f);
+            }
+            return writer.getSampleCount();
+        }
+    }
+
+    private static float quantize(double value) {
+        return Math.round(value / LSB) * LSB;
+    }
+
+    private static String record(int type, long timestampNs, float x, float y, float z) {
+        return type + "@" + timestampNs + ":" + Float.floatToRawIntBits(x) + ","
+                + Float.floatToRawIntBits(y) + "," + Float.floatToRawIntBits(z);
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.btn3.core;
+
+import com.example.btn3.core.SensorRateGovernor.Rate;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SensorRateGovernorTest {
+
+    private static final long ACTIVE_PERIOD_NS = 5_000_000L; // 200 Hz
+    private static final float G = OrientationFilter.GRAVITY;
+
+    private final List<Rate> changes = new ArrayList<>();
+    private final SensorRateGovernor governor = new SensorRateGovernor(changes::add);
+    private long time = 0L;
+
+    @Test
+    public void stillDevice_goesIdleAfterDwell() {
+        // Noise well inside the still threshold
+        runActive(1_900_000_000L, 0.05f);
+        assertEquals(Rate.ACTIVE, governor.getRate());
+
+        runActive(200_000_000L, 0.05f);
+        assertEquals(Rate.IDLE, governor.getRate());
+        assertEquals(1, changes.size());
+    }
+
+    @Test
+    public void motion_wakesWithinOneIdlePeriod() {
+        runActive(2_500_000_000L, 0.0f);
+        assertEquals(Rate.IDLE, governor.getRate());
+
+        runIdle(1_000_000_000L, 0.0f);
+        // Motion onset: first idle sample above the wake threshold
+        sampleAccelerometer(1.5f, 0f, G);
+        assertEquals(Rate.ACTIVE, governor.getRate());
+        long onsetTime = time;
+
+        // Platform needs 20 ms to apply the new rate, then the gyroscope resumes
+        time += 20_000_000L;
+        governor.processGyroscope(0.5f, 0f, 0f, time);
+        assertEquals(time - onsetTime, governor.getLastRateSwitchLatencyNs());
+        assertEquals(1, governor.getWakeCount());
+        assertTrue(governor.getIdleTimeNs() >= 1_000_000_000L);
+        assertTrue(governor.getActiveTimeNs() >= 2_000_000_000L);
+    }
+
+    @Test
+    public void wakeToGesture_endsAtFirstGestureAfterWake() {
+        runActive(2_500_000_000L, 0.0f);
+        // A gesture from before the device went idle does not count
+        long staleGesture = time - 1_000_000_000L;
+        runIdle(500_000_000L, 0.0f);
+        sampleAccelerometer(1.5f, 0f, G);
+        long onsetTime = time;
+        governor.onGesture(staleGesture);
+        assertEquals(0, governor.getLastWakeToGestureNs());
+
+        runActive(300_000_000L, 1.5f);
+        governor.onGesture(time);
+        // Only the first gesture after the wake is measured
+        governor.onGesture(time + 100_000_000L);
+        assertEquals(time - onsetTime, governor.getLastWakeToGestureNs());
+        assertEquals(time - onsetTime, governor.getAverageWakeToGestureNs());
+        assertTrue(governor.getLastWakeToGestureNs() > governor.getLastRateSwitchLatencyNs());
+    }
+
+    @Test
+    public void noiseBetweenThresholds_doesNotFlap() {
+        runActive(2_500_000_000L, 0.0f);
+        assertEquals(Rate.IDLE, governor.getRate());
+
+        // Deviation above the still threshold but below the wake threshold
+        runIdle(2_000_000_000L, 0.45f);
+        assertEquals(Rate.IDLE, governor.getRate());
+        assertEquals(1, changes.size());
+    }
+
+    @Test
+    public void rotation_keepsSensorsActive() {
+        for (long end = time + 3_000_000_000L; time < end; time += ACTIVE_PERIOD_NS) {
+            governor.processAccelerometer(0f, 0f, G, time);
+            governor.processGyroscope(0f, 0f, 0.5f, time);
+        }
+        assertEquals(Rate.ACTIVE, governor.getRate());
+        assertTrue(changes.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wakeBelowStill_isRejected() {
+        new SensorRateGovernor(0.5f, 0.2f, 0.1f, 1L, 1L, null);
+    }
+
+    private void runActive(long durationNs, float noise) {
+        run(durationNs, noise, ACTIVE_PERIOD_NS);
+    }
+
+    private void runIdle(long durationNs, float noise) {
+        run(durationNs, noise, governor.getIdlePeriodNs());
+    }
+
+    private void run(long durationNs, float noise, long periodNs) {
+        long end = time + durationNs;
+        int i = 0;
+        while (time < end) {
+            time += periodNs;
+            // Alternate sides of the reference so the deviation stays at the noise level
+            sampleAccelerometer((i++ & 1) == 0 ? noise : 0f, 0f, G);
+        }
+    }
+
+    private void sampleAccelerometer(float x, float y, float z) {
+        governor.processAccelerometer(x, y, z, time);
+    }
+}
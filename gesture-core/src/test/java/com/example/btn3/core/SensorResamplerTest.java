@@ -0,0 +1,102 @@
+package com.example.btn3.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SensorResamplerTest {
+
+    private static final long PERIOD_NS = 10_000_000L; // 100 Hz grid
+
+    private final List<long[]> frameTimes = new ArrayList<>();
+    private final List<float[]> frameValues = new ArrayList<>();
+
+    private SensorResampler newResampler() {
+        return new SensorResampler(PERIOD_NS, 3 * PERIOD_NS, 200_000_000L,
+                (timestampNs, ax, ay, az, gx, gy, gz) -> {
+                    frameTimes.add(new long[]{timestampNs});
+                    frameValues.add(new float[]{ax, ay, az, gx, gy, gz});
+                });
+    }
+
+    @Test
+    public void jitteredStreams_areAlignedOnGrid() {
+        SensorResampler resampler = newResampler();
+
+        // Both sensors ramp linearly with time, at jittered ~200 Hz with different phases
+        long accelerometerTime = 0L;
+        long gyroscopeTime = 1_300_000L;
+        for (int i = 0; i < 200; i++) {
+            accelerometerTime += 5_000_000L + (i % 3 - 1) * 700_000L;
+            gyroscopeTime += 5_000_000L + (i % 4 - 1) * 500_000L;
+            resampler.addAccelerometer(ramp(accelerometerTime), 0f, 0f, accelerometerTime);
+            resampler.addGyroscope(0f, 0f, -ramp(gyroscopeTime), gyroscopeTime);
+        }
+
+        assertTrue(frameTimes.size() > 90);
+        assertEquals(frameTimes.size(), resampler.getFrameCount());
+        for (int i = 0; i < frameTimes.size(); i++) {
+            long t = frameTimes.get(i)[0];
+            if (i > 0) {
+                assertEquals(PERIOD_NS, t - frameTimes.get(i - 1)[0]);
+            }
+            assertEquals(ramp(t), frameValues.get(i)[0], 1e-3f);
+            assertEquals(-ramp(t), frameValues.get(i)[5], 1e-3f);
+        }
+        assertEquals(0, resampler.getDropoutCount());
+    }
+
+    @Test
+    public void gap_isInterpolatedAndReported() {
+        SensorResampler resampler = newResampler();
+        for (long t = 0; t <= 500_000_000L; t += 5_000_000L) {
+            // Accelerometer misses 60 ms in the middle
+            if (t <= 200_000_000L || t >= 260_000_000L) {
+                resampler.addAccelerometer(ramp(t), 0f, 0f, t);
+            }
+            resampler.addGyroscope(0f, 0f, 0f, t);
+        }
+
+        assertEquals(51, resampler.getFrameCount());
+        assertEquals(1, resampler.getDropoutCount());
+        assertEquals(5, resampler.getGapFrameCount());
+        assertEquals(ramp(230_000_000L), frameValues.get(23)[0], 1e-3f);
+    }
+
+    @Test
+    public void longPause_restartsGrid() {
+        SensorResampler resampler = newResampler();
+        for (long t = 0; t <= 100_000_000L; t += 5_000_000L) {
+            resampler.addAccelerometer(1f, 0f, 0f, t);
+            resampler.addGyroscope(0f, 0f, 0f, t);
+        }
+        for (long t = 1_000_000_000L; t <= 1_100_000_000L; t += 5_000_000L) {
+            resampler.addAccelerometer(2f, 0f, 0f, t);
+            resampler.addGyroscope(0f, 0f, 0f, t);
+        }
+
+        assertEquals(1, resampler.getResyncCount());
+        assertEquals(22, resampler.getFrameCount());
+        for (float[] values : frameValues) {
+            assertTrue(values[0] == 1f || values[0] == 2f);
+        }
+    }
+
+    @Test
+    public void staleTimestamps_areRejected() {
+        SensorResampler resampler = newResampler();
+        resampler.addAccelerometer(0f, 0f, 0f, 10L);
+        resampler.addAccelerometer(0f, 0f, 0f, 10L);
+        resampler.addGyroscope(0f, 0f, 0f, 10L);
+        resampler.addGyroscope(0f, 0f, 0f, 5L);
+
+        assertEquals(2, resampler.getRejectedSampleCount());
+    }
+
+    private static float ramp(long timestampNs) {
+        return timestampNs * 1e-8f;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.btn3.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SensorSampleBufferTest {
+
+    @Test
+    public void drain_returnsSamplesInOrder() {
+        SensorSampleBuffer buffer = new SensorSampleBuffer(8);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(buffer.publish(1, i * 10L, i, i + 1, i + 2));
+        }
+
+        final long[] expected = {0};
+        int drained = buffer.drain((type, timestampNs, x, y, z) -> {
+            assertEquals(expected[0] * 10L, timestampNs);
+            assertEquals(expected[0], x, 0f);
+            assertEquals(expected[0] + 2, z, 0f);
+            expected[0]++;
+        }, 100);
+
+        assertEquals(5, drained);
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void publish_whenFull_countsDropsAndOverruns() {
+        SensorSampleBuffer buffer = new SensorSampleBuffer(4);
+        for (int i = 0; i < 6; i++) {
+            buffer.publish(1, i, 0, 0, 0);
+        }
+        assertEquals(4, buffer.getPublishedSampleCount());
+        assertEquals(2, buffer.getDroppedSampleCount());
+        assertEquals(1, buffer.getOverrunCount());
+
+        buffer.drain((type, timestampNs, x, y, z) -> { }, 1);
+        buffer.publish(1, 6, 0, 0, 0);
+        buffer.publish(1, 7, 0, 0, 0);
+        assertEquals(3, buffer.getDroppedSampleCount());
+        assertEquals(2, buffer.getOverrunCount());
+        assertEquals(4, buffer.getHighWaterMark());
+    }
+
+    @Test
+    public void concurrentProducerAndConsumer_loseNoSamples() throws InterruptedException {
+        final int total = 200_000;
+        final SensorSampleBuffer buffer = new SensorSampleBuffer(1024);
+        final long[] next = {0};
+        final boolean[] outOfOrder = {false};
+
+        Thread consumer = new Thread(() -> {
+            while (next[0] < total) {
+                int n = buffer.drain((type, timestampNs, x, y, z) -> {
+                    if (timestampNs != next[0]) {
+                        outOfOrder[0] = true;
+                    }
+                    next[0]++;
+                }, 64);
+                if (n == 0) {
+                    buffer.awaitSamples(1_000_000L);
+                }
+            }
+        });
+        consumer.start();
+
+        for (int i = 0; i < total; i++) {
+            while (!buffer.publish(1, i, i, 0, 0)) {
+                Thread.yield();
+            }
+        }
+        consumer.join(10_000);
+
+        assertFalse(outOfOrder[0]);
+        assertEquals(total, next[0]);
+        assertEquals(total, buffer.getPublishedSampleCount());
+    }
+
+    @Test(timeout = 30_000)
+    public void publish_alwaysWakesParkedConsumer() throws InterruptedException {
+        final int rounds = 20_000;
+        final SensorSampleBuffer buffer = new SensorSampleBuffer(4);
+        final long[] received = {0};
+
+        // One sample at a time, so the consumer parks before nearly every sample; a
+        // missed wake-up would leave it parked for a minute
+        Thread consumer = new Thread(() -> {
+            while (received[0] < rounds) {
+                if (buffer.drain((type, timestampNs, x, y, z) -> received[0]++, 1) == 0) {
+                    buffer.awaitSamples(60_000_000_000L);
+                }
+            }
+        });
+        consumer.start();
+
+        for (int i = 0; i < rounds; i++) {
+            buffer.publish(1, i, i, 0, 0);
+            while (!buffer.isEmpty()) {
+                Thread.yield();
+            }
+        }
+        consumer.join();
+
+        assertEquals(rounds, received[0]);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.btn3.core;
+
+import com.example.btn3.core.GestureDetector.GestureType;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SensorTraceTest {
+
+    private static final long SAMPLE_PERIOD_NS = 5_000_000L; // 200 Hz
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void recordAndReplay_roundTrips() throws IOException {
+        Path file = folder.newFile("trace.bin").toPath();
+        // Small buffer so recording spans several channel writes
+        try (SensorTraceRecorder recorder = new SensorTraceRecorder(file, 1024)) {
+            for (int i = 0; i < 1000; i++) {
+                recorder.onSample(SensorTrace.ACCELEROMETER, i * SAMPLE_PERIOD_NS, i, -i, 0.5f * i);
+                recorder.onSample(SensorTrace.GYROSCOPE, i * SAMPLE_PERIOD_NS + 1, 0f, 1f, -i);
+            }
+            recorder.label(GestureType.SHAKE, 42L);
+            assertEquals(2001, recorder.getRecordCount());
+        }
+
+        List<String> records = new ArrayList<>();
+        try (SensorTraceReplayer replayer = new SensorTraceReplayer(file)) {
+            replayer.replay((sensorType, timestampNs, x, y, z) ->
+                    records.add(sensorType + "@" + timestampNs + ":" + x + "," + y + "," + z),
+                    SensorTraceReplayer.Pace.AS_FAST_AS_POSSIBLE);
+            assertEquals(2001, replayer.getReplayedRecordCount());
+        }
+
+        assertEquals("1@0:0.0,0.0,0.0", records.get(0));
+        assertEquals("4@4995000001:0.0,1.0,-999.0", records.get(1999));
+        assertEquals(SensorTrace.LABEL + "@42:" + (float) GestureType.SHAKE.ordinal() + ",0.0,0.0", records.get(2000));
+    }
+
+    @Test
+    public void replay_isDeterministic() throws IOException {
+        Path file = folder.newFile("random.bin").toPath();
+        Random random = new Random(7);
+        try (SensorTraceRecorder recorder = new SensorTraceRecorder(file)) {
+            for (int i = 0; i < 4000; i++) {
+                long t = 1_000_000_000L + i * SAMPLE_PERIOD_NS;
+                recorder.onSample(SensorTrace.ACCELEROMETER, t, (float) random.nextGaussian() * 8f,
+                        (float) random.nextGaussian() * 8f, 9.8f + (float) random.nextGaussian() * 8f);
+                recorder.onSample(SensorTrace.GYROSCOPE, t, 0f, 0f, (float) random.nextGaussian() * 2f);
+            }
+        }
+
+        List<GestureType> first = replay(file);
+        List<GestureType> second = replay(file);
+        assertFalse(first.isEmpty());
+        assertEquals(first, second);
+    }
+
+    @Test
+    public void realtimeReplay_keepsRecordedSpacing() throws IOException {
+        Path file = folder.newFile("short.bin").toPath();
+        try (SensorTraceRecorder recorder = new SensorTraceRecorder(file)) {
+            for (int i = 0; i <= 20; i++) {
+                recorder.onSample(SensorTrace.ACCELEROMETER, i * SAMPLE_PERIOD_NS, 0f, 0f, 9.8f);
+            }
+        }
+
+        long start = System.nanoTime();
+        try (SensorTraceReplayer replayer = new SensorTraceReplayer(file)) {
+            replayer.replay((sensorType, timestampNs, x, y, z) -> { }, SensorTraceReplayer.Pace.REALTIME);
+            assertEquals(20 * SAMPLE_PERIOD_NS, replayer.getReplayedDurationNs());
+        }
+        assertTrue(System.nanoTime() - start >= 20 * SAMPLE_PERIOD_NS);
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedRecord_isReported() throws IOException {
+        Path file = folder.newFile("truncated.bin").toPath();
+        try (SensorTraceRecorder recorder = new SensorTraceRecorder(file)) {
+            recorder.onSample(SensorTrace.ACCELEROMETER, 0L, 0f, 0f, 9.8f);
+        }
+        try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+            raw.setLength(raw.length() - 3);
+        }
+        try (SensorTraceReplayer replayer = new SensorTraceReplayer(file)) {
+            replayer.replay((sensorType, timestampNs, x, y, z) -> { }, SensorTraceReplayer.Pace.AS_FAST_AS_POSSIBLE);
+        }
+    }
+
+    private static List<GestureType> replay(Path file) throws IOException {
+        List<GestureType> gestures = new ArrayList<>();
+        GestureDetector detector = new GestureDetector((gestureType, intensity) -> gestures.add(gestureType));
+        try (SensorTraceReplayer replayer = new SensorTraceReplayer(file)) {
+            replayer.replay(detector, SensorTraceReplayer.Pace.AS_FAST_AS_POSSIBLE);
+        }
+        return gestures;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.btn3.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SlidingGoertzelTest {
+
+    @Test
+    public void binPower_matchesDftOfWindow() {
+        int windowSize = 100;
+        SlidingGoertzel bank = new SlidingGoertzel(windowSize, 1, 10);
+        Random random = new Random(5);
+        int count = 5000;
+        float[] samples = new float[count];
+        for (int i = 0; i < count; i++) {
+            samples[i] = (float) (9.81 + 4.0 * Math.sin(2 * Math.PI * 3 * i / windowSize)
+                    + random.nextGaussian());
+        }
+
+        for (int i = 0; i < count; i++) {
+            bank.add(samples[i]);
+        }
+
+        for (int bin = 1; bin <= 10; bin++) {
+            double re = 0;
+            double im = 0;
+            for (int n = 0; n < windowSize; n++) {
+                double angle = 2 * Math.PI * bin * n / windowSize;
+                re += samples[count - windowSize + n] * Math.cos(angle);
+                im -= samples[count - windowSize + n] * Math.sin(angle);
+            }
+            double expected = re * re + im * im;
+            // Damping leaves a small bias; the sinusoid's bin dominates the rest
+            assertEquals("bin " + bin, expected, bank.getPower(bin), 0.05 * expected + 200);
+        }
+        assertEquals(4.0f, bank.toAmplitude(bank.getPower(3)), 0.3f);
+    }
+
+    @Test
+    public void constantOffset_doesNotReachBins() {
+        SlidingGoertzel bank = new SlidingGoertzel(200, 1, 10);
+        for (int i = 0; i < 1000; i++) {
+            bank.add(9.81f);
+        }
+        assertTrue(bank.toAmplitude(bank.getPower(1, 10)) < 0.1f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void binAboveNyquist_isRejected() {
+        new SlidingGoertzel(20, 1, 10);
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.btn3.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SlidingWindowFeaturesTest {
+
+    private static final float DEADBAND = 0.5f;
+    private static final float PEAK_THRESHOLD = 2.0f;
+
+    @Test
+    public void incrementalFeatures_matchRecomputation() {
+        int windowSize = 50;
+        SlidingWindowFeatures features = new SlidingWindowFeatures(windowSize, DEADBAND, PEAK_THRESHOLD);
+        Random random = new Random(7);
+        int count = 2000;
+        float[] samples = new float[count];
+        for (int i = 0; i < count; i++) {
+            samples[i] = (float) (random.nextGaussian() * 3.0 + Math.sin(i * 0.2) * 4.0);
+        }
+
+        for (int i = 0; i < count; i++) {
+            features.add(samples[i]);
+            if (i >= windowSize - 1 && i % 37 == 0) {
+                assertWindow(features, samples, i, windowSize);
+            }
+        }
+    }
+
+    @Test
+    public void crossings_ignoreNoiseInsideDeadband() {
+        SlidingWindowFeatures features = new SlidingWindowFeatures(20, DEADBAND, PEAK_THRESHOLD);
+        for (int i = 0; i < 20; i++) {
+            features.add(i % 2 == 0 ? 0.2f : -0.2f);
+        }
+        assertEquals(0, features.getZeroCrossings());
+
+        features.add(1.0f);
+        features.add(-1.0f);
+        features.add(1.0f);
+        assertEquals(2, features.getZeroCrossings());
+    }
+
+    @Test
+    public void fixedPointFeatures_matchFloatingPoint() {
+        SlidingWindowFeatures features = new SlidingWindowFeatures(16, DEADBAND, PEAK_THRESHOLD);
+        for (int i = 0; i < 40; i++) {
+            features.add((float) Math.sin(i * 0.7) * 5.0f + 1.0f);
+        }
+        int[] out = new int[SlidingWindowFeatures.FEATURE_COUNT];
+        features.copyFeatures(out, 0);
+        float scale = 1 << SlidingWindowFeatures.FRACTION_BITS;
+
+        assertEquals(features.getMean(), out[SlidingWindowFeatures.MEAN] / scale, 0.01f);
+        assertEquals(features.getVariance(), out[SlidingWindowFeatures.VARIANCE] / scale, 0.05f);
+        assertEquals(features.getEnergy(), out[SlidingWindowFeatures.ENERGY] / scale, 0.05f);
+        assertEquals(features.getZeroCrossings(), out[SlidingWindowFeatures.ZERO_CROSSINGS] / scale, 0f);
+        assertEquals(features.getPeakCount(), out[SlidingWindowFeatures.PEAKS] / scale, 0f);
+    }
+
+    @Test
+    public void reset_clearsWindow() {
+        SlidingWindowFeatures features = new SlidingWindowFeatures(4, DEADBAND, PEAK_THRESHOLD);
+        for (int i = 0; i < 4; i++) {
+            features.add(i % 2 == 0 ? 5f : -5f);
+        }
+        assertTrue(features.isFull());
+
+        features.reset();
+
+        assertFalse(features.isFull());
+        assertEquals(0f, features.getEnergy(), 0f);
+        assertEquals(0, features.getZeroCrossings());
+        assertEquals(0, features.getPeakCount());
+    }
+
+    /**
+     * Recompute every feature from the quantized samples of the window ending at end
+     */
+    private static void assertWindow(SlidingWindowFeatures features, float[] samples, int end, int windowSize) {
+        double sum = 0;
+        double sumSquares = 0;
+        for (int i = end - windowSize + 1; i <= end; i++) {
+            double value = Math.round(samples[i] * 256f) / 256.0;
+            sum += value;
+            sumSquares += value * value;
+        }
+        double mean = sum / windowSize;
+        assertEquals(mean, features.getMean(), 1e-4);
+        assertEquals(sumSquares / windowSize - mean * mean, features.getVariance(), 1e-3);
+        assertEquals(sumSquares / windowSize, features.getEnergy(), 1e-3);
+
+        // Crossings and peaks depend on the samples before the window too
+        int crossings = 0;
+        int peaks = 0;
+        int lastSign = 0;
+        int deadband = Math.round(DEADBAND * 256f);
+        int peakThreshold = Math.round(PEAK_THRESHOLD * 256f);
+        for (int i = 0; i <= end; i++) {
+            boolean inWindow = i > end - windowSize;
+            int value = Math.round(samples[i] * 256f);
+            if (Math.abs(value) > deadband) {
+                int sign = value > 0 ? 1 : -1;
+                if (lastSign != 0 && sign != lastSign && inWindow) {
+                    crossings++;
+                }
+                lastSign = sign;
+            }
+            if (i >= 2 && inWindow) {
+                int previous = Math.abs(Math.round(samples[i - 1] * 256f));
+                if (previous > peakThreshold && previous > Math.abs(Math.round(samples[i - 2] * 256f))
+                        && previous >= Math.abs(value)) {
+                    peaks++;
+                }
+            }
+        }
+        assertEquals(crossings, features.getZeroCrossings());
+        assertEquals(peaks, features.getPeakCount());
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.btn3.core;
+
+import com.example.btn3.core.GestureDetector.GestureType;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SpectralGestureEngineTest {
+
+    private static final float SAMPLE_RATE_HZ = 200f;
+    private static final long SAMPLE_PERIOD_NS = 5_000_000L;
+    private static final float GRAVITY = 9.81f;
+
+    private final List<GestureType> gestures = new ArrayList<>();
+    private long time = 0;
+
+    @Test
+    public void strongSlowWave_isWave() {
+        // Passes SHAKE_THRESHOLD on magnitude, but oscillates at 1.5 Hz
+        SpectralGestureEngine engine = newEngine();
+        rest(engine, 1.0f);
+        oscillate(engine, 1.5f, 12f, 1.5f);
+        rest(engine, 2.0f);
+
+        assertEquals(List.of(GestureType.WAVE), gestures);
+    }
+
+    @Test
+    public void weakFastShake_isShake() {
+        // Stays below WAVE_THRESHOLD on magnitude, but oscillates at 7 Hz
+        SpectralGestureEngine engine = newEngine();
+        rest(engine, 1.0f);
+        oscillate(engine, 7f, 8f, 1.0f);
+        rest(engine, 2.0f);
+
+        assertEquals(List.of(GestureType.SHAKE), gestures);
+    }
+
+    @Test
+    public void tilt_isNotWave() {
+        SpectralGestureEngine engine = newEngine();
+        rest(engine, 1.0f);
+        for (int i = 0; i < 400; i++) {
+            engine.processAccelerometer(0f, 6.9f, 6.9f, time);
+            time += SAMPLE_PERIOD_NS;
+        }
+
+        assertEquals(List.of(GestureType.TILT_FORWARD), gestures);
+    }
+
+    @Test
+    public void shakeSensitivity_scalesThreshold() {
+        SpectralGestureEngine engine = newEngine();
+        engine.setSensitivity(1.0f, 1.0f, 1.0f, 1.5f);
+        rest(engine, 1.0f);
+        oscillate(engine, 7f, 8f, 1.0f);
+        rest(engine, 2.0f);
+
+        assertTrue(gestures.isEmpty());
+        assertTrue(engine.getShakeAmplitude() < 1.0f);
+    }
+
+    @Test
+    public void detector_canSelectSpectralEngine() {
+        List<GestureType> detected = new ArrayList<>();
+        GestureDetector detector = new GestureDetector((gestureType, intensity) -> detected.add(gestureType));
+        detector.setEngine(SpectralGestureEngine.factory(SAMPLE_RATE_HZ));
+        for (int i = 0; i < 600; i++) {
+            float x = i >= 200 ? 8f * (float) Math.sin(2 * Math.PI * 7 * i / SAMPLE_RATE_HZ) : 0f;
+            detector.processAccelerometerData(x, 0f, GRAVITY, time);
+            time += SAMPLE_PERIOD_NS;
+        }
+
+        assertEquals(List.of(GestureType.SHAKE), detected);
+    }
+
+    private SpectralGestureEngine newEngine() {
+        return new SpectralGestureEngine((gestureType, intensity, timestampNs) -> gestures.add(gestureType),
+                SAMPLE_RATE_HZ);
+    }
+
+    private void rest(SpectralGestureEngine engine, float seconds) {
+        for (int i = 0; i < seconds * SAMPLE_RATE_HZ; i++) {
+            engine.processAccelerometer(0.02f * (i % 3 - 1), 0f, GRAVITY, time);
+            time += SAMPLE_PERIOD_NS;
+        }
+    }
+
+    /**
+     * Side-to-side oscillation on X
+     */
+    private void oscillate(SpectralGestureEngine engine, float frequencyHz, float amplitude, float seconds) {
+        for (int i = 0; i < seconds * SAMPLE_RATE_HZ; i++) {
+            float x = amplitude * (float) Math.sin(2 * Math.PI * frequencyHz * i / SAMPLE_RATE_HZ);
+            engine.processAccelerometer(x, 0f, GRAVITY, time);
+            time += SAMPLE_PERIOD_NS;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.btn3.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TemplateGestureRecognizerTest {
+
+    private static final long SAMPLE_PERIOD_NS = 5_000_000L; // 200 Hz
+    private static final long GESTURE_NS = 800_000_000L; // 0.8 s
+
+    private final List<String> matches = new ArrayList<>();
+    private long time = 1_000_000_000L;
+
+    @Test
+    public void recordedGesture_matchesWarpedRepetition() {
+        TemplateGestureRecognizer recognizer = new TemplateGestureRecognizer(this::onMatch);
+        recognizer.startRecording();
+        circle(recognizer, GESTURE_NS);
+        assertTrue(recognizer.stopRecording(7));
+        assertEquals(1, recognizer.getTemplateCount());
+
+        rest(recognizer, 1_000_000_000L);
+        assertTrue(matches.isEmpty());
+        // Same gesture performed 10% slower
+        circle(recognizer, GESTURE_NS * 11 / 10);
+        rest(recognizer, 500_000_000L);
+
+        assertEquals(1, matches.size());
+        assertTrue(matches.get(0), matches.get(0).startsWith("7:"));
+    }
+
+    @Test
+    public void differentGesture_doesNotMatch() {
+        TemplateGestureRecognizer recognizer = new TemplateGestureRecognizer(this::onMatch);
+        recognizer.startRecording();
+        circle(recognizer, GESTURE_NS);
+        assertTrue(recognizer.stopRecording(1));
+
+        rest(recognizer, 1_000_000_000L);
+        for (long t = 0; t < GESTURE_NS; t += SAMPLE_PERIOD_NS) {
+            // Push-pull along Z
+            float z = 9.8f + 6f * (float) Math.sin(2 * Math.PI * t / GESTURE_NS);
+            recognizer.processAccelerometer(0f, 0f, z, time);
+            time += SAMPLE_PERIOD_NS;
+        }
+        rest(recognizer, 500_000_000L);
+
+        assertTrue(matches.isEmpty());
+        assertTrue(recognizer.getComparedWindowCount() > 0);
+    }
+
+    @Test
+    public void stillDevice_skipsComparison() {
+        TemplateGestureRecognizer recognizer = new TemplateGestureRecognizer(this::onMatch);
+        recognizer.startRecording();
+        circle(recognizer, GESTURE_NS);
+        assertTrue(recognizer.stopRecording(1));
+
+        rest(recognizer, 5_000_000_000L);
+
+        assertEquals(0, recognizer.getComparedWindowCount());
+        assertEquals(0, recognizer.getDtwCount());
+    }
+
+    @Test
+    public void storedTemplates_matchAfterReload() throws Exception {
+        TemplateGestureRecognizer recorder = new TemplateGestureRecognizer(this::onMatch);
+        recorder.startRecording();
+        circle(recorder, GESTURE_NS);
+        assertTrue(recorder.stopRecording(7));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        recorder.storeTemplates(out, null);
+
+        TemplateGestureRecognizer recognizer = new TemplateGestureRecognizer(this::onMatch);
+        assertEquals(1, recognizer.loadTemplates(new ByteArrayInputStream(out.toByteArray())));
+        assertArrayEquals(new int[] {7}, recognizer.getTemplateIds());
+        assertArrayEquals(recorder.getTemplatePoints(7), recognizer.getTemplatePoints(7), 1e-5f);
+
+        rest(recognizer, 1_000_000_000L);
+        circle(recognizer, GESTURE_NS);
+        rest(recognizer, 500_000_000L);
+        assertEquals(1, matches.size());
+        assertTrue(matches.get(0), matches.get(0).startsWith("7:"));
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidTemplate_failsToLoad() throws Exception {
+        new TemplateGestureRecognizer(this::onMatch).loadTemplates(
+                new ByteArrayInputStream("template.1=0.5,1.0".getBytes(StandardCharsets.ISO_8859_1)));
+    }
+
+    @Test
+    public void shortRecording_isRejected() {
+        TemplateGestureRecognizer recognizer = new TemplateGestureRecognizer(this::onMatch);
+        recognizer.startRecording();
+        rest(recognizer, 100_000_000L);
+
+        assertFalse(recognizer.stopRecording(1));
+        assertEquals(0, recognizer.getTemplateCount());
+    }
+
+    @Test
+    public void manyTemplates_prunedByLowerBound() {
+        TemplateGestureRecognizer recognizer = new TemplateGestureRecognizer(this::onMatch);
+        Random random = new Random(3);
+        int length = TemplateGestureRecognizer.DEFAULT_TEMPLATE_LENGTH;
+        for (int id = 100; id < 148; id++) {
+            // Smooth random motion: a few cycles per axis
+            float[] points = new float[length * 3];
+            for (int axis = 0; axis < 3; axis++) {
+                double amplitude = 3.0 + random.nextDouble() * 5.0;
+                double cycles = 1.0 + random.nextInt(3);
+                double phase = random.nextDouble() * 2 * Math.PI;
+                for (int i = 0; i < length; i++) {
+                    points[i * 3 + axis] = (float) (amplitude * Math.sin(2 * Math.PI * cycles * i / length + phase));
+                }
+            }
+            recognizer.addTemplate(id, points, length);
+        }
+        recognizer.startRecording();
+        circle(recognizer, GESTURE_NS);
+        assertTrue(recognizer.stopRecording(42));
+        assertEquals(49, recognizer.getTemplateCount());
+
+        rest(recognizer, 1_000_000_000L);
+        circle(recognizer, GESTURE_NS);
+        rest(recognizer, 500_000_000L);
+
+        assertEquals(1, matches.size());
+        assertTrue(matches.get(0), matches.get(0).startsWith("42:"));
+        long comparisons = recognizer.getComparedWindowCount() * recognizer.getTemplateCount();
+        // Most comparisons never reach DTW
+        String stats = recognizer.getComparedWindowCount() + " windows, " + recognizer.getLowerBoundPruneCount()
+                + " pruned, " + recognizer.getDtwCount() + " DTW, " + recognizer.getAbandonCount() + " abandoned";
+        assertTrue(stats, recognizer.getLowerBoundPruneCount() > comparisons / 2);
+        assertTrue(stats, recognizer.getDtwCount() < comparisons / 4);
+    }
+
+    @Test
+    public void identicalWindow_hasFullIntensity() {
+        TemplateGestureRecognizer recognizer = new TemplateGestureRecognizer(
+                SAMPLE_PERIOD_NS, 8, (id, intensity, timestampNs) -> assertEquals(1.0f, intensity, 1e-4f));
+        float[] points = {0, 0, 5, 3, 0, 5, 6, 0, 5, 3, 0, 5, 0, 0, 5, -3, 0, 5, -6, 0, 5, -3, 0, 5};
+        recognizer.addTemplate(1, points, 8);
+        for (int i = 0; i < 8; i++) {
+            recognizer.processAccelerometer(points[i * 3], points[i * 3 + 1], points[i * 3 + 2], time);
+            time += SAMPLE_PERIOD_NS;
+        }
+        recognizer.processAccelerometer(0f, 0f, 5f, time);
+
+        assertEquals(1, recognizer.getMatchCount());
+    }
+
+    @Test
+    public void detector_reportsCustomGestureWithTemplateId() {
+        List<String> events = new ArrayList<>();
+        GestureDetector detector = new GestureDetector(new GestureDetector.GestureDetectionListener() {
+            @Override
+            public void onGestureDetected(GestureDetector.GestureType gestureType, float intensity) {
+                fail("Expected the template-aware callback");
+            }
+
+            @Override
+            public void onGestureDetected(GestureDetector.GestureType gestureType, float intensity,
+                                          int templateId) {
+                events.add(gestureType + ":" + templateId);
+            }
+        });
+        // Slow, gentle circle: below every built-in threshold
+        TemplateGestureRecognizer recognizer = detector.getTemplateRecognizer();
+        recognizer.startRecording();
+        circle(detector, GESTURE_NS, 1.2f);
+        assertTrue(recognizer.stopRecording(5));
+        restDetector(detector, 1_000_000_000L);
+
+        circle(detector, GESTURE_NS, 1.2f);
+        restDetector(detector, 500_000_000L);
+
+        assertEquals(List.of("CUSTOM:5"), events);
+    }
+
+    private void onMatch(int templateId, float intensity, long timestampNs) {
+        matches.add(templateId + ":" + intensity);
+    }
+
+    /**
+     * One circle in the X-Y plane, with gravity on Z
+     */
+    private void circle(TemplateGestureRecognizer recognizer, long durationNs) {
+        for (long t = 0; t < durationNs; t += SAMPLE_PERIOD_NS) {
+            double phase = 2 * Math.PI * t / durationNs;
+            recognizer.processAccelerometer(6f * (float) Math.sin(phase), 6f * (float) Math.cos(phase) - 6f,
+                    9.8f, time);
+            time += SAMPLE_PERIOD_NS;
+        }
+    }
+
+    private void circle(GestureDetector detector, long durationNs, float radius) {
+        for (long t = 0; t < durationNs; t += SAMPLE_PERIOD_NS) {
+            double phase = 2 * Math.PI * t / durationNs;
+            detector.processAccelerometerData(radius * (float) Math.sin(phase),
+                    radius * (float) Math.cos(phase) - radius, 9.8f, time);
+            time += SAMPLE_PERIOD_NS;
+        }
+    }
+
+    private void rest(TemplateGestureRecognizer recognizer, long durationNs) {
+        for (long t = 0; t < durationNs; t += SAMPLE_PERIOD_NS) {
+            recognizer.processAccelerometer(0f, 0f, 9.8f, time);
+            time += SAMPLE_PERIOD_NS;
+        }
+    }
+
+    private void restDetector(GestureDetector detector, long durationNs) {
+        for (long t = 0; t < durationNs; t += SAMPLE_PERIOD_NS) {
+            detector.processAccelerometerData(0f, 0f, 9.8f, time);
+            time += SAMPLE_PERIOD_NS;
+        }
+    }
+}
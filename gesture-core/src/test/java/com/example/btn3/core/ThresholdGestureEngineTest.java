@@ -0,0 +1,135 @@
+package com.example.btn3.core;
+
+import com.example.btn3.core.GestureDetector.GestureType;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ThresholdGestureEngineTest {
+
+    private final List<GestureType> gestures = new ArrayList<>();
+    private final List<Float> intensities = new ArrayList<>();
+    private final ThresholdGestureEngine engine = new ThresholdGestureEngine((gestureType, intensity, timestampNs) -> {
+        gestures.add(gestureType);
+        intensities.add(intensity);
+    });
+
+    @Test
+    public void strongestMagnitudeRuleWins() {
+        // Back at rest between gestures so each signal re-arms
+        engine.processAccelerometer(0f, 0f, 20f, 0L);
+        engine.processAccelerometer(0f, 0f, 9.8f, 1L);
+        engine.processAccelerometer(0f, 0f, 13f, 2L);
+        engine.processAccelerometer(0f, 0f, 9.8f, 3L);
+        engine.processAccelerometer(0f, 4f, 9f, 4L);
+        engine.processAccelerometer(0f, 0f, 9.8f, 5L);
+        engine.processAccelerometer(0f, -4f, 9f, 6L);
+
+        assertEquals(List.of(GestureType.SHAKE, GestureType.WAVE,
+                GestureType.TILT_FORWARD, GestureType.TILT_BACKWARD), gestures);
+        assertEquals(20f, intensities.get(0), 1e-4f);
+        assertEquals(4f, intensities.get(3), 0f);
+    }
+
+    @Test
+    public void gyroscopeRotationReportsDirection() {
+        engine.processGyroscope(0f, 0f, 3f, 0L);
+        engine.processGyroscope(0f, 0f, 0f, 1L);
+        engine.processGyroscope(0f, 0f, -3f, 2L);
+        engine.processGyroscope(0f, 0f, 1f, 3L);
+
+        assertEquals(List.of(GestureType.ROTATE_RIGHT, GestureType.ROTATE_LEFT), gestures);
+    }
+
+    @Test
+    public void sensitivityScalesThresholds() {
+        engine.setSensitivity(0.5f, 1.0f, 1.0f, 1.0f);
+        engine.processAccelerometer(0f, 0f, 7f, 0L);
+
+        assertEquals(List.of(GestureType.WAVE), gestures);
+    }
+
+    @Test
+    public void heldSignalFiresOnceUntilRearmed() {
+        // Held tilt, then a dip that stays inside the hysteresis band
+        engine.processAccelerometer(0f, 4f, 9f, 0L);
+        engine.processAccelerometer(0f, 4.5f, 9f, 1L);
+        engine.processAccelerometer(0f, 2f, 9f, 2L);
+        engine.processAccelerometer(0f, 4f, 9f, 3L);
+        assertEquals(List.of(GestureType.TILT_FORWARD), gestures);
+
+        // Below half the threshold re-arms
+        engine.processAccelerometer(0f, 1f, 9f, 4L);
+        engine.processAccelerometer(0f, 4f, 9f, 5L);
+        assertEquals(List.of(GestureType.TILT_FORWARD, GestureType.TILT_FORWARD), gestures);
+    }
+
+    @Test
+    public void disarmedShakeMasksWave() {
+        // The tail of a shake passes through the wave band without reporting a wave
+        engine.processAccelerometer(0f, 0f, 20f, 0L);
+        engine.processAccelerometer(0f, 0f, 14f, 1L);
+        engine.processAccelerometer(0f, 0f, 9.8f, 2L);
+        engine.processAccelerometer(0f, 0f, 14f, 3L);
+
+        assertEquals(List.of(GestureType.SHAKE, GestureType.WAVE), gestures);
+    }
+
+    @Test
+    public void rearmRatioIsConfigurable() {
+        engine.setRearmRatio(GestureType.ROTATE_RIGHT, 0.9f);
+        engine.processGyroscope(0f, 0f, 3f, 0L);
+        engine.processGyroscope(0f, 0f, 2.0f, 1L);
+        engine.processGyroscope(0f, 0f, 3f, 2L);
+
+        assertEquals(List.of(GestureType.ROTATE_RIGHT, GestureType.ROTATE_RIGHT), gestures);
+    }
+
+    @Test
+    public void rearmRatioOfNegativeDirectionApplies() {
+        engine.setRearmRatio(GestureType.ROTATE_LEFT, 0.9f);
+        engine.processGyroscope(0f, 0f, -3f, 0L);
+        engine.processGyroscope(0f, 0f, -2.0f, 1L);
+        engine.processGyroscope(0f, 0f, -3f, 2L);
+
+        assertEquals(List.of(GestureType.ROTATE_LEFT, GestureType.ROTATE_LEFT), gestures);
+    }
+
+    @Test
+    public void computesAtMostOneMagnitudePerSample() {
+        for (int i = 0; i < 100; i++) {
+            engine.processAccelerometer(i, -i, 9.81f, i);
+            engine.processGyroscope(i, i, i, i);
+        }
+        assertEquals(100, engine.getMagnitudeComputationCount());
+    }
+
+    @Test
+    public void onsetIsReportedOnceAndAbandonedBelowRearm() {
+        List<String> onsets = new ArrayList<>();
+        engine.setOnsetSink(new GestureEngine.OnsetSink() {
+            @Override
+            public void onOnset(GestureType gestureType, long timestampNs) {
+                onsets.add("onset:" + gestureType);
+            }
+
+            @Override
+            public void onOnsetAbandoned(GestureType gestureType, long timestampNs) {
+                onsets.add("abandoned:" + gestureType);
+            }
+        }, 0.5f);
+        // Tilt re-arms at 1.5 and fires at 3, so the onset is at 2.25
+        engine.processAccelerometer(0f, 2.5f, 9f, 0L);
+        engine.processAccelerometer(0f, 2.7f, 9f, 1L);
+        engine.processAccelerometer(0f, 1.0f, 9.7f, 2L);
+        engine.processAccelerometer(0f, -2.5f, 9f, 3L);
+        engine.processAccelerometer(0f, -3.5f, 9f, 4L);
+
+        assertEquals(List.of("onset:TILT_FORWARD", "abandoned:TILT_FORWARD", "onset:TILT_BACKWARD"), onsets);
+        assertEquals(List.of(GestureType.TILT_BACKWARD), gestures);
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.btn3.core;
+
+import com.example.btn3.core.DeviceController.DeviceType;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class WireCodecTest {
+
+    private final WireCodec codec = new WireCodec();
+    private final List<String> decoded = new ArrayList<>();
+    private final WireCodec.Sink sink = new WireCodec.Sink() {
+        @Override
+        public void onTextLine(String line) {
+            decoded.add("text " + line);
+        }
+
+        @Override
+        public void onCommand(int correlationId, long packed) {
+            decoded.add("command " + correlationId + " " + WireCodec.packedDevice(packed) + "/"
+                    + WireCodec.packedAction(packed) + "/" + WireCodec.packedValue(packed));
+        }
+
+        @Override
+        public void onAck(int correlationId) {
+            decoded.add("ack " + correlationId);
+        }
+
+        @Override
+        public void onNak(int correlationId, int errorCode) {
+            decoded.add("nak " + correlationId + " " + errorCode);
+        }
+
+        @Override
+        public void onBatch(int correlationId, long[] commands) {
+            StringBuilder builder = new StringBuilder("batch " + correlationId);
+            for (long packed : commands) {
+                builder.append(' ').append(WireCodec.toText(packed));
+            }
+            decoded.add(builder.toString());
+        }
+    };
+
+    @Test
+    public void textCommands_parseToOpcodes() {
+        assertEquals(WireCodec.pack(WireCodec.deviceOpcode(DeviceType.SPEAKER), WireCodec.ACTION_VOLUME, 42),
+                WireCodec.parse("SPEAKER:VOLUME:42"));
+        assertEquals(WireCodec.pack(WireCodec.deviceOpcode(DeviceType.LIGHT), WireCodec.ACTION_ON, 0),
+                WireCodec.parse("LIGHT:ON"));
+        assertEquals(WireCodec.pack(WireCodec.DEVICE_MEDIA, WireCodec.ACTION_PREVIOUS, 0),
+                WireCodec.parse("MEDIA:PREVIOUS"));
+        assertEquals(WireCodec.NOT_ENCODABLE, WireCodec.parse("FAN:OSCILLATE:1"));
+        assertEquals(WireCodec.NOT_ENCODABLE, WireCodec.parse("LIGHT:BRIGHTNESS:high"));
+    }
+
+    @Test
+    public void commandFrame_roundTripsAndIsSmallerThanText() {
+        int length = codec.encodeCommand(300, WireCodec.parse("SPEAKER:VOLUME:-5"));
+        codec.decode(codec.getBuffer(), 0, length, sink);
+
+        assertEquals(List.of("command 300 2/17/-5"), decoded);
+        assertEquals(9, codec.encodeCommand(12, WireCodec.parse("SPEAKER:VOLUME:42")));
+        assertEquals(22, "#12 SPEAKER:VOLUME:42\n".length());
+    }
+
+    @Test
+    public void textEncoding_matchesCommandText() {
+        for (String command : List.of("SPEAKER:VOLUME:42", "LIGHT:OFF", "MEDIA:PREVIOUS", "FAN:SPEED:-2147483648")) {
+            long packed = WireCodec.parse(command);
+            int length = codec.encodeText(7, packed);
+
+            assertEquals(command, WireCodec.toText(packed));
+            assertEquals("#7 " + command + "\n", new String(codec.getBuffer(), 0, length, StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    public void batchFrame_roundTripsAsOneFrame() {
+        long[] commands = {WireCodec.parse("LIGHT:OFF"), WireCodec.parse("FAN:ON"), WireCodec.parse("TV:ON"),
+                WireCodec.parse("SPEAKER:VOLUME:30")};
+        int length = codec.encodeBatch(9, WireCodec.compileBatch(commands));
+        codec.decode(codec.getBuffer(), 0, length, sink);
+
+        assertEquals(List.of("batch 9 LIGHT:OFF FAN:ON TV:ON SPEAKER:VOLUME:30"), decoded);
+        assertEquals(19, length); // four command frames would take 36 bytes
+
+        length = codec.encodeTextBatch(9, WireCodec.compileTextBatch(commands));
+        assertEquals("#9 BATCH LIGHT:OFF;FAN:ON;TV:ON;SPEAKER:VOLUME:30\n",
+                new String(codec.getBuffer(), 0, length, StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void mixedStream_splitsIntoLinesAndFrames() {
+        WireCodec device = new WireCodec();
+        byte[] text = "#1 OK BIN1\n".getBytes(StandardCharsets.UTF_8);
+        byte[] ack = Arrays.copyOf(device.getBuffer(), device.encodeAck(2));
+        byte[] nak = Arrays.copyOf(device.getBuffer(), device.encodeNak(3, 7));
+        byte[] stream = new byte[text.length + ack.length + nak.length];
+        System.arraycopy(text, 0, stream, 0, text.length);
+        System.arraycopy(ack, 0, stream, text.length, ack.length);
+        System.arraycopy(nak, 0, stream, text.length + ack.length, nak.length);
+
+        // One byte at a time, as a slow link might deliver it
+        for (int i = 0; i < stream.length; i++) {
+            codec.decode(stream, i, 1, sink);
+        }
+
+        assertEquals(List.of("text #1 OK BIN1", "ack 2", "nak 3 7"), decoded);
+    }
+
+    @Test
+    public void corruptFrame_isDropped() {
+        int length = codec.encodeAck(5);
+        byte[] frame = Arrays.copyOf(codec.getBuffer(), length);
+        frame[3] ^= 0x01;
+        codec.decode(frame, 0, frame.length, sink);
+
+        assertTrue(decoded.isEmpty());
+        assertEquals(1, codec.getCrcErrorCount());
+
+        // The stream recovers with the next frame
+        length = codec.encodeAck(6);
+        codec.decode(codec.getBuffer(), 0, length, sink);
+        assertEquals(List.of("ack 6"), decoded);
+    }
+}
@@ -0,0 +1,19 @@
+// Offline evaluation of the gesture detectors over labeled trace corpora (plain JVM)
+plugins {
+    application
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    implementation(project(":gesture-core"))
+    testImplementation(libs.junit)
+}
+
+// Run with ./gradlew :gesture-eval:run --args="<corpus-dir>"
+application {
+    mainClass.set("com.example.btn3.eval.EvaluationHarness")
+}
@@ -0,0 +1,154 @@
+package com.example.btn3.eval;
+
+import com.example.btn3.core.FeatureGestureEngine;
+import com.example.btn3.core.FilteredGestureEngine;
+import com.example.btn3.core.SpectralGestureEngine;
+import com.example.btn3.core.ThresholdGestureEngine;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Command-line harness: runs the gesture detector over every trace in a corpus
+ * directory in parallel and prints the confusion matrix, false triggers per hour
+ * and aggregate throughput.
+ *
+ * Usage: EvaluationHarness corpus-dir [--engine threshold|fused|filtered|features|spectral]
+ *        [--resample-hz rate] [--threads n]
+ */
+public class EvaluationHarness {
+
+    // Sensor rate assumed by rate-dependent engines when traces are not resampled
+    private static final float FILTER_SAMPLE_RATE_HZ = 200.0f;
+
+    public static void main(String[] args) {
+        try {
+            System.exit(run(args));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: EvaluationHarness <corpus-dir> [--engine threshold|fused|filtered|features|spectral]"
+                    + " [--resample-hz <rate>] [--threads <n>]");
+            System.exit(2);
+        } catch (UncheckedIOException e) {
+            System.err.println(e.getMessage() + ": " + e.getCause().getMessage());
+            System.exit(1);
+        }
+    }
+
+    static int run(String[] args) {
+        if (args.length == 0) {
+            throw new IllegalArgumentException("Missing corpus directory");
+        }
+        Path corpus = Paths.get(args[0]);
+        String engine = "threshold";
+        float resampleHz = 0.0f;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 1; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : null;
+            if (value == null) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+            switch (args[i]) {
+                case "--engine":
+                    engine = value;
+                    break;
+                case "--resample-hz":
+                    resampleHz = Float.parseFloat(value);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+            i++;
+        }
+
+        List<Path> traces = listTraces(corpus);
+        if (traces.isEmpty()) {
+            System.err.println("No traces in " + corpus);
+            return 1;
+        }
+        GestureEvaluator evaluator = new GestureEvaluator(setupFor(engine, resampleHz));
+
+        long start = System.nanoTime();
+        EvaluationResult result = evaluate(evaluator, traces, threads);
+        long elapsed = System.nanoTime() - start;
+
+        System.out.print(result.formatConfusionMatrix());
+        System.out.println();
+        System.out.printf(Locale.US, "traces: %d, samples: %d, trace time: %.1f h%n", result.getTraceCount(),
+                result.getSampleCount(), result.getTraceDurationNs() / 3600e9);
+        System.out.printf(Locale.US, "detection rate: %.3f, false triggers: %d (%.2f per hour)%n",
+                result.getDetectionRate(), result.getFalseTriggerCount(), result.getFalseTriggersPerHour());
+        System.out.printf(Locale.US, "throughput: %.0f samples/s on %d threads (%.2f s)%n",
+                result.getSampleCount() / (elapsed / 1e9), threads, elapsed / 1e9);
+        return 0;
+    }
+
+    /**
+     * Evaluate the traces on a dedicated fork-join pool
+     */
+    public static EvaluationResult evaluate(GestureEvaluator evaluator, List<Path> traces, int threads) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return pool.invoke(new EvaluationTask(evaluator, traces));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * @return Regular files in the corpus directory, sorted by name
+     */
+    public static List<Path> listTraces(Path corpus) {
+        try (Stream<Path> files = Files.list(corpus)) {
+            return files.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list " + corpus, e);
+        }
+    }
+
+    static GestureEvaluator.DetectorSetup setupFor(String engine, float resampleHz) {
+        GestureEvaluator.DetectorSetup engineSetup;
+        switch (engine) {
+            case "threshold":
+                engineSetup = detector -> { };
+                break;
+            case "fused":
+                engineSetup = detector -> detector.setEngine(ThresholdGestureEngine.fused());
+                break;
+            case "filtered":
+                float rate = resampleHz > 0 ? resampleHz : FILTER_SAMPLE_RATE_HZ;
+                engineSetup = detector -> detector.setEngine(
+                        FilteredGestureEngine.factory(FilteredGestureEngine.defaultConfig(rate)));
+                break;
+            case "features":
+                float featureRate = resampleHz > 0 ? resampleHz : FILTER_SAMPLE_RATE_HZ;
+                engineSetup = detector -> detector.setEngine(FeatureGestureEngine.factory(featureRate));
+                break;
+            case "spectral":
+                float spectralRate = resampleHz > 0 ? resampleHz : FILTER_SAMPLE_RATE_HZ;
+                engineSetup = detector -> detector.setEngine(SpectralGestureEngine.factory(spectralRate));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown engine " + engine);
+        }
+        if (resampleHz <= 0) {
+            return engineSetup;
+        }
+        long periodNs = (long) (1e9 / resampleHz);
+        return detector -> {
+            engineSetup.configure(detector);
+            detector.setResamplingPeriod(periodNs);
+        };
+    }
+}
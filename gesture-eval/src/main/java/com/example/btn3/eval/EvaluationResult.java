@@ -0,0 +1,154 @@
+package com.example.btn3.eval;
+
+import com.example.btn3.core.GestureDetector.GestureType;
+
+import java.util.Locale;
+
+/**
+ * Accuracy and throughput of a detector over one or more labeled traces. The
+ * confusion matrix is indexed [labeled][detected] by GestureType ordinal; NONE on
+ * the labeled side is a false trigger and NONE on the detected side a missed gesture.
+ */
+public class EvaluationResult {
+
+    private static final int TYPES = GestureType.values().length;
+    private static final int NONE = GestureType.NONE.ordinal();
+    private static final double NANOS_PER_HOUR = 3600e9;
+
+    private final long[][] confusion = new long[TYPES][TYPES];
+    private long traceCount = 0;
+    private long sampleCount = 0;
+    private long traceDurationNs = 0;
+
+    /**
+     * Record one labeled gesture and what the detector reported for it
+     */
+    void addMatch(GestureType labeled, GestureType detected) {
+        confusion[labeled.ordinal()][detected.ordinal()]++;
+    }
+
+    void addTrace(long samples, long durationNs) {
+        traceCount++;
+        sampleCount += samples;
+        traceDurationNs += durationNs;
+    }
+
+    /**
+     * Add the counts of another result to this one
+     * @return This result
+     */
+    public EvaluationResult merge(EvaluationResult other) {
+        for (int labeled = 0; labeled < TYPES; labeled++) {
+            for (int detected = 0; detected < TYPES; detected++) {
+                confusion[labeled][detected] += other.confusion[labeled][detected];
+            }
+        }
+        traceCount += other.traceCount;
+        sampleCount += other.sampleCount;
+        traceDurationNs += other.traceDurationNs;
+        return this;
+    }
+
+    public long getCount(GestureType labeled, GestureType detected) {
+        return confusion[labeled.ordinal()][detected.ordinal()];
+    }
+
+    public long getTraceCount() {
+        return traceCount;
+    }
+
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    public long getTraceDurationNs() {
+        return traceDurationNs;
+    }
+
+    /**
+     * @return Labeled gestures across all types
+     */
+    public long getLabeledCount() {
+        long total = 0;
+        for (int labeled = 0; labeled < TYPES; labeled++) {
+            if (labeled != NONE) {
+                for (int detected = 0; detected < TYPES; detected++) {
+                    total += confusion[labeled][detected];
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return Labeled gestures reported as the right type
+     */
+    public long getCorrectCount() {
+        long total = 0;
+        for (int type = 0; type < TYPES; type++) {
+            if (type != NONE) {
+                total += confusion[type][type];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return Fraction of labeled gestures reported as the right type
+     */
+    public double getDetectionRate() {
+        long labeled = getLabeledCount();
+        return labeled == 0 ? 0.0 : (double) getCorrectCount() / labeled;
+    }
+
+    /**
+     * @return Gestures reported where nothing was labeled
+     */
+    public long getFalseTriggerCount() {
+        long total = 0;
+        for (int detected = 0; detected < TYPES; detected++) {
+            total += confusion[NONE][detected];
+        }
+        return total;
+    }
+
+    public double getFalseTriggersPerHour() {
+        return traceDurationNs == 0 ? 0.0 : getFalseTriggerCount() * NANOS_PER_HOUR / traceDurationNs;
+    }
+
+    /**
+     * @return Confusion matrix plus per-type recall and precision as a text table
+     */
+    public String formatConfusionMatrix() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.US, "%-15s", "labeled\\detected"));
+        for (GestureType detected : GestureType.values()) {
+            out.append(String.format(Locale.US, "%15s", detected));
+        }
+        out.append(String.format(Locale.US, "%10s%10s%n", "recall", "precision"));
+        for (GestureType labeled : GestureType.values()) {
+            out.append(String.format(Locale.US, "%-15s", labeled));
+            long row = 0;
+            for (GestureType detected : GestureType.values()) {
+                long count = getCount(labeled, detected);
+                row += count;
+                out.append(String.format(Locale.US, "%15d", count));
+            }
+            if (labeled == GestureType.NONE) {
+                out.append(String.format(Locale.US, "%n"));
+                continue;
+            }
+            long column = 0;
+            for (GestureType other : GestureType.values()) {
+                column += getCount(other, labeled);
+            }
+            long hits = getCount(labeled, labeled);
+            out.append(String.format(Locale.US, "%10s%10s%n", ratio(hits, row), ratio(hits, column)));
+        }
+        return out.toString();
+    }
+
+    private static String ratio(long numerator, long denominator) {
+        return denominator == 0 ? "-" : String.format(Locale.US, "%.3f", (double) numerator / denominator);
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.btn3.eval;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Fork-join evaluation of a list of traces: a task with several files forks one
+ * subtask per file and merges their results, a task with one file evaluates it.
+ * Each file gets its own detector, so tasks share no mutable state.
+ */
+public class EvaluationTask extends RecursiveTask<EvaluationResult> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final GestureEvaluator evaluator;
+    private final List<Path> traces;
+
+    public EvaluationTask(GestureEvaluator evaluator, List<Path> traces) {
+        this.evaluator = evaluator;
+        this.traces = traces;
+    }
+
+    @Override
+    protected EvaluationResult compute() {
+        if (traces.size() == 1) {
+            try {
+                return evaluator.evaluate(traces.get(0));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to evaluate " + traces.get(0), e);
+            }
+        }
+        List<EvaluationTask> subtasks = new ArrayList<>(traces.size());
+        for (Path trace : traces) {
+            subtasks.add(new EvaluationTask(evaluator, List.of(trace)));
+        }
+        invokeAll(subtasks);
+        EvaluationResult result = new EvaluationResult();
+        for (EvaluationTask subtask : subtasks) {
+            result.merge(subtask.join());
+        }
+        return result;
+    }
+}
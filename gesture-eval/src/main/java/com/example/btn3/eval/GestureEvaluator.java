@@ -0,0 +1,144 @@
+package com.example.btn3.eval;
+
+import com.example.btn3.core.GestureDetector;
+import com.example.btn3.core.GestureDetector.GestureType;
+import com.example.btn3.core.SensorArchiveReader;
+import com.example.btn3.core.SensorSampleBuffer;
+import com.example.btn3.core.SensorTrace;
+import com.example.btn3.core.SensorTraceReplayer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs a fresh GestureDetector over one labeled trace and matches its output
+ * against the LABEL records. A detection within the match window of a label
+ * (from windowBefore before to windowAfter after it) is counted against that label,
+ * preferring one of the labeled type; everything else is a miss or a false trigger.
+ * Accepts raw traces (SensorTraceRecorder) and archives (".archive", SensorArchiveWriter).
+ */
+public class GestureEvaluator {
+
+    // Sets up each detector before a trace is replayed, e.g. engine and sensitivity
+    public interface DetectorSetup {
+        void configure(GestureDetector detector);
+    }
+
+    public static final long DEFAULT_WINDOW_BEFORE_NS = 300_000_000L; // 300 ms
+    public static final long DEFAULT_WINDOW_AFTER_NS = 1_000_000_000L; // 1 s
+    public static final String ARCHIVE_SUFFIX = ".archive";
+
+    private final DetectorSetup setup;
+    private final long windowBeforeNs;
+    private final long windowAfterNs;
+
+    public GestureEvaluator(DetectorSetup setup) {
+        this(setup, DEFAULT_WINDOW_BEFORE_NS, DEFAULT_WINDOW_AFTER_NS);
+    }
+
+    public GestureEvaluator(DetectorSetup setup, long windowBeforeNs, long windowAfterNs) {
+        this.setup = setup;
+        this.windowBeforeNs = windowBeforeNs;
+        this.windowAfterNs = windowAfterNs;
+    }
+
+    /**
+     * Evaluate one trace file
+     */
+    public EvaluationResult evaluate(Path trace) throws IOException {
+        TraceRun run = new TraceRun();
+        setup.configure(run.detector);
+        if (trace.getFileName().toString().endsWith(ARCHIVE_SUFFIX)) {
+            try (SensorArchiveReader reader = new SensorArchiveReader(trace)) {
+                reader.readAll(run);
+            }
+        } else {
+            try (SensorTraceReplayer replayer = new SensorTraceReplayer(trace)) {
+                replayer.replay(run, SensorTraceReplayer.Pace.AS_FAST_AS_POSSIBLE);
+            }
+        }
+        return run.match();
+    }
+
+    /**
+     * Replay state of one trace: the detector plus the labels and detections seen
+     */
+    private final class TraceRun implements SensorSampleBuffer.SampleConsumer {
+        final GestureDetector detector = new GestureDetector(this::onGestureDetected);
+        final List<Event> labels = new ArrayList<>();
+        final List<Event> detections = new ArrayList<>();
+        long currentTime = Long.MIN_VALUE;
+        long firstTime = Long.MIN_VALUE;
+        long samples = 0;
+
+        @Override
+        public void onSample(int sensorType, long timestampNs, float x, float y, float z) {
+            if (firstTime == Long.MIN_VALUE) {
+                firstTime = timestampNs;
+            }
+            currentTime = Math.max(currentTime, timestampNs);
+            if (sensorType == SensorTrace.LABEL) {
+                labels.add(new Event(GestureType.values()[(int) x], timestampNs));
+                return;
+            }
+            samples++;
+            if (sensorType == SensorTrace.ACCELEROMETER) {
+                detector.processAccelerometerData(x, y, z, timestampNs);
+            } else if (sensorType == SensorTrace.GYROSCOPE) {
+                detector.processGyroscopeData(x, y, z, timestampNs);
+            }
+        }
+
+        private void onGestureDetected(GestureType gestureType, float intensity) {
+            // Reported synchronously while the current sample is processed
+            detections.add(new Event(gestureType, currentTime));
+        }
+
+        EvaluationResult match() {
+            EvaluationResult result = new EvaluationResult();
+            labels.sort((a, b) -> Long.compare(a.timestampNs, b.timestampNs));
+            boolean[] used = new boolean[detections.size()];
+            for (Event label : labels) {
+                int best = -1;
+                for (int i = 0; i < detections.size(); i++) {
+                    Event detection = detections.get(i);
+                    if (used[i] || detection.timestampNs < label.timestampNs - windowBeforeNs) {
+                        continue;
+                    }
+                    if (detection.timestampNs > label.timestampNs + windowAfterNs) {
+                        break;
+                    }
+                    if (best < 0 || (detection.type == label.type && detections.get(best).type != label.type)) {
+                        best = i;
+                    }
+                }
+                if (best < 0) {
+                    result.addMatch(label.type, GestureType.NONE);
+                } else {
+                    used[best] = true;
+                    result.addMatch(label.type, detections.get(best).type);
+                }
+            }
+            for (int i = 0; i < detections.size(); i++) {
+                if (!used[i]) {
+                    result.addMatch(GestureType.NONE, detections.get(i).type);
+                }
+            }
+            long duration = samples == 0 ? 0 : currentTime - firstTime;
+            result.addTrace(samples, duration);
+            return result;
+        }
+    }
+
+    private static final class Event {
+        final GestureType type;
+        final long timestampNs;
+
+        Event(GestureType type, long timestampNs) {
+            this.type = type;
+            this.timestampNs = timestampNs;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.example.btn3.eval;
+
+import com.example.btn3.core.SensitivityProfile;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Sweeps the four sensitivity multipliers over a grid, evaluates every candidate
+ * against a labeled corpus concurrently on all cores, prints the Pareto set of
+ * detection rate against false triggers per hour and writes the chosen candidate as
+ * a SensitivityProfile. The thresholds themselves are searched through the
+ * multipliers, limited to the range the settings screen can express.
+ *
+ * Usage: ThresholdTuner corpus-dir [--output file] [--steps n]
+ *        [--max-false-per-hour rate] [--engine threshold|fused|filtered|features|spectral]
+ *        [--resample-hz rate] [--threads n]
+ */
+public class ThresholdTuner {
+
+    public static final int DEFAULT_STEPS = 5;
+    public static final double DEFAULT_MAX_FALSE_PER_HOUR = 1.0;
+
+    /**
+     * One point of the sweep and its result once evaluated
+     */
+    public static final class Candidate {
+        private final SensitivityProfile profile;
+        private EvaluationResult result;
+
+        public Candidate(SensitivityProfile profile) {
+            this.profile = profile;
+        }
+
+        public SensitivityProfile getProfile() {
+            return profile;
+        }
+
+        public EvaluationResult getResult() {
+            return result;
+        }
+
+        public double getDetectionRate() {
+            return result.getDetectionRate();
+        }
+
+        public double getFalseTriggersPerHour() {
+            return result.getFalseTriggersPerHour();
+        }
+
+        /**
+         * @return True if this candidate is at least as good on both axes and better on one
+         */
+        boolean dominates(Candidate other) {
+            return getDetectionRate() >= other.getDetectionRate()
+                    && getFalseTriggersPerHour() <= other.getFalseTriggersPerHour()
+                    && (getDetectionRate() > other.getDetectionRate()
+                    || getFalseTriggersPerHour() < other.getFalseTriggersPerHour());
+        }
+    }
+
+    public static void main(String[] args) {
+        try {
+            System.exit(run(args));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: ThresholdTuner <corpus-dir> [--output <file>] [--steps <n>]"
+                    + " [--max-false-per-hour <rate>] [--engine threshold|fused|filtered|features|spectral]"
+                    + " [--resample-hz <rate>] [--threads <n>]");
+            System.exit(2);
+        } catch (UncheckedIOException e) {
+            System.err.println(e.getMessage() + ": " + e.getCause().getMessage());
+            System.exit(1);
+        }
+    }
+
+    static int run(String[] args) {
+        if (args.length == 0) {
+            throw new IllegalArgumentException("Missing corpus directory");
+        }
+        Path corpus = Paths.get(args[0]);
+        Path output = Paths.get(SensitivityProfile.FILE_NAME);
+        int steps = DEFAULT_STEPS;
+        double maxFalsePerHour = DEFAULT_MAX_FALSE_PER_HOUR;
+        String engine = "threshold";
+        float resampleHz = 0.0f;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 1; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : null;
+            if (value == null) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+            switch (args[i]) {
+                case "--output":
+                    output = Paths.get(value);
+                    break;
+                case "--steps":
+                    steps = Integer.parseInt(value);
+                    break;
+                case "--max-false-per-hour":
+                    maxFalsePerHour = Double.parseDouble(value);
+                    break;
+                case "--engine":
+                    engine = value;
+                    break;
+                case "--resample-hz":
+                    resampleHz = Float.parseFloat(value);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+            i++;
+        }
+
+        List<Path> traces = EvaluationHarness.listTraces(corpus);
+        if (traces.isEmpty()) {
+            System.err.println("No traces in " + corpus);
+            return 1;
+        }
+        GestureEvaluator.DetectorSetup engineSetup = EvaluationHarness.setupFor(engine, resampleHz);
+        List<Candidate> candidates = grid(steps);
+
+        long start = System.nanoTime();
+        sweep(engineSetup, candidates, traces, threads);
+        long elapsed = System.nanoTime() - start;
+
+        List<Candidate> front = paretoFront(candidates);
+        System.out.printf(Locale.US, "%d candidates x %d traces in %.2f s on %d threads%n",
+                candidates.size(), traces.size(), elapsed / 1e9, threads);
+        System.out.println("Pareto set (detection rate, false triggers per hour):");
+        for (Candidate candidate : front) {
+            System.out.printf(Locale.US, "  %.3f  %7.2f  %s%n", candidate.getDetectionRate(),
+                    candidate.getFalseTriggersPerHour(), candidate.getProfile());
+        }
+
+        Candidate chosen = choose(front, maxFalsePerHour);
+        String comment = String.format(Locale.US,
+                "Tuned on %d traces: detection rate %.3f, %.2f false triggers per hour",
+                traces.size(), chosen.getDetectionRate(), chosen.getFalseTriggersPerHour());
+        try (OutputStream out = Files.newOutputStream(output)) {
+            chosen.getProfile().store(out, comment);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write " + output, e);
+        }
+        System.out.println("Wrote " + output + ": " + chosen.getProfile());
+        return 0;
+    }
+
+    /**
+     * @return Every combination of steps evenly spaced sensitivities per gesture group
+     */
+    public static List<Candidate> grid(int steps) {
+        if (steps < 2) {
+            throw new IllegalArgumentException("Need at least 2 steps, got " + steps);
+        }
+        float[] values = new float[steps];
+        for (int i = 0; i < steps; i++) {
+            values[i] = SensitivityProfile.MIN_SENSITIVITY
+                    + (SensitivityProfile.MAX_SENSITIVITY - SensitivityProfile.MIN_SENSITIVITY) * i / (steps - 1);
+        }
+        List<Candidate> candidates = new ArrayList<>(steps * steps * steps * steps);
+        for (float wave : values) {
+            for (float tilt : values) {
+                for (float rotation : values) {
+                    for (float shake : values) {
+                        candidates.add(new Candidate(new SensitivityProfile(wave, tilt, rotation, shake)));
+                    }
+                }
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Evaluate every candidate over the traces on a dedicated fork-join pool. Each
+     * candidate is one EvaluationTask, so candidates and traces are spread over the
+     * workers together.
+     */
+    public static void sweep(GestureEvaluator.DetectorSetup engineSetup, List<Candidate> candidates,
+                             List<Path> traces, int threads) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(new SweepTask(engineSetup, candidates, traces));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * @return The evaluated candidates no other candidate dominates, by ascending false trigger rate;
+     *         of candidates with identical rates only the first is kept
+     */
+    public static List<Candidate> paretoFront(List<Candidate> candidates) {
+        List<Candidate> sorted = new ArrayList<>(candidates);
+        sorted.sort(Comparator.comparingDouble(Candidate::getFalseTriggersPerHour)
+                .thenComparing(Comparator.comparingDouble(Candidate::getDetectionRate).reversed()));
+        // After the sort a candidate is on the front iff it detects more than everything before it
+        List<Candidate> front = new ArrayList<>();
+        double bestDetectionRate = Double.NEGATIVE_INFINITY;
+        for (Candidate candidate : sorted) {
+            if (candidate.getDetectionRate() > bestDetectionRate) {
+                front.add(candidate);
+                bestDetectionRate = candidate.getDetectionRate();
+            }
+        }
+        return front;
+    }
+
+    /**
+     * @return The front candidate with the highest detection rate within the false
+     *         trigger budget, or the one with the fewest false triggers if none is
+     */
+    public static Candidate choose(List<Candidate> front, double maxFalsePerHour) {
+        Candidate chosen = front.get(0);
+        for (Candidate candidate : front) {
+            if (candidate.getFalseTriggersPerHour() <= maxFalsePerHour
+                    && candidate.getDetectionRate() > chosen.getDetectionRate()) {
+                chosen = candidate;
+            }
+        }
+        return chosen;
+    }
+
+    private static final class SweepTask extends RecursiveTask<Void> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final GestureEvaluator.DetectorSetup engineSetup;
+        private final List<Candidate> candidates;
+        private final List<Path> traces;
+
+        SweepTask(GestureEvaluator.DetectorSetup engineSetup, List<Candidate> candidates, List<Path> traces) {
+            this.engineSetup = engineSetup;
+            this.candidates = candidates;
+            this.traces = traces;
+        }
+
+        @Override
+        protected Void compute() {
+            List<EvaluationTask> tasks = new ArrayList<>(candidates.size());
+            for (Candidate candidate : candidates) {
+                SensitivityProfile profile = candidate.getProfile();
+                GestureEvaluator evaluator = new GestureEvaluator(detector -> {
+                    engineSetup.configure(detector);
+                    profile.applyTo(detector);
+                });
+                tasks.add(new EvaluationTask(evaluator, traces));
+            }
+            invokeAll(tasks);
+            for (int i = 0; i < tasks.size(); i++) {
+                candidates.get(i).result = tasks.get(i).join();
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.btn3.eval;
+
+import com.example.btn3.core.GestureDetector.GestureType;
+import com.example.btn3.core.SensorArchiveWriter;
+import com.example.btn3.core.SensorSampleBuffer;
+import com.example.btn3.core.SensorTrace;
+import com.example.btn3.core.SensorTraceRecorder;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class EvaluationHarnessTest {
+
+    private static final long SAMPLE_PERIOD_NS = 5_000_000L; // 200 Hz
+    private static final long SECOND = 1_000_000_000L;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void corpus_producesConfusionMatrix() throws IOException {
+        Path corpus = folder.newFolder("corpus").toPath();
+        for (int i = 0; i < 3; i++) {
+            try (SensorTraceRecorder recorder = new SensorTraceRecorder(corpus.resolve("tilt" + i + ".trace"))) {
+                writeTrace(recorder, 10);
+                // Two labeled tilts that happen, one labeled rotation that does not
+                recorder.label(GestureType.TILT_FORWARD, 2 * SECOND);
+                recorder.label(GestureType.TILT_FORWARD, 5 * SECOND);
+                recorder.label(GestureType.ROTATE_LEFT, 8 * SECOND);
+            }
+        }
+        // Archived trace with an unlabeled tilt (a false trigger)
+        try (SensorArchiveWriter writer = new SensorArchiveWriter(corpus.resolve("noise.archive"))) {
+            writeTrace(writer, 10);
+        }
+
+        List<Path> traces = EvaluationHarness.listTraces(corpus);
+        GestureEvaluator evaluator = new GestureEvaluator(EvaluationHarness.setupFor("threshold", 0f));
+        EvaluationResult result = EvaluationHarness.evaluate(evaluator, traces, 2);
+
+        assertEquals(4, result.getTraceCount());
+        assertEquals(6, result.getCount(GestureType.TILT_FORWARD, GestureType.TILT_FORWARD));
+        assertEquals(3, result.getCount(GestureType.ROTATE_LEFT, GestureType.NONE));
+        // Every trace tilts at 2 s and 5 s; the archive has no labels
+        assertEquals(2, result.getFalseTriggerCount());
+        assertEquals(6.0 / 9.0, result.getDetectionRate(), 1e-9);
+        assertEquals(2 * 3600.0 / 40.0, result.getFalseTriggersPerHour(), 1.0);
+        assertTrue(result.formatConfusionMatrix().contains("TILT_FORWARD"));
+    }
+
+    @Test
+    public void eachEngine_canBeSelected() throws IOException {
+        Path corpus = folder.newFolder("engines").toPath();
+        try (SensorTraceRecorder recorder = new SensorTraceRecorder(corpus.resolve("tilt.trace"))) {
+            writeTrace(recorder, 10);
+            recorder.label(GestureType.TILT_FORWARD, 2 * SECOND);
+            recorder.label(GestureType.TILT_FORWARD, 5 * SECOND);
+        }
+
+        for (String engine : new String[]{"threshold", "fused", "filtered", "features", "spectral"}) {
+            GestureEvaluator evaluator = new GestureEvaluator(EvaluationHarness.setupFor(engine, 100f));
+            EvaluationResult result = EvaluationHarness.evaluate(evaluator,
+                    EvaluationHarness.listTraces(corpus), 1);
+            assertEquals(engine, 2, result.getLabeledCount());
+            assertEquals(engine, 4000, result.getSampleCount());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownEngine_isRejected() {
+        EvaluationHarness.setupFor("neural", 0f);
+    }
+
+    /**
+     * Phone flat, tilted forward (gravity onto +Y) for half a second at 2 s and 5 s
+     */
+    private static void writeTrace(SensorSampleBuffer.SampleConsumer out, int seconds) {
+        for (long t = 0; t < seconds * SECOND; t += SAMPLE_PERIOD_NS) {
+            boolean tilted = (t >= 2 * SECOND && t < 2 * SECOND + SECOND / 2)
+                    || (t >= 5 * SECOND && t < 5 * SECOND + SECOND / 2);
+            float y = tilted ? 6.9f : 0f;
+            float z = tilted ? 6.9f : 9.8f;
+            out.onSample(SensorTrace.ACCELEROMETER, t, 0f, y, z);
+            out.onSample(SensorTrace.GYROSCOPE, t, 0f, 0f, 0f);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.btn3.eval;
+
+import com.example.btn3.core.GestureDetector.GestureType;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.*;
+
+/**
+ * Replays the checked-in session (traces/session.archive, synthesized by
+ * SyntheticSession; see there for the timeline) through the evaluation harness.
+ */
+public class SessionReplayTest {
+
+    @Test
+    public void fusedEngine_detectsEveryLabelWithoutFalseTriggers() throws Exception {
+        EvaluationResult result = replay("fused");
+
+        assertEquals(10, result.getLabeledCount());
+        assertEquals(1.0, result.getDetectionRate(), 1e-9);
+        // Arm swing and bounce while carried is linear motion, not a tilt
+        assertEquals(0, result.getFalseTriggerCount());
+        // The wave along Y is linear acceleration, not gravity moving onto Y
+        assertEquals(2, result.getCount(GestureType.WAVE, GestureType.WAVE));
+    }
+
+    @Test
+    public void thresholdEngine_mistakesLinearMotionForTilt() throws Exception {
+        EvaluationResult result = replay("threshold");
+
+        assertEquals(1, result.getCount(GestureType.WAVE, GestureType.WAVE));
+        assertEquals(1, result.getCount(GestureType.WAVE, GestureType.TILT_BACKWARD));
+        // One per arm swing while carried, plus the other half of the wave along Y
+        assertTrue(result.getFalseTriggerCount() >= 7);
+    }
+
+    @Test
+    public void rotationThenTilt_bothDetected() throws Exception {
+        // Tilts start 300 ms after a rotation and fire while it is still refractory
+        for (String engine : new String[]{"threshold", "fused"}) {
+            EvaluationResult result = replay(engine);
+            assertEquals(engine, 2, result.getCount(GestureType.ROTATE_RIGHT, GestureType.ROTATE_RIGHT));
+            assertEquals(engine, 2, result.getCount(GestureType.ROTATE_LEFT, GestureType.ROTATE_LEFT));
+            assertEquals(engine, 2, result.getCount(GestureType.TILT_FORWARD, GestureType.TILT_FORWARD));
+            assertEquals(engine, 2, result.getCount(GestureType.TILT_BACKWARD, GestureType.TILT_BACKWARD));
+        }
+    }
+
+    private static EvaluationResult replay(String engine) throws IOException, URISyntaxException {
+        Path trace = Paths.get(SessionReplayTest.class.getResource("/traces/session.archive").toURI());
+        return new GestureEvaluator(EvaluationHarness.setupFor(engine, 0f)).evaluate(trace);
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.btn3.eval;
+
+import com.example.btn3.core.GestureDetector.GestureType;
+import com.example.btn3.core.SensorArchiveWriter;
+import com.example.btn3.core.SensorTrace;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Generator of the synthetic labeled session in src/test/resources/traces. Body
+ * rates are integrated into an orientation so gravity, gyroscope and the linear
+ * acceleration stay consistent; sensor noise, bias and quantization come from a
+ * fixed seed. Not a device recording: regenerate it with
+ * main(path) after changing the timeline, and replace it once real recordings exist.
+ *
+ * Timeline (seconds): flat 0-2, tilt forward 2.0 and back 4.5, rotate right 7.0 and
+ * left 9.0, wave across the X axis 11.0 and along the Y axis 13.5, rotate then tilt
+ * forward 18.5/18.8 and the same backwards 20.0/20.35, carried in the hand at a 12
+ * degree pitch with arm swing along Y and a walking bounce 22.0-29.5 (unlabeled).
+ */
+final class SyntheticSession {
+
+    private static final long SAMPLE_PERIOD_NS = 10_000_000L; // 100 Hz
+    private static final long DURATION_NS = 30_000_000_000L;
+    private static final double GRAVITY = 9.80665; // m/s^2
+    private static final double TILT = Math.toRadians(38);
+    private static final double CARRY_PITCH = Math.toRadians(12);
+    private static final double ACCELEROMETER_LSB = 1.0 / 128; // m/s^2
+    private static final double GYROSCOPE_LSB = 1.0 / 512; // rad/s
+
+    private static final GestureType[] LABEL_TYPES = {
+            GestureType.TILT_FORWARD, GestureType.TILT_BACKWARD, GestureType.ROTATE_RIGHT, GestureType.ROTATE_LEFT,
+            GestureType.WAVE, GestureType.WAVE, GestureType.ROTATE_RIGHT, GestureType.TILT_FORWARD,
+            GestureType.ROTATE_LEFT, GestureType.TILT_BACKWARD
+    };
+    private static final double[] LABEL_TIMES = {2.1, 4.6, 7.2, 9.2, 11.2, 13.7, 18.6, 18.9, 20.1, 20.45};
+
+    private SyntheticSession() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Random random = new Random(20261017L);
+        // Orientation quaternion (w, x, y, z), sensor frame to world frame
+        double qw = 1.0;
+        double qx = 0.0;
+        double qy = 0.0;
+        double qz = 0.0;
+        int nextLabel = 0;
+        try (SensorArchiveWriter writer = new SensorArchiveWriter(Paths.get(args[0]))) {
+            for (long timestampNs = 0; timestampNs < DURATION_NS; timestampNs += SAMPLE_PERIOD_NS) {
+                double t = timestampNs * 1e-9;
+                while (nextLabel < LABEL_TIMES.length && LABEL_TIMES[nextLabel] <= t) {
+                    long labelNs = Math.round(LABEL_TIMES[nextLabel] * 1e9);
+                    writer.onSample(SensorTrace.LABEL, labelNs, LABEL_TYPES[nextLabel].ordinal(), 0f, 0f);
+                    nextLabel++;
+                }
+                boolean carried = t >= 22.5 && t < 29.0;
+                boolean swaying = t >= 22.5 && t < 28.5; // whole cycles, so the pitch returns
+                double rateX = pulse(t, 2.0, 0.25, TILT) - pulse(t, 2.85, 0.3, TILT)
+                        - pulse(t, 4.5, 0.25, TILT) + pulse(t, 5.35, 0.3, TILT)
+                        + pulse(t, 18.8, 0.2, TILT) - pulse(t, 19.4, 0.3, TILT)
+                        - pulse(t, 20.35, 0.2, TILT) + pulse(t, 20.95, 0.3, TILT)
+                        + pulse(t, 22.0, 0.5, CARRY_PITCH) - pulse(t, 29.0, 0.5, CARRY_PITCH)
+                        + (swaying ? 0.15 * Math.cos(2 * Math.PI * (t - 22.5)) : 0.0);
+                double rateZ = pulse(t, 7.0, 0.4, Math.toRadians(70)) - pulse(t, 9.0, 0.4, Math.toRadians(70))
+                        + pulse(t, 18.5, 0.3, Math.toRadians(50)) - pulse(t, 20.0, 0.3, Math.toRadians(50))
+                        + (swaying ? 0.3 * Math.sin(2 * Math.PI * (t - 22.5)) : 0.0);
+                double linearX = burst(t, 11.0, 0.67, 3.0, 9.0);
+                double linearY = burst(t, 13.5, 0.67, 3.0, 9.0)
+                        + (carried ? 1.5 * Math.sin(2 * Math.PI * (t - 22.5)) : 0.0);
+                double linearZ = carried ? 1.2 * Math.sin(4 * Math.PI * (t - 22.5)) : 0.0;
+
+                // Gravity in the sensor frame is the last row of the rotation matrix
+                double gravityX = 2 * (qx * qz - qw * qy) * GRAVITY;
+                double gravityY = 2 * (qy * qz + qw * qx) * GRAVITY;
+                double gravityZ = (qw * qw - qx * qx - qy * qy + qz * qz) * GRAVITY;
+                writer.onSample(SensorTrace.ACCELEROMETER, timestampNs,
+                        quantize(gravityX + linearX + 0.05 + random.nextGaussian() * 0.03, ACCELEROMETER_LSB),
+                        quantize(gravityY + linearY - 0.03 + random.nextGaussian() * 0.03, ACCELEROMETER_LSB),
+                        quantize(gravityZ + linearZ + 0.08 + random.nextGaussian() * 0.03, ACCELEROMETER_LSB));
+                writer.onSample(SensorTrace.GYROSCOPE, timestampNs + SAMPLE_PERIOD_NS / 2,
+                        quantize(rateX + 0.002 + random.nextGaussian() * 0.005, GYROSCOPE_LSB),
+                        quantize(-0.001 + random.nextGaussian() * 0.005, GYROSCOPE_LSB),
+                        quantize(rateZ + 0.003 + random.nextGaussian() * 0.005, GYROSCOPE_LSB));
+
+                // q' = q * (0, rate) / 2
+                double h = SAMPLE_PERIOD_NS * 0.5e-9;
+                double w = qw - h * (qx * rateX + qz * rateZ);
+                double x = qx + h * (qw * rateX + qy * rateZ);
+                double y = qy + h * (qz * rateX - qx * rateZ);
+                double z = qz + h * (qw * rateZ - qy * rateX);
+                double norm = Math.sqrt(w * w + x * x + y * y + z * z);
+                qw = w / norm;
+                qx = x / norm;
+                qy = y / norm;
+                qz = z / norm;
+            }
+        }
+    }
+
+    /**
+     * Half-sine rate pulse over [start, start + length) that turns the device by angle
+     */
+    private static double pulse(double t, double start, double length, double angle) {
+        if (t < start || t >= start + length) {
+            return 0.0;
+        }
+        return angle * Math.PI / (2 * length) * Math.sin(Math.PI * (t - start) / length);
+    }
+
+    /**
+     * Oscillation at frequency under a sin^2 envelope over [start, start + length)
+     */
+    private static double burst(double t, double start, double length, double frequency, double amplitude) {
+        if (t < start || t >= start + length) {
+            return 0.0;
+        }
+        double envelope = Math.sin(Math.PI * (t - start) / length);
+        return amplitude * envelope * envelope * Math.sin(2 * Math.PI * frequency * (t - start));
+    }
+
+    private static float quantize(double value, double lsb) {
+        return (float) (Math.round(value / lsb) * lsb);
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.btn3.eval;
+
+import com.example.btn3.core.GestureDetector.GestureType;
+import com.example.btn3.core.SensitivityProfile;
+import com.example.btn3.core.SensorTrace;
+import com.example.btn3.core.SensorTraceRecorder;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ThresholdTunerTest {
+
+    private static final long SAMPLE_PERIOD_NS = 5_000_000L; // 200 Hz
+    private static final long SECOND = 1_000_000_000L;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void grid_coversSettingsRange() {
+        List<ThresholdTuner.Candidate> candidates = ThresholdTuner.grid(3);
+        assertEquals(81, candidates.size());
+        SensitivityProfile first = candidates.get(0).getProfile();
+        SensitivityProfile last = candidates.get(80).getProfile();
+        assertEquals(SensitivityProfile.MIN_SENSITIVITY, first.getWaveSensitivity(), 1e-6f);
+        assertEquals(SensitivityProfile.MAX_SENSITIVITY, last.getShakeSensitivity(), 1e-6f);
+    }
+
+    @Test
+    public void sweep_paretoFrontTradesMissesForFalseTriggers() throws IOException {
+        Path corpus = folder.newFolder("corpus").toPath();
+        // A labeled tilt of 4 m/s^2 is missed once the tilt threshold is scaled to 1.5
+        try (SensorTraceRecorder recorder = new SensorTraceRecorder(corpus.resolve("tilt.trace"))) {
+            writeTilt(recorder, 4.0f);
+            recorder.label(GestureType.TILT_FORWARD, 2 * SECOND);
+        }
+        // An unlabeled lean of 2 m/s^2 is a false trigger at a scale of 0.5
+        try (SensorTraceRecorder recorder = new SensorTraceRecorder(corpus.resolve("lean.trace"))) {
+            writeTilt(recorder, 2.0f);
+        }
+
+        List<ThresholdTuner.Candidate> candidates = ThresholdTuner.grid(3);
+        ThresholdTuner.sweep(EvaluationHarness.setupFor("threshold", 0f), candidates,
+                EvaluationHarness.listTraces(corpus), 4);
+        List<ThresholdTuner.Candidate> front = ThresholdTuner.paretoFront(candidates);
+
+        // Tilt at 1.0 detects everything without false triggers and dominates the rest
+        assertEquals(1, front.size());
+        ThresholdTuner.Candidate best = front.get(0);
+        assertEquals(1.0, best.getDetectionRate(), 1e-9);
+        assertEquals(0.0, best.getFalseTriggersPerHour(), 1e-9);
+        assertEquals(1.0f, best.getProfile().getTiltSensitivity(), 1e-6f);
+        for (ThresholdTuner.Candidate candidate : candidates) {
+            assertFalse(candidate.dominates(best));
+        }
+    }
+
+    @Test
+    public void run_writesLoadableProfile() throws IOException {
+        Path corpus = folder.newFolder("run").toPath();
+        try (SensorTraceRecorder recorder = new SensorTraceRecorder(corpus.resolve("tilt.trace"))) {
+            writeTilt(recorder, 4.0f);
+            recorder.label(GestureType.TILT_FORWARD, 2 * SECOND);
+        }
+        Path output = folder.getRoot().toPath().resolve(SensitivityProfile.FILE_NAME);
+
+        assertEquals(0, ThresholdTuner.run(new String[]{corpus.toString(), "--output", output.toString(),
+                "--steps", "2", "--threads", "2"}));
+
+        try (InputStream in = Files.newInputStream(output)) {
+            SensitivityProfile profile = SensitivityProfile.load(in);
+            // Only a tilt scale of 0.5 detects it with two steps
+            assertEquals(0.5f, profile.getTiltSensitivity(), 1e-6f);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void singleStep_isRejected() {
+        ThresholdTuner.grid(1);
+    }
+
+    /**
+     * Phone flat for four seconds, tilted forward by the given Y acceleration from 2 s to 2.5 s
+     */
+    private static void writeTilt(SensorTraceRecorder out, float y) {
+        float z = (float) Math.sqrt(9.8f * 9.8f - y * y);
+        for (long t = 0; t < 4 * SECOND; t += SAMPLE_PERIOD_NS) {
+            boolean tilted = t >= 2 * SECOND && t < 2 * SECOND + SECOND / 2;
+            out.onSample(SensorTrace.ACCELEROMETER, t, 0f, tilted ? y : 0f, tilted ? z : 9.8f);
+            out.onSample(SensorTrace.GYROSCOPE, t, 0f, 0f, 0f);
+        }
+    }
+}
@@ -21,4 +21,6 @@ dependencyResolutionManagement {
 
 rootProject.name = "BTN3"
 include(":app")
+include(":gesture-core")
+include(":gesture-eval")
  
\ No newline at end of file